@@ -16,6 +16,10 @@ import com.android.launcher3.R
 import com.saggitt.omega.smartspace.provider.SmartspaceProvider
 import com.saggitt.omega.util.repeatOnAttached
 import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
 import kotlin.math.roundToInt
@@ -32,7 +36,9 @@ class BcSmartspaceView @JvmOverloads constructor(
     private var scrollState = ViewPager.SCROLL_STATE_IDLE
     private var pendingTargets: List<SmartspaceTarget>? = null
     private var runningAnimation: Animator? = null
+    private val windowVisible = MutableStateFlow(false)
 
+    @OptIn(ExperimentalCoroutinesApi::class)
     override fun onFinishInflate() {
         super.onFinishInflate()
         viewPager = findViewById(R.id.smartspace_card_pager)
@@ -66,12 +72,19 @@ class BcSmartspaceView @JvmOverloads constructor(
         val targets = if (previewMode) provider.previewTargets else provider.targets
         repeatOnAttached {
             viewPager.adapter = adapter
-            targets
+            // Unsubscribe while hidden so that the sources can suspend
+            windowVisible
+                .flatMapLatest { visible -> if (visible) targets else emptyFlow() }
                 .onEach(::onSmartspaceTargetsUpdate)
                 .launchIn(this)
         }
     }
 
+    override fun onWindowVisibilityChanged(visibility: Int) {
+        super.onWindowVisibilityChanged(visibility)
+        windowVisible.value = visibility == VISIBLE
+    }
+
     override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
         val height = MeasureSpec.getSize(heightMeasureSpec)
         val smartspaceHeight =
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.util.JsonReader
+import android.util.JsonWriter
+
+/**
+ * A store of launcher state saved in its own entry of a [NeoBackup] archive.
+ *
+ * Backups of the different sources run in parallel, so implementations must not share state
+ * between [countItems] and [backup]. Restores run on the model thread, nested in the
+ * transactions of all the sources.
+ */
+interface BackupSource {
+
+    /** Name of the archive entry holding this source */
+    val name: String
+
+    /** Returns the number of items [backup] is about to write, used for progress reporting. */
+    fun countItems(): Int
+
+    /** Writes the content of the source, calling [onItem] after each written item. */
+    fun backup(writer: JsonWriter, onItem: () -> Unit)
+
+    /**
+     * Runs [block] in a transaction of this source, which is only committed if it returns.
+     */
+    fun <T> runInTransaction(block: () -> T): T = block()
+
+    /**
+     * Replaces the content of the source with the entry read from [reader]. Called from the
+     * [block][runInTransaction], and only if the archive has an entry for this source.
+     */
+    fun restore(reader: JsonReader, manifest: BackupManifest, onItem: () -> Unit)
+
+    /**
+     * Called once the transactions of all the sources were committed, in the reverse order of
+     * the sources. Changes which can not join a transaction are applied here.
+     */
+    fun onRestored() {}
+}
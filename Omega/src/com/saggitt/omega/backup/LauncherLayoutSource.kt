@@ -0,0 +1,95 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.database.DatabaseUtils
+import android.os.Process
+import android.util.JsonReader
+import android.util.JsonWriter
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.LauncherSettings.Favorites
+import com.android.launcher3.model.ModelDbController
+import com.android.launcher3.provider.RestoreDbTask
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+
+/**
+ * Home screen layout, the favorites table of the current grid's launcher database.
+ *
+ * Restored items go through [RestoreDbTask] like the ones of a system backup, so that widgets
+ * get new ids and apps which are not installed yet show as pending.
+ */
+class LauncherLayoutSource(private val context: Context) : BackupSource {
+
+    private val app = LauncherAppState.getInstance(context)
+    private val controller: ModelDbController
+        get() = app.model.modelDbController
+
+    private var restored = false
+
+    override val name = "favorites"
+
+    override fun countItems() =
+        DatabaseUtils.queryNumEntries(controller.db, Favorites.TABLE_NAME).toInt()
+
+    override fun backup(writer: JsonWriter, onItem: () -> Unit) {
+        writer.beginArray()
+        controller.query(Favorites.TABLE_NAME, null, null, null, null).use {
+            TableCodec.writeTable(writer, Favorites.TABLE_NAME, it, onItem)
+        }
+        writer.endArray()
+    }
+
+    override fun <T> runInTransaction(block: () -> T): T {
+        // A restore which failed later on must not reload the rolled back layout
+        restored = false
+        return controller.newTransaction().use { transaction ->
+            block().also { transaction.commit() }
+        }
+    }
+
+    override fun restore(reader: JsonReader, manifest: BackupManifest, onItem: () -> Unit) {
+        val controller = controller
+        val columns = TableCodec.getColumns({ controller.db.rawQuery(it, null) },
+            Favorites.TABLE_NAME)
+        val profileId = controller.getSerialNumberForUser(Process.myUserHandle())
+
+        controller.delete(Favorites.TABLE_NAME, null, null)
+        TableCodec.readTables(reader) { table, values ->
+            // Work profiles can not be matched across devices, only the main user is restored
+            if (table == Favorites.TABLE_NAME
+                && values.getAsLong(Favorites.PROFILE_ID) == manifest.userSerial
+            ) {
+                values.put(Favorites.PROFILE_ID, profileId)
+                TableCodec.retainColumns(values, columns)
+                controller.insert(Favorites.TABLE_NAME, values)
+            }
+            onItem()
+        }
+        restored = true
+    }
+
+    override fun onRestored() {
+        if (!restored) return
+        restored = false
+        RestoreDbTask.setPending(context)
+        RestoreDbTask.restoreIfNeeded(context, controller)
+        MAIN_EXECUTOR.execute { app.model.forceReload() }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.net.Uri
+import android.os.Process
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.BuildConfig
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.CRC32
+import java.util.zip.CheckedOutputStream
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+/**
+ * Saves the home screen layout and all the Neo settings into a single zip archive, and restores
+ * them.
+ *
+ * The archive starts with a [BackupManifest] and holds one gzipped JSON entry per
+ * [BackupSource]. Sources are read in parallel, each one streaming into its own compressed
+ * spool file which is then stored as is in the archive, so the compression runs in parallel too.
+ *
+ * Restoring streams the entries straight into the sources, within the nested transactions of all
+ * of them: a broken or incomplete archive leaves the current state untouched.
+ */
+class NeoBackup @VisibleForTesting constructor(
+    private val context: Context,
+    private val sources: List<BackupSource>,
+) {
+
+    constructor(context: Context) : this(
+        context,
+        listOf(
+            LauncherLayoutSource(context),
+            NeoDatabaseSource(context),
+            NeoPrefsSource(context),
+        ),
+    )
+
+    /**
+     * Writes a backup to [uri], reporting the progress between 0 and 1 to [onProgress] from a
+     * background thread.
+     */
+    suspend fun backup(uri: Uri, onProgress: (Float) -> Unit = {}) =
+        withContext(Dispatchers.IO) {
+            val spoolDir = File(context.cacheDir, SPOOL_DIR)
+            spoolDir.deleteRecursively()
+            spoolDir.mkdirs()
+            try {
+                val spools = coroutineScope {
+                    val total = sources.map { async { it.countItems() } }.awaitAll().sum()
+                    val progress = ProgressTracker(total, onProgress)
+                    sources.map { source ->
+                        async { spool(source, File(spoolDir, source.name), progress) }
+                    }.awaitAll()
+                }
+
+                val manifest = BackupManifest(
+                    formatVersion = FORMAT_VERSION,
+                    versionCode = BuildConfig.VERSION_CODE,
+                    created = System.currentTimeMillis(),
+                    userSerial = LauncherAppState.getInstance(context).model.modelDbController
+                        .getSerialNumberForUser(Process.myUserHandle()),
+                    items = spools.associate { it.source.name to it.items },
+                )
+                val output = context.contentResolver.openOutputStream(uri)
+                    ?: throw IOException("Can not write to $uri")
+                ZipOutputStream(output.buffered()).use { zip ->
+                    zip.putNextEntry(ZipEntry(MANIFEST_ENTRY))
+                    // Not closed, it would close the archive
+                    val writer = JsonWriter(zip.writer())
+                    manifest.write(writer)
+                    writer.flush()
+                    zip.closeEntry()
+
+                    spools.forEach { spool ->
+                        zip.putNextEntry(spool.entry)
+                        spool.file.inputStream().use { it.copyTo(zip) }
+                        zip.closeEntry()
+                    }
+                }
+                onProgress(1f)
+            } finally {
+                spoolDir.deleteRecursively()
+            }
+        }
+
+    /**
+     * Replaces the current state with the backup at [uri], reporting the progress between 0 and 1
+     * to [onProgress] from a background thread. The launcher reloads once done.
+     */
+    suspend fun restore(uri: Uri, onProgress: (Float) -> Unit = {}) =
+        // The layout is written by the model thread, restoring there keeps it from interleaving
+        withContext(MODEL_DISPATCHER) {
+            val input = context.contentResolver.openInputStream(uri)
+                ?: throw IOException("Can not read $uri")
+            ZipInputStream(input.buffered()).use { zip ->
+                if (zip.nextEntry?.name != MANIFEST_ENTRY) {
+                    throw IOException("Missing backup manifest")
+                }
+                val manifest = BackupManifest.read(JsonReader(zip.reader()))
+                if (manifest.formatVersion > FORMAT_VERSION) {
+                    throw IOException("Unsupported backup format ${manifest.formatVersion}")
+                }
+
+                val progress = ProgressTracker(manifest.items.values.sum(), onProgress)
+                val sourcesByEntry = sources.associateBy { it.name + ENTRY_SUFFIX }
+                val restoreEntries = {
+                    generateSequence { zip.nextEntry }.forEach { entry ->
+                        // Entries added by newer versions are skipped
+                        sourcesByEntry[entry.name]?.restore(
+                            JsonReader(GZIPInputStream(zip).bufferedReader()),
+                            manifest,
+                            progress::onItem,
+                        )
+                    }
+                }
+                // The first source holds the outermost transaction, and is committed last
+                sources.foldRight(restoreEntries) { source, block ->
+                    { source.runInTransaction(block) }
+                }()
+            }
+            // Innermost sources first, the layout reloads last with the restored settings
+            sources.asReversed().forEach { it.onRestored() }
+            onProgress(1f)
+        }
+
+    private fun spool(source: BackupSource, file: File, progress: ProgressTracker): Spool {
+        val crc = CRC32()
+        var items = 0
+        JsonWriter(
+            GZIPOutputStream(CheckedOutputStream(FileOutputStream(file).buffered(), crc))
+                .bufferedWriter()
+        ).use { writer ->
+            source.backup(writer) {
+                items++
+                progress.onItem()
+            }
+        }
+
+        // Already compressed, stored without deflating it again
+        val entry = ZipEntry(source.name + ENTRY_SUFFIX).apply {
+            method = ZipEntry.STORED
+            size = file.length()
+            compressedSize = size
+            this.crc = crc.value
+        }
+        return Spool(source, file, entry, items)
+    }
+
+    private class Spool(
+        val source: BackupSource,
+        val file: File,
+        val entry: ZipEntry,
+        val items: Int,
+    )
+
+    /** Reports the progress to the listener each time it grows by one percent. */
+    private class ProgressTracker(
+        private val total: Int,
+        private val listener: (Float) -> Unit,
+    ) {
+        private val done = AtomicInteger()
+        private val lastPercent = AtomicInteger()
+
+        fun onItem() {
+            if (total <= 0) return
+            val percent = minOf(100, done.incrementAndGet() * 100 / total)
+            val last = lastPercent.get()
+            if (percent > last && lastPercent.compareAndSet(last, percent)) {
+                listener(percent / 100f)
+            }
+        }
+    }
+
+    companion object {
+        const val MIME_TYPE = "application/zip"
+        const val FILE_EXTENSION = ".neobackup"
+
+        private const val FORMAT_VERSION = 1
+        private const val MANIFEST_ENTRY = "manifest.json"
+        private const val ENTRY_SUFFIX = ".json.gz"
+        private const val SPOOL_DIR = "backup_spool"
+
+        private val MODEL_DISPATCHER = MODEL_EXECUTOR.asCoroutineDispatcher()
+    }
+}
+
+/**
+ * First entry of a backup archive, describing the device and the content of the backup.
+ */
+class BackupManifest(
+    val formatVersion: Int,
+    val versionCode: Int,
+    val created: Long,
+    /** Serial number of the main user, as stored in the profile ids of the layout */
+    val userSerial: Long,
+    /** Number of items in the entry of each source */
+    val items: Map<String, Int>,
+) {
+
+    fun write(writer: JsonWriter) {
+        writer.beginObject()
+        writer.name(FORMAT_VERSION).value(formatVersion.toLong())
+        writer.name(VERSION_CODE).value(versionCode.toLong())
+        writer.name(CREATED).value(created)
+        writer.name(USER_SERIAL).value(userSerial)
+        writer.name(ITEMS).beginObject()
+        items.forEach { (name, count) -> writer.name(name).value(count.toLong()) }
+        writer.endObject()
+        writer.endObject()
+    }
+
+    companion object {
+        private const val FORMAT_VERSION = "formatVersion"
+        private const val VERSION_CODE = "versionCode"
+        private const val CREATED = "created"
+        private const val USER_SERIAL = "userSerial"
+        private const val ITEMS = "items"
+
+        fun read(reader: JsonReader): BackupManifest {
+            var formatVersion = -1
+            var versionCode = 0
+            var created = 0L
+            var userSerial = -1L
+            val items = HashMap<String, Int>()
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    FORMAT_VERSION -> formatVersion = reader.nextInt()
+                    VERSION_CODE -> versionCode = reader.nextInt()
+                    CREATED -> created = reader.nextLong()
+                    USER_SERIAL -> userSerial = reader.nextLong()
+                    ITEMS -> {
+                        reader.beginObject()
+                        while (reader.hasNext()) {
+                            items[reader.nextName()] = reader.nextInt()
+                        }
+                        reader.endObject()
+                    }
+
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+            if (formatVersion < 0) {
+                throw IOException("Invalid backup manifest")
+            }
+            return BackupManifest(formatVersion, versionCode, created, userSerial, items)
+        }
+    }
+}
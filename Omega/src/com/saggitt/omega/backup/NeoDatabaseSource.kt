@@ -0,0 +1,98 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.util.JsonReader
+import android.util.JsonWriter
+import com.saggitt.omega.data.NeoLauncherDb
+import java.util.concurrent.Callable
+
+/**
+ * Every table of [NeoLauncherDb]: icon overrides, gestures, app tracker, people, search
+ * providers and app groups.
+ *
+ * Tables are listed from the schema rather than from the DAOs, so that new entities are part of
+ * the backup without any change here.
+ */
+class NeoDatabaseSource(context: Context) : BackupSource {
+
+    private val db = NeoLauncherDb.INSTANCE.get(context)
+
+    override val name = "neo_launcher_db"
+
+    override fun countItems() = getTables().sumOf { table ->
+        db.query("SELECT COUNT(*) FROM `$table`", null).use {
+            if (it.moveToFirst()) it.getInt(0) else 0
+        }
+    }
+
+    override fun backup(writer: JsonWriter, onItem: () -> Unit) {
+        // Read all the tables in one transaction, for the groups to match their members
+        db.runInTransaction(Runnable {
+            writer.beginArray()
+            getTables().forEach { table ->
+                db.query("SELECT * FROM `$table`", null).use {
+                    TableCodec.writeTable(writer, table, it, onItem)
+                }
+            }
+            writer.endArray()
+        })
+    }
+
+    override fun <T> runInTransaction(block: () -> T): T = db.runInTransaction(Callable(block))
+
+    override fun restore(reader: JsonReader, manifest: BackupManifest, onItem: () -> Unit) {
+        val database = db.openHelper.writableDatabase
+        val tables = getTables()
+        val columns = tables.associateWith { table ->
+            TableCodec.getColumns({ database.query(it) }, table)
+        }
+
+        // Foreign keys are only checked on commit, once both sides are restored
+        database.execSQL("PRAGMA defer_foreign_keys = ON")
+        tables.asReversed().forEach { database.delete(it, null, null) }
+        TableCodec.readTables(reader) { table, values ->
+            columns[table]?.let {
+                TableCodec.retainColumns(values, it)
+                database.insert(table, SQLiteDatabase.CONFLICT_REPLACE, values)
+            }
+            onItem()
+        }
+    }
+
+    /** Returns the tables holding data, in creation order. */
+    private fun getTables(): List<String> =
+        db.query("SELECT name FROM sqlite_master WHERE type = 'table' ORDER BY rowid", null)
+            .use { cursor ->
+                ArrayList<String>().apply {
+                    while (cursor.moveToNext()) {
+                        val table = cursor.getString(0)
+                        if (table !in INTERNAL_TABLES && !table.startsWith("sqlite_")) {
+                            add(table)
+                        }
+                    }
+                }
+            }
+
+    companion object {
+        private val INTERNAL_TABLES = setOf("android_metadata", "room_master_table")
+    }
+}
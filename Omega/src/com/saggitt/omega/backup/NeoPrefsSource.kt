@@ -0,0 +1,154 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.annotation.VisibleForTesting
+import androidx.datastore.core.DataStore
+import androidx.datastore.preferences.core.MutablePreferences
+import androidx.datastore.preferences.core.Preferences
+import androidx.datastore.preferences.core.booleanPreferencesKey
+import androidx.datastore.preferences.core.doublePreferencesKey
+import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.floatPreferencesKey
+import androidx.datastore.preferences.core.intPreferencesKey
+import androidx.datastore.preferences.core.longPreferencesKey
+import androidx.datastore.preferences.core.stringPreferencesKey
+import androidx.datastore.preferences.core.stringSetPreferencesKey
+import com.saggitt.omega.preferences.NeoPrefs
+import com.saggitt.omega.util.firstBlocking
+import kotlinx.coroutines.runBlocking
+import java.io.IOException
+
+/**
+ * The `neo_launcher` preferences DataStore.
+ *
+ * DataStore has no transaction to join, so restored values are kept aside and written in a
+ * single edit once the transactions of all the sources were committed. A restore which fails at
+ * any point leaves the preferences untouched.
+ */
+class NeoPrefsSource @VisibleForTesting constructor(
+    private val dataStore: DataStore<Preferences>,
+) : BackupSource {
+
+    constructor(context: Context) : this(NeoPrefs.getInstance(context).dataStore)
+
+    private var pendingValues: List<(MutablePreferences) -> Unit>? = null
+
+    override val name = "neo_launcher"
+
+    override fun countItems() = dataStore.data.firstBlocking().asMap().size
+
+    override fun backup(writer: JsonWriter, onItem: () -> Unit) {
+        writer.beginArray()
+        dataStore.data.firstBlocking().asMap().forEach { (key, value) ->
+            writer.beginObject()
+            writer.name(KEY).value(key.name)
+            when (value) {
+                is Boolean -> writer.name(TYPE_BOOLEAN).value(value)
+                is Int -> writer.name(TYPE_INT).value(value.toLong())
+                is Long -> writer.name(TYPE_LONG).value(value)
+                is Float -> writer.name(TYPE_FLOAT).value(value.toDouble())
+                is Double -> writer.name(TYPE_DOUBLE).value(value)
+                is String -> writer.name(TYPE_STRING).value(value)
+                is Set<*> -> {
+                    writer.name(TYPE_STRING_SET).beginArray()
+                    value.forEach { writer.value(it as String) }
+                    writer.endArray()
+                }
+
+                else -> throw IOException("Unsupported value for ${key.name}")
+            }
+            writer.endObject()
+            onItem()
+        }
+        writer.endArray()
+    }
+
+    override fun <T> runInTransaction(block: () -> T): T {
+        // Values left by a restore which failed later on are never written
+        pendingValues = null
+        return block()
+    }
+
+    override fun onRestored() {
+        val values = pendingValues ?: return
+        pendingValues = null
+        runBlocking {
+            dataStore.edit { prefs ->
+                prefs.clear()
+                values.forEach { it(prefs) }
+            }
+        }
+    }
+
+    override fun restore(reader: JsonReader, manifest: BackupManifest, onItem: () -> Unit) {
+        val values = ArrayList<(MutablePreferences) -> Unit>()
+        reader.beginArray()
+        while (reader.hasNext()) {
+            reader.beginObject()
+            if (reader.nextName() != KEY) {
+                throw IOException("Expected $KEY")
+            }
+            val key = reader.nextString()
+            values.add(readValue(reader, key))
+            reader.endObject()
+            onItem()
+        }
+        reader.endArray()
+        pendingValues = values
+    }
+
+    private fun readValue(reader: JsonReader, key: String): (MutablePreferences) -> Unit =
+        when (val type = reader.nextName()) {
+            TYPE_BOOLEAN -> setter(booleanPreferencesKey(key), reader.nextBoolean())
+            TYPE_INT -> setter(intPreferencesKey(key), reader.nextInt())
+            TYPE_LONG -> setter(longPreferencesKey(key), reader.nextLong())
+            TYPE_FLOAT -> setter(floatPreferencesKey(key), reader.nextDouble().toFloat())
+            TYPE_DOUBLE -> setter(doublePreferencesKey(key), reader.nextDouble())
+            TYPE_STRING -> setter(stringPreferencesKey(key), reader.nextString())
+            TYPE_STRING_SET -> {
+                val set = HashSet<String>()
+                reader.beginArray()
+                while (reader.hasNext()) {
+                    set.add(reader.nextString())
+                }
+                reader.endArray()
+                setter(stringSetPreferencesKey(key), set)
+            }
+
+            else -> throw IOException("Unsupported type $type for $key")
+        }
+
+    private fun <T> setter(key: Preferences.Key<T>, value: T): (MutablePreferences) -> Unit =
+        { it[key] = value }
+
+    companion object {
+        private const val KEY = "key"
+        private const val TYPE_BOOLEAN = "boolean"
+        private const val TYPE_INT = "int"
+        private const val TYPE_LONG = "long"
+        private const val TYPE_FLOAT = "float"
+        private const val TYPE_DOUBLE = "double"
+        private const val TYPE_STRING = "string"
+        private const val TYPE_STRING_SET = "stringSet"
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.ContentValues
+import android.database.Cursor
+import android.util.Base64
+import android.util.JsonReader
+import android.util.JsonToken
+import android.util.JsonWriter
+import java.io.IOException
+
+/**
+ * Streams SQLite tables as JSON, one row at a time, so that no table is ever held in memory.
+ *
+ * A table is written as `{"table": name, "columns": [...], "rows": [[...], ...]}`, blobs being
+ * wrapped as `{"blob": base64}` to tell them apart from text.
+ */
+internal object TableCodec {
+
+    private const val TABLE = "table"
+    private const val COLUMNS = "columns"
+    private const val ROWS = "rows"
+    private const val BLOB = "blob"
+
+    fun writeTable(writer: JsonWriter, table: String, cursor: Cursor, onItem: () -> Unit) {
+        writer.beginObject()
+        writer.name(TABLE).value(table)
+        writer.name(COLUMNS).beginArray()
+        cursor.columnNames.forEach { writer.value(it) }
+        writer.endArray()
+
+        writer.name(ROWS).beginArray()
+        val columnCount = cursor.columnCount
+        while (cursor.moveToNext()) {
+            writer.beginArray()
+            for (i in 0 until columnCount) {
+                when (cursor.getType(i)) {
+                    Cursor.FIELD_TYPE_NULL -> writer.nullValue()
+                    Cursor.FIELD_TYPE_INTEGER -> writer.value(cursor.getLong(i))
+                    Cursor.FIELD_TYPE_FLOAT -> writer.value(cursor.getDouble(i))
+                    Cursor.FIELD_TYPE_BLOB -> writer.beginObject()
+                        .name(BLOB).value(Base64.encodeToString(cursor.getBlob(i), Base64.NO_WRAP))
+                        .endObject()
+
+                    else -> writer.value(cursor.getString(i))
+                }
+            }
+            writer.endArray()
+            onItem()
+        }
+        writer.endArray()
+        writer.endObject()
+    }
+
+    /**
+     * Reads an array of tables written by [writeTable], calling [onRow] for each row.
+     */
+    fun readTables(reader: JsonReader, onRow: (table: String, values: ContentValues) -> Unit) {
+        reader.beginArray()
+        while (reader.hasNext()) {
+            reader.beginObject()
+            val table = reader.nextProperty(TABLE).nextString()
+            val columns = ArrayList<String>()
+            reader.nextProperty(COLUMNS).beginArray()
+            while (reader.hasNext()) {
+                columns.add(reader.nextString())
+            }
+            reader.endArray()
+
+            reader.nextProperty(ROWS).beginArray()
+            while (reader.hasNext()) {
+                val values = ContentValues(columns.size)
+                reader.beginArray()
+                columns.forEach { reader.readValue(values, it) }
+                reader.endArray()
+                onRow(table, values)
+            }
+            reader.endArray()
+            reader.endObject()
+        }
+        reader.endArray()
+    }
+
+    /** Returns the columns of [table] in the current schema, empty if the table does not exist. */
+    fun getColumns(query: (String) -> Cursor, table: String): Set<String> =
+        query("PRAGMA table_info(`$table`)").use { cursor ->
+            val nameIndex = cursor.getColumnIndexOrThrow("name")
+            HashSet<String>().apply {
+                while (cursor.moveToNext()) {
+                    add(cursor.getString(nameIndex))
+                }
+            }
+        }
+
+    /** Drops the values of columns missing from [columns], written by another schema version. */
+    fun retainColumns(values: ContentValues, columns: Set<String>) {
+        values.keySet().filterNot(columns::contains).forEach(values::remove)
+    }
+
+    private fun JsonReader.nextProperty(name: String): JsonReader {
+        val actual = nextName()
+        if (actual != name) {
+            throw IOException("Expected $name but was $actual")
+        }
+        return this
+    }
+
+    private fun JsonReader.readValue(values: ContentValues, column: String) {
+        when (val token = peek()) {
+            JsonToken.NULL -> {
+                nextNull()
+                values.putNull(column)
+            }
+
+            JsonToken.NUMBER -> {
+                val number = nextString()
+                val longValue = number.toLongOrNull()
+                if (longValue != null) {
+                    values.put(column, longValue)
+                } else {
+                    values.put(column, number.toDouble())
+                }
+            }
+
+            JsonToken.STRING -> values.put(column, nextString())
+            JsonToken.BEGIN_OBJECT -> {
+                beginObject()
+                values.put(column, Base64.decode(nextProperty(BLOB).nextString(), Base64.NO_WRAP))
+                endObject()
+            }
+
+            else -> throw IOException("Unexpected $token for column $column")
+        }
+    }
+}
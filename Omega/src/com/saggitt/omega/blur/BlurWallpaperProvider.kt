@@ -28,12 +28,14 @@ import android.graphics.ColorMatrixColorFilter
 import android.graphics.Paint
 import android.graphics.Path
 import android.os.Build
+import android.os.SystemClock
 import android.util.DisplayMetrics
 import android.util.Log
 import android.view.WindowManager
 import android.widget.Toast
 import com.android.launcher3.R
 import com.android.launcher3.Utilities
+import com.android.launcher3.logging.PerfMetrics
 import com.android.launcher3.util.Executors.MAIN_EXECUTOR
 import com.saggitt.omega.theme.AccentColorOption
 import com.saggitt.omega.util.SingletonHolder
@@ -146,11 +148,13 @@ class BlurWallpaperProvider(val context: Context) {
         placeholder = createPlaceholder(wallpaper.width, wallpaper.height)
         wallpaper = applyVibrancy(wallpaper)
         Log.d("BWP", "starting blur")
+        val blurStartTime = SystemClock.elapsedRealtime()
 
         applyTask = wallpaperFilter.apply(wallpaper).setCallback { result, error ->
             if (error == null) {
                 this@BlurWallpaperProvider.wallpaper = result
                 Log.d("BWP", "blur done")
+                PerfMetrics.BLUR_WALLPAPER.record(SystemClock.elapsedRealtime() - blurStartTime)
                 runOnMainThread(::notifyWallpaperChanged)
                 wallpaper.recycle()
             } else {
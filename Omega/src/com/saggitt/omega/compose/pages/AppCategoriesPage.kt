@@ -389,12 +389,12 @@ fun saveGroupPositions(manager: AppGroupsManager, groups: List<AppGroups.Group>)
         AppGroupsManager.Category.FLOWERPOT.key,
         -> {
             manager.drawerTabs.setGroups(groups as List<DrawerTabs.Tab>)
-            manager.drawerTabs.saveToJson()
+            manager.drawerTabs.save()
         }
 
         AppGroupsManager.Category.FOLDER.key -> {
             manager.drawerFolders.setGroups(groups as List<DrawerFolders.Folder>)
-            manager.drawerFolders.saveToJson()
+            manager.drawerFolders.save()
         }
     }
 }
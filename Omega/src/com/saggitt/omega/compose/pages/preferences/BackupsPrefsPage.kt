@@ -18,8 +18,123 @@
 
 package com.saggitt.omega.compose.pages.preferences
 
+import android.util.Log
+import androidx.activity.compose.rememberLauncherForActivityResult
+import androidx.activity.result.contract.ActivityResultContracts
+import androidx.compose.foundation.clickable
+import androidx.compose.foundation.layout.Arrangement
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.material3.LinearProgressIndicator
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.rememberCoroutineScope
+import androidx.compose.runtime.setValue
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.res.stringResource
+import androidx.compose.ui.unit.dp
+import com.android.launcher3.R
+import com.android.launcher3.Utilities
+import com.saggitt.omega.backup.NeoBackup
+import com.saggitt.omega.compose.components.ViewWithActionBar
+import com.saggitt.omega.compose.components.preferences.PreferenceGroup
+import com.saggitt.omega.compose.components.preferences.PreferenceItem
+import kotlinx.coroutines.launch
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+private const val TAG = "BackupsPrefsPage"
 
 @Composable
 fun BackupsPrefsPage() {
-}
\ No newline at end of file
+    val context = LocalContext.current
+    val scope = rememberCoroutineScope()
+    val backup = remember { NeoBackup(context.applicationContext) }
+    var statusId by remember { mutableStateOf(R.string.backup_pref_summary) }
+    var progress by remember { mutableStateOf<Float?>(null) }
+    val isRunning = progress != null
+
+    val createLauncher = rememberLauncherForActivityResult(
+        ActivityResultContracts.CreateDocument(NeoBackup.MIME_TYPE)
+    ) { uri ->
+        uri ?: return@rememberLauncherForActivityResult
+        statusId = R.string.backup_creating
+        progress = 0f
+        scope.launch {
+            statusId = try {
+                backup.backup(uri) { progress = it }
+                R.string.backup_pref_summary
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to create backup", e)
+                R.string.backup_failed
+            }
+            progress = null
+        }
+    }
+
+    val restoreLauncher = rememberLauncherForActivityResult(
+        ActivityResultContracts.OpenDocument()
+    ) { uri ->
+        uri ?: return@rememberLauncherForActivityResult
+        statusId = R.string.backup_restoring
+        progress = 0f
+        scope.launch {
+            try {
+                backup.restore(uri) { progress = it }
+                statusId = R.string.backup_restarting
+                Utilities.restartLauncher(context.applicationContext)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to restore backup", e)
+                statusId = R.string.restore_failed
+                progress = null
+            }
+        }
+    }
+
+    ViewWithActionBar(
+        title = stringResource(R.string.backups)
+    ) { paddingValues ->
+        LazyColumn(
+            modifier = Modifier
+                .fillMaxSize()
+                .padding(horizontal = 8.dp),
+            contentPadding = paddingValues,
+            verticalArrangement = Arrangement.spacedBy(8.dp)
+        ) {
+            item {
+                PreferenceGroup(heading = stringResource(statusId)) {
+                    progress?.let {
+                        LinearProgressIndicator(
+                            progress = it,
+                            modifier = Modifier
+                                .fillMaxWidth()
+                                .padding(horizontal = 16.dp)
+                        )
+                    }
+                    PreferenceItem(
+                        title = stringResource(R.string.backup_create_new),
+                        enabled = !isRunning,
+                        modifier = Modifier.clickable(enabled = !isRunning) {
+                            val date = SimpleDateFormat("yyyy-MM-dd_HH-mm", Locale.US)
+                                .format(Date())
+                            createLauncher.launch("NeoLauncher_$date${NeoBackup.FILE_EXTENSION}")
+                        }
+                    )
+                    PreferenceItem(
+                        title = stringResource(R.string.restore_backup),
+                        enabled = !isRunning,
+                        modifier = Modifier.clickable(enabled = !isRunning) {
+                            restoreLauncher.launch(arrayOf(NeoBackup.MIME_TYPE, "*/*"))
+                        }
+                    )
+                }
+            }
+        }
+    }
+}
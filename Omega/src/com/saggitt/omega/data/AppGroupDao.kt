@@ -0,0 +1,72 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import androidx.room.Dao
+import androidx.room.Delete
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import androidx.room.Upsert
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
+
+@Dao
+interface AppGroupDao {
+
+    @Query("SELECT * FROM appgroupitem WHERE category = :category ORDER BY position")
+    fun getGroups(category: String): List<AppGroupItem>
+
+    @Query(
+        "SELECT appgroupmember.* FROM appgroupmember " +
+                "INNER JOIN appgroupitem ON appgroupmember.groupId = appgroupitem.id " +
+                "WHERE appgroupitem.category = :category"
+    )
+    fun getMembers(category: String): List<AppGroupMember>
+
+    @Query("SELECT MAX(id) FROM appgroupitem")
+    fun getMaxId(): Long?
+
+    // Upsert updates existing rows in place, REPLACE would cascade and drop their members
+    @Upsert
+    fun upsertGroups(groups: List<AppGroupItem>)
+
+    @Query("DELETE FROM appgroupitem WHERE id IN (:ids)")
+    fun deleteGroups(ids: Collection<Long>)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insertMembers(members: List<AppGroupMember>)
+
+    @Delete
+    fun deleteMembers(members: List<AppGroupMember>)
+
+    @Transaction
+    fun applyChanges(
+        upserts: List<AppGroupItem>,
+        deletedIds: Collection<Long>,
+        addedMembers: List<AppGroupMember>,
+        removedMembers: List<AppGroupMember>,
+    ) {
+        if (deletedIds.isNotEmpty()) deleteGroups(deletedIds)
+        if (upserts.isNotEmpty()) upsertGroups(upserts)
+        if (removedMembers.isNotEmpty()) deleteMembers(removedMembers)
+        if (addedMembers.isNotEmpty()) insertMembers(addedMembers)
+    }
+}
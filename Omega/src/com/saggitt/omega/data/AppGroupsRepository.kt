@@ -0,0 +1,97 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.plus
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicLong
+
+class AppGroupsRepository @VisibleForTesting constructor(
+    private val dao: AppGroupDao,
+    writeDispatcher: CoroutineDispatcher,
+    private val resultExecutor: Executor = MAIN_EXECUTOR,
+) {
+    // Writes are applied one at a time so that later changes never overtake earlier ones
+    @OptIn(ExperimentalCoroutinesApi::class)
+    constructor(context: Context) : this(
+        NeoLauncherDb.INSTANCE.get(context).appGroupDao(),
+        Dispatchers.IO.limitedParallelism(1),
+    )
+
+    private val scope = CoroutineScope(writeDispatcher) + CoroutineName("AppGroupsRepository")
+
+    // Set by the first load, 0 until then
+    private val nextId = AtomicLong()
+
+    /**
+     * Reads the groups of the category in order, each with the flattened component keys of its
+     * members, and passes them to [onLoaded] on the main thread. Reads are queued with the
+     * writes, so they include every change applied before.
+     */
+    fun loadGroups(category: String, onLoaded: (List<Pair<AppGroupItem, List<String>>>) -> Unit) {
+        scope.launch {
+            if (nextId.get() == 0L) {
+                nextId.set((dao.getMaxId() ?: 0L) + 1)
+            }
+            val members = dao.getMembers(category)
+                .groupBy({ it.groupId }, { it.componentKey })
+            val groups = dao.getGroups(category).map { it to members[it.id].orEmpty() }
+            resultExecutor.execute { onLoaded(groups) }
+        }
+    }
+
+    /**
+     * Returns a row id which is unique across all categories. Only valid once groups have been
+     * loaded.
+     */
+    fun newGroupId(): Long {
+        check(nextId.get() != 0L) { "New group ids are only known once groups are loaded" }
+        return nextId.getAndIncrement()
+    }
+
+    /** Writes the changes in a single transaction and then runs [onCommitted], if any. */
+    fun applyChanges(
+        upserts: List<AppGroupItem>,
+        deletedIds: Collection<Long>,
+        addedMembers: List<AppGroupMember>,
+        removedMembers: List<AppGroupMember>,
+        onCommitted: (() -> Unit)? = null,
+    ) {
+        scope.launch {
+            dao.applyChanges(upserts, deletedIds, addedMembers, removedMembers)
+            onCommitted?.invoke()
+        }
+    }
+
+    companion object {
+        val INSTANCE = MainThreadInitializedObject(::AppGroupsRepository)
+    }
+}
@@ -24,6 +24,8 @@ import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
 import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
 import com.saggitt.omega.data.models.AppTracker
 import com.saggitt.omega.data.models.GestureItemInfo
 import com.saggitt.omega.data.models.IconOverride
@@ -42,14 +44,20 @@ import kotlinx.coroutines.launch
         PeopleInfo::class,
         GestureItemInfo::class,
         SearchProvider::class,
+        AppGroupItem::class,
+        AppGroupMember::class,
     ],
-    version = 5,
+    version = 6,
     exportSchema = true,
     autoMigrations = [
         AutoMigration(
             from = 4,
             to = 5,
         ),
+        AutoMigration(
+            from = 5,
+            to = 6,
+        ),
     ]
 )
 @TypeConverters(Converters::class)
@@ -60,6 +68,7 @@ abstract class NeoLauncherDb : RoomDatabase() {
     abstract fun peopleDao(): PeopleDao
     abstract fun gestureItemInfoDao(): GestureItemInfoDao
     abstract fun searchProviderDao(): SearchProviderDao
+    abstract fun appGroupDao(): AppGroupDao
 
     companion object {
 
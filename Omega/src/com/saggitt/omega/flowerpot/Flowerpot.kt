@@ -18,6 +18,8 @@
 package com.saggitt.omega.flowerpot
 
 import android.content.Context
+import android.os.Looper
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
 import com.saggitt.omega.flowerpot.parser.FlowerpotReader
 import com.saggitt.omega.flowerpot.rules.Rule
 import com.saggitt.omega.util.SingletonHolder
@@ -47,6 +49,7 @@ class Flowerpot(
             beautifyName(name)
     }
     private var loaded = false
+    val isLoaded get() = loaded
     val rules: MutableSet<Rule> = mutableSetOf()
     val size get() = rules.size
     lateinit var apps: FlowerpotApps
@@ -150,6 +153,62 @@ class Flowerpot(
 
         fun getAllPots() = pots.values
 
+        @Volatile
+        private var packageCategories: Map<String, String>? = null
+
+        /**
+         * Incremented each time the package categories are rebuilt, so that results computed
+         * from them can be cached until they change.
+         */
+        @Volatile
+        var packageCategoriesVersion = 0
+            private set
+
+        /**
+         * Maps package names to the display name of the category they belong to, using only the
+         * pots which are already loaded. Packages matching several pots are left out.
+         * The mapping is cached until the apps of any pot change, and rebuilt on the main thread
+         * right after. Off the main thread, null is returned while it is rebuilt.
+         */
+        fun getPackageCategories(): Map<String, String>? {
+            packageCategories?.let { return it }
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                rebuildPackageCategories.run()
+                return packageCategories
+            }
+            // Pot matches are only mutated on the main thread, never wait for it from a worker
+            MAIN_EXECUTOR.execute(rebuildPackageCategories)
+            return null
+        }
+
+        private val rebuildPackageCategories = Runnable {
+            if (packageCategories == null) {
+                packageCategories = buildPackageCategories()
+                packageCategoriesVersion++
+            }
+        }
+
+        private fun buildPackageCategories(): Map<String, String> {
+            val categories = mutableMapOf<String, String>()
+            val ambiguous = mutableSetOf<String>()
+            pots.values.filter { it.isLoaded }.forEach { pot ->
+                pot.apps.packageMatches.forEach {
+                    val previous = categories.put(it.mPackageName, pot.displayName)
+                    if (previous != null && previous != pot.displayName) {
+                        ambiguous.add(it.mPackageName)
+                    }
+                }
+            }
+            ambiguous.forEach { categories.remove(it) }
+            return categories
+        }
+
+        internal fun invalidatePackageCategories() {
+            packageCategories = null
+            MAIN_EXECUTOR.handler.removeCallbacks(rebuildPackageCategories)
+            MAIN_EXECUTOR.handler.post(rebuildPackageCategories)
+        }
+
         companion object :
             SingletonHolder<Manager, Context>(ensureOnMainThread(useApplicationContext(::Manager))) {
 
@@ -21,6 +21,8 @@ import android.content.Context
 import android.content.Intent
 import android.content.pm.LauncherApps
 import android.os.UserHandle
+import com.android.launcher3.pm.PackageEventHub
+import com.android.launcher3.pm.PackageEventHub.PackageChange
 import com.android.launcher3.pm.UserCache
 import com.android.launcher3.util.ComponentKey
 import com.android.launcher3.util.PackageUserKey
@@ -28,7 +30,7 @@ import com.saggitt.omega.flowerpot.rules.CodeRule
 import com.saggitt.omega.flowerpot.rules.Rule
 
 class FlowerpotApps(private val context: Context, private val pot: Flowerpot) :
-    LauncherApps.Callback() {
+    PackageEventHub.Listener {
 
     private val launcherApps = context.getSystemService(LauncherApps::class.java)
     private val intentMatches = mutableSetOf<String>()
@@ -37,7 +39,7 @@ class FlowerpotApps(private val context: Context, private val pot: Flowerpot) :
 
     init {
         filterApps()
-        context.getSystemService(LauncherApps::class.java).registerCallback(this)
+        PackageEventHub.INSTANCE.get(context).addListener(this)
     }
 
     private fun filterApps() {
@@ -47,6 +49,7 @@ class FlowerpotApps(private val context: Context, private val pot: Flowerpot) :
         UserCache.INSTANCE.get(context).userProfiles.forEach {
             addFromPackage(null, it)
         }
+        Flowerpot.Manager.getInstance(context).invalidatePackageCategories()
     }
 
     private fun addFromPackage(packageName: String?, user: UserHandle) {
@@ -85,16 +88,24 @@ class FlowerpotApps(private val context: Context, private val pot: Flowerpot) :
         }
     }
 
-    override fun onPackageAdded(packageName: String, user: UserHandle) {
-        queryIntentMatches()
-        addFromPackage(packageName, user)
-    }
-
-    override fun onPackageChanged(packageName: String, user: UserHandle) {
-        onPackageAdded(packageName, user)
+    override fun onPackagesChanged(changes: List<PackageChange>) {
+        // Intent matches are queried once for the whole batch instead of once per package
+        if (changes.any { it.isAddOrUpdate }) {
+            queryIntentMatches()
+        }
+        changes.forEach { change ->
+            change.packages.forEach {
+                if (change.isAddOrUpdate) {
+                    addFromPackage(it, change.user)
+                } else {
+                    removePackage(it, change.user)
+                }
+            }
+        }
+        Flowerpot.Manager.getInstance(context).invalidatePackageCategories()
     }
 
-    override fun onPackageRemoved(packageName: String, user: UserHandle) {
+    private fun removePackage(packageName: String, user: UserHandle) {
         matches.removeAll {
             it.componentName.packageName == packageName && it.user == user
         }
@@ -102,29 +113,4 @@ class FlowerpotApps(private val context: Context, private val pot: Flowerpot) :
             it.mPackageName == packageName && it.mUser == user
         }
     }
-
-    override fun onPackagesAvailable(
-        packageNames: Array<out String>,
-        user: UserHandle,
-        replacing: Boolean
-    ) {
-        packageNames.forEach { onPackageAdded(it, user) }
-    }
-
-    override fun onPackagesUnavailable(
-        packageNames: Array<out String>,
-        user: UserHandle,
-        replacing: Boolean
-    ) {
-        packageNames.forEach { onPackageRemoved(it, user) }
-    }
-
-    override fun onPackagesSuspended(packageNames: Array<out String>, user: UserHandle) {
-        packageNames.forEach { onPackageRemoved(it, user) }
-    }
-
-    override fun onPackagesUnsuspended(packageNames: Array<out String>, user: UserHandle) {
-        packageNames.forEach { onPackageAdded(it, user) }
-    }
 }
-
@@ -26,6 +26,7 @@ import com.saggitt.omega.gestures.handlers.VerticalSwipeGestureHandler
 import com.saggitt.omega.nLauncher
 import com.saggitt.omega.touch.SwipeDetector
 import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
 import kotlin.math.abs
 
 class VerticalSwipeGestureController(private val launcher: Launcher) : TouchController,
@@ -45,6 +46,7 @@ class VerticalSwipeGestureController(private val launcher: Launcher) : TouchCont
     private val controller by lazy { launcher.nLauncher.gestureController }
     private val gesture by lazy { controller.verticalSwipeGesture }
     private val detector by lazy { SwipeDetector(launcher, this, SwipeDetector.VERTICAL) }
+    private val finishedScrolling = Runnable { detector.finishedScrolling() }
     private var noIntercept = false
 
     private var swipeUpOverride: GestureHandler? = null
@@ -124,6 +126,10 @@ class VerticalSwipeGestureController(private val launcher: Launcher) : TouchCont
 
     override fun onDragStart(start: Boolean) {
         state = GestureState.Free
+        // Velocity is tracked per drag, drop what is left from the previous one
+        currentMillis = 0L
+        currentVelocity = 0f
+        currentDisplacement = 0f
         (swipeUpOverride as? VerticalSwipeGestureHandler)?.onDragStart(start)
         overrideDragging = true
     }
@@ -205,7 +211,7 @@ class VerticalSwipeGestureController(private val launcher: Launcher) : TouchCont
     }
 
     override fun onDragEnd(velocity: Float, fling: Boolean) {
-        launcher.workspace.postDelayed(detector::finishedScrolling, 200)
+        launcher.workspace.postDelayed(finishedScrolling, 200)
         sendOnDragEnd(velocity, fling)
     }
 
@@ -220,63 +226,49 @@ class VerticalSwipeGestureController(private val launcher: Launcher) : TouchCont
         return if (pointerCount > 1) openQuickSettings() else openNotifications()
     }
 
-    @SuppressLint("WrongConstant", "PrivateApi")
     private fun openNotifications(): Boolean {
-        return try {
-            Class.forName(STATUS_BAR_MANAGER)
-                .getMethod("expandNotificationsPanel")
-                .invoke(launcher.getSystemService("statusbar"))
-            true
-        } catch (ex: ClassNotFoundException) {
-            false
-        } catch (ex: NoSuchMethodException) {
-            false
-        } catch (ex: IllegalAccessException) {
-            false
-        } catch (ex: InvocationTargetException) {
-            false
-        }
+        return invokeStatusBarMethod(expandNotificationsPanel)
     }
 
-    @SuppressLint("WrongConstant", "PrivateApi")
     private fun openQuickSettings(): Boolean {
-        return try {
-            Class.forName(STATUS_BAR_MANAGER)
-                .getMethod("expandSettingsPanel")
-                .invoke(launcher.getSystemService("statusbar"))
-            true
-        } catch (ex: ClassNotFoundException) {
-            false
-        } catch (ex: NoSuchMethodException) {
-            false
-        } catch (ex: IllegalAccessException) {
-            false
-        } catch (ex: InvocationTargetException) {
-            false
-        }
+        return invokeStatusBarMethod(expandSettingsPanel)
     }
 
-    @SuppressLint("WrongConstant", "PrivateApi")
     private fun closeNotifications(): Boolean {
+        return invokeStatusBarMethod(collapsePanels)
+    }
+
+    @SuppressLint("WrongConstant")
+    private fun invokeStatusBarMethod(method: Method?): Boolean {
+        if (method == null) return false
         return try {
-            Class.forName(STATUS_BAR_MANAGER)
-                .getMethod("collapsePanels")
-                .invoke(launcher.getSystemService("statusbar"))
+            method.invoke(launcher.getSystemService("statusbar"))
             true
-        } catch (ex: ClassNotFoundException) {
-            false
-        } catch (ex: NoSuchMethodException) {
-            false
         } catch (ex: IllegalAccessException) {
             false
         } catch (ex: InvocationTargetException) {
             false
         }
-
     }
 
     companion object {
         private const val STATUS_BAR_MANAGER = "android.app.StatusBarManager"
         private const val SCROLL_VELOCITY_DAMPENING_RC = 1000f / (2f * Math.PI.toFloat() * 10f)
+
+        // Looked up once instead of on every triggered swipe
+        private val expandNotificationsPanel by lazy { findStatusBarMethod("expandNotificationsPanel") }
+        private val expandSettingsPanel by lazy { findStatusBarMethod("expandSettingsPanel") }
+        private val collapsePanels by lazy { findStatusBarMethod("collapsePanels") }
+
+        @SuppressLint("PrivateApi")
+        private fun findStatusBarMethod(name: String): Method? {
+            return try {
+                Class.forName(STATUS_BAR_MANAGER).getMethod(name)
+            } catch (ex: ClassNotFoundException) {
+                null
+            } catch (ex: NoSuchMethodException) {
+                null
+            }
+        }
     }
 }
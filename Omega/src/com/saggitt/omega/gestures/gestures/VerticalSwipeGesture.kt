@@ -16,40 +16,59 @@
  */
 package com.saggitt.omega.gestures.gestures
 
+import androidx.lifecycle.lifecycleScope
 import com.android.launcher3.LauncherState
 import com.android.launcher3.LauncherState.ALL_APPS
 import com.saggitt.omega.gestures.Gesture
 import com.saggitt.omega.gestures.GestureController
+import com.saggitt.omega.gestures.GestureHandler
 import com.saggitt.omega.gestures.handlers.NotificationsOpenGestureHandler
 import com.saggitt.omega.gestures.handlers.StartGlobalSearchGestureHandler
 import com.saggitt.omega.gestures.handlers.StateChangeGestureHandler
 import com.saggitt.omega.gestures.handlers.VerticalSwipeGestureHandler
+import com.saggitt.omega.util.subscribeBlocking
 
 class VerticalSwipeGesture(controller: GestureController) : Gesture(controller) {
 
     override val isEnabled = true
 
-    private val swipeUpHandler by controller.launcher.prefs.gestureSwipeUp
-    private val dockSwipeUpHandler by controller.launcher.prefs.gestureDockSwipeUp
-    private val swipeDownHandler by controller.launcher.prefs.gestureSwipeDown
+    // The handlers are queried on every touch event of a swipe, so they are created once per
+    // pref change instead of reading the pref and instantiating the handler on each query
+    private var swipeUpHandler: GestureHandler = controller.blankGestureHandler
+    private var dockSwipeUpHandler: GestureHandler = controller.blankGestureHandler
+    private var swipeDownHandler: GestureHandler = controller.blankGestureHandler
 
-    val customSwipeUp get() = controller.createGestureHandler(swipeUpHandler) !is VerticalSwipeGestureHandler
-    val customDockSwipeUp get() = controller.createGestureHandler(dockSwipeUpHandler) !is VerticalSwipeGestureHandler
-    val customSwipeDown get() = controller.createGestureHandler(swipeDownHandler) !is NotificationsOpenGestureHandler
+    init {
+        val prefs = controller.launcher.prefs
+        val scope = controller.launcher.lifecycleScope
+        prefs.gestureSwipeUp.get().subscribeBlocking(scope) {
+            swipeUpHandler = controller.createGestureHandler(it)
+        }
+        prefs.gestureDockSwipeUp.get().subscribeBlocking(scope) {
+            dockSwipeUpHandler = controller.createGestureHandler(it)
+        }
+        prefs.gestureSwipeDown.get().subscribeBlocking(scope) {
+            swipeDownHandler = controller.createGestureHandler(it)
+        }
+    }
+
+    val customSwipeUp get() = swipeUpHandler !is VerticalSwipeGestureHandler
+    val customDockSwipeUp get() = dockSwipeUpHandler !is VerticalSwipeGestureHandler
+    val customSwipeDown get() = swipeDownHandler !is NotificationsOpenGestureHandler
 
-    val swipeUpAppsSearch get() = controller.createGestureHandler(swipeUpHandler) is StartGlobalSearchGestureHandler
-    val dockSwipeUpAppsSearch get() = controller.createGestureHandler(dockSwipeUpHandler) is StartGlobalSearchGestureHandler
+    val swipeUpAppsSearch get() = swipeUpHandler is StartGlobalSearchGestureHandler
+    val dockSwipeUpAppsSearch get() = dockSwipeUpHandler is StartGlobalSearchGestureHandler
 
     fun onSwipeUp() {
-        controller.createGestureHandler(swipeUpHandler).onGestureTrigger(controller)
+        swipeUpHandler.onGestureTrigger(controller)
     }
 
     fun onDockSwipeUp() {
-        controller.createGestureHandler(dockSwipeUpHandler).onGestureTrigger(controller)
+        dockSwipeUpHandler.onGestureTrigger(controller)
     }
 
     fun onSwipeDown() {
-        controller.createGestureHandler(swipeDownHandler).onGestureTrigger(controller)
+        swipeDownHandler.onGestureTrigger(controller)
     }
 
     fun onSwipeUpAllAppsComplete(fromDock: Boolean) {
@@ -21,7 +21,11 @@ package com.saggitt.omega.groups
 import android.content.Context
 import androidx.datastore.preferences.core.stringPreferencesKey
 import com.android.launcher3.Utilities
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
 import com.android.launcher3.util.ComponentKey
+import com.saggitt.omega.data.AppGroupsRepository
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
 import com.saggitt.omega.preferences.PreferencesChangeCallback
 import com.saggitt.omega.preferences.StringPref
 import com.saggitt.omega.util.asMap
@@ -32,24 +36,27 @@ import org.json.JSONObject
 abstract class AppGroups<T : AppGroups.Group>(
     private val manager: AppGroupsManager,
     private val category: AppGroupsManager.Category,
+    private val repository: AppGroupsRepository =
+        AppGroupsRepository.INSTANCE.get(manager.prefs.context),
 ) {
     private val prefs = manager.prefs
     val context = prefs.context
     var groups = ArrayList<T>()
 
-    private var groupsDataJson = StringPref(
+    // Groups used to be stored as a single JSON blob, it is only read to import them once
+    private val legacyGroupsJson = StringPref(
         titleId = -1,
         key = stringPreferencesKey(category.key),
         dataStore = manager.dataStore,
         defaultValue = "{}",
-        onChange = {
-            prefs.legacyPrefs.savePreference(key = category.key, value = it)
-            prefs.withChangeCallback { callback ->
-                onGroupsChanged(callback)
-            }
-        }
     )
 
+    // Last state written to the database for each group, keyed by row id
+    private val savedStates = HashMap<Long, GroupState>()
+
+    // Groups are read in the background, until then only the default ones are known
+    private var isLoaded = false
+
     var isEnabled =
         manager.categorizationEnabled.getValue() && manager.categorizationType.getValue() == category.key
         private set
@@ -72,16 +79,78 @@ abstract class AppGroups<T : AppGroups.Group>(
 
     abstract fun onGroupsChanged(changeCallback: PreferencesChangeCallback)
 
-    fun saveToJson() {
-        val arr = JSONArray()
-        groups.forEach { group ->
-            arr.put(JSONObject(group.saveCustomizationsInternal(context)))
+    /**
+     * Called whenever the saved state of a group changes, with null for [oldState] when the group
+     * is new and null for [newState] when it was removed. Used to keep derived indexes in sync.
+     */
+    protected open fun onGroupStateChanged(
+        rowId: Long,
+        oldState: GroupState?,
+        newState: GroupState?,
+    ) {
+    }
+
+    /**
+     * Writes the groups which changed since they were loaded or last saved, and refreshes the
+     * drawer once they are committed.
+     */
+    fun save() {
+        saveChanges {
+            MAIN_EXECUTOR.execute { prefs.getOnChangeCallback()?.let(::onGroupsChanged) }
+        }
+    }
+
+    private fun saveChanges(onCommitted: (() -> Unit)? = null) {
+        if (!isLoaded) {
+            // The groups are replaced once loaded, and the ids of new ones are not known yet
+            return
+        }
+        val upserts = ArrayList<AppGroupItem>()
+        val addedMembers = ArrayList<AppGroupMember>()
+        val removedMembers = ArrayList<AppGroupMember>()
+        val deletedIds = HashSet(savedStates.keys)
+
+        groups.forEachIndexed { position, group ->
+            if (group.rowId == 0L) {
+                group.rowId = repository.newGroupId()
+            }
+            deletedIds.remove(group.rowId)
+            val state = group.toState(position)
+            val oldState = savedStates.put(group.rowId, state)
+            if (oldState?.item != state.item) {
+                upserts.add(state.item)
+            }
+            val oldMembers = oldState?.members ?: emptySet()
+            state.members.filterNot(oldMembers::contains)
+                .mapTo(addedMembers) { AppGroupMember(group.rowId, it.toString()) }
+            oldMembers.filterNot(state.members::contains)
+                .mapTo(removedMembers) { AppGroupMember(group.rowId, it.toString()) }
+            if (oldState != state) {
+                onGroupStateChanged(group.rowId, oldState, state)
+            }
+        }
+        deletedIds.forEach { onGroupStateChanged(it, savedStates.remove(it), null) }
+
+        if (upserts.isNotEmpty() || deletedIds.isNotEmpty()
+            || addedMembers.isNotEmpty() || removedMembers.isNotEmpty()
+        ) {
+            repository.applyChanges(upserts, deletedIds, addedMembers, removedMembers, onCommitted)
+        } else {
+            onCommitted?.invoke()
         }
+    }
 
-        val obj = JSONObject()
-        obj.put(KEY_VERSION, currentVersion)
-        obj.put(KEY_GROUPS, arr)
-        groupsDataJson.setValue(obj.toString())
+    private fun Group.toState(position: Int): GroupState {
+        val obj = HashMap(saveCustomizationsInternal(context))
+        obj.remove(KEY_TYPE)
+        obj.remove(KEY_ITEMS)
+        val contents = customizations[KEY_ITEMS] as? ComponentsCustomization
+        val hide = customizations[KEY_HIDE_FROM_ALL_APPS] as? BooleanCustomization
+        return GroupState(
+            AppGroupItem(rowId, category.key, position, type, JSONObject(obj).toString()),
+            contents?.value?.let(::HashSet) ?: emptySet(),
+            hide?.value() == true
+        )
     }
 
     fun getGroups(): List<T> {
@@ -117,7 +186,7 @@ abstract class AppGroups<T : AppGroups.Group>(
 
     private fun loadGroupsArray(): JSONArray {
         try {
-            val obj = JSONObject(groupsDataJson.getValue())
+            val obj = JSONObject(legacyGroupsJson.getValue())
             val version = if (obj.has(KEY_VERSION)) obj.getInt(KEY_VERSION) else 0
             if (version > currentVersion) throw IllegalArgumentException("Version $version is higher than supported ($currentVersion)")
 
@@ -139,35 +208,90 @@ abstract class AppGroups<T : AppGroups.Group>(
         }
 
         try {
-            return JSONArray(groupsDataJson.getValue())
+            return JSONArray(legacyGroupsJson.getValue())
         } catch (ignored: JSONException) {
         }
 
         return JSONArray()
     }
 
+    /**
+     * Starts loading the saved groups. They are applied on the main thread once read, and the
+     * drawer is refreshed if the category is in use.
+     */
     protected fun loadGroups() {
+        setGroups(emptyList())
+        repository.loadGroups(category.key) { rows ->
+            applyLoadedGroups(rows)
+            if (isEnabled) {
+                prefs.getOnChangeCallback()?.let(::onGroupsChanged)
+            }
+        }
+    }
+
+    private fun applyLoadedGroups(rows: List<Pair<AppGroupItem, List<String>>>) {
+        isLoaded = true
         groups.clear()
-        val arr = loadGroupsArray()
         val used = mutableSetOf<GroupCreator<T>>()
-        (0 until arr.length())
-            .map { arr.getJSONObject(it) }
-            .mapNotNullTo(groups) { group ->
-                val type = if (group.has(KEY_TYPE)) group.getString(KEY_TYPE) else TYPE_UNDEFINED
-                val creator = getGroupCreator(type)
+        val importLegacy = rows.isEmpty()
+                && legacyGroupsJson.getValue() != legacyGroupsJson.defaultValue
+        if (importLegacy) {
+            val arr = loadGroupsArray()
+            (0 until arr.length())
+                .map { arr.getJSONObject(it) }
+                .mapNotNullTo(groups) { group ->
+                    val type = if (group.has(KEY_TYPE)) group.getString(KEY_TYPE) else TYPE_UNDEFINED
+                    val creator = getGroupCreator(type)
+                    used.add(creator)
+                    creator.createGroup(context)?.apply { loadCustomizations(context, group.asMap()) }
+                }
+        } else {
+            rows.mapNotNullTo(groups) { (item, members) ->
+                val creator = getGroupCreator(item.type)
                 used.add(creator)
-                creator.createGroup(context)!!.apply { loadCustomizations(context, group.asMap()) }
+                creator.createGroup(context)?.apply {
+                    val obj = JSONObject(item.customizations)
+                    if (members.isNotEmpty()) {
+                        obj.put(KEY_ITEMS, JSONArray(members))
+                    }
+                    loadCustomizations(context, obj.asMap())
+                    rowId = item.id
+                }
             }
+        }
         getDefaultCreators().asReversed().forEach { creator ->
             if (creator !in used) {
                 creator.createGroup(context)?.let { groups.add(0, it) }
             }
         }
+
+        if (importLegacy) {
+            // Only drop the blob once the rows are committed
+            saveChanges { legacyGroupsJson.setValue(legacyGroupsJson.defaultValue) }
+        } else {
+            groups.forEachIndexed { position, group ->
+                if (group.rowId != 0L) {
+                    val state = group.toState(position)
+                    savedStates[group.rowId] = state
+                    onGroupStateChanged(group.rowId, null, state)
+                }
+            }
+        }
     }
 
+    /** Saved state of a group, as written to the database. */
+    data class GroupState(
+        val item: AppGroupItem,
+        val members: Set<ComponentKey>,
+        val hideFromAllApps: Boolean,
+    )
+
     open class Group(val type: String, val context: Context, title: String) {
         private val defaultTitle = title
 
+        // Database row of the group, 0 until it is first saved
+        var rowId = 0L
+
         val customizations = CustomizationMap()
         private val _title = StringCustomization(KEY_TITLE, defaultTitle)
         open var title: String
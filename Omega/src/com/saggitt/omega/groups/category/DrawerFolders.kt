@@ -36,6 +36,10 @@ import com.saggitt.omega.util.random
 class DrawerFolders(val manager: AppGroupsManager) :
     AppGroups<DrawerFolders.Folder>(manager, AppGroupsManager.Category.FOLDER) {
 
+    // Indexes over the saved folders, updated per folder as they change
+    private val componentFolders = HashMap<ComponentKey, MutableSet<Long>>()
+    private val hiddenFolderCounts = HashMap<ComponentKey, Int>()
+
     init {
         loadGroups()
     }
@@ -64,12 +68,41 @@ class DrawerFolders(val manager: AppGroupsManager) :
         return emptyList()
     }
 
+    override fun onGroupStateChanged(rowId: Long, oldState: GroupState?, newState: GroupState?) {
+        val oldMembers = oldState?.members ?: emptySet()
+        val newMembers = newState?.members ?: emptySet()
+        oldMembers.forEach { key ->
+            if (key !in newMembers) {
+                componentFolders[key]?.let {
+                    it.remove(rowId)
+                    if (it.isEmpty()) componentFolders.remove(key)
+                }
+            }
+        }
+        newMembers.forEach { key -> componentFolders.getOrPut(key, ::HashSet).add(rowId) }
+
+        if (oldState?.hideFromAllApps == true) {
+            oldMembers.forEach { key ->
+                hiddenFolderCounts.computeIfPresent(key) { _, count ->
+                    (count - 1).takeIf { it > 0 }
+                }
+            }
+        }
+        if (newState?.hideFromAllApps == true) {
+            newMembers.forEach { key -> hiddenFolderCounts.merge(key, 1) { a, b -> a + b } }
+        }
+    }
+
     fun getFolderInfos(apps: AlphabeticalAppsList<*>, modelWriter: ModelWriter) =
         getFolderInfos(buildAppsMap(apps)::get, modelWriter)
 
     private fun buildAppsMap(apps: AlphabeticalAppsList<*>): Map<ComponentKey, AppInfo> {
-        // Copy the list before accessing it to prevent concurrent list access
-        return apps.apps.toList().associateBy { it.toComponentKey() }
+        // Copy the list before accessing it to prevent concurrent list access, and only keep
+        // the apps which are in a folder
+        return apps.apps.toList()
+            .map { it.toComponentKey() to it }
+            .filter { it.first in componentFolders }
+            .toMap()
     }
 
     private fun getFolderInfos(
@@ -80,12 +113,9 @@ class DrawerFolders(val manager: AppGroupsManager) :
         .map { it.toFolderInfo(getAppInfo, modelWriter) }
         .toList()
 
-    fun getHiddenComponents() = getGroups()
-        .asSequence()
-        .filterIsInstance<CustomFolder>()
-        .filter { it.hideFromAllApps.value() }
-        .mapNotNull { it.contents.value }
-        .flatMapTo(mutableSetOf()) { it.asSequence() }
+    /** Returns a copy of the apps hidden by a folder as of the last save. */
+    fun getHiddenComponents(): Set<ComponentKey> =
+        if (isEnabled) HashSet(hiddenFolderCounts.keys) else emptySet()
 
     abstract class Folder(context: Context, type: String, titleRes: Int) :
         Group(type, context, context.getString(titleRes)) {
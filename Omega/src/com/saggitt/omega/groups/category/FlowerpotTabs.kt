@@ -49,7 +49,7 @@ class FlowerpotTabs(manager: AppGroupsManager) :
             }
         })
         setGroups(existingGroups)
-        saveToJson()
+        save()
     }
 
     override fun getGroupCreator(type: String): GroupCreator<Tab> {
@@ -172,7 +172,7 @@ fun AppTabDialogUI(
                             tab.contents.value().addOrRemove(componentKey, selectedItems[index])
                         }
                         tabs.hashCode()
-                        prefs.drawerAppGroupsManager.drawerTabs.saveToJson()
+                        prefs.drawerAppGroupsManager.drawerTabs.save()
                         openDialogCustom.value = false
                     }
                 )
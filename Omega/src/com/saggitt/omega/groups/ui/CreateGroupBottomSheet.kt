@@ -356,7 +356,7 @@ fun CreateGroupBottomSheet(
                             AppGroupsManager.Category.FOLDER -> {
                                 manager.drawerFolders.apply {
                                     addGroup(group as DrawerFolders.Folder)
-                                    saveToJson()
+                                    save()
                                 }
                             }
 
@@ -365,7 +365,7 @@ fun CreateGroupBottomSheet(
                                                              -> {
                                 manager.drawerTabs.apply {
                                     addGroup(group as DrawerTabs.Tab)
-                                    saveToJson()
+                                    save()
                                 }
                             }
 
@@ -28,7 +28,6 @@ import android.content.Intent.ACTION_PACKAGE_CHANGED
 import android.content.Intent.ACTION_PACKAGE_REMOVED
 import android.content.Intent.ACTION_TIMEZONE_CHANGED
 import android.content.Intent.ACTION_TIME_CHANGED
-import android.content.Intent.ACTION_TIME_TICK
 import android.content.IntentFilter
 import android.content.pm.ActivityInfo
 import android.content.pm.LauncherActivityInfo
@@ -385,8 +384,9 @@ class CustomIconProvider @JvmOverloads constructor(
     ) : BroadcastReceiver(), SafeCloseable {
 
         init {
+            // Dynamic clocks are ticked by the drawables themselves, only reload them when the
+            // time or time zone is changed
             val filter = IntentFilter(ACTION_TIMEZONE_CHANGED)
-            filter.addAction(ACTION_TIME_TICK)
             filter.addAction(ACTION_TIME_CHANGED)
             filter.addAction(ACTION_DATE_CHANGED)
             context.registerReceiver(this, filter, null, handler)
@@ -394,7 +394,7 @@ class CustomIconProvider @JvmOverloads constructor(
 
         override fun onReceive(context: Context, intent: Intent) {
             when (intent.action) {
-                ACTION_TIMEZONE_CHANGED, ACTION_TIME_CHANGED, ACTION_TIME_TICK -> {
+                ACTION_TIMEZONE_CHANGED, ACTION_TIME_CHANGED -> {
                     context.getSystemService<UserManager>()?.userProfiles?.forEach { user ->
                         iconPack.getClocks().forEach { componentName ->
                             callback.onAppIconChanged(
@@ -405,7 +405,7 @@ class CustomIconProvider @JvmOverloads constructor(
                     }
                 }
 
-                ACTION_DATE_CHANGED                                            -> {
+                ACTION_DATE_CHANGED                          -> {
                     context.getSystemService<UserManager>()?.userProfiles?.forEach { user ->
                         iconPack.getCalendars().forEach { componentName ->
                             callback.onAppIconChanged(componentName.packageName, user)
@@ -57,7 +57,7 @@ class IconShapeManager(private val context: Context) {
 
     private fun getSystemShape(): IconShape {
         val iconMask = AdaptiveIconDrawable(null, null).iconMask
-        val systemShape = findNearestShape(iconMask)
+        val systemShape = getNearestShape(iconMask)
         return object : IconShape(systemShape) {
 
             override fun getMaskPath(): Path {
@@ -76,6 +76,26 @@ class IconShapeManager(private val context: Context) {
         }
     }
 
+    /**
+     * Returns the built-in shape closest to the system mask. Finding it rasterizes every
+     * candidate, so the result is kept per system mask until the mask changes.
+     */
+    private fun getNearestShape(iconMask: Path): IconShape {
+        val resId = IconProvider.CONFIG_ICON_MASK_RES_ID
+        if (resId == 0) {
+            return findNearestShape(iconMask)
+        }
+        val maskKey = context.getString(resId).hashCode().toString()
+        val prefs = Utilities.getDevicePrefs(context)
+        val saved = prefs.getString(KEY_NEAREST_SHAPE, null)?.split(';')
+        if (saved != null && saved.size == 2 && saved[0] == maskKey) {
+            return IconShape.fromString(saved[1])
+        }
+        return findNearestShape(iconMask).also {
+            prefs.edit().putString(KEY_NEAREST_SHAPE, "$maskKey;$it").apply()
+        }
+    }
+
     private fun findNearestShape(comparePath: Path): IconShape {
         val size = 200
         val clip = Region(0, 0, size, size)
@@ -106,6 +126,7 @@ class IconShapeManager(private val context: Context) {
     companion object {
 
         private const val KEY_LEGACY_PREFERENCE = "pref_override_icon_shape"
+        private const val KEY_NEAREST_SHAPE = "pref_system_icon_shape_nearest"
 
         @JvmField
         val INSTANCE = MainThreadInitializedObject(::IconShapeManager)
@@ -83,7 +83,7 @@ import com.android.launcher3.graphics.IconShape as L3IconShape
 
 class NeoPrefs private constructor(val context: Context) {
     private val Context.dataStore: DataStore<Preferences> by preferencesDataStore(name = "neo_launcher")
-    private val dataStore: DataStore<Preferences> = context.dataStore
+    val dataStore: DataStore<Preferences> = context.dataStore
     val legacyPrefs = LegacyPreferences(context)
 
     private var onChangeCallback: PreferencesChangeCallback? = null
@@ -1,11 +1,13 @@
 package com.saggitt.omega.search
 
 import android.content.Context
+import android.os.SystemClock
 import androidx.lifecycle.asLiveData
 import com.android.launcher3.LauncherAppState
 import com.android.launcher3.Utilities
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
 import com.android.launcher3.allapps.search.DefaultAppSearchAlgorithm
+import com.android.launcher3.logging.PerfMetrics
 import com.android.launcher3.model.AllAppsList
 import com.android.launcher3.model.BaseModelUpdateTask
 import com.android.launcher3.model.BgDataModel
@@ -37,9 +39,11 @@ class NeoAppSearchAlgorithm(val context: Context) : DefaultAppSearchAlgorithm(co
     }
 
     override fun doSearch(query: String, callback: SearchCallback<AdapterItem>?) {
+        val startTime = SystemClock.elapsedRealtime()
         mAppState.model.enqueueModelUpdateTask(object : BaseModelUpdateTask() {
             override fun execute(app: LauncherAppState, dataModel: BgDataModel, apps: AllAppsList) {
                 val result = getSearchResult(apps.data, query)
+                PerfMetrics.SEARCH_APPS.record(SystemClock.elapsedRealtime() - startTime)
                 var suggestions = emptyList<String>()
 
                 /*if (prefs.searchContacts.onGetValue()) { TODO
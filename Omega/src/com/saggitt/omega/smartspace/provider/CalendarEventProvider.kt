@@ -5,6 +5,7 @@ import android.app.Activity
 import android.app.PendingIntent
 import android.content.Context
 import android.content.Intent
+import android.content.IntentFilter
 import android.content.pm.PackageManager
 import android.graphics.drawable.Icon
 import android.net.Uri
@@ -15,12 +16,21 @@ import com.android.launcher3.R
 import com.saggitt.omega.compose.navigation.Routes
 import com.saggitt.omega.preferences.PreferenceActivity
 import com.saggitt.omega.smartspace.model.SmartspaceScores
+import com.saggitt.omega.util.broadcastReceiverFlow
+import com.saggitt.omega.util.contentObserverFlow
 import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emitAll
 import kotlinx.coroutines.flow.flow
-import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.merge
+import kotlinx.coroutines.flow.transformLatest
+import org.json.JSONException
+import org.json.JSONObject
 import java.util.Date
 import java.util.concurrent.TimeUnit
 import kotlin.math.ceil
@@ -28,7 +38,7 @@ import kotlin.math.ceil
 class CalendarEventProvider(context: Context) : SmartspaceDataSource(
     context, R.string.smartspace_provider_calendar
 ) {
-    override var internalTargets: Flow<List<SmartspaceTarget>> = flowOf(disabledTargets)
+    private val cache = SmartspaceCache.INSTANCE.get(context)
 
     private val requiredPermissions = listOf(android.Manifest.permission.READ_CALENDAR)
     private val calendarProjection = arrayOf(
@@ -42,19 +52,45 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
     private val oneMinute = TimeUnit.MINUTES.toMillis(1)
     private val includeBehind = oneMinute * 15
     private val includeAhead = oneMinute * 60
+    private val refreshInterval = oneMinute * 15
 
-    init {
-        internalTargets = flow {
+    /**
+     * Shows the last known event right away, then queries the calendar whenever its content or
+     * the clock changes. While subscribed, the query is also repeated when the shown event starts
+     * and every [refreshInterval] so that the lookup window keeps moving.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    override val internalTargets: Flow<List<SmartspaceTarget>> = flow {
+        readCachedEvent()?.let { emit(calendarTarget(it)) }
+        val timeChanged = IntentFilter().apply {
+            addAction(Intent.ACTION_TIME_CHANGED)
+            addAction(Intent.ACTION_TIMEZONE_CHANGED)
+        }
+        val changes = merge(
+            contentObserverFlow(context, CalendarContract.CONTENT_URI),
+            broadcastReceiverFlow(context, timeChanged),
+        )
+        emitAll(changes.transformLatest {
             while (true) {
-                requiresSetup()
-                emit(calendarTarget())
-                delay(TimeUnit.MINUTES.toMillis(30))
+                val event = getNextEvent()
+                cache.put(CACHE_KEY, event?.toJson())
+                emit(calendarTarget(event))
+                val untilStart = (event?.start ?: 0L) - System.currentTimeMillis()
+                delay(if (untilStart > 0) minOf(untilStart, refreshInterval) else refreshInterval)
             }
+        })
+    }.flowOn(Dispatchers.IO)
+
+    private fun readCachedEvent(): CalendarEvent? {
+        val entry = cache.get(CACHE_KEY) ?: return null
+        return try {
+            CalendarEvent.fromJson(entry.data).takeIf { it.end >= System.currentTimeMillis() }
+        } catch (e: JSONException) {
+            null
         }
     }
 
-    private fun calendarTarget(): List<SmartspaceTarget> {
-        val event = getNextEvent()
+    private fun calendarTarget(event: CalendarEvent?): List<SmartspaceTarget> {
         Log.d("CalendarEventProvider", "calendarTarget " + event?.title)
         if (event != null) {
             val timeText = "${formatTime(event.start)} – ${formatTime(event.end)}"
@@ -171,5 +207,28 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
         val end: Long,
         val location: String?,
         val appPackage: String?
-    )
+    ) {
+        fun toJson(): JSONObject = JSONObject()
+            .put("id", id)
+            .put("title", title)
+            .put("start", start)
+            .put("end", end)
+            .putOpt("location", location)
+            .putOpt("appPackage", appPackage)
+
+        companion object {
+            fun fromJson(obj: JSONObject) = CalendarEvent(
+                obj.getLong("id"),
+                obj.getString("title"),
+                obj.getLong("start"),
+                obj.getLong("end"),
+                obj.optString("location").takeIf { obj.has("location") },
+                obj.optString("appPackage").takeIf { obj.has("appPackage") },
+            )
+        }
+    }
+
+    companion object {
+        private const val CACHE_KEY = "calendar_event"
+    }
 }
\ No newline at end of file
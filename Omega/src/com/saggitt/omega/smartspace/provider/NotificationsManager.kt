@@ -21,6 +21,7 @@ package com.saggitt.omega.smartspace.provider
 import android.content.Context
 import android.content.pm.PackageManager
 import android.service.notification.StatusBarNotification
+import android.view.Choreographer
 import com.android.launcher3.notification.NotificationListener
 import com.android.launcher3.util.MainThreadInitializedObject
 import com.saggitt.omega.util.checkPackagePermission
@@ -63,10 +64,23 @@ class NotificationsManager(@Suppress("UNUSED_PARAMETER") context: Context) {
         }
     }
 
-    private fun onChange() {
+    private var changePending = false
+    private val publishChange = Choreographer.FrameCallback {
+        changePending = false
         _notifications.value = notificationsMap.values.toList()
     }
 
+    /**
+     * Publishes the notification list at most once per frame, so that bursts of updates from a
+     * single app do not rebuild the list for every notification.
+     */
+    private fun onChange() {
+        if (!changePending) {
+            changePending = true
+            Choreographer.getInstance().postFrameCallback(publishChange)
+        }
+    }
+
     companion object {
         @JvmField
         val INSTANCE = MainThreadInitializedObject(::NotificationsManager)
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace.provider
+
+import android.util.AtomicFile
+import android.util.Log
+import androidx.annotation.WorkerThread
+import com.android.launcher3.util.MainThreadInitializedObject
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.File
+import java.io.IOException
+
+/**
+ * Small on-disk cache for the data behind smartspace targets, so that the last known weather or
+ * event can be shown as soon as the smartspace is created, before the sources report fresh data.
+ * Entries keep the time they were written so that each source can apply its own TTL.
+ */
+class SmartspaceCache(private val file: File) {
+
+    private var entries: JSONObject? = null
+
+    @WorkerThread
+    @Synchronized
+    fun get(key: String): Entry? {
+        val entry = loadEntries().optJSONObject(key) ?: return null
+        val data = entry.optJSONObject(KEY_DATA) ?: return null
+        return Entry(data, entry.optLong(KEY_TIME))
+    }
+
+    /** Stores [data] under [key], or removes the entry when it is null. */
+    @WorkerThread
+    @Synchronized
+    fun put(key: String, data: JSONObject?, time: Long = System.currentTimeMillis()) {
+        val entries = loadEntries()
+        if (data == null) {
+            if (entries.remove(key) == null) return
+        } else {
+            entries.put(key, JSONObject().put(KEY_DATA, data).put(KEY_TIME, time))
+        }
+
+        val atomicFile = AtomicFile(file)
+        val out = try {
+            atomicFile.startWrite()
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to write smartspace cache", e)
+            return
+        }
+        try {
+            out.write(entries.toString().toByteArray())
+            atomicFile.finishWrite(out)
+        } catch (e: IOException) {
+            atomicFile.failWrite(out)
+            Log.e(TAG, "Failed to write smartspace cache", e)
+        }
+    }
+
+    private fun loadEntries(): JSONObject {
+        entries?.let { return it }
+        val loaded = try {
+            JSONObject(String(AtomicFile(file).readFully()))
+        } catch (e: IOException) {
+            JSONObject()
+        } catch (e: JSONException) {
+            Log.w(TAG, "Discarding corrupt smartspace cache", e)
+            JSONObject()
+        }
+        entries = loaded
+        return loaded
+    }
+
+    data class Entry(val data: JSONObject, val time: Long) {
+
+        fun age(now: Long = System.currentTimeMillis()) = now - time
+    }
+
+    companion object {
+        private const val TAG = "SmartspaceCache"
+        private const val KEY_DATA = "data"
+        private const val KEY_TIME = "time"
+
+        @JvmField
+        val INSTANCE = MainThreadInitializedObject { context ->
+            SmartspaceCache(File(context.noBackupFilesDir, "smartspace_cache.json"))
+        }
+    }
+}
@@ -44,12 +44,14 @@ class SmartspaceProvider private constructor(context: Context) {
         }?.let { dataSources.add(it) }
     }
 
-    val state = dataSources
-        .map { it.targets }
-        .reduce { acc, flow -> flow.combine(acc) { a, b -> a + b } }
+    // Sources only run while a smartspace is visible. Stopping is delayed a little so that
+    // a quick visibility toggle, like a configuration change, does not restart them.
+    val state = combine(dataSources.map { it.targets }) { states ->
+        states.reduce(SmartspaceDataSource.State::plus)
+    }
         .shareIn(
             MainScope(),
-            SharingStarted.WhileSubscribed(),
+            SharingStarted.WhileSubscribed(stopTimeoutMillis = 5000),
             replay = 1
         )
 
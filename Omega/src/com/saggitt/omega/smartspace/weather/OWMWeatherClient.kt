@@ -0,0 +1,102 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace.weather
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import okhttp3.HttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.IOException
+
+/**
+ * Minimal client for the OpenWeatherMap current weather endpoint. The base url can be replaced
+ * so that tests can stand in a local server for the real API.
+ */
+class OWMWeatherClient(
+    private val apiKey: String,
+    private val baseUrl: HttpUrl = DEFAULT_BASE_URL.toHttpUrl(),
+    private val client: OkHttpClient = sharedClient,
+) {
+
+    suspend fun getCurrentWeatherByCityName(city: String) =
+        getCurrentWeather { addQueryParameter("q", city) }
+
+    suspend fun getCurrentWeatherByGeoCoordinates(latitude: Double, longitude: Double) =
+        getCurrentWeather {
+            addQueryParameter("lat", latitude.toString())
+            addQueryParameter("lon", longitude.toString())
+        }
+
+    private suspend fun getCurrentWeather(query: HttpUrl.Builder.() -> Unit): CurrentWeather =
+        withContext(Dispatchers.IO) {
+            val url = baseUrl.newBuilder()
+                .addPathSegment("weather")
+                .apply(query)
+                .addQueryParameter("appid", apiKey)
+                .build()
+            client.newCall(Request.Builder().url(url).build()).execute().use { response ->
+                if (response.code == 401) throw InvalidApiKeyException()
+                if (!response.isSuccessful) throw IOException("Unexpected response ${response.code}")
+                try {
+                    CurrentWeather.fromResponse(JSONObject(response.body.string()))
+                } catch (e: JSONException) {
+                    throw IOException("Malformed weather response", e)
+                }
+            }
+        }
+
+    /** Current weather, with the temperature in kelvin as returned by the API. */
+    data class CurrentWeather(val cityId: Long, val temperature: Double, val icon: String) {
+
+        fun toJson(): JSONObject = JSONObject()
+            .put(KEY_CITY_ID, cityId)
+            .put(KEY_TEMPERATURE, temperature)
+            .put(KEY_ICON, icon)
+
+        companion object {
+            private const val KEY_CITY_ID = "id"
+            private const val KEY_TEMPERATURE = "temp"
+            private const val KEY_ICON = "icon"
+
+            fun fromJson(obj: JSONObject) = CurrentWeather(
+                obj.getLong(KEY_CITY_ID),
+                obj.getDouble(KEY_TEMPERATURE),
+                obj.getString(KEY_ICON),
+            )
+
+            fun fromResponse(obj: JSONObject) = CurrentWeather(
+                obj.getLong("id"),
+                obj.getJSONObject("main").getDouble("temp"),
+                obj.getJSONArray("weather").getJSONObject(0).getString("icon"),
+            )
+        }
+    }
+
+    class InvalidApiKeyException : IOException("Invalid OpenWeatherMap API key")
+
+    companion object {
+        const val DEFAULT_BASE_URL = "https://api.openweathermap.org/data/2.5/"
+
+        private val sharedClient by lazy { OkHttpClient() }
+    }
+}
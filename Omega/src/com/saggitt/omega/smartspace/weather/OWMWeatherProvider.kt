@@ -28,36 +28,43 @@ import android.widget.Toast
 import com.android.launcher3.BuildConfig
 import com.android.launcher3.R
 import com.android.launcher3.Utilities
-import com.kwabenaberko.openweathermaplib.implementation.OpenWeatherMapHelper
-import com.kwabenaberko.openweathermaplib.implementation.callback.CurrentWeatherCallback
-import com.kwabenaberko.openweathermaplib.model.currentweather.CurrentWeather
 import com.saggitt.omega.neoApp
 import com.saggitt.omega.smartspace.model.SmartspaceScores
 import com.saggitt.omega.smartspace.model.WeatherData
+import com.saggitt.omega.smartspace.provider.SmartspaceCache
 import com.saggitt.omega.smartspace.provider.SmartspaceDataSource
 import com.saggitt.omega.smartspace.weather.GoogleWeatherProvider.Companion.dummyTarget
+import com.saggitt.omega.smartspace.weather.OWMWeatherClient.CurrentWeather
 import com.saggitt.omega.smartspace.weather.icons.WeatherIconProvider
 import com.saggitt.omega.util.checkLocationAccess
 import com.saggitt.omega.widget.Temperature
 import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.flow.flow
-import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.withContext
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.IOException
 import java.util.concurrent.TimeUnit
 import kotlin.math.roundToInt
 
 class OWMWeatherProvider(context: Context) : SmartspaceDataSource(
     context, R.string.weather_provider_owm
-), CurrentWeatherCallback {
+) {
     override val isAvailable = true
     override val disabledTargets = listOf(dummyTarget)
-    override var internalTargets: Flow<List<SmartspaceTarget>> = flowOf(disabledTargets)
 
-    private val owm by lazy { OpenWeatherMapHelper(prefs.smartspaceWeatherApiKey.getValue()) }
+    private val cache = SmartspaceCache.INSTANCE.get(context)
     private val iconProvider by lazy { WeatherIconProvider(context) }
-    private var weatherData: WeatherData? = null
     private val locationAccess get() = context.checkLocationAccess()
     private val locationManager: LocationManager? by lazy {
         if (locationAccess) {
@@ -65,91 +72,118 @@ class OWMWeatherProvider(context: Context) : SmartspaceDataSource(
         } else null
     }
 
-    init {
-        updateData()
-        internalTargets = flow {
-            while (true) {
-                updateData()
-                emit(updateWeatherData())
-                delay(TimeUnit.MINUTES.toMillis(10))
+    /**
+     * Emits the last known weather right away and only queries the API once the cached value is
+     * older than [WEATHER_TTL]. Starts over with the value cached for the new settings when the
+     * city or the API key change. Runs only while the smartspace is subscribed.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    override val internalTargets: Flow<List<SmartspaceTarget>> = combine(
+        prefs.smartspaceWeatherApiKey.get(),
+        prefs.smartspaceWeatherCity.get(),
+        ::Pair
+    ).distinctUntilChanged()
+        .flatMapLatest { (apiKey, city) -> weatherTargets(apiKey, city) }
+        .flowOn(Dispatchers.IO)
+
+    private fun weatherTargets(apiKey: String, city: String) = flow {
+        // The key is hashed so that it is not stored in the cache
+        val settings = "$city|${apiKey.hashCode()}"
+        val cached = readCache(settings)
+        emit(toTargets(cached?.first))
+        var wait = cached?.let { (WEATHER_TTL - it.second).coerceIn(0, WEATHER_TTL) } ?: 0L
+        while (true) {
+            if (wait > 0) delay(wait)
+            fetchWeather(apiKey, city)?.let {
+                cache.put(
+                    CACHE_KEY,
+                    JSONObject().put(KEY_SETTINGS, settings).put(KEY_WEATHER, it.toJson())
+                )
+                emit(toTargets(it))
             }
+            // On failure the last known value stays on screen until the next attempt
+            wait = WEATHER_TTL
         }
     }
 
-    private fun updateWeatherData(): List<SmartspaceTarget> {
-        if (weatherData != null) {
-            Log.d("OWM", "Updating weather data " + weatherData?.getTitle())
-            val target = SmartspaceTarget(
-                smartspaceTargetId = "OWMWeatherMap",
-                headerAction = SmartspaceAction(
-                    id = "OWMWeatherMap",
-                    icon = Icon.createWithBitmap(weatherData!!.icon),
-                    title = "",
-                    subtitle = weatherData?.getTitle(Temperature.unitFromString(prefs.smartspaceWeatherUnit.getValue())),
-                    pendingIntent = weatherData?.pendingIntent
-                ),
-                score = SmartspaceScores.SCORE_WEATHER,
-                featureType = SmartspaceTarget.FEATURE_WEATHER,
-            )
-            return listOf(target)
-        } else {
-            return disabledTargets
+    /** Returns the cached weather with its age, if it was fetched with the same [settings]. */
+    private fun readCache(settings: String): Pair<CurrentWeather, Long>? {
+        val entry = cache.get(CACHE_KEY) ?: return null
+        if (entry.data.optString(KEY_SETTINGS) != settings) return null
+        return try {
+            CurrentWeather.fromJson(entry.data.getJSONObject(KEY_WEATHER)) to entry.age()
+        } catch (e: JSONException) {
+            null
         }
     }
 
+    private suspend fun toTargets(weather: CurrentWeather?): List<SmartspaceTarget> {
+        weather ?: return disabledTargets
+        val weatherData = WeatherData(
+            iconProvider.getIcon(weather.icon),
+            Temperature(weather.temperature.roundToInt(), Temperature.Unit.Kelvin),
+            "https://openweathermap.org/city/${weather.cityId}"
+        )
+        val unit = Temperature.unitFromString(prefs.smartspaceWeatherUnit.get().first())
+        Log.d("OWM", "Updating weather data " + weatherData.getTitle(unit))
+        val target = SmartspaceTarget(
+            smartspaceTargetId = "OWMWeatherMap",
+            headerAction = SmartspaceAction(
+                id = "OWMWeatherMap",
+                icon = Icon.createWithBitmap(weatherData.icon),
+                title = "",
+                subtitle = weatherData.getTitle(unit),
+                pendingIntent = weatherData.pendingIntent
+            ),
+            score = SmartspaceScores.SCORE_WEATHER,
+            featureType = SmartspaceTarget.FEATURE_WEATHER,
+        )
+        return listOf(target)
+    }
+
     @SuppressLint("MissingPermission")
-    fun updateData() {
-        if (prefs.smartspaceWeatherCity.getValue() == "##Auto") {
-            if (!locationAccess) {
-                Utilities.requestLocationPermission(context.neoApp.activityHandler.foregroundActivity)
-                return
-            } else {
+    private suspend fun fetchWeather(apiKey: String, city: String): CurrentWeather? {
+        val client = OWMWeatherClient(apiKey)
+        return try {
+            if (city == "##Auto") {
+                if (!locationAccess) {
+                    withContext(Dispatchers.Main) {
+                        Utilities.requestLocationPermission(
+                            context.neoApp.activityHandler.foregroundActivity
+                        )
+                    }
+                    return null
+                }
                 val locationProvider = locationManager?.getBestProvider(Criteria(), true)
                 val location = locationProvider?.let { locationManager?.getLastKnownLocation(it) }
-                if (location != null) {
-                    owm.getCurrentWeatherByGeoCoordinates(
-                        location.latitude,
-                        location.longitude,
-                        this
-                    )
-                }
+                    ?: return null
+                client.getCurrentWeatherByGeoCoordinates(location.latitude, location.longitude)
+            } else {
+                client.getCurrentWeatherByCityName(city)
             }
-        } else {
-            owm.getCurrentWeatherByCityName(prefs.smartspaceWeatherCity.getValue(), this)
+        } catch (e: IOException) {
+            onFailure(apiKey, e)
+            null
         }
     }
 
-    override fun onSuccess(currentWeather: CurrentWeather) {
-        val temp = currentWeather.main?.temp ?: return
-        val icon = currentWeather.weather.getOrNull(0)?.icon ?: return
-        weatherData = WeatherData(
-            iconProvider.getIcon(icon),
-            Temperature(
-                temp.roundToInt(),
-                Temperature.Unit.Kelvin
-            ),
-            "https://openweathermap.org/city/${currentWeather.id}"
-        )
-        updateWeatherData()
-    }
-
-    override fun onFailure(throwable: Throwable?) {
-        if ((prefs.smartspaceWeatherApiKey.getValue() == context.getString(R.string.default_owm_key)
+    private suspend fun onFailure(apiKey: String, e: IOException) = withContext(Dispatchers.Main) {
+        if ((apiKey == context.getString(R.string.default_owm_key)
                     && !BuildConfig.APPLICATION_ID.contains("debug")
                     && !BuildConfig.APPLICATION_ID.contains("alpha"))
-            || throwable?.message == apiKeyError
+            || e is OWMWeatherClient.InvalidApiKeyException
         ) {
             Toast.makeText(context, R.string.owm_get_your_own_key, Toast.LENGTH_LONG).show()
-        } else if (throwable != null) {
-            Log.d("OWM", "Updating weather data failed", throwable)
-            Toast.makeText(context, throwable.message, Toast.LENGTH_LONG).show()
+        } else {
+            Log.d("OWM", "Updating weather data failed", e)
+            Toast.makeText(context, e.message, Toast.LENGTH_LONG).show()
         }
-        updateWeatherData()
     }
 
     companion object {
-
-        private const val apiKeyError = "UnAuthorized. Please set a valid OpenWeatherMap API KEY" +
-                " by using the setApiKey method."
+        private const val CACHE_KEY = "owm_weather"
+        private const val KEY_SETTINGS = "settings"
+        private const val KEY_WEATHER = "weather"
+        private val WEATHER_TTL = TimeUnit.MINUTES.toMillis(10)
     }
-}
\ No newline at end of file
+}
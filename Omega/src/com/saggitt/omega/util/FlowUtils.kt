@@ -4,9 +4,14 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
+import android.database.ContentObserver
+import android.net.Uri
+import android.os.Handler
+import android.os.Looper
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.collectAsState
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.buffer
@@ -38,6 +43,18 @@ fun broadcastReceiverFlow(context: Context, filter: IntentFilter) = callbackFlow
     awaitClose { context.unregisterReceiver(receiver) }
 }
 
+/** Emits once when collected and then whenever the content at [uri] changes. */
+fun contentObserverFlow(context: Context, uri: Uri) = callbackFlow {
+    val observer = object : ContentObserver(Handler(Looper.getMainLooper())) {
+        override fun onChange(selfChange: Boolean) {
+            trySend(Unit)
+        }
+    }
+    context.contentResolver.registerContentObserver(uri, true, observer)
+    trySend(Unit)
+    awaitClose { context.contentResolver.unregisterContentObserver(observer) }
+}.buffer(Channel.CONFLATED)
+
 fun <T> Flow<T>.subscribeBlocking(
     scope: CoroutineScope,
     block: (T) -> Unit,
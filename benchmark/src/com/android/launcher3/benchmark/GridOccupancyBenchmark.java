@@ -0,0 +1,116 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.benchmark;
+
+import com.android.launcher3.util.GridOccupancy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link GridOccupancy}, which backs the workspace space finder and the cell
+ * reorder algorithms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridOccupancyBenchmark {
+
+    @Param({"4x5", "5x5", "6x7", "8x10"})
+    public String gridSize;
+
+    /** Percentage of cells occupied before each operation. */
+    @Param({"25", "75"})
+    public int fillPercent;
+
+    private int mCountX;
+    private int mCountY;
+    private GridOccupancy mSource;
+    private GridOccupancy mScratch;
+    private final int[] mCellOut = new int[2];
+
+    @Setup
+    public void setup() {
+        String[] parts = gridSize.split("x");
+        mCountX = Integer.parseInt(parts[0]);
+        mCountY = Integer.parseInt(parts[1]);
+        mSource = new GridOccupancy(mCountX, mCountY);
+        mScratch = new GridOccupancy(mCountX, mCountY);
+
+        // Fixed seed so that every run sees the same layout
+        Random random = new Random(42);
+        for (int x = 0; x < mCountX; x++) {
+            for (int y = 0; y < mCountY; y++) {
+                mSource.cells[x][y] = random.nextInt(100) < fillPercent;
+            }
+        }
+    }
+
+    /** Single lookup as done when adding one icon to a screen. */
+    @Benchmark
+    public boolean findVacantCell() {
+        return mSource.findVacantCell(mCellOut, 2, 2);
+    }
+
+    /**
+     * Fills the remaining space of a screen with icons one at a time, the same pattern as
+     * WorkspaceItemSpaceFinder scanning a screen for each pending item.
+     */
+    @Benchmark
+    public void fillScreen(Blackhole bh) {
+        mSource.copyTo(mScratch);
+        while (mScratch.findVacantCell(mCellOut, 1, 1)) {
+            mScratch.markCells(mCellOut[0], mCellOut[1], 1, 1, true);
+        }
+        bh.consume(mScratch);
+    }
+
+    /**
+     * Copies the occupancy and probes every region for a 2x2 item, the inner loop of the reorder
+     * algorithms when searching for a solution.
+     */
+    @Benchmark
+    public int reorderScan() {
+        mSource.copyTo(mScratch);
+        int vacant = 0;
+        for (int x = 0; x < mCountX; x++) {
+            for (int y = 0; y < mCountY; y++) {
+                if (mScratch.isRegionVacant(x, y, 2, 2)) {
+                    vacant++;
+                }
+            }
+        }
+        return vacant;
+    }
+}
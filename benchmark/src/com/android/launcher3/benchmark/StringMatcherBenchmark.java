@@ -0,0 +1,97 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.benchmark;
+
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the all apps search matcher against a synthetic list of app labels, the same work
+ * done by the app search algorithm for every key stroke.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringMatcherBenchmark {
+
+    private static final String[] WORDS = {
+            "Play", "Store", "Camera", "Photos", "Maps", "Mail", "Calendar", "Clock", "Files",
+            "Music", "YouTube", "Settings", "Messages", "Contacts", "Phone", "Drive", "Keep",
+            "Notes", "Weather", "Calculator", "Gallery", "Browser", "Wallet", "Fitness", "News",
+            "Podcasts", "Translate", "Recorder", "Tasks", "Authenticator", "Banking", "Radio"
+    };
+
+    @Param({"50", "200", "1000"})
+    public int appCount;
+
+    @Param({"1", "3", "8"})
+    public int queryLength;
+
+    private String[] mLabels;
+    private String mQuery;
+    private StringMatcher mMatcher;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mLabels = new String[appCount];
+        for (int i = 0; i < appCount; i++) {
+            String label = WORDS[random.nextInt(WORDS.length)];
+            if (random.nextBoolean()) {
+                label += " " + WORDS[random.nextInt(WORDS.length)];
+            }
+            mLabels[i] = label + (i % 7 == 0 ? " " + i : "");
+        }
+
+        StringBuilder query = new StringBuilder();
+        while (query.length() < queryLength) {
+            query.append(WORDS[random.nextInt(WORDS.length)].toLowerCase());
+        }
+        mQuery = query.substring(0, queryLength);
+        mMatcher = StringMatcher.getInstance();
+    }
+
+    @Benchmark
+    public int matchAll() {
+        int matches = 0;
+        for (String label : mLabels) {
+            if (StringMatcherUtility.matches(mQuery, label, mMatcher)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.saggitt.omega.benchmark;
+
+import com.saggitt.omega.flowerpot.parser.FlowerpotReader;
+import com.saggitt.omega.flowerpot.parser.LineParser;
+import com.saggitt.omega.flowerpot.rules.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing of the shipped flowerpot category files, which runs for every category when
+ * the drawer folders are built. Files are read relative to the project directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlowerpotBenchmark {
+
+    private static final String ASSETS_DIR = "assets/flowerpot";
+
+    // Smallest, medium and largest shipped categories
+    @Param({"FOOD_AND_DRINK", "TRAVEL_AND_NAVIGATION", "ENTERTAINMENT"})
+    public String category;
+
+    private byte[] mData;
+    private String[] mLines;
+
+    @Setup
+    public void setup() throws IOException {
+        mData = Files.readAllBytes(Paths.get(ASSETS_DIR, category));
+        mLines = new String(mData, StandardCharsets.UTF_8).split("\n");
+    }
+
+    @Benchmark
+    public List<Rule> readRules() throws IOException {
+        try (FlowerpotReader reader = new FlowerpotReader(new ByteArrayInputStream(mData))) {
+            return reader.readRules();
+        }
+    }
+
+    @Benchmark
+    public void parseLines(Blackhole bh) {
+        // All shipped files declare version 1
+        for (String line : mLines) {
+            bh.consume(LineParser.INSTANCE.parse(line, 1));
+        }
+    }
+}
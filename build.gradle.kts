@@ -25,6 +25,7 @@ val vFuzzywuzzy = "1.4.0"
 val vHokoBlur = "1.5.2"
 val vJUnit = "4.13.2"
 val vJUnit5 = "5.9.2"
+val vJMH = "1.37"
 val vKotlin = "1.9.22"
 val vKSP = "1.0.17"
 val vLifecycle = "2.7.0"
@@ -32,7 +33,6 @@ val vLifecycleExt = "2.2.0"
 val vMaterial = "1.11.0"
 val vNavigation = "2.7.6"
 val vOkhttp = "5.0.0-alpha.12"
-val vOWM = "2.1.0"
 val vPersianDate = "1.7.1"
 val vPalette = "1.0.0"
 val vPrefs = "1.2.1"
@@ -210,6 +210,10 @@ android {
             manifest.srcFile("tests/AndroidManifest.xml")
         }*/
 
+        named("test") {
+            java.srcDirs(listOf("benchmark/src"))
+        }
+
         named("aosp") {
             java.srcDirs(listOf("src_flags", "src_shortcuts_overrides"))
         }
@@ -276,10 +280,6 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:$vCoroutines")
     implementation("com.squareup.okhttp3:okhttp:$vOkhttp")
     implementation("com.github.samanzamani:PersianDate:$vPersianDate")
-    implementation("com.github.KwabenBerko:OpenWeatherMap-Android-Library:$vOWM") {
-        exclude("com.android.support", "support-compat")
-        exclude("com.android.support", "appcompat-v7")
-    }
     implementation("com.raedapps:alwan:$vAlwan")
     implementation("io.github.hokofly:hoko-blur:$vHokoBlur")
     implementation("org.jetbrains.kotlinx:kotlinx-serialization-json:$vSerialization")
@@ -316,6 +316,8 @@ dependencies {
 
     //Test
     testImplementation("junit:junit:$vJUnit")
+    testImplementation("org.openjdk.jmh:jmh-core:$vJMH")
+    testAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$vJMH")
     implementation("junit:junit:$vJUnit")
     androidTestImplementation("org.junit.jupiter:junit-jupiter:$vJUnit5")
 
@@ -326,6 +328,7 @@ dependencies {
 
     androidTestImplementation("com.google.truth:truth:1.1.5")
     androidTestImplementation("org.mockito:mockito-core:5.0.0")
+    androidTestImplementation("com.squareup.okhttp3:mockwebserver:$vOkhttp")
     androidTestImplementation("com.google.dexmaker:dexmaker:1.2")
     androidTestImplementation("com.google.dexmaker:dexmaker-mockito:1.2")
     androidTestImplementation("androidx.annotation:annotation:1.7.1")
@@ -334,6 +337,98 @@ dependencies {
     androidTestImplementation("com.android.support.test.uiautomator:uiautomator-v18:2.1.3")
 }
 
+// JMH benchmarks in benchmark/src run on the host JVM with the unit test classpath of the
+// variant, aospOmegaDebug unless set with -Pjmh.variant=<variant>.
+// $ ./gradlew jmh [-Pjmh.include=<regex>] && ./gradlew jmhReport [-Pjmh.threshold=10]
+val jmhResultFile = layout.buildDirectory.file("reports/jmh/results.json")
+val jmhBaselineFile = layout.projectDirectory.file("benchmark/baseline.json")
+
+afterEvaluate {
+    val jmhVariant = project.findProperty("jmh.variant")?.toString() ?: "aospOmegaDebug"
+    val unitTestName = "test${jmhVariant.replaceFirstChar { it.uppercase() }}UnitTest"
+    val unitTest = tasks.named<Test>(unitTestName)
+    tasks.register<JavaExec>("jmh") {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks and writes the results as JSON"
+        classpath = files(unitTest.map { it.classpath })
+        mainClass.set("org.openjdk.jmh.Main")
+        workingDir = projectDir
+        outputs.file(jmhResultFile)
+        outputs.upToDateWhen { false }
+        doFirst { jmhResultFile.get().asFile.parentFile.mkdirs() }
+        args = listOf(
+            project.findProperty("jmh.include")?.toString() ?: ".*Benchmark.*",
+            "-rf", "json",
+            "-rff", jmhResultFile.get().asFile.absolutePath
+        )
+    }
+}
+
+// Compares the last jmh run with benchmark/baseline.json and fails on regressions above the
+// threshold, in percent, or when there is no baseline to compare with. Pass
+// -Pjmh.updateBaseline to store the last run as the new baseline.
+task("jmhReport") {
+    group = "benchmark"
+    description = "Compares the last JMH results with the stored baseline"
+    doLast {
+        val results = jmhResultFile.get().asFile
+        val baseline = jmhBaselineFile.asFile
+        if (!results.exists()) {
+            throw GradleException("No results at $results, run the jmh task first")
+        }
+        if (project.hasProperty("jmh.updateBaseline")) {
+            results.copyTo(baseline, overwrite = true)
+            println("Updated baseline $baseline")
+            return@doLast
+        }
+        val threshold = project.findProperty("jmh.threshold")?.toString()?.toDouble() ?: 10.0
+
+        fun readScores(file: File): Map<String, Double> {
+            @Suppress("UNCHECKED_CAST")
+            val entries = groovy.json.JsonSlurper().parse(file) as List<Map<String, Any?>>
+            return entries.associate { entry ->
+                @Suppress("UNCHECKED_CAST")
+                val params = (entry["params"] as Map<String, Any?>?).orEmpty()
+                    .toSortedMap().entries.joinToString(",") { "${it.key}=${it.value}" }
+                @Suppress("UNCHECKED_CAST")
+                val metric = entry["primaryMetric"] as Map<String, Any?>
+                "${entry["benchmark"]}($params)" to (metric["score"] as Number).toDouble()
+            }
+        }
+
+        val previous = if (baseline.exists()) readScores(baseline) else emptyMap()
+        if (previous.isEmpty()) {
+            throw GradleException(
+                "No baseline scores at $baseline, create it with " +
+                        "./gradlew jmh jmhReport -Pjmh.updateBaseline"
+            )
+        }
+        val current = readScores(results)
+        val report = StringBuilder()
+        val regressions = ArrayList<String>()
+        current.toSortedMap().forEach { (key, score) ->
+            val old = previous[key]
+            if (old == null || old == 0.0) {
+                report.append("NEW  $key: %.3f\n".format(score))
+            } else {
+                // All benchmarks measure average time, so higher is worse
+                val change = (score - old) / old * 100
+                val status = if (change > threshold) "SLOW" else "OK  "
+                report.append("$status $key: %.3f -> %.3f (%+.1f%%)\n".format(old, score, change))
+                if (change > threshold) regressions.add(key)
+            }
+        }
+        val reportFile = File(results.parentFile, "regression.txt")
+        reportFile.writeText(report.toString())
+        print(report)
+        if (regressions.isNotEmpty()) {
+            throw GradleException(
+                "${regressions.size} benchmark(s) regressed more than $threshold%, see $reportFile"
+            )
+        }
+    }
+}
+
 // using a task as a preBuild dependency instead of a function that takes some time insures that it runs
 task("detectAndroidLocals") {
     val langsList: MutableSet<String> = HashSet()
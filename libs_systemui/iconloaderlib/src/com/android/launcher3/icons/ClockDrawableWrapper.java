@@ -38,7 +38,6 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.SystemClock;
 import android.os.UserHandle;
 import android.util.Log;
 import android.util.TypedValue;
@@ -446,7 +445,8 @@ public class ClockDrawableWrapper extends CustomAdaptiveIconDrawable implements
         }
     }
 
-    private static class ClockIconDrawable extends FastBitmapDrawable implements Runnable {
+    private static class ClockIconDrawable extends FastBitmapDrawable
+            implements ClockTickScheduler.Tickable {
 
         private final Calendar mTime = Calendar.getInstance();
 
@@ -538,12 +538,20 @@ public class ClockDrawableWrapper extends CustomAdaptiveIconDrawable implements
         }
 
         @Override
-        public void run() {
+        public boolean onTimeTick() {
+            if (!isVisible() || getCallback() == null) {
+                return true;
+            }
             if (mAnimInfo.applyTime(mTime, mFG)) {
                 invalidateSelf();
-            } else {
-                reschedule();
+                return true;
             }
+            return false;
+        }
+
+        @Override
+        public boolean needsSecondsTick() {
+            return mAnimInfo.secondLayerIndex != INVALID_VALUE;
         }
 
         @Override
@@ -552,20 +560,22 @@ public class ClockDrawableWrapper extends CustomAdaptiveIconDrawable implements
             if (visible) {
                 reschedule();
             } else {
-                unscheduleSelf(this);
+                ClockTickScheduler scheduler = ClockTickScheduler.getInstance();
+                if (scheduler != null) {
+                    scheduler.unregister(this);
+                }
             }
             return result;
         }
 
         private void reschedule() {
-            if (!isVisible()) {
+            if (!isVisible() || getCallback() == null) {
                 return;
             }
-
-            unscheduleSelf(this);
-            final long upTime = SystemClock.uptimeMillis();
-            final long step = TICK_MS; /* tick every 200 ms */
-            scheduleSelf(this, upTime - ((upTime % step)) + step);
+            ClockTickScheduler scheduler = ClockTickScheduler.getInstance();
+            if (scheduler != null) {
+                scheduler.register(this);
+            }
         }
 
         @Override
@@ -0,0 +1,141 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.ArraySet;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared ticker for all live clock icons. Instead of every visible icon posting its own delayed
+ * runnable, icons register when they are drawn and are all updated in a single frame callback
+ * aligned to the wall clock minute, or to the second while any registered icon has a seconds hand.
+ */
+@MainThread
+final class ClockTickScheduler implements Runnable, Choreographer.FrameCallback {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * An icon which can be updated by the scheduler
+     */
+    interface Tickable {
+
+        /**
+         * Updates the icon to the current time. Returns true if the icon should be dropped from
+         * the scheduler, either because it was invalidated and will register again when it is
+         * drawn, or because it is no longer attached.
+         */
+        boolean onTimeTick();
+
+        /**
+         * Returns true if the icon needs to be updated every second
+         */
+        boolean needsSecondsTick();
+    }
+
+    private static ClockTickScheduler sInstance;
+
+    /**
+     * Returns the scheduler, or null if not called on the main thread. Icons rendered on other
+     * threads (for eg, grid previews) are never animated.
+     */
+    static ClockTickScheduler getInstance() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            return null;
+        }
+        if (sInstance == null) {
+            sInstance = new ClockTickScheduler();
+        }
+        return sInstance;
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArraySet<Tickable> mTickables = new ArraySet<>();
+    private final ArrayList<Tickable> mTickBuffer = new ArrayList<>();
+
+    // Uptime of the pending tick, or -1 if nothing is scheduled
+    private long mScheduledTime = -1;
+    private boolean mFramePending;
+
+    private ClockTickScheduler() { }
+
+    void register(Tickable tickable) {
+        if (mTickables.add(tickable)) {
+            scheduleNextTick();
+        }
+    }
+
+    void unregister(Tickable tickable) {
+        if (mTickables.remove(tickable) && mTickables.isEmpty()) {
+            mHandler.removeCallbacks(this);
+            mScheduledTime = -1;
+        }
+    }
+
+    @Override
+    public void run() {
+        // Apply the tick on the next frame so that all clocks change together with the frame
+        mScheduledTime = -1;
+        mFramePending = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFramePending = false;
+        mTickBuffer.addAll(mTickables);
+        for (int i = mTickBuffer.size() - 1; i >= 0; i--) {
+            Tickable tickable = mTickBuffer.get(i);
+            if (tickable.onTimeTick()) {
+                // Invalidated icons register again once drawn, so offscreen icons stop ticking
+                mTickables.remove(tickable);
+            }
+        }
+        mTickBuffer.clear();
+        scheduleNextTick();
+    }
+
+    private void scheduleNextTick() {
+        if (mTickables.isEmpty() || mFramePending) {
+            // Rescheduled at the end of the pending frame
+            return;
+        }
+        long step = ClockDrawableWrapper.TICK_MS;
+        for (int i = mTickables.size() - 1; i >= 0; i--) {
+            if (mTickables.valueAt(i).needsSecondsTick()) {
+                step = SECOND_MS;
+                break;
+            }
+        }
+        long tickTime = SystemClock.uptimeMillis() + step - (System.currentTimeMillis() % step);
+        if (mScheduledTime >= 0 && mScheduledTime <= tickTime) {
+            return;
+        }
+        mHandler.removeCallbacks(this);
+        mScheduledTime = tickTime;
+        mHandler.postAtTime(this, tickTime);
+    }
+}
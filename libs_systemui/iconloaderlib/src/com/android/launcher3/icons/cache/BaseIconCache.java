@@ -66,12 +66,18 @@ import com.android.launcher3.util.SQLiteCacheHelper;
 
 import java.nio.ByteBuffer;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public abstract class BaseIconCache {
@@ -86,6 +92,11 @@ public abstract class BaseIconCache {
     // Empty class name is used for storing package default entry.
     public static final String EMPTY_CLASS_NAME = ".";
 
+    // Sources reported to onCacheLookup
+    public static final int LOOKUP_MEMORY = 0;
+    public static final int LOOKUP_DB = 1;
+    public static final int LOOKUP_MISS = 2;
+
     public static class CacheEntry {
 
         @NonNull
@@ -307,13 +318,65 @@ public abstract class BaseIconCache {
     public synchronized <T> void addIconToDBAndMemCache(@NonNull final T object,
             @NonNull final CachingLogic<T> cachingLogic, @NonNull final PackageInfo info,
             final long userSerial, final boolean replaceExisting) {
-        UserHandle user = cachingLogic.getUser(object);
-        ComponentName componentName = cachingLogic.getComponent(object);
+        CacheEntry entry = loadEntryForDB(object, cachingLogic, replaceExisting);
+        if (entry == null) return;
+        mIconDb.insertOrReplace(
+                commitEntryLocked(object, cachingLogic, info, userSerial, entry));
+    }
+
+    /**
+     * Same as {@link #addIconToDBAndMemCache} for a batch of objects. Icons are rendered in
+     * parallel on {@param renderExecutor} without holding the cache lock, and the resulting rows
+     * are written to the DB in a single transaction.
+     * @param infoProvider returns the package info for an object, or null to skip the object
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void addIconsToDBAndMemCache(@NonNull final List<T> objects,
+            @NonNull final CachingLogic<T> cachingLogic,
+            @NonNull final Function<T, PackageInfo> infoProvider, final long userSerial,
+            final boolean replaceExisting, @NonNull final Executor renderExecutor) {
+        int count = objects.size();
+        CompletableFuture<CacheEntry>[] entries = new CompletableFuture[count];
+        for (int i = 0; i < count; i++) {
+            T object = objects.get(i);
+            entries[i] = CompletableFuture.supplyAsync(
+                    () -> loadEntryForDB(object, cachingLogic, replaceExisting), renderExecutor);
+        }
 
-        final ComponentKey key = new ComponentKey(componentName, user);
+        List<ContentValues> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            T object = objects.get(i);
+            PackageInfo info = infoProvider.apply(object);
+            CacheEntry entry;
+            try {
+                entry = entries[i].join();
+            } catch (CompletionException e) {
+                Log.e(TAG, "Failed to load icon for " + cachingLogic.getComponent(object), e);
+                continue;
+            }
+            if (entry == null || info == null) continue;
+            synchronized (this) {
+                rows.add(commitEntryLocked(object, cachingLogic, info, userSerial, entry));
+            }
+        }
+        mIconDb.insertOrReplace(rows);
+    }
+
+    /**
+     * Returns the entry to be persisted for {@param object}, rendering the icon if needed, or null
+     * if no icon could be loaded. This only takes the cache lock for the memory lookup so that it
+     * can be run on multiple threads.
+     */
+    @Nullable
+    private <T> CacheEntry loadEntryForDB(@NonNull final T object,
+            @NonNull final CachingLogic<T> cachingLogic, final boolean replaceExisting) {
         CacheEntry entry = null;
         if (!replaceExisting) {
-            entry = mCache.get(key);
+            ComponentKey key = new ComponentKey(
+                    cachingLogic.getComponent(object), cachingLogic.getUser(object));
+            synchronized (this) {
+                entry = mCache.get(key);
+            }
             // We can't reuse the entry if the high-res icon is not present.
             if (entry == null || entry.bitmap.isNullOrLowRes()) {
                 entry = null;
@@ -326,7 +389,19 @@ public abstract class BaseIconCache {
         // Icon can't be loaded from cachingLogic, which implies alternative icon was loaded
         // (e.g. fallback icon, default icon). So we drop here since there's no point in caching
         // an empty entry.
-        if (entry.bitmap.isNullOrLowRes()) return;
+        return entry.bitmap.isNullOrLowRes() ? null : entry;
+    }
+
+    /**
+     * Adds the loaded {@param entry} to the memory cache and returns the values to be written
+     * to the DB.
+     */
+    @NonNull
+    private <T> ContentValues commitEntryLocked(@NonNull final T object,
+            @NonNull final CachingLogic<T> cachingLogic, @NonNull final PackageInfo info,
+            final long userSerial, @NonNull final CacheEntry entry) {
+        UserHandle user = cachingLogic.getUser(object);
+        ComponentName componentName = cachingLogic.getComponent(object);
 
         CharSequence entryTitle = cachingLogic.getLabel(object);
         if (entryTitle == null) {
@@ -336,12 +411,13 @@ public abstract class BaseIconCache {
         entry.title = entryTitle;
 
         entry.contentDescription = getUserBadgedLabel(entry.title, user);
-        if (cachingLogic.addToMemCache()) mCache.put(key, entry);
+        if (cachingLogic.addToMemCache()) mCache.put(new ComponentKey(componentName, user), entry);
 
         ContentValues values = newContentValues(entry.bitmap, entry.title.toString(),
                 componentName.getPackageName(), cachingLogic.getKeywords(object, mLocaleList));
-        addIconToDB(values, componentName, info, userSerial,
+        addVersionInfo(values, componentName, info, userSerial,
                 cachingLogic.getLastUpdatedTime(object, info));
+        return values;
     }
 
     /**
@@ -350,11 +426,21 @@ public abstract class BaseIconCache {
      */
     private void addIconToDB(@NonNull final ContentValues values, @NonNull final ComponentName key,
             @NonNull final PackageInfo info, final long userSerial, final long lastUpdateTime) {
+        addVersionInfo(values, key, info, userSerial, lastUpdateTime);
+        mIconDb.insertOrReplace(values);
+    }
+
+    /**
+     * Updates {@param values} to contain versioning information for the DB.
+     * @param values {@link ContentValues} containing icon & title
+     */
+    private void addVersionInfo(@NonNull final ContentValues values,
+            @NonNull final ComponentName key, @NonNull final PackageInfo info,
+            final long userSerial, final long lastUpdateTime) {
         values.put(IconDB.COLUMN_COMPONENT, key.flattenToString());
         values.put(IconDB.COLUMN_USER, userSerial);
         values.put(IconDB.COLUMN_LAST_UPDATED, lastUpdateTime);
         values.put(IconDB.COLUMN_VERSION, info.versionCode);
-        mIconDb.insertOrReplace(values);
     }
 
     @NonNull
@@ -426,6 +512,7 @@ public abstract class BaseIconCache {
             boolean cacheEntryUpdated = cursor == null
                     ? getEntryFromDBLocked(cacheKey, entry, useLowResIcon)
                     : updateTitleAndIconLocked(cacheKey, entry, cursor, useLowResIcon);
+            onCacheLookup(cacheEntryUpdated ? LOOKUP_DB : LOOKUP_MISS);
             if (!cacheEntryUpdated) {
                 object = infoProvider.get();
                 providerFetchedOnce = true;
@@ -449,10 +536,19 @@ public abstract class BaseIconCache {
                     loadFallbackTitle(object, entry, cachingLogic, user);
                 }
             }
+        } else {
+            onCacheLookup(LOOKUP_MEMORY);
         }
         return entry;
     }
 
+    /**
+     * Called for every {@link #cacheLocked} lookup with where the entry was resolved from, one of
+     * {@link #LOOKUP_MEMORY}, {@link #LOOKUP_DB} or {@link #LOOKUP_MISS}. Runs on the hot path
+     * with the cache lock held, so implementations must be cheap.
+     */
+    protected void onCacheLookup(int source) { }
+
     /**
      * Fallback method for loading an icon bitmap.
      */
@@ -21,6 +21,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
+import android.os.Process;
 import android.os.SystemClock;
 import android.os.UserHandle;
 import android.text.TextUtils;
@@ -30,6 +31,7 @@ import android.util.SparseBooleanArray;
 
 import com.android.launcher3.icons.cache.BaseIconCache.IconDB;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,6 +39,10 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility class to handle updating the Icon cache
@@ -59,6 +65,18 @@ public class IconCacheUpdateHandler {
 
     private static final Object ICON_UPDATE_TOKEN = new Object();
 
+    /**
+     * Number of icons rendered and committed together. Small enough that the worker thread is
+     * released frequently, large enough to amortize the DB transaction.
+     */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * Shared pool used to render icons in parallel. Each task obtains its own icon factory, so
+     * normalizer and shadow buffers stay confined to a single thread.
+     */
+    private static final ThreadPoolExecutor ICON_RENDER_EXECUTOR = createRenderExecutor();
+
     private final HashMap<String, PackageInfo> mPkgInfoMap;
     private final BaseIconCache mIconCache;
 
@@ -78,6 +96,19 @@ public class IconCacheUpdateHandler {
         createPackageInfoMap();
     }
 
+    private static ThreadPoolExecutor createRenderExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "icon-render-" + threadCount.getAndIncrement()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Sets a package to ignore for processing
      */
@@ -244,8 +275,9 @@ public class IconCacheUpdateHandler {
 
     /**
      * A runnable that updates invalid icons and adds missing icons in the DB for the provided
-     * LauncherActivityInfo list. Items are updated/added one at a time, so that the
-     * worker thread doesn't get blocked.
+     * LauncherActivityInfo list. Items are updated/added in small batches, so that the
+     * worker thread doesn't get blocked. Icons within a batch are rendered in parallel on
+     * {@link #ICON_RENDER_EXECUTOR} and committed to the DB in a single transaction.
      */
     private class SerializedIconUpdateTask<T> implements Runnable {
         private final long mUserSerial;
@@ -270,13 +302,12 @@ public class IconCacheUpdateHandler {
         @Override
         public void run() {
             if (!mAppsToUpdate.isEmpty()) {
-                T app = mAppsToUpdate.pop();
-                String pkg = mCachingLogic.getComponent(app).getPackageName();
-                PackageInfo info = mPkgInfoMap.get(pkg);
-
-                mIconCache.addIconToDBAndMemCache(
-                        app, mCachingLogic, info, mUserSerial, true /*replace existing*/);
-                mUpdatedPackages.add(pkg);
+                List<T> batch = popBatch(mAppsToUpdate);
+                mIconCache.addIconsToDBAndMemCache(batch, mCachingLogic, this::getPackageInfo,
+                        mUserSerial, true /*replace existing*/, ICON_RENDER_EXECUTOR);
+                for (T app : batch) {
+                    mUpdatedPackages.add(mCachingLogic.getComponent(app).getPackageName());
+                }
 
                 if (mAppsToUpdate.isEmpty() && !mUpdatedPackages.isEmpty()) {
                     // No more app to update. Notify callback.
@@ -286,14 +317,12 @@ public class IconCacheUpdateHandler {
                 // Let it run one more time.
                 scheduleNext();
             } else if (!mAppsToAdd.isEmpty()) {
-                T app = mAppsToAdd.pop();
-                PackageInfo info = mPkgInfoMap.get(mCachingLogic.getComponent(app).getPackageName());
                 // We do not check the mPkgInfoMap when generating the mAppsToAdd. Although every
-                // app should have package info, this is not guaranteed by the api
-                if (info != null) {
-                    mIconCache.addIconToDBAndMemCache(app, mCachingLogic, info,
-                            mUserSerial, false /*replace existing*/);
-                }
+                // app should have package info, this is not guaranteed by the api, so such apps
+                // are skipped by getPackageInfo.
+                mIconCache.addIconsToDBAndMemCache(popBatch(mAppsToAdd), mCachingLogic,
+                        this::getPackageInfo, mUserSerial, false /*replace existing*/,
+                        ICON_RENDER_EXECUTOR);
 
                 if (!mAppsToAdd.isEmpty()) {
                     scheduleNext();
@@ -301,6 +330,19 @@ public class IconCacheUpdateHandler {
             }
         }
 
+        private PackageInfo getPackageInfo(T app) {
+            return mPkgInfoMap.get(mCachingLogic.getComponent(app).getPackageName());
+        }
+
+        private List<T> popBatch(Stack<T> apps) {
+            int count = Math.min(apps.size(), BATCH_SIZE);
+            List<T> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                batch.add(apps.pop());
+            }
+            return batch;
+        }
+
         public void scheduleNext() {
             mIconCache.mWorkerHandler.postAtTime(this, ICON_UPDATE_TOKEN,
                     SystemClock.uptimeMillis() + 1);
@@ -24,7 +24,6 @@ import android.graphics.BlendMode;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.Matrix;
 import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Path;
@@ -106,12 +105,13 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
     public static Path sMask;
 
     /**
-     * Scaled mask based on the view bounds.
+     * Mask scaled to the view bounds, shared with all icons of the same size.
      */
-    private final Path mMask;
-    private final Path mMaskScaleOnly;
-    private final Matrix mMaskMatrix;
-    private final Region mTransparentRegion;
+    private IconMaskCache.Entry mMaskEntry;
+    // Mask translated to the view bounds, only created for getIconMask
+    private Path mMask;
+    private boolean mMaskDirty;
+    private Region mTransparentRegion;
 
     /**
      * Indices used to access  array for foreground and
@@ -159,11 +159,7 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
         if (sMask == null) {
             sMask = PathParser.createPathFromPathData(sMaskPath);
         }
-        mMask = new Path(sMask);
-        mMaskScaleOnly = new Path(mMask);
-        mMaskMatrix = new Matrix();
         mCanvas = new Canvas();
-        mTransparentRegion = new Region();
     }
 
     public static @Nullable Drawable wrap(@Nullable Drawable icon) {
@@ -256,6 +252,16 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
      * @return the mask path object used to clip the drawable
      */
     public Path getIconMask() {
+        if (mMask == null) {
+            mMask = new Path(sMask);
+            mMaskDirty = mMaskEntry != null;
+        }
+        if (mMaskDirty) {
+            Rect b = getBounds();
+            mMask.set(mMaskEntry.path);
+            mMask.offset(b.left, b.top);
+            mMaskDirty = false;
+        }
         return mMask;
     }
 
@@ -330,11 +336,8 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
 
     private void updateMaskBoundsInternal(Rect b) {
         // reset everything that depends on the view bounds
-        mMaskMatrix.setScale(b.width() / MASK_SIZE, b.height() / MASK_SIZE);
-        sMask.transform(mMaskMatrix, mMaskScaleOnly);
-
-        mMaskMatrix.postTranslate(b.left, b.top);
-        sMask.transform(mMaskMatrix, mMask);
+        mMaskEntry = IconMaskCache.get(sMask, b.width(), b.height());
+        mMaskDirty = true;
 
         if (mLayersBitmap == null || mLayersBitmap.getWidth() != b.width()
                 || mLayersBitmap.getHeight() != b.height()) {
@@ -342,7 +345,9 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
         }
 
         mPaint.setShader(null);
-        mTransparentRegion.setEmpty();
+        if (mTransparentRegion != null) {
+            mTransparentRegion.setEmpty();
+        }
         mLayersShader = null;
     }
 
@@ -366,10 +371,10 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
             mLayersShader = new BitmapShader(mLayersBitmap, TileMode.CLAMP, TileMode.CLAMP);
             mPaint.setShader(mLayersShader);
         }
-        if (mMaskScaleOnly != null) {
+        if (mMaskEntry != null) {
             Rect bounds = getBounds();
             canvas.translate(bounds.left, bounds.top);
-            canvas.drawPath(mMaskScaleOnly, mPaint);
+            canvas.drawPath(mMaskEntry.path, mPaint);
             canvas.translate(-bounds.left, -bounds.top);
         }
     }
@@ -382,20 +387,31 @@ public class CustomAdaptiveIconDrawable extends AdaptiveIconDrawable implements
 
     @Override
     public void getOutline(@NonNull Outline outline) {
+        if (mMaskEntry == null) {
+            return;
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            outline.setPath(mMask);
+            outline.setPath(mMaskEntry.path);
         } else {
-            outline.setConvexPath(mMask);
+            outline.setConvexPath(mMaskEntry.path);
         }
+        Rect bounds = getBounds();
+        outline.offset(bounds.left, bounds.top);
     }
 
     @Override
     public @Nullable Region getTransparentRegion() {
+        if (mMaskEntry == null) {
+            return null;
+        }
+        if (mTransparentRegion == null) {
+            mTransparentRegion = new Region();
+        }
         if (mTransparentRegion.isEmpty()) {
-            mMask.toggleInverseFillType();
-            mTransparentRegion.set(getBounds());
-            mTransparentRegion.setPath(mMask, mTransparentRegion);
-            mMask.toggleInverseFillType();
+            // Callers may translate the region, so hand out a copy of the shared one
+            Rect bounds = getBounds();
+            mTransparentRegion.set(mMaskEntry.getTransparentRegion());
+            mTransparentRegion.translate(bounds.left, bounds.top);
         }
         return mTransparentRegion;
     }
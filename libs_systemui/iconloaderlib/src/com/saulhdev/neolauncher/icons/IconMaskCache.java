@@ -0,0 +1,101 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saulhdev.neolauncher.icons;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.Region;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Process wide cache of the icon mask scaled to the sizes icons are drawn at. All
+ * {@link CustomAdaptiveIconDrawable}s of the same size share one path and transparent region
+ * instead of transforming their own copy of the mask.
+ */
+public final class IconMaskCache {
+
+    // Icons are drawn at a handful of sizes: workspace, all apps, folders, previews, drag
+    private static final int MAX_SIZES = 16;
+
+    private static final Object sLock = new Object();
+    private static Path sMask;
+    private static final LruCache<Long, Entry> sEntries = new LruCache<>(MAX_SIZES);
+
+    private IconMaskCache() { }
+
+    /**
+     * Returns the mask, defined in a {@link CustomAdaptiveIconDrawable#MASK_SIZE} sized viewport,
+     * scaled to the given size and anchored at the origin. Passing a different mask than the
+     * previous call drops all cached sizes.
+     */
+    @NonNull
+    public static Entry get(@NonNull Path mask, int width, int height) {
+        long key = ((long) width << 32) | (height & 0xFFFFFFFFL);
+        synchronized (sLock) {
+            if (mask != sMask) {
+                sMask = mask;
+                sEntries.evictAll();
+            }
+            Entry entry = sEntries.get(key);
+            if (entry == null) {
+                entry = new Entry(mask, width, height);
+                sEntries.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * The mask at one size. The path and region must not be modified, they are shared by all
+     * icons of that size.
+     */
+    public static final class Entry {
+
+        public final int width;
+        public final int height;
+        public final Path path;
+
+        private Region mTransparentRegion;
+
+        Entry(Path mask, int width, int height) {
+            this.width = width;
+            this.height = height;
+            Matrix matrix = new Matrix();
+            matrix.setScale(width / CustomAdaptiveIconDrawable.MASK_SIZE,
+                    height / CustomAdaptiveIconDrawable.MASK_SIZE);
+            path = new Path();
+            mask.transform(matrix, path);
+        }
+
+        /** Returns the area outside of the mask, anchored at the origin. */
+        @NonNull
+        public synchronized Region getTransparentRegion() {
+            if (mTransparentRegion == null) {
+                Path inverse = new Path(path);
+                inverse.toggleInverseFillType();
+                Region region = new Region(0, 0, width, height);
+                region.setPath(inverse, region);
+                mTransparentRegion = region;
+            }
+            return mTransparentRegion;
+        }
+    }
+}
@@ -42,6 +42,7 @@ import android.view.Display;
 
 import androidx.annotation.DimenRes;
 import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
 import androidx.annotation.StyleRes;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.XmlRes;
@@ -71,7 +72,9 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class InvariantDeviceProfile {
@@ -99,6 +102,16 @@ public class InvariantDeviceProfile {
     // used to offset float not being able to express extremely small weights in extreme cases.
     private static final float WEIGHT_EFFICIENT = 100000f;
 
+    // Max number of interpolated display options kept in memory
+    private static final int MAX_INTERPOLATION_CACHE_SIZE = 16;
+
+    // Grid and display options parsed from device_profiles.xml, along with the resource
+    // configuration they were parsed for. Guarded by sProfileCacheLock.
+    private static ParsedProfiles sParsedProfiles;
+    // Interpolated display options keyed by grid, device type and display size
+    private static final Map<String, DisplayOption> sInterpolationCache = new HashMap<>();
+    private static final Object sProfileCacheLock = new Object();
+
     // Used for arrays to specify different sizes (e.g. border spaces, width/height) in different
     // constraints
     static final int COUNT_SIZES = 4;
@@ -263,20 +276,14 @@ public class InvariantDeviceProfile {
         // Get the display info based on default display and interpolate it to existing display
         Info defaultInfo = DisplayController.INSTANCE.get(context).getInfo();
         @DeviceType int defaultDeviceType = getDeviceType(defaultInfo);
-        DisplayOption defaultDisplayOption = invDistWeightedInterpolate(
-                defaultInfo,
-                getPredefinedDeviceProfiles(context, gridName, defaultDeviceType,
-                        /*allowDisabledGrid=*/false),
-                defaultDeviceType);
+        DisplayOption defaultDisplayOption = getInterpolatedDisplayOption(context, defaultInfo,
+                gridName, defaultDeviceType, /*allowDisabledGrid=*/false);
 
         Context displayContext = context.createDisplayContext(display);
         Info myInfo = new Info(displayContext);
         @DeviceType int deviceType = getDeviceType(myInfo);
-        DisplayOption myDisplayOption = invDistWeightedInterpolate(
-                myInfo,
-                getPredefinedDeviceProfiles(context, gridName, deviceType,
-                        /*allowDisabledGrid=*/false),
-                deviceType);
+        DisplayOption myDisplayOption = getInterpolatedDisplayOption(context, myInfo,
+                gridName, deviceType, /*allowDisabledGrid=*/false);
 
         DisplayOption result = new DisplayOption(defaultDisplayOption.grid)
                 .add(myDisplayOption);
@@ -345,11 +352,8 @@ public class InvariantDeviceProfile {
         Info displayInfo = DisplayController.INSTANCE.get(context).getInfo();
         @DeviceType int deviceType = getDeviceType(displayInfo);
 
-        ArrayList<DisplayOption> allOptions =
-                getPredefinedDeviceProfiles(context, gridName, deviceType,
-                        RestoreDbTask.isPending(context));
-        DisplayOption displayOption =
-                invDistWeightedInterpolate(displayInfo, allOptions, deviceType);
+        DisplayOption displayOption = getInterpolatedDisplayOption(context, displayInfo,
+                gridName, deviceType, RestoreDbTask.isPending(context));
         initGrid(context, displayInfo, displayOption, deviceType, dbGridInfo);
         return displayOption.grid.name;
     }
@@ -537,35 +541,70 @@ public class InvariantDeviceProfile {
         }
     }
 
-    private static ArrayList<DisplayOption> getPredefinedDeviceProfiles(Context context,
+    /**
+     * Returns the display option for the grid, interpolated for the display. Results are cached
+     * so that configuration changes which do not change the display size (for eg, rotation) do
+     * not parse the profiles or run the interpolation again. A new copy is returned on every call
+     * as callers can modify the result.
+     */
+    private static DisplayOption getInterpolatedDisplayOption(Context context, Info displayInfo,
             String gridName, @DeviceType int deviceType, boolean allowDisabledGrid) {
-        ArrayList<DisplayOption> profiles = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-
-                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
-                    if (gridOption.isEnabled(deviceType) || allowDisabledGrid) {
-                        final int displayDepth = parser.getDepth();
-                        while (((type = parser.next()) != XmlPullParser.END_TAG
-                                || parser.getDepth() > displayDepth)
-                                && type != XmlPullParser.END_DOCUMENT) {
-                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
-                                    parser.getName())) {
-                                profiles.add(new DisplayOption(gridOption, context,
-                                        Xml.asAttributeSet(parser)));
-                            }
-                        }
+        PointF minSize = getMinDisplaySizeDp(displayInfo, deviceType);
+        ParsedProfiles parsedProfiles = getParsedProfiles(context);
+        String key = gridName + "_" + deviceType + "_" + allowDisabledGrid
+                + "_" + minSize.x + "x" + minSize.y;
+        DisplayOption result;
+        synchronized (sProfileCacheLock) {
+            result = parsedProfiles == sParsedProfiles ? sInterpolationCache.get(key) : null;
+        }
+        if (result == null) {
+            result = invDistWeightedInterpolate(minSize.x, minSize.y,
+                    getPredefinedDeviceProfiles(parsedProfiles, gridName, deviceType,
+                            allowDisabledGrid));
+            synchronized (sProfileCacheLock) {
+                if (parsedProfiles == sParsedProfiles) {
+                    if (sInterpolationCache.size() >= MAX_INTERPOLATION_CACHE_SIZE) {
+                        sInterpolationCache.clear();
                     }
+                    sInterpolationCache.put(key, result);
                 }
             }
-        } catch (IOException | XmlPullParserException e) {
-            throw new RuntimeException(e);
+        }
+        return result.copy();
+    }
+
+    /**
+     * Returns the grid and display options defined in device_profiles.xml, parsing them only if
+     * the resource configuration changed since the last parse.
+     */
+    private static ParsedProfiles getParsedProfiles(Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        String configKey = config.densityDpi + "_" + config.smallestScreenWidthDp;
+        synchronized (sProfileCacheLock) {
+            if (sParsedProfiles != null && sParsedProfiles.configKey.equals(configKey)) {
+                return sParsedProfiles;
+            }
+        }
+        ParsedProfiles parsedProfiles = new ParsedProfiles(context, configKey);
+        synchronized (sProfileCacheLock) {
+            sParsedProfiles = parsedProfiles;
+            sInterpolationCache.clear();
+        }
+        return parsedProfiles;
+    }
+
+    private static ArrayList<DisplayOption> getPredefinedDeviceProfiles(
+            ParsedProfiles parsedProfiles, String gridName, @DeviceType int deviceType,
+            boolean allowDisabledGrid) {
+        if (parsedProfiles.parseError != null) {
+            // Interpolating from a partial list would silently pick the wrong grid
+            throw new RuntimeException(parsedProfiles.parseError);
+        }
+        ArrayList<DisplayOption> profiles = new ArrayList<>();
+        for (DisplayOption option : parsedProfiles.displayOptions) {
+            if (option.grid.isEnabled(deviceType) || allowDisabledGrid) {
+                profiles.add(option);
+            }
         }
 
         ArrayList<DisplayOption> filteredProfiles = new ArrayList<>();
@@ -602,26 +641,11 @@ public class InvariantDeviceProfile {
     }
 
     /**
-     * @return all the grid options that can be shown on the device
+     * @return all the grid options that can be shown on the device. If the profiles can not be
+     * parsed entirely, the error is logged and the options parsed before it are returned.
      */
     public static List<GridOption> parseAllDefinedGridOptions(Context context) {
-        List<GridOption> result = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG
-                    || parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-                    result.add(new GridOption(context, Xml.asAttributeSet(parser)));
-                }
-            }
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Error parsing device profile", e);
-            return Collections.emptyList();
-        }
-        return result;
+        return getParsedProfiles(context).gridOptions;
     }
 
     private int getLauncherIconDensity(int requiredSize) {
@@ -680,8 +704,10 @@ public class InvariantDeviceProfile {
         return (float) Math.hypot(x1 - x0, y1 - y0);
     }
 
-    private static DisplayOption invDistWeightedInterpolate(
-            Info displayInfo, ArrayList<DisplayOption> points, @DeviceType int deviceType) {
+    /**
+     * Returns the smallest available size of the display across all the supported bounds, in dp
+     */
+    private static PointF getMinDisplaySizeDp(Info displayInfo, @DeviceType int deviceType) {
         int minWidthPx = Integer.MAX_VALUE;
         int minHeightPx = Integer.MAX_VALUE;
         for (WindowBounds bounds : displayInfo.supportedBounds) {
@@ -701,9 +727,12 @@ public class InvariantDeviceProfile {
             }
         }
 
-        float width = dpiFromPx(minWidthPx, displayInfo.getDensityDpi());
-        float height = dpiFromPx(minHeightPx, displayInfo.getDensityDpi());
+        return new PointF(dpiFromPx(minWidthPx, displayInfo.getDensityDpi()),
+                dpiFromPx(minHeightPx, displayInfo.getDensityDpi()));
+    }
 
+    private static DisplayOption invDistWeightedInterpolate(
+            float width, float height, ArrayList<DisplayOption> points) {
         // Sort the profiles based on the closeness to the device size
         Collections.sort(points, (a, b) ->
                 Float.compare(dist(width, height, a.minWidthDps, a.minHeightDps),
@@ -813,6 +842,56 @@ public class InvariantDeviceProfile {
     }
 
 
+    /**
+     * Grid and display options parsed from device_profiles.xml
+     */
+    private static final class ParsedProfiles {
+
+        final String configKey;
+        final List<GridOption> gridOptions;
+        final List<DisplayOption> displayOptions;
+        // Set if the file could not be parsed entirely, the options above are the ones parsed
+        // before the error
+        @Nullable
+        final Exception parseError;
+
+        ParsedProfiles(Context context, String configKey) {
+            this.configKey = configKey;
+            List<GridOption> grids = new ArrayList<>();
+            List<DisplayOption> options = new ArrayList<>();
+            Exception error = null;
+            try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
+                final int depth = parser.getDepth();
+                int type;
+                while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                        parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+                    if ((type == XmlPullParser.START_TAG)
+                            && GridOption.TAG_NAME.equals(parser.getName())) {
+
+                        GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
+                        grids.add(gridOption);
+                        final int displayDepth = parser.getDepth();
+                        while (((type = parser.next()) != XmlPullParser.END_TAG
+                                || parser.getDepth() > displayDepth)
+                                && type != XmlPullParser.END_DOCUMENT) {
+                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
+                                    parser.getName())) {
+                                options.add(new DisplayOption(gridOption, context,
+                                        Xml.asAttributeSet(parser)));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | XmlPullParserException e) {
+                Log.e(TAG, "Error parsing device profile", e);
+                error = e;
+            }
+            parseError = error;
+            gridOptions = Collections.unmodifiableList(grids);
+            displayOptions = Collections.unmodifiableList(options);
+        }
+    }
+
     public static final class GridOption {
 
         public static final String TAG_NAME = "grid-option";
@@ -1290,6 +1369,13 @@ public class InvariantDeviceProfile {
             }
         }
 
+        /**
+         * Returns a deep copy of the sizes in this option
+         */
+        private DisplayOption copy() {
+            return new DisplayOption(grid).add(this);
+        }
+
         private DisplayOption multiply(float w) {
             for (int i = 0; i < COUNT_SIZES; i++) {
                 iconSizes[i] *= w;
@@ -31,6 +31,8 @@ import static com.android.launcher3.LauncherAnimUtils.HOTSEAT_SCALE_PROPERTY_FAC
 import static com.android.launcher3.LauncherAnimUtils.SCALE_INDEX_WIDGET_TRANSITION;
 import static com.android.launcher3.LauncherAnimUtils.SPRING_LOADED_EXIT_DELAY;
 import static com.android.launcher3.LauncherAnimUtils.WORKSPACE_SCALE_PROPERTY_FACTORY;
+import static com.android.launcher3.LauncherPrefs.BOUND_FOLDER_COUNT;
+import static com.android.launcher3.LauncherPrefs.BOUND_ICON_COUNT;
 import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
 import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
 import static com.android.launcher3.LauncherState.ALL_APPS;
@@ -73,6 +75,7 @@ import static com.android.launcher3.popup.SystemShortcut.WIDGETS;
 import static com.android.launcher3.states.RotationHelper.REQUEST_LOCK;
 import static com.android.launcher3.states.RotationHelper.REQUEST_NONE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 import static com.android.launcher3.util.ItemInfoMatcher.forFolderMatch;
 
 import android.animation.Animator;
@@ -168,6 +171,7 @@ import com.android.launcher3.logger.LauncherAtom.WorkspaceContainer;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
+import com.android.launcher3.logging.PerfMetrics;
 import com.android.launcher3.logging.StartupLatencyLogger;
 import com.android.launcher3.logging.StatsLogManager;
 import com.android.launcher3.model.BgDataModel.Callbacks;
@@ -203,12 +207,14 @@ import com.android.launcher3.util.CannedAnimationCoordinator;
 import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.LockedUserState;
 import com.android.launcher3.util.OnboardingPrefs;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.PendingRequestArgs;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.util.RunnableList;
+import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.util.ScreenOnTracker;
 import com.android.launcher3.util.ScreenOnTracker.ScreenOnListener;
 import com.android.launcher3.util.SystemUiController;
@@ -216,6 +222,7 @@ import com.android.launcher3.util.Themes;
 import com.android.launcher3.util.Thunk;
 import com.android.launcher3.util.TouchController;
 import com.android.launcher3.util.TraceHelper;
+import com.android.launcher3.util.ViewCache;
 import com.android.launcher3.util.ViewOnDrawExecutor;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.ComposeInitializer;
@@ -231,6 +238,7 @@ import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 import com.android.launcher3.widget.WidgetAddFlowHandler;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
@@ -243,8 +251,10 @@ import com.saggitt.omega.NeoLauncher;
 import com.saggitt.omega.util.Config;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -300,6 +310,10 @@ public class Launcher extends StatefulActivity<LauncherState>
     // Type int[]
     private static final String RUNTIME_STATE_CURRENT_SCREEN_IDS = "launcher.current_screen_ids";
 
+    // Upper bounds for views pre-inflated before the first bind
+    private static final int MAX_PREINFLATED_ICONS = 150;
+    private static final int MAX_PREINFLATED_FOLDERS = 12;
+
     // Type PendingSplitSelectInfo<Parcelable>
     protected static final String PENDING_SPLIT_SELECT_INFO = "launcher.pending_split_select_info";
 
@@ -367,6 +381,9 @@ public class Launcher extends StatefulActivity<LauncherState>
 
     @Thunk
     boolean mWorkspaceLoading = true;
+    // Time the current workspace bind started, or 0 when not binding
+    private long mBindStartTime;
+    private final ArrayList<SafeCloseable> mPreInflateHandles = new ArrayList<>();
 
     // Used to notify when an activity launch has been deferred because launcher is not yet resumed
     // TODO: See if we can remove this later
@@ -550,6 +567,7 @@ public class Launcher extends StatefulActivity<LauncherState>
         }
 
         mStartupLatencyLogger.logWorkspaceLoadStartTime();
+        preInflateWorkspaceViews();
         if (!mModel.addCallbacksAndLoad(this)) {
             if (!internalStateHandled) {
                 // If we are not binding synchronously, pause drawing until initial bind complete,
@@ -764,6 +782,11 @@ public class Launcher extends StatefulActivity<LauncherState>
         if (mDeviceProfile == deviceProfile) {
             return false;
         }
+        if (mDeviceProfile != null) {
+            // Icon sizes are only set when a view is created, views cached for the previous
+            // profile can not be used for the upcoming rebind
+            clearWorkspaceViewCache();
+        }
 
         mDeviceProfile = deviceProfile;
         if (isInMultiWindowMode()) {
@@ -1405,9 +1428,8 @@ public class Launcher extends StatefulActivity<LauncherState>
      * @return A View inflated from layoutResId.
      */
     public View createShortcut(@Nullable ViewGroup parent, WorkspaceItemInfo info) {
-        BubbleTextView favorite =
-                (BubbleTextView) LayoutInflater.from(parent != null ? parent.getContext() : this)
-                        .inflate(R.layout.app_icon, parent, false);
+        BubbleTextView favorite = getViewCache().getView(R.layout.app_icon,
+                parent != null ? parent.getContext() : this, parent);
         favorite.applyFromWorkspaceItem(info);
         favorite.setOnClickListener(getItemOnClickListener());
         favorite.setOnFocusChangeListener(mFocusHandler);
@@ -1821,6 +1843,10 @@ public class Launcher extends StatefulActivity<LauncherState>
 
         mModel.removeCallbacks(this);
         mRotationHelper.destroy();
+        mPreInflateHandles.forEach(SafeCloseable::close);
+        mPreInflateHandles.clear();
+        // Drags and page transitions can be interrupted without their end
+        PerfMetrics.cancelFrameTrackers();
 
         try {
             mAppWidgetHolder.stopListening();
@@ -2254,7 +2280,10 @@ public class Launcher extends StatefulActivity<LauncherState>
             SQLiteDatabase.releaseMemory();
 
             // This clears all widget bitmaps from the widget tray
-            // TODO(hyunyoungs)
+            WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.getNoCreate();
+            if (cache != null) {
+                cache.trimMemory();
+            }
         }
     }
 
@@ -2349,6 +2378,7 @@ public class Launcher extends StatefulActivity<LauncherState>
      */
     public void startBinding() {
         TraceHelper.INSTANCE.beginSection("startBinding");
+        mBindStartTime = SystemClock.elapsedRealtime();
         // Floating panels (except the full widget sheet) are associated with individual icons. If
         // we are starting a fresh bind, close all such panels as all the icons are about
         // to go away.
@@ -2359,6 +2389,8 @@ public class Launcher extends StatefulActivity<LauncherState>
         // Clear the workspace because it's going to be rebound
         mDragController.cancelDrag();
 
+        recycleBoundIcons();
+        mWorkspace.getLazyPageBinder().clear();
         mWorkspace.clearDropTargets();
         mWorkspace.removeAllWorkspaceScreens();
         mAppWidgetHolder.clearViews();
@@ -2468,6 +2500,11 @@ public class Launcher extends StatefulActivity<LauncherState>
         mWorkspace.removeExtraEmptyScreen(false);
     }
 
+    @Override
+    public void bindPageItemsLazily(IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen) {
+        mWorkspace.getLazyPageBinder().addPendingItems(itemsByScreen);
+    }
+
     /**
      * Bind the items start-end from the list.
      *
@@ -2891,10 +2928,116 @@ public class Launcher extends StatefulActivity<LauncherState>
         getViewCache().setCacheSize(R.layout.folder_application,
                 mDeviceProfile.inv.numFolderColumns * mDeviceProfile.inv.numFolderRows);
         getViewCache().setCacheSize(R.layout.folder_page, 2);
+        onWorkspaceViewsBound();
 
         TraceHelper.INSTANCE.endSection();
         mWorkspace.removeExtraEmptyScreen(/* stripEmptyScreens= */ true);
         mWorkspace.mPageIndicator.setAreScreensBinding(false);
+        if (mBindStartTime != 0) {
+            PerfMetrics.BIND_WORKSPACE.record(SystemClock.elapsedRealtime() - mBindStartTime);
+            mBindStartTime = 0;
+        }
+    }
+
+    /**
+     * Starts inflating workspace icon and folder views, sized from the number of views bound
+     * last time, so that the upcoming bind does not have to inflate them. Icons are inflated in
+     * the background, folder icons need a looper for their alarms and are inflated on the main
+     * thread when it is idle.
+     */
+    private void preInflateWorkspaceViews() {
+        LauncherPrefs prefs = LauncherPrefs.get(this);
+        int iconCount = Math.min(prefs.get(BOUND_ICON_COUNT), MAX_PREINFLATED_ICONS);
+        int folderCount = Math.min(prefs.get(BOUND_FOLDER_COUNT), MAX_PREINFLATED_FOLDERS);
+        ViewCache cache = getViewCache();
+        mPreInflateHandles.add(cache.preInflate(R.layout.app_icon, this, iconCount));
+        mPreInflateHandles.add(cache.preInflateOnIdle(R.layout.folder_icon, this, folderCount));
+        mPreInflateHandles.add(
+                cache.preInflateOnIdle(R.layout.user_folder_icon_normalized, this, folderCount));
+    }
+
+    /**
+     * Stops any pending pre-inflation and drops the cached workspace views, so that neither the
+     * views cached so far nor the bound ones can be recycled.
+     */
+    private void clearWorkspaceViewCache() {
+        mPreInflateHandles.forEach(SafeCloseable::close);
+        mPreInflateHandles.clear();
+        // Drags and page transitions can be interrupted without their end
+        PerfMetrics.cancelFrameTrackers();
+        ViewCache cache = getViewCache();
+        cache.clearCache(R.layout.app_icon);
+        cache.clearCache(R.layout.folder_icon);
+        cache.clearCache(R.layout.user_folder_icon_normalized);
+    }
+
+    /**
+     * Stops any pending pre-inflation and remembers how many icons and folders were bound for
+     * the next launch.
+     */
+    private void onWorkspaceViewsBound() {
+        mPreInflateHandles.forEach(SafeCloseable::close);
+        mPreInflateHandles.clear();
+        // Drags and page transitions can be interrupted without their end
+        PerfMetrics.cancelFrameTrackers();
+
+        int[] counts = new int[2];
+        mWorkspace.mapOverItems((info, view) -> {
+            if (view instanceof FolderIcon) {
+                counts[1]++;
+            } else if (view instanceof BubbleTextView) {
+                counts[0]++;
+            }
+            return false;
+        });
+        LauncherPrefs prefs = LauncherPrefs.get(this);
+        if (prefs.get(BOUND_ICON_COUNT) != counts[0]) {
+            prefs.put(BOUND_ICON_COUNT, counts[0]);
+        }
+        if (prefs.get(BOUND_FOLDER_COUNT) != counts[1]) {
+            prefs.put(BOUND_FOLDER_COUNT, counts[1]);
+        }
+    }
+
+    /**
+     * Moves the bound workspace and hotseat icons to the view cache before a full rebind, so
+     * that binding can reuse them instead of inflating new ones. Icons created for a previous
+     * device profile are rejected by the cache, see {@link #clearWorkspaceViewCache()}.
+     */
+    private void recycleBoundIcons() {
+        ViewCache cache = getViewCache();
+        cache.ensureCacheSize(R.layout.app_icon, MAX_PREINFLATED_ICONS);
+        for (int i = mWorkspace.getPageCount() - 1; i >= 0; i--) {
+            recycleIcons(cache, ((CellLayout) mWorkspace.getPageAt(i)).getShortcutsAndWidgets());
+        }
+        if (mHotseat != null) {
+            recycleIcons(cache, mHotseat.getShortcutsAndWidgets());
+        }
+    }
+
+    private static void recycleIcons(ViewCache cache, ViewGroup container) {
+        for (int i = container.getChildCount() - 1; i >= 0; i--) {
+            View child = container.getChildAt(i);
+            // Only icons created through the cache in createShortcut can be recycled
+            if (!(child instanceof BubbleTextView)
+                    || child.getTag(R.id.cache_entry_tag_id) == null) {
+                continue;
+            }
+            BubbleTextView icon = (BubbleTextView) child;
+            container.removeViewAt(i);
+            icon.reset();
+            icon.setVisibility(View.VISIBLE);
+            icon.setAlpha(1f);
+            icon.setScaleX(1f);
+            icon.setScaleY(1f);
+            icon.setTranslationX(0f);
+            icon.setTranslationY(0f);
+            icon.setIconVisible(true);
+            icon.setTextVisibility(true);
+            icon.setStayPressed(false);
+            icon.setOnLongClickListener(null);
+            cache.recycleView(R.layout.app_icon, icon);
+        }
     }
 
     private boolean canAnimatePageChange() {
@@ -3078,6 +3221,7 @@ public class Launcher extends StatefulActivity<LauncherState>
 
     @Override
     public void bindWidgetsRestored(ArrayList<LauncherAppWidgetInfo> widgets) {
+        mWorkspace.getLazyPageBinder().updatePendingItems(widgets);
         mWorkspace.widgetsRestored(widgets);
     }
 
@@ -3090,6 +3234,7 @@ public class Launcher extends StatefulActivity<LauncherState>
     @Override
     public void bindWorkspaceItemsChanged(List<WorkspaceItemInfo> updated) {
         if (!updated.isEmpty()) {
+            mWorkspace.getLazyPageBinder().updatePendingItems(updated);
             mWorkspace.updateWorkspaceItems(updated, this);
             PopupContainerWithArrow.dismissInvalidPopup(this);
         }
@@ -3102,6 +3247,7 @@ public class Launcher extends StatefulActivity<LauncherState>
      */
     @Override
     public void bindRestoreItemsChange(HashSet<ItemInfo> updates) {
+        mWorkspace.getLazyPageBinder().updatePendingItems(updates);
         mWorkspace.updateRestoreItems(updates, this);
     }
 
@@ -3114,6 +3260,7 @@ public class Launcher extends StatefulActivity<LauncherState>
      */
     @Override
     public void bindWorkspaceComponentsRemoved(Predicate<ItemInfo> matcher) {
+        mWorkspace.getLazyPageBinder().removeItems(matcher);
         mWorkspace.removeItemsByMatcher(matcher);
         mDragController.onAppsRemoved(matcher);
         PopupContainerWithArrow.dismissInvalidPopup(this);
@@ -3201,6 +3348,18 @@ public class Launcher extends StatefulActivity<LauncherState>
             mLauncherCallbacks.dump(prefix, fd, writer, args);
         }
         mOverlayManager.dump(prefix, writer);
+
+        PerfMetrics.dump(prefix, writer);
+        if (Arrays.asList(args).contains("--export-metrics")) {
+            Context appContext = getApplicationContext();
+            UI_HELPER_EXECUTOR.execute(() -> {
+                try {
+                    PerfMetrics.exportToFile(appContext);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to export metrics", e);
+                }
+            });
+        }
     }
 
     @Override
@@ -29,7 +29,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
-import android.content.pm.LauncherApps;
 import android.os.UserHandle;
 import android.util.Log;
 import android.util.SparseArray;
@@ -47,6 +46,7 @@ import com.android.launcher3.icons.LauncherIcons;
 import com.android.launcher3.notification.NotificationListener;
 import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.InstallSessionTracker;
+import com.android.launcher3.pm.PackageEventHub;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.LockedUserState;
 import com.android.launcher3.util.MainThreadInitializedObject;
@@ -58,6 +58,7 @@ import com.android.launcher3.util.SimpleBroadcastReceiver;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.saggitt.omega.allapps.CustomAppFilter;
+import com.saggitt.omega.flowerpot.Flowerpot;
 import com.saggitt.omega.icons.CustomIconProvider;
 
 public class LauncherAppState implements SafeCloseable {
@@ -108,6 +109,8 @@ public class LauncherAppState implements SafeCloseable {
         this(context, LauncherFiles.APP_ICONS_DB);
         Log.v(Launcher.TAG, "LauncherAppState initiated");
         Preconditions.assertUIThread();
+        // Created on the main thread, so that the loader never waits for it
+        Flowerpot.Manager.getInstance(mContext);
 
         mInvariantDeviceProfile.addOnChangeListener(modelPropertiesChanged -> {
             if (modelPropertiesChanged) {
@@ -115,9 +118,8 @@ public class LauncherAppState implements SafeCloseable {
             }
         });
 
-        mContext.getSystemService(LauncherApps.class).registerCallback(mModel);
-        mOnTerminateCallback.add(() ->
-                mContext.getSystemService(LauncherApps.class).unregisterCallback(mModel));
+        SafeCloseable packageListener = PackageEventHub.INSTANCE.get(mContext).addListener(mModel);
+        mOnTerminateCallback.add(packageListener::close);
 
         SimpleBroadcastReceiver modelChangeReceiver =
                 new SimpleBroadcastReceiver(mModel::onBroadcastIntent);
@@ -63,6 +63,8 @@ import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.InstallSessionTracker;
+import com.android.launcher3.pm.PackageEventHub;
+import com.android.launcher3.pm.PackageEventHub.PackageChange;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutRequest;
@@ -87,7 +89,8 @@ import java.util.function.Supplier;
  * LauncherModel object held in a static. Also provide APIs for updating the database state
  * for the Launcher.
  */
-public class LauncherModel extends LauncherApps.Callback implements InstallSessionTracker.Callback {
+public class LauncherModel extends LauncherApps.Callback
+        implements InstallSessionTracker.Callback, PackageEventHub.Listener {
     private static final boolean DEBUG_RECEIVER = false;
 
     static final String TAG = "Launcher.Model";
@@ -98,6 +101,12 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     private final ModelDbController mModelDbController;
     @NonNull
     private final Object mLock = new Object();
+
+    // Guards the order of enqueued model tasks
+    private final Object mTaskLock = new Object();
+    // Last enqueued task until it starts running, guarded by mTaskLock
+    @Nullable
+    private ModelUpdateTask mLastEnqueuedTask;
     @Nullable
     private LoaderTask mLoaderTask;
     private boolean mIsLoaderTaskRunning;
@@ -184,11 +193,21 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
                 hasVerticalHotseat, verifyChanges, cellPosMapper, owner);
     }
 
+    @Override
+    public void onPackagesChanged(@NonNull final List<PackageChange> changes) {
+        for (PackageChange change : changes) {
+            if (change.op == PackageUpdatedTask.OP_REMOVE) {
+                onPackagesRemoved(change.user, change.packages);
+            } else {
+                enqueuePackageUpdatedTask(change.op, change.user, change.packages);
+            }
+        }
+    }
+
     @Override
     public void onPackageChanged(
             @NonNull final String packageName, @NonNull final UserHandle user) {
-        int op = PackageUpdatedTask.OP_UPDATE;
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packageName));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_UPDATE, user, packageName);
     }
 
     @Override
@@ -199,45 +218,39 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
 
     public void onPackagesRemoved(
             @NonNull final UserHandle user, @NonNull final String... packages) {
-        int op = PackageUpdatedTask.OP_REMOVE;
         FileLog.d(TAG, "package removed received " + TextUtils.join(",", packages));
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packages));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_REMOVE, user, packages);
     }
 
     @Override
     public void onPackageAdded(@NonNull final String packageName, @NonNull final UserHandle user) {
-        int op = PackageUpdatedTask.OP_ADD;
-        enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packageName));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_ADD, user, packageName);
     }
 
     @Override
     public void onPackagesAvailable(@NonNull final String[] packageNames,
             @NonNull final UserHandle user, final boolean replacing) {
-        enqueueModelUpdateTask(
-                new PackageUpdatedTask(PackageUpdatedTask.OP_UPDATE, user, packageNames));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_UPDATE, user, packageNames);
     }
 
     @Override
     public void onPackagesUnavailable(@NonNull final String[] packageNames,
             @NonNull final UserHandle user, final boolean replacing) {
         if (!replacing) {
-            enqueueModelUpdateTask(new PackageUpdatedTask(
-                    PackageUpdatedTask.OP_UNAVAILABLE, user, packageNames));
+            enqueuePackageUpdatedTask(PackageUpdatedTask.OP_UNAVAILABLE, user, packageNames);
         }
     }
 
     @Override
     public void onPackagesSuspended(
             @NonNull final String[] packageNames, @NonNull final UserHandle user) {
-        enqueueModelUpdateTask(new PackageUpdatedTask(
-                PackageUpdatedTask.OP_SUSPEND, user, packageNames));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_SUSPEND, user, packageNames);
     }
 
     @Override
     public void onPackagesUnsuspended(
             @NonNull final String[] packageNames, @NonNull final UserHandle user) {
-        enqueueModelUpdateTask(new PackageUpdatedTask(
-                PackageUpdatedTask.OP_UNSUSPEND, user, packageNames));
+        enqueuePackageUpdatedTask(PackageUpdatedTask.OP_UNSUSPEND, user, packageNames);
     }
 
     @Override
@@ -463,6 +476,14 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
     }
 
+    /**
+     * Returns the version of the last published model snapshot, which changes whenever the
+     * workspace content changes
+     */
+    public int getModelVersion() {
+        return mBgDataModel.getSnapshot().version;
+    }
+
     /**
      * Loads the model if not loaded
      * @param callback called with the data model upon successful load or null on model thread.
@@ -620,7 +641,35 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             return;
         }
         task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
-        MODEL_EXECUTOR.execute(task);
+        synchronized (mTaskLock) {
+            mLastEnqueuedTask = task;
+            MODEL_EXECUTOR.execute(() -> {
+                // Later events must not be merged into a task which already started, the task
+                // might even skip its work if the model is not loaded yet
+                synchronized (mTaskLock) {
+                    if (mLastEnqueuedTask == task) {
+                        mLastEnqueuedTask = null;
+                    }
+                }
+                task.run();
+            });
+        }
+    }
+
+    /**
+     * Enqueues a {@link PackageUpdatedTask}, or adds the packages to the last enqueued task when
+     * it is a pending task for the same operation. Bursts of package events, like many apps
+     * updated by the store, are then handled in a single pass over the model.
+     */
+    private void enqueuePackageUpdatedTask(
+            int op, @NonNull UserHandle user, @NonNull String... packages) {
+        synchronized (mTaskLock) {
+            if (mLastEnqueuedTask instanceof PackageUpdatedTask
+                    && ((PackageUpdatedTask) mLastEnqueuedTask).mergeWith(op, user, packages)) {
+                return;
+            }
+            enqueueModelUpdateTask(new PackageUpdatedTask(op, user, packages));
+        }
     }
 
     /**
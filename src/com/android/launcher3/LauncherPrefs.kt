@@ -298,6 +298,8 @@ class LauncherPrefs(private val encryptedContext: Context) {
             )
         @JvmField val APP_WIDGET_IDS = backedUpItem(RestoreDbTask.APPWIDGET_IDS, "")
         @JvmField val OLD_APP_WIDGET_IDS = backedUpItem(RestoreDbTask.APPWIDGET_OLD_IDS, "")
+        @JvmField val BOUND_ICON_COUNT = nonRestorableItem("bound_icon_count", 0)
+        @JvmField val BOUND_FOLDER_COUNT = nonRestorableItem("bound_folder_count", 0)
         @JvmField
         val GRID_NAME =
             ConstantItem(
@@ -0,0 +1,166 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3;
+
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.IntSparseArrayMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the items of workspace pages which are not bound yet, and binds them once the page is
+ * visible or next to a visible page.
+ *
+ * @see FeatureFlags#ENABLE_LAZY_WORKSPACE_BINDING
+ */
+@UiThread
+public class LazyPageBinder {
+
+    private final Launcher mLauncher;
+    private final Workspace<?> mWorkspace;
+
+    // Screen id to the items of that screen which are not bound yet
+    private final IntSparseArrayMap<ArrayList<ItemInfo>> mPendingItems = new IntSparseArrayMap<>();
+    private final Runnable mBindNearbyPages = this::bindNearbyPages;
+    private boolean mBindScheduled;
+
+    LazyPageBinder(Launcher launcher, Workspace<?> workspace) {
+        mLauncher = launcher;
+        mWorkspace = workspace;
+    }
+
+    /** Adds the items to bind when their page gets close, pages already close are bound now. */
+    public void addPendingItems(IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen) {
+        for (int i = 0; i < itemsByScreen.size(); i++) {
+            int screenId = itemsByScreen.keyAt(i);
+            ArrayList<ItemInfo> items = mPendingItems.get(screenId);
+            if (items == null) {
+                mPendingItems.put(screenId, new ArrayList<>(itemsByScreen.valueAt(i)));
+            } else {
+                items.addAll(itemsByScreen.valueAt(i));
+            }
+        }
+        bindNearbyPages();
+    }
+
+    /** Returns true if the screen still has items to bind, so it must not be stripped. */
+    public boolean hasPendingItems(int screenId) {
+        return mPendingItems.containsKey(screenId);
+    }
+
+    /** Called when the workspace scrolled, pages which got close are bound on the next loop. */
+    public void onVisiblePagesChanged() {
+        if (!mPendingItems.isEmpty() && !mBindScheduled) {
+            mBindScheduled = true;
+            mWorkspace.post(mBindNearbyPages);
+        }
+    }
+
+    private void bindNearbyPages() {
+        mBindScheduled = false;
+        if (mPendingItems.isEmpty()) {
+            return;
+        }
+        int panelCount = mWorkspace.getPanelCount();
+        int[] visiblePages = mWorkspace.getVisibleChildrenRange();
+        int first = Math.min(visiblePages[0], mWorkspace.getNextPage()) - panelCount;
+        int last = Math.max(visiblePages[1], mWorkspace.getNextPage()) + panelCount;
+
+        ArrayList<ItemInfo> itemsToBind = new ArrayList<>();
+        for (int i = mPendingItems.size() - 1; i >= 0; i--) {
+            int pageIndex = mWorkspace.getPageIndexForScreenId(mPendingItems.keyAt(i));
+            // Items of unknown screens are bound right away as before
+            if (pageIndex < 0 || (first <= pageIndex && pageIndex <= last)) {
+                itemsToBind.addAll(mPendingItems.valueAt(i));
+                mPendingItems.removeAt(i);
+            }
+        }
+        if (!itemsToBind.isEmpty()) {
+            mLauncher.bindItems(itemsToBind, false /* forceAnimateIcons */);
+        }
+    }
+
+    /**
+     * Replaces the pending items, including folder contents, which have an update with the same
+     * id, so that their pages bind the latest state. To be called with the items of change binds,
+     * which only reach the views of bound pages.
+     */
+    public void updatePendingItems(Collection<? extends ItemInfo> updates) {
+        if (mPendingItems.isEmpty() || updates.isEmpty()) {
+            return;
+        }
+        IntSparseArrayMap<ItemInfo> updatesById = new IntSparseArrayMap<>();
+        for (ItemInfo update : updates) {
+            updatesById.put(update.id, update);
+        }
+        for (ArrayList<ItemInfo> items : mPendingItems) {
+            for (int i = 0; i < items.size(); i++) {
+                ItemInfo update = updatesById.get(items.get(i).id);
+                if (update != null) {
+                    items.set(i, update);
+                } else if (items.get(i) instanceof FolderInfo) {
+                    ArrayList<WorkspaceItemInfo> contents = ((FolderInfo) items.get(i)).contents;
+                    for (int j = 0; j < contents.size(); j++) {
+                        ItemInfo contentUpdate = updatesById.get(contents.get(j).id);
+                        if (contentUpdate instanceof WorkspaceItemInfo) {
+                            contents.set(j, (WorkspaceItemInfo) contentUpdate);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Drops the pending items matching the given matcher, as they were removed from the model. */
+    public void removeItems(Predicate<ItemInfo> matcher) {
+        for (int i = mPendingItems.size() - 1; i >= 0; i--) {
+            ArrayList<ItemInfo> items = mPendingItems.valueAt(i);
+            items.removeIf(matcher);
+            for (ItemInfo item : items) {
+                if (item instanceof FolderInfo) {
+                    FolderInfo folderInfo = (FolderInfo) item;
+                    List<WorkspaceItemInfo> matches = folderInfo.contents.stream()
+                            .filter(matcher)
+                            .collect(Collectors.toList());
+                    if (!matches.isEmpty()) {
+                        folderInfo.removeAll(matches, false);
+                    }
+                }
+            }
+            if (items.isEmpty()) {
+                mPendingItems.removeAt(i);
+            }
+        }
+    }
+
+    /** Drops all pending items, the workspace is about to be bound again. */
+    public void clear() {
+        mPendingItems.clear();
+        mWorkspace.removeCallbacks(mBindNearbyPages);
+        mBindScheduled = false;
+    }
+}
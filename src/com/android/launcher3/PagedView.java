@@ -152,6 +152,15 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
 
     private int[] mTmpIntPair = new int[2];
 
+    // Preallocated so that releasing a swipe does not allocate
+    private final Runnable mSnapToDestinationRunnable = this::snapToDestination;
+    private final Runnable mSnapToPageWithVelocityRunnable =
+            () -> snapToPageWithVelocity(mSnapToPage, mSnapToPageVelocity);
+    private final Runnable mNotSnappingToPageInFreeScrollRunnable =
+            this::onNotSnappingToPageInFreeScroll;
+    private int mSnapToPage;
+    private int mSnapToPageVelocity;
+
     protected EdgeEffectCompat mEdgeGlowLeft;
     protected EdgeEffectCompat mEdgeGlowRight;
 
@@ -368,12 +377,15 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
      * Executes the callback against each visible page
      */
     public void forEachVisiblePage(Consumer<View> callback) {
-        getVisiblePageIndices().forEach(pageIndex -> {
+        // Same pages as getVisiblePageIndices(), without allocating as it is used during touch
+        int firstPage = getLeftmostVisiblePageForIndex(mCurrentPage);
+        int endPage = Math.min(firstPage + getPanelCount(), getPageCount());
+        for (int pageIndex = firstPage; pageIndex < endPage; pageIndex++) {
             View page = getPageAt(pageIndex);
             if (page != null) {
                 callback.accept(page);
             }
-        });
+        }
     }
 
     /**
@@ -710,8 +722,9 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
     }
 
     protected void onPageScrollsInitialized() {
-        for (Runnable callback : mOnPageScrollsInitializedCallbacks) {
-            callback.run();
+        // Indexed loop, this runs on every touch release and must not allocate an iterator
+        for (int i = 0; i < mOnPageScrollsInitializedCallbacks.size(); i++) {
+            mOnPageScrollsInitializedCallbacks.get(i).run();
         }
         mOnPageScrollsInitializedCallbacks.clear();
     }
@@ -1404,17 +1417,15 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
                             (isFling && !isVelocityLeft)) && mCurrentPage > 0) {
                         finalPage = returnToOriginalPage
                                 ? mCurrentPage : mCurrentPage - getPanelCount();
-                        runOnPageScrollsInitialized(
-                                () -> snapToPageWithVelocity(finalPage, velocity));
+                        snapToPageWithVelocityWhenInitialized(finalPage, velocity);
                     } else if (((isSignificantMove && isDeltaLeft && !isFling) ||
                             (isFling && isVelocityLeft)) &&
                             mCurrentPage < getChildCount() - 1) {
                         finalPage = returnToOriginalPage
                                 ? mCurrentPage : mCurrentPage + getPanelCount();
-                        runOnPageScrollsInitialized(
-                                () -> snapToPageWithVelocity(finalPage, velocity));
+                        snapToPageWithVelocityWhenInitialized(finalPage, velocity);
                     } else {
-                        runOnPageScrollsInitialized(this::snapToDestination);
+                        runOnPageScrollsInitialized(mSnapToDestinationRunnable);
                     }
                 } else {
                     if (!mScroller.isFinished()) {
@@ -1437,7 +1448,7 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
 
                         int finalPos = mScroller.getFinalX();
                         mNextPage = getDestinationPage(finalPos);
-                        runOnPageScrollsInitialized(this::onNotSnappingToPageInFreeScroll);
+                        runOnPageScrollsInitialized(mNotSnappingToPageInFreeScrollRunnable);
                     }
                     invalidate();
                 }
@@ -1451,7 +1462,7 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
 
         case MotionEvent.ACTION_CANCEL:
             if (mIsBeingDragged) {
-                runOnPageScrollsInitialized(this::snapToDestination);
+                runOnPageScrollsInitialized(mSnapToDestinationRunnable);
             }
             mEdgeGlowLeft.onRelease();
             mEdgeGlowRight.onRelease();
@@ -1469,6 +1480,14 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
 
     protected void onNotSnappingToPageInFreeScroll() { }
 
+    private void snapToPageWithVelocityWhenInitialized(int whichPage, int velocity) {
+        // A pending snap is replaced by the latest one, like a new snap replaces a running one
+        mSnapToPage = whichPage;
+        mSnapToPageVelocity = velocity;
+        mOnPageScrollsInitializedCallbacks.remove(mSnapToPageWithVelocityRunnable);
+        runOnPageScrollsInitialized(mSnapToPageWithVelocityRunnable);
+    }
+
     /**
      * Called when the view edges absorb part of the scroll. Subclasses can override this
      * to provide custom behavior during animation.
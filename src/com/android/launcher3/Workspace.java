@@ -90,6 +90,7 @@ import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logging.InstanceId;
+import com.android.launcher3.logging.PerfMetrics;
 import com.android.launcher3.logging.StatsLogManager;
 import com.android.launcher3.logging.StatsLogManager.LauncherEvent;
 import com.android.launcher3.model.data.FolderInfo;
@@ -109,6 +110,7 @@ import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.LauncherBindableItemsContainer;
 import com.android.launcher3.util.OverlayEdgeEffect;
+import com.android.launcher3.util.ScrollStateBus;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.util.Thunk;
@@ -121,6 +123,7 @@ import com.android.launcher3.widget.PendingAddShortcutInfo;
 import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetUpdateScheduler;
 import com.android.launcher3.widget.dragndrop.AppWidgetHostViewDragListener;
 import com.android.launcher3.widget.util.WidgetSizes;
 import com.android.systemui.plugins.shared.LauncherOverlayManager.LauncherOverlay;
@@ -234,6 +237,9 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
     private boolean mWorkspaceFadeInAdjacentScreens;
 
     final WallpaperOffsetInterpolator mWallpaperOffset;
+    private final ScrollStateBus mScrollStateBus;
+    private final WidgetUpdateScheduler mWidgetUpdateScheduler;
+    private final LazyPageBinder mLazyPageBinder;
     private boolean mUnlockWallpaperFromDefaultPageOnLayout;
 
     public static final int REORDER_TIMEOUT = 650;
@@ -315,7 +321,10 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         mStateTransitionAnimation = new WorkspaceStateTransitionAnimation(mLauncher, this);
         mWallpaperManager = WallpaperManager.getInstance(context);
         mAllAppsIconSize = mLauncher.getDeviceProfile().allAppsIconSizePx;
-        mWallpaperOffset = new WallpaperOffsetInterpolator(this);
+        mScrollStateBus = new ScrollStateBus(context, this::syncWallpaperOffsetWithScroll);
+        mWallpaperOffset = new WallpaperOffsetInterpolator(this, mScrollStateBus);
+        mWidgetUpdateScheduler = new WidgetUpdateScheduler(this::isWidgetOnVisiblePage);
+        mLazyPageBinder = new LazyPageBinder(mLauncher, this);
 
         setHapticFeedbackEnabled(false);
         initWorkspace();
@@ -1017,7 +1026,8 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
             CellLayout cl = mWorkspaceScreens.valueAt(i);
             // FIRST_SCREEN_ID can never be removed.
             if ((!FeatureFlags.QSbOnFirstScreen(getContext()) || id > FIRST_SCREEN_ID)
-                    && cl.getShortcutsAndWidgets().getChildCount() == 0) {
+                    && cl.getShortcutsAndWidgets().getChildCount() == 0
+                    && !mLazyPageBinder.hasPendingItems(id)) {
                 removeScreens.add(id);
             }
         }
@@ -1193,11 +1203,15 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
     protected void onPageBeginTransition() {
         super.onPageBeginTransition();
         updateChildrenLayersEnabled();
+        PerfMetrics.FRAMES_WORKSPACE_SCROLL.begin();
     }
 
     protected void onPageEndTransition() {
         super.onPageEndTransition();
         updateChildrenLayersEnabled();
+        PerfMetrics.FRAMES_WORKSPACE_SCROLL.end();
+        mWidgetUpdateScheduler.onVisibilityChanged();
+        mLazyPageBinder.onVisiblePagesChanged();
 
         if (mDragController.isDragging()) {
             if (workspaceInModalState()) {
@@ -1222,8 +1236,10 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         if (overlay == null) {
             newEffect = new EdgeEffectCompat(getContext());
             mOverlayEdgeEffect = null;
+            mScrollStateBus.removeOverlay();
         } else {
-            newEffect = mOverlayEdgeEffect = new OverlayEdgeEffect(getContext(), overlay);
+            newEffect = mOverlayEdgeEffect =
+                    new OverlayEdgeEffect(getContext(), overlay, mScrollStateBus);
             overlay.setOverlayCallbacks(this);
         }
 
@@ -1265,6 +1281,8 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         updatePageAlphaValues();
         updatePageScrollValues();
         enableHwLayersOnVisiblePages();
+        mWidgetUpdateScheduler.onVisibilityChanged();
+        mLazyPageBinder.onVisiblePagesChanged();
     }
 
     public void showPageIndicatorAtCurrentScroll() {
@@ -1362,6 +1380,11 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
     @Override
     public void computeScroll() {
         super.computeScroll();
+        // computeScroll runs on every draw, the wallpaper is synced once per position and frame
+        mScrollStateBus.onWorkspaceScrolled(getScrollX());
+    }
+
+    private void syncWallpaperOffsetWithScroll() {
         mWallpaperOffset.syncWithScroll();
     }
 
@@ -1415,6 +1438,8 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
 
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        mScrollStateBus.cancel();
+        mWidgetUpdateScheduler.clear();
         mWallpaperOffset.setWindowToken(null);
     }
 
@@ -1504,6 +1529,34 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         }
     }
 
+    public LazyPageBinder getLazyPageBinder() {
+        return mLazyPageBinder;
+    }
+
+    public WidgetUpdateScheduler getWidgetUpdateScheduler() {
+        return mWidgetUpdateScheduler;
+    }
+
+    /**
+     * Returns false if the widget is on a workspace page which is scrolled out of view, widgets in
+     * other containers are always considered visible.
+     */
+    private boolean isWidgetOnVisiblePage(LauncherAppWidgetHostView view) {
+        if (!(view.getTag() instanceof ItemInfo)) {
+            return true;
+        }
+        ItemInfo info = (ItemInfo) view.getTag();
+        if (info.container != LauncherSettings.Favorites.CONTAINER_DESKTOP) {
+            return true;
+        }
+        int pageIndex = getPageIndexForScreenId(info.screenId);
+        if (pageIndex < 0) {
+            return true;
+        }
+        int[] visibleScreens = getVisibleChildrenRange();
+        return visibleScreens[0] <= pageIndex && pageIndex <= visibleScreens[1];
+    }
+
     public void onWallpaperTap(MotionEvent ev) {
         final int[] position = mTempXY;
         getLocationOnScreen(position);
@@ -112,6 +112,10 @@ public final class FeatureFlags {
             "load the current workspace screen visible to the user before the rest rather than "
                     + "loading all of them at once.");
 
+    public static final BooleanFlag ENABLE_LAZY_WORKSPACE_BINDING = getDebugFlag(251502424,
+            "ENABLE_LAZY_WORKSPACE_BINDING", DISABLED,
+            "only bind the items of workspace pages when the user scrolls close to them");
+
     public static final BooleanFlag CHANGE_MODEL_DELEGATE_LOADING_ORDER = getDebugFlag(251502424,
             "CHANGE_MODEL_DELEGATE_LOADING_ORDER", DISABLED,
             "changes the timing of the loading and binding of delegate items during "
@@ -32,6 +32,7 @@ import com.android.app.animation.Interpolators;
 import com.android.launcher3.DragSource;
 import com.android.launcher3.DropTarget;
 import com.android.launcher3.logging.InstanceId;
+import com.android.launcher3.logging.PerfMetrics;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.TouchController;
@@ -88,6 +89,8 @@ public abstract class DragController<T extends ActivityContext>
     protected int mDistanceSinceScroll = 0;
 
     protected boolean mIsInPreDrag;
+    // Whether dropped frames are being counted for the current drag
+    private boolean mTrackingDragFrames;
 
     private final int DRAG_VIEW_SCALE_DURATION_MS = 500;
 
@@ -217,6 +220,10 @@ public abstract class DragController<T extends ActivityContext>
         for (DragListener listener : new ArrayList<>(mListeners)) {
             listener.onDragStart(mDragObject, mOptions);
         }
+        if (!mTrackingDragFrames) {
+            mTrackingDragFrames = true;
+            PerfMetrics.FRAMES_DRAG.begin();
+        }
     }
 
     public Optional<InstanceId> getLogInstanceId() {
@@ -326,6 +333,10 @@ public abstract class DragController<T extends ActivityContext>
         }
         mIsInPreDrag = false;
         mOptions = null;
+        if (mTrackingDragFrames) {
+            mTrackingDragFrames = false;
+            PerfMetrics.FRAMES_DRAG.end();
+        }
         for (DragListener listener : new ArrayList<>(mListeners)) {
             listener.onDragEnd();
         }
@@ -615,6 +615,11 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
      */
     @SuppressLint("InflateParams")
     static <T extends Context & ActivityContext> Folder fromXml(T activityContext) {
+        Folder folder = activityContext.getViewCache()
+                .getCachedView(R.layout.user_folder_icon_normalized, activityContext);
+        if (folder != null) {
+            return folder;
+        }
         return (Folder) LayoutInflater.from(activityContext).cloneInContext(activityContext)
                 .inflate(R.layout.user_folder_icon_normalized, null);
     }
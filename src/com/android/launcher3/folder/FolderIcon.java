@@ -216,7 +216,11 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         LayoutInflater inflater = (group != null)
                 ? LayoutInflater.from(group.getContext())
                 : activity.getLayoutInflater();
-        FolderIcon icon = (FolderIcon) inflater.inflate(resId, group, false);
+        // Use a pre-inflated icon if one is available
+        FolderIcon icon = activity.getViewCache().getCachedView(resId, inflater.getContext());
+        if (icon == null) {
+            icon = (FolderIcon) inflater.inflate(resId, group, false);
+        }
 
         icon.setClipToPadding(false);
         icon.mFolderName = icon.findViewById(R.id.folder_icon_name);
@@ -25,6 +25,7 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.LauncherAppState;
@@ -40,10 +41,14 @@ import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.util.ResourceBasedOverride;
+import com.saggitt.omega.flowerpot.Flowerpot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -64,6 +69,21 @@ public class FolderNameProvider implements ResourceBasedOverride {
     public static final int SUGGEST_MAX = 4;
     protected IntSparseArrayMap<FolderInfo> mFolderInfos;
     protected List<AppInfo> mAppInfos;
+    /** Index of {@link #mAppInfos} by package name. */
+    protected Map<String, AppInfo> mAppInfosByPackage = Collections.emptyMap();
+    /**
+     * Version of the Flowerpot categories for which suggestions can be reused, while they are
+     * being rebuilt and suggestions miss the category names.
+     */
+    public static final int CATEGORIES_NOT_READY = -1;
+
+    /**
+     * Package name to Flowerpot category name, loaded on first use. Kept null until Flowerpot
+     * has built it on the main thread.
+     */
+    @Nullable
+    private Map<String, String> mPackageCategories;
+    private int mPackageCategoriesVersion;
 
     /**
      * Retrieve instance of this object that can be overridden in runtime based on the build
@@ -96,6 +116,29 @@ public class FolderNameProvider implements ResourceBasedOverride {
     private void load(List<AppInfo> appInfos, IntSparseArrayMap<FolderInfo> folderInfos) {
         mAppInfos = appInfos;
         mFolderInfos = folderInfos;
+        indexAppInfos();
+    }
+
+    private void indexAppInfos() {
+        Map<String, AppInfo> index = new HashMap<>(mAppInfos.size());
+        for (AppInfo info : mAppInfos) {
+            if (info.componentName != null) {
+                index.putIfAbsent(info.componentName.getPackageName(), info);
+            }
+        }
+        mAppInfosByPackage = index;
+    }
+
+    /**
+     * Returns a key of the folder contents, which changes whenever the suggestions computed for
+     * the folder could change.
+     */
+    public static String getContentsKey(List<WorkspaceItemInfo> contents) {
+        // Order independent, suggestions do not depend on the item rank
+        return contents.stream()
+                .map(info -> info.getTargetComponent() + "#" + info.user)
+                .sorted()
+                .collect(Collectors.joining(","));
     }
 
     /**
@@ -126,6 +169,18 @@ public class FolderNameProvider implements ResourceBasedOverride {
                 .map(ComponentName::getPackageName)
                 .collect(Collectors.toSet());
 
+        Map<String, String> categories =
+                packageNames.size() > 1 ? getPackageCategories(context) : null;
+        if (categories != null) {
+            // If all the packages belong to the same category, suggest the category name
+            Set<String> folderCategories = packageNames.stream()
+                    .map(categories::get)
+                    .collect(Collectors.toSet());
+            if (folderCategories.size() == 1 && !folderCategories.contains(null)) {
+                setAsFirstSuggestion(nameInfos, folderCategories.iterator().next());
+            }
+        }
+
         if (packageNames.size() == 1) {
             Optional<AppInfo> info = getAppInfoByPackageName(packageNames.iterator().next());
             // Place it as first viable suggestion and shift everything else
@@ -149,13 +204,30 @@ public class FolderNameProvider implements ResourceBasedOverride {
     }
 
     private Optional<AppInfo> getAppInfoByPackageName(String packageName) {
-        if (mAppInfos == null || mAppInfos.isEmpty()) {
-            return Optional.empty();
+        return Optional.ofNullable(mAppInfosByPackage.get(packageName));
+    }
+
+    /**
+     * Returns the version of the Flowerpot categories used for suggestions, which changes
+     * whenever the categories do, or {@link #CATEGORIES_NOT_READY}.
+     */
+    @WorkerThread
+    public int getPackageCategoriesVersion(Context context) {
+        return getPackageCategories(context) == null ? CATEGORIES_NOT_READY : mPackageCategoriesVersion;
+    }
+
+    @WorkerThread
+    @Nullable
+    private Map<String, String> getPackageCategories(Context context) {
+        if (mPackageCategories == null) {
+            // The manager is created by LauncherAppState, getting it never waits on the main thread
+            Flowerpot.Manager manager = Flowerpot.Manager.getInstance(context);
+            // Version read first: a mapping rebuilt in between is kept under the older version,
+            // and recomputed on the next load
+            mPackageCategoriesVersion = manager.getPackageCategoriesVersion();
+            mPackageCategories = manager.getPackageCategories();
         }
-        return mAppInfos.stream()
-                .filter(info -> info.componentName != null)
-                .filter(info -> info.componentName.getPackageName().equals(packageName))
-                .findAny();
+        return mPackageCategories;
     }
 
     private void setAsFirstSuggestion(FolderNameInfos nameInfos, CharSequence label) {
@@ -197,6 +269,7 @@ public class FolderNameProvider implements ResourceBasedOverride {
                 @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
             mFolderInfos = dataModel.folders.clone();
             mAppInfos = Arrays.asList(apps.copyData());
+            indexAppInfos();
         }
     }
 
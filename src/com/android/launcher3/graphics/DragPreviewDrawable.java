@@ -0,0 +1,136 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.graphics;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.icons.BitmapRenderer;
+
+/**
+ * Drawable showing a recording of the dragged view.
+ * <p>
+ * Unlike {@link BitmapRenderer#createHardwareBitmap}, the recording is never rasterized into a
+ * bitmap: it is replayed into the display list of the view hosting the drawable, so starting a
+ * drag neither allocates a bitmap nor waits for the render thread to upload it.
+ */
+public class DragPreviewDrawable extends Drawable {
+
+    private final Picture mPicture;
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+
+    private DragPreviewDrawable(Picture picture) {
+        mPicture = picture;
+    }
+
+    /**
+     * Records the renderer into a new drawable of the given size
+     */
+    public static DragPreviewDrawable record(int width, int height, BitmapRenderer renderer) {
+        Picture picture = new Picture();
+        renderer.draw(picture.beginRecording(width, height));
+        picture.endRecording();
+        return new DragPreviewDrawable(picture);
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        int width = mPicture.getWidth();
+        int height = mPicture.getHeight();
+        if (bounds.isEmpty() || width <= 0 || height <= 0) {
+            return;
+        }
+
+        int count = mPaint.getAlpha() < 255 || mPaint.getColorFilter() != null
+                ? canvas.saveLayer(bounds.left, bounds.top, bounds.right, bounds.bottom, mPaint)
+                : canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        if (bounds.width() != width || bounds.height() != height) {
+            canvas.scale((float) bounds.width() / width, (float) bounds.height() / height);
+        }
+        canvas.drawPicture(mPicture);
+        canvas.restoreToCount(count);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mPicture.getWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mPicture.getHeight();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mPaint.getAlpha() != alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mPaint.getAlpha();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        return new PictureState(mPicture);
+    }
+
+    private static class PictureState extends ConstantState {
+
+        private final Picture mPicture;
+
+        PictureState(Picture picture) {
+            mPicture = picture;
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return new DragPreviewDrawable(mPicture);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+}
@@ -31,7 +31,6 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.R;
 import com.android.launcher3.dragndrop.DraggableView;
-import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.views.ActivityContext;
@@ -111,9 +110,8 @@ public class DragPreviewProvider {
             return new InsetDrawable(drawable, xInset / 2, yInset / 2, xInset / 2, yInset / 2);
         }
 
-        return new FastBitmapDrawable(
-                BitmapRenderer.createHardwareBitmap(width + blurSizeOutline,
-                        height + blurSizeOutline, (c) -> drawDragView(c, scale)));
+        return DragPreviewDrawable.record(width + blurSizeOutline, height + blurSizeOutline,
+                (c) -> drawDragView(c, scale));
     }
 
     /**
@@ -485,11 +485,14 @@ public class LauncherPreviewRenderer extends ContextWrapper
         ArrayList<LauncherAppWidgetInfo> currentAppWidgets = new ArrayList<>();
         ArrayList<LauncherAppWidgetInfo> otherAppWidgets = new ArrayList<>();
 
+        // Rendered on the UI thread: read the published snapshot instead of the live model, which
+        // the model thread keeps changing. Lists are copied as filtering sorts them in place.
+        BgDataModel.Snapshot snapshot = dataModel.getSnapshot();
         IntSet currentScreenIds = IntSet.wrap(mWorkspaceScreens.keySet());
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.workspaceItems,
+        filterCurrentWorkspaceItems(currentScreenIds, new ArrayList<>(snapshot.workspaceItems),
                 currentWorkspaceItems, otherWorkspaceItems);
-        filterCurrentWorkspaceItems(currentScreenIds, dataModel.appWidgets, currentAppWidgets,
-                otherAppWidgets);
+        filterCurrentWorkspaceItems(currentScreenIds, new ArrayList<>(snapshot.appWidgets),
+                currentAppWidgets, otherAppWidgets);
         for (ItemInfo itemInfo : currentWorkspaceItems) {
             switch (itemInfo.itemType) {
                 case Favorites.ITEM_TYPE_APPLICATION:
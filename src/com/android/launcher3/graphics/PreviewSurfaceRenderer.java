@@ -26,10 +26,12 @@ import android.app.WallpaperColors;
 import android.appwidget.AppWidgetProviderInfo;
 import android.content.Context;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.hardware.display.DisplayManager;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.Size;
 import android.util.SparseArray;
 import android.view.ContextThemeWrapper;
@@ -39,6 +41,7 @@ import android.view.SurfaceControlViewHost.SurfacePackage;
 import android.view.View;
 import android.view.WindowManager.LayoutParams;
 import android.view.animation.AccelerateDecelerateInterpolator;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -52,6 +55,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.graphics.LauncherPreviewRenderer.PreviewContext;
+import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.model.BgDataModel;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.GridSizeMigrationUtil;
@@ -63,9 +67,11 @@ import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.widget.LocalColorExtractor;
+import com.saggitt.omega.preferences.NeoPrefs;
 
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 /** Render preview using surface view. */
@@ -82,6 +88,21 @@ public class PreviewSurfaceRenderer {
     private static final String KEY_DISPLAY_ID = "display_id";
     private static final String KEY_COLORS = "wallpaper_colors";
 
+    // Enough for a few full screen previews, so that flipping between grid options is instant
+    private static final int PREVIEW_CACHE_SIZE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Rendered previews keyed by grid, surface, wallpaper colors and model version. Since the
+     * model version changes with the workspace content, stale entries are never hit.
+     */
+    private static final LruCache<String, Bitmap> sPreviewCache =
+            new LruCache<String, Bitmap>(PREVIEW_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+
     private Context mContext;
     private final IBinder mHostToken;
     private final int mWidth;
@@ -96,7 +117,9 @@ public class PreviewSurfaceRenderer {
 
     private boolean mDestroyed = false;
     private LauncherPreviewRenderer mRenderer;
-    private boolean mHideQsb;
+    private volatile boolean mHideQsb;
+    private volatile String mCacheKey;
+    private boolean mShowingCachedPreview;
 
     public PreviewSurfaceRenderer(Context context, Bundle bundle) throws Exception {
         mContext = context;
@@ -182,7 +205,17 @@ public class PreviewSurfaceRenderer {
      * Generates the preview in background
      */
     public void loadAsync() {
-        MODEL_EXECUTOR.execute(this::loadModelData);
+        MODEL_EXECUTOR.execute(() -> {
+            // Computed on the model thread so that pending model changes are accounted for
+            String cacheKey = getCacheKey();
+            mCacheKey = cacheKey;
+            Bitmap cached = sPreviewCache.get(cacheKey);
+            if (cached != null) {
+                MAIN_EXECUTOR.execute(() -> showCachedPreview(cached));
+            } else {
+                loadModelData();
+            }
+        });
     }
 
     /**
@@ -193,7 +226,36 @@ public class PreviewSurfaceRenderer {
     public void hideBottomRow(boolean hide) {
         if (mRenderer != null) {
             mRenderer.hideBottomRow(hide);
+        } else if (mHideQsb != hide) {
+            mHideQsb = hide;
+            if (mShowingCachedPreview) {
+                // Cached previews cannot be updated, load the preview for the new state
+                loadAsync();
+            }
+        }
+    }
+
+    @WorkerThread
+    private String getCacheKey() {
+        // The Neo grid and icon size overrides are applied on top of the grid option
+        NeoPrefs prefs = Utilities.getNeoPrefs(mContext);
+        return mGridName + "_" + mHideQsb + "_" + mWidth + "x" + mHeight
+                + "_" + prefs.getDesktopGridColumns().getValue()
+                + "x" + prefs.getDesktopGridRows().getValue()
+                + "_" + prefs.getDesktopIconScale().getValue()
+                + "_" + mDisplay.getDisplayId() + "_" + Objects.hashCode(mWallpaperColors)
+                + "_" + LauncherAppState.getInstance(mContext).getModel().getModelVersion();
+    }
+
+    @UiThread
+    private void showCachedPreview(Bitmap preview) {
+        if (mDestroyed) {
+            return;
         }
+        mShowingCachedPreview = true;
+        ImageView view = new ImageView(mContext);
+        view.setImageBitmap(preview);
+        mSurfaceControlViewHost.setView(view, mWidth, mHeight);
     }
 
     /***
@@ -298,11 +360,26 @@ public class PreviewSurfaceRenderer {
         view.setPivotY(0);
         view.setTranslationX((mWidth - scale * view.getWidth()) / 2);
         view.setTranslationY((mHeight - scale * view.getHeight()) / 2);
+        cachePreview(view, scale);
         view.setAlpha(0);
         view.animate().alpha(1)
                 .setInterpolator(new AccelerateDecelerateInterpolator())
                 .setDuration(FADE_IN_ANIMATION_DURATION)
                 .start();
+        mShowingCachedPreview = false;
         mSurfaceControlViewHost.setView(view, view.getMeasuredWidth(), view.getMeasuredHeight());
     }
+
+    @UiThread
+    private void cachePreview(View view, float scale) {
+        String cacheKey = mCacheKey;
+        if (cacheKey == null || mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        sPreviewCache.put(cacheKey, BitmapRenderer.createHardwareBitmap(mWidth, mHeight, c -> {
+            c.translate(view.getTranslationX(), view.getTranslationY());
+            c.scale(scale, scale);
+            view.draw(c);
+        }));
+    }
 }
@@ -55,6 +55,7 @@ import com.android.launcher3.icons.ComponentWithLabel.ComponentCachingLogic;
 import com.android.launcher3.icons.cache.BaseIconCache;
 import com.android.launcher3.icons.cache.CachingLogic;
 import com.android.launcher3.icons.cache.HandlerRunnable;
+import com.android.launcher3.logging.PerfMetrics;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.IconRequestInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
@@ -140,6 +141,21 @@ public class IconCache extends BaseIconCache {
         return LauncherIcons.obtain(mContext);
     }
 
+    @Override
+    protected void onCacheLookup(int source) {
+        switch (source) {
+            case LOOKUP_MEMORY:
+                PerfMetrics.ICON_CACHE_MEMORY_HIT.increment();
+                break;
+            case LOOKUP_DB:
+                PerfMetrics.ICON_CACHE_DB_HIT.increment();
+                break;
+            default:
+                PerfMetrics.ICON_CACHE_MISS.increment();
+                break;
+        }
+    }
+
     /**
      * Updates the entries related to the given package in memory and persistent DB.
      */
@@ -4,22 +4,34 @@ import static com.android.launcher3.util.Executors.createAndStartNewLooper;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.util.IOUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +39,11 @@ import java.util.concurrent.TimeUnit;
  * Wrapper around {@link Log} to allow writing to a file.
  * This class can safely be called from main thread.
  *
+ * Lines are stored as binary records (timestamp, tag id, message) in a preallocated buffer and
+ * appended to the file in batches. They are only formatted when the logs are dumped. When the
+ * buffer is full, background threads wait for it to be written, while lines logged from the main
+ * thread are dropped and replaced by a "log lines dropped" record.
+ *
  * Note: This should only be used for logging errors which have a persistent effect on user's data,
  * but whose effect may not be visible immediately.
  */
@@ -39,9 +56,40 @@ public final class FileLog {
 
     private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
 
+    // Lines are staged in one of two preallocated buffers while the other one is being written
+    private static final int BUFFER_SIZE = 64 << 10;  // 64 kb
+    // Buffered lines are written after this delay, or right away once a buffer is half full
+    private static final long WRITE_DELAY = 1000;
+    // Max time a background thread waits for the writer when both buffers are full. The main
+    // thread never waits, its lines are dropped and counted instead.
+    private static final long FULL_BUFFER_WAIT = 200;
+
+    private static final int FILE_MAGIC = 0x464c4f47;  // FLOG
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    // Binary record types, each record starts with its type byte
+    private static final byte RECORD_TAG = 1;  // id, length, chars
+    private static final byte RECORD_LOG = 2;  // time, tag id, length, chars
+    private static final byte RECORD_DROPPED = 3;  // time, count
+    private static final int TAG_RECORD_HEADER = 9;
+    private static final int LOG_RECORD_HEADER = 17;
+    private static final int DROPPED_RECORD_SIZE = 13;
+    private static final int MAX_RECORD_CHARS = (BUFFER_SIZE / 2 - LOG_RECORD_HEADER) / 2;
+
     private static Handler sHandler = null;
     private static File sLogsDirectory = null;
 
+    private static final Object sBufferLock = new Object();
+    // All below are guarded by sBufferLock
+    private static ByteBuffer sActiveBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private static ByteBuffer sSpareBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private static final HashMap<String, Integer> sTagIds = new HashMap<>();
+    private static final ArrayList<String> sTags = new ArrayList<>();
+    private static int sDroppedCount;
+    private static boolean sWriteScheduled;
+    private static boolean sWriteNow;
+
     public static final int LOG_DAYS = 4;
 
     public static void setDir(File logsDir) {
@@ -51,6 +99,11 @@ public final class FileLog {
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
                     sHandler = null;
+                    synchronized (sBufferLock) {
+                        // Pending write messages died with the thread
+                        sWriteScheduled = false;
+                        sWriteNow = false;
+                    }
                 }
             }
         }
@@ -105,11 +158,99 @@ public final class FileLog {
         if (!ENABLED) {
             return;
         }
-        String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
-        if (e != null) {
-            out += "\n" + Log.getStackTraceString(e);
+        tag = String.valueOf(tag);
+        msg = String.valueOf(msg);
+        String trace = e == null ? null : Log.getStackTraceString(e);
+        long time = System.currentTimeMillis();
+        // Outside of sBufferLock, getHandler locks on DATE_FORMAT which is held by setDir
+        Handler handler = getHandler();
+        boolean scheduleWrite;
+        boolean writeNow;
+        synchronized (sBufferLock) {
+            if (!putRecordLocked(time, tag, msg, trace)
+                    && !(canWaitForWriter(handler) && waitForWriterLocked(handler)
+                            && putRecordLocked(time, tag, msg, trace))) {
+                sDroppedCount++;
+            }
+            // Write in batches, the writer thread is only woken up once per batch
+            scheduleWrite = !sWriteScheduled;
+            writeNow = !sWriteNow && sActiveBuffer.position() > BUFFER_SIZE / 2;
+            sWriteScheduled = true;
+            sWriteNow |= writeNow;
+        }
+        if (writeNow) {
+            handler.sendEmptyMessage(LogWriterCallback.MSG_WRITE);
+        } else if (scheduleWrite) {
+            handler.sendEmptyMessageDelayed(LogWriterCallback.MSG_WRITE, WRITE_DELAY);
+        }
+    }
+
+    private static boolean canWaitForWriter(Handler handler) {
+        Looper looper = Looper.myLooper();
+        return looper != Looper.getMainLooper() && looper != handler.getLooper();
+    }
+
+    /**
+     * Asks the writer to swap the buffers right away and waits until it did. Returns false if
+     * the buffers were not swapped in time.
+     */
+    private static boolean waitForWriterLocked(Handler handler) {
+        ByteBuffer fullBuffer = sActiveBuffer;
+        if (!sWriteNow) {
+            sWriteNow = true;
+            sWriteScheduled = true;
+            handler.sendEmptyMessage(LogWriterCallback.MSG_WRITE);
+        }
+        long deadline = SystemClock.uptimeMillis() + FULL_BUFFER_WAIT;
+        try {
+            long wait;
+            while (sActiveBuffer == fullBuffer
+                    && (wait = deadline - SystemClock.uptimeMillis()) > 0) {
+                sBufferLock.wait(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
+        return sActiveBuffer != fullBuffer;
+    }
+
+    /**
+     * Appends a log record, preceded by a tag record if the tag was not seen before, to the active
+     * buffer without any allocation. Returns false if the buffer is full.
+     */
+    private static boolean putRecordLocked(long time, String tag, String msg, String trace) {
+        ByteBuffer buffer = sActiveBuffer;
+        int tagId = sTagIds.getOrDefault(tag, -1);
+        int tagRecordSize = tagId < 0 ? TAG_RECORD_HEADER + tag.length() * 2 : 0;
+
+        int msgLength = msg.length() + (trace == null ? 0 : trace.length() + 1);
+        msgLength = Math.min(msgLength, MAX_RECORD_CHARS);
+        if (buffer.remaining() < tagRecordSize + LOG_RECORD_HEADER + msgLength * 2) {
+            return false;
+        }
+
+        if (tagId < 0) {
+            tagId = sTags.size();
+            sTags.add(tag);
+            sTagIds.put(tag, tagId);
+            buffer.put(RECORD_TAG).putInt(tagId).putInt(tag.length());
+            putChars(buffer, tag, tag.length());
+        }
+        buffer.put(RECORD_LOG).putLong(time).putInt(tagId).putInt(msgLength);
+        int remaining = msgLength - putChars(buffer, msg, msgLength);
+        if (trace != null && remaining > 0) {
+            buffer.putChar('\n');
+            putChars(buffer, trace, remaining - 1);
+        }
+        return true;
+    }
+
+    private static int putChars(ByteBuffer buffer, String str, int maxLength) {
+        int length = Math.min(str.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(str.charAt(i));
+        }
+        return length;
     }
 
     @VisibleForTesting
@@ -140,8 +281,8 @@ public final class FileLog {
     }
 
     /**
-     * Writes logs to the file.
-     * Log files are named log-0 for even days of the year and log-1 for odd days of the year.
+     * Writes the buffered records to the file.
+     * Log files are named log-0 to log-3 based on the day of the year.
      * Logs older than 36 hours are purged.
      */
     private static class LogWriterCallback implements Handler.Callback {
@@ -152,12 +293,14 @@ public final class FileLog {
         private static final int MSG_CLOSE = 2;
         private static final int MSG_FLUSH = 3;
 
+        private final ByteBuffer mScratch = ByteBuffer.allocate(DROPPED_RECORD_SIZE);
+
         private String mCurrentFileName = null;
-        private PrintWriter mCurrentWriter = null;
+        private FileChannel mCurrentChannel = null;
 
         private void closeWriter() {
-            IOUtils.closeSilently(mCurrentWriter);
-            mCurrentWriter = null;
+            IOUtils.closeSilently(mCurrentChannel);
+            mCurrentChannel = null;
         }
 
         @Override
@@ -167,44 +310,7 @@ public final class FileLog {
             }
             switch (msg.what) {
                 case MSG_WRITE: {
-                    Calendar cal = Calendar.getInstance();
-                    // suffix with 0 or 1 based on the day of the year.
-                    String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
-
-                    if (!fileName.equals(mCurrentFileName)) {
-                        closeWriter();
-                    }
-
-                    try {
-                        if (mCurrentWriter == null) {
-                            mCurrentFileName = fileName;
-
-                            boolean append = false;
-                            File logFile = new File(sLogsDirectory, fileName);
-                            if (logFile.exists()) {
-                                Calendar modifiedTime = Calendar.getInstance();
-                                modifiedTime.setTimeInMillis(logFile.lastModified());
-
-                                // If the file was modified more that 36 hours ago, purge the file.
-                                // We use instead of 24 to account for day-365 followed by day-1
-                                modifiedTime.add(Calendar.HOUR, 36);
-                                append = cal.before(modifiedTime)
-                                        && logFile.length() < MAX_LOG_FILE_SIZE;
-                            }
-                            mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
-                        }
-
-                        mCurrentWriter.println((String) msg.obj);
-                        mCurrentWriter.flush();
-
-                        // Auto close file stream after some time.
-                        sHandler.removeMessages(MSG_CLOSE);
-                        sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
-                    } catch (Exception e) {
-                        Log.e("FileLog", "Error writing logs to file", e);
-                        // Close stream, will try reopening during next log
-                        closeWriter();
-                    }
+                    writeBufferedRecords();
                     return true;
                 }
                 case MSG_CLOSE: {
@@ -212,6 +318,7 @@ public final class FileLog {
                     return true;
                 }
                 case MSG_FLUSH: {
+                    writeBufferedRecords();
                     closeWriter();
                     Pair<PrintWriter, CountDownLatch> p =
                             (Pair<PrintWriter, CountDownLatch>) msg.obj;
@@ -227,26 +334,205 @@ public final class FileLog {
             }
             return true;
         }
-    }
 
-    private static void dumpFile(PrintWriter out, String fileName) {
-        File logFile = new File(sLogsDirectory, fileName);
-        if (logFile.exists()) {
+        /**
+         * Swaps the record buffers so that logging can continue into the spare one, and appends
+         * the filled buffer to the current file in a single write.
+         */
+        private void writeBufferedRecords() {
+            ByteBuffer records;
+            int dropped;
+            synchronized (sBufferLock) {
+                records = sActiveBuffer;
+                sActiveBuffer = sSpareBuffer;
+                sSpareBuffer = null;
+                dropped = sDroppedCount;
+                sDroppedCount = 0;
+                sWriteScheduled = false;
+                sWriteNow = false;
+                // Wake up the threads waiting for an empty buffer
+                sBufferLock.notifyAll();
+            }
 
-            BufferedReader in = null;
             try {
-                in = new BufferedReader(new FileReader(logFile));
-                out.println();
-                out.println("--- logfile: " + fileName + " ---");
-                String line;
-                while ((line = in.readLine()) != null) {
-                    out.println(line);
+                if (records.position() == 0 && dropped == 0) {
+                    return;
+                }
+                FileChannel channel = openChannel();
+                records.flip();
+                writeFully(channel, records);
+                if (dropped > 0) {
+                    mScratch.clear();
+                    mScratch.put(RECORD_DROPPED).putLong(System.currentTimeMillis())
+                            .putInt(dropped);
+                    mScratch.flip();
+                    writeFully(channel, mScratch);
                 }
+
+                // Auto close file stream after some time.
+                sHandler.removeMessages(MSG_CLOSE);
+                sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
             } catch (Exception e) {
-                // ignore
+                Log.e("FileLog", "Error writing logs to file", e);
+                // Close stream, will try reopening during next log
+                closeWriter();
             } finally {
-                IOUtils.closeSilently(in);
+                records.clear();
+                synchronized (sBufferLock) {
+                    sSpareBuffer = records;
+                }
+            }
+        }
+
+        private FileChannel openChannel() throws IOException {
+            Calendar cal = Calendar.getInstance();
+            // suffix based on the day of the year.
+            String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
+
+            if (!fileName.equals(mCurrentFileName)) {
+                closeWriter();
+            }
+            if (mCurrentChannel != null) {
+                return mCurrentChannel;
+            }
+            mCurrentFileName = fileName;
+
+            boolean append = false;
+            File logFile = new File(sLogsDirectory, fileName);
+            if (logFile.exists()) {
+                Calendar modifiedTime = Calendar.getInstance();
+                modifiedTime.setTimeInMillis(logFile.lastModified());
+
+                // If the file was modified more that 36 hours ago, purge the file.
+                // We use instead of 24 to account for day-365 followed by day-1
+                modifiedTime.add(Calendar.HOUR, 36);
+                append = cal.before(modifiedTime)
+                        && logFile.length() < MAX_LOG_FILE_SIZE
+                        && hasBinaryHeader(logFile);
+            }
+            mCurrentChannel = new FileOutputStream(logFile, append).getChannel();
+
+            // Every session starts with the full tag table so that the file can be decoded
+            // on its own, even if ids were assigned differently by an earlier process.
+            ByteBuffer header;
+            synchronized (sBufferLock) {
+                int size = FILE_HEADER_SIZE;
+                for (String tag : sTags) {
+                    size += TAG_RECORD_HEADER + tag.length() * 2;
+                }
+                header = ByteBuffer.allocate(size);
+                if (!append) {
+                    header.putInt(FILE_MAGIC).putInt(FILE_VERSION);
+                }
+                for (int i = 0; i < sTags.size(); i++) {
+                    String tag = sTags.get(i);
+                    header.put(RECORD_TAG).putInt(i).putInt(tag.length());
+                    putChars(header, tag, tag.length());
+                }
+            }
+            header.flip();
+            writeFully(mCurrentChannel, header);
+            return mCurrentChannel;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer)
+                throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static boolean hasBinaryHeader(File logFile) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            return in.readInt() == FILE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes and prints the records of the file. Formatting only happens here, logging itself
+     * only stores the raw timestamp, tag id and message.
+     */
+    private static void dumpFile(PrintWriter out, String fileName) {
+        File logFile = new File(sLogsDirectory, fileName);
+        if (!logFile.exists()) {
+            return;
+        }
+        out.println();
+        out.println("--- logfile: " + fileName + " ---");
+        if (!hasBinaryHeader(logFile)) {
+            dumpTextFile(out, logFile);
+            return;
+        }
+
+        SparseArray<String> tags = new SparseArray<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(logFile)))) {
+            // Skip magic and version
+            in.readInt();
+            in.readInt();
+            int type;
+            while ((type = in.read()) != -1) {
+                switch (type) {
+                    case RECORD_TAG: {
+                        int id = in.readInt();
+                        tags.put(id, readChars(in));
+                        break;
+                    }
+                    case RECORD_LOG: {
+                        Date date = new Date(in.readLong());
+                        String tag = tags.get(in.readInt());
+                        out.println(String.format("%s %s %s",
+                                DATE_FORMAT.format(date), tag, readChars(in)));
+                        break;
+                    }
+                    case RECORD_DROPPED: {
+                        Date date = new Date(in.readLong());
+                        out.println(String.format("%s FileLog %d log lines dropped",
+                                DATE_FORMAT.format(date), in.readInt()));
+                        break;
+                    }
+                    default:
+                        out.println("Unknown record type " + type);
+                        return;
+                }
+            }
+        } catch (EOFException e) {
+            // Last record was not fully written, ignore
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private static String readChars(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        // available() is the rest of the file, a larger length comes from a corrupt or partly
+        // written record and must not be allocated
+        if (length < 0 || (long) length * 2 > in.available()) {
+            throw new EOFException("Record of " + length + " chars past the end of the file");
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    /** Dumps a log file written by an older version in plain text. */
+    private static void dumpTextFile(PrintWriter out, File logFile) {
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new FileReader(logFile));
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(line);
             }
+        } catch (Exception e) {
+            // ignore
+        } finally {
+            IOUtils.closeSilently(in);
         }
     }
 
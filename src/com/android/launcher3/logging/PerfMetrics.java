@@ -0,0 +1,405 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.logging;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process performance metrics for the launcher: loader and bind durations, icon cache hit
+ * rates, search latency, blur timings and dropped frames during drag and scroll.
+ * <p>
+ * Metrics are registered once by name and then updated lock-free. Recording a value never
+ * allocates, so it is safe to call from hot paths. Percentiles are estimated from fixed
+ * power-of-two buckets when dumping.
+ * <p>
+ * $ adb shell dumpsys activity com.android.launcher3.Launcher [--export-metrics]
+ */
+public final class PerfMetrics {
+
+    private static final String TAG = "PerfMetrics";
+
+    private static final String EXPORT_FILE_NAME = "perf_metrics.txt";
+
+    private static final ConcurrentSkipListMap<String, Metric> sMetrics =
+            new ConcurrentSkipListMap<>();
+
+    public static final Histogram LOADER_TOTAL = histogram("loader.total");
+    public static final Histogram BIND_WORKSPACE = histogram("bind.workspace");
+    public static final Counter ICON_CACHE_MEMORY_HIT = counter("iconcache.hit.memory");
+    public static final Counter ICON_CACHE_DB_HIT = counter("iconcache.hit.db");
+    public static final Counter ICON_CACHE_MISS = counter("iconcache.miss");
+    public static final Histogram SEARCH_APPS = histogram("search.apps");
+    public static final Histogram BLUR_WALLPAPER = histogram("blur.wallpaper");
+    public static final FrameTracker FRAMES_DRAG = frameTracker("frames.drag");
+    public static final FrameTracker FRAMES_WORKSPACE_SCROLL =
+            frameTracker("frames.workspace_scroll");
+
+    private PerfMetrics() { }
+
+    /** Returns the histogram registered with the name, creating it if needed. */
+    @NonNull
+    public static Histogram histogram(@NonNull String name) {
+        Metric metric = sMetrics.get(name);
+        return metric instanceof Histogram
+                ? (Histogram) metric : register(name, new Histogram(name));
+    }
+
+    /** Returns the counter registered with the name, creating it if needed. */
+    @NonNull
+    public static Counter counter(@NonNull String name) {
+        Metric metric = sMetrics.get(name);
+        return metric instanceof Counter
+                ? (Counter) metric : register(name, new Counter(name));
+    }
+
+    /** Returns the frame tracker registered with the name, creating it if needed. */
+    @NonNull
+    public static FrameTracker frameTracker(@NonNull String name) {
+        Metric metric = sMetrics.get(name);
+        return metric instanceof FrameTracker
+                ? (FrameTracker) metric : register(name, new FrameTracker(name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Metric> T register(String name, T metric) {
+        Metric existing = sMetrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (existing.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as "
+                    + existing.getClass().getSimpleName());
+        }
+        return (T) existing;
+    }
+
+    /**
+     * Stops all the frame trackers, for sessions whose end was missed, e.g. when the activity is
+     * destroyed during a drag.
+     */
+    @MainThread
+    public static void cancelFrameTrackers() {
+        for (Metric metric : sMetrics.values()) {
+            if (metric instanceof FrameTracker) {
+                ((FrameTracker) metric).cancel();
+            }
+        }
+    }
+
+    /** Clears the values of all registered metrics. */
+    public static void reset() {
+        for (Metric metric : sMetrics.values()) {
+            metric.reset();
+        }
+    }
+
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "PerfMetrics:");
+        for (Metric metric : sMetrics.values()) {
+            writer.print(prefix + "\t");
+            metric.dump(writer);
+            writer.println();
+        }
+    }
+
+    /**
+     * Writes the current metrics to a file in the app cache directory, replacing any previous
+     * export, and returns the file.
+     */
+    @WorkerThread
+    public static File exportToFile(Context context) throws IOException {
+        File file = new File(context.getCacheDir(), EXPORT_FILE_NAME);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, false))) {
+            writer.println("time=" + System.currentTimeMillis());
+            dump("", writer);
+        }
+        Log.d(TAG, "Exported metrics to " + file);
+        return file;
+    }
+
+    /** Base class for a named metric. */
+    public abstract static class Metric {
+
+        public final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        abstract void reset();
+
+        abstract void dump(PrintWriter writer);
+    }
+
+    /** Monotonic counter. */
+    public static final class Counter extends Metric {
+
+        private final AtomicLong mValue = new AtomicLong();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        public void increment() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            mValue.addAndGet(delta);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+
+        @Override
+        void reset() {
+            mValue.set(0);
+        }
+
+        @Override
+        void dump(PrintWriter writer) {
+            writer.print(name);
+            writer.print(": ");
+            writer.print(mValue.get());
+        }
+    }
+
+    /**
+     * Histogram of millisecond durations. Bucket 0 holds zero, and bucket i holds values in
+     * [2^(i-1), 2^i). The last bucket is open ended.
+     */
+    public static final class Histogram extends Metric {
+
+        @VisibleForTesting
+        static final int BUCKET_COUNT = 18;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        @VisibleForTesting
+        Histogram(String name) {
+            super(name);
+        }
+
+        /** Records a duration in milliseconds. Negative values are ignored. */
+        public void record(long valueMs) {
+            if (valueMs < 0) {
+                return;
+            }
+            mBuckets.incrementAndGet(bucketIndex(valueMs));
+            mCount.incrementAndGet();
+            mSum.addAndGet(valueMs);
+            long max;
+            while (valueMs > (max = mMax.get()) && !mMax.compareAndSet(max, valueMs)) { }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public long getMean() {
+            long count = mCount.get();
+            return count == 0 ? 0 : mSum.get() / count;
+        }
+
+        /**
+         * Returns an upper bound estimate for the given percentile, in (0, 1], using the bucket
+         * boundaries. The result is never more than the recorded maximum.
+         */
+        public long getPercentile(float fraction) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+            long max = mMax.get();
+            long target = Math.max(1, (long) Math.ceil(count * fraction));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @VisibleForTesting
+        static int bucketIndex(long valueMs) {
+            return Math.min(Long.SIZE - Long.numberOfLeadingZeros(valueMs), BUCKET_COUNT - 1);
+        }
+
+        private static long bucketUpperBound(int index) {
+            return index == 0 ? 0 : (1L << index) - 1;
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        @Override
+        void dump(PrintWriter writer) {
+            writer.print(name);
+            writer.print(": count=");
+            writer.print(getCount());
+            writer.print(" mean=");
+            writer.print(getMean());
+            writer.print("ms p50<=");
+            writer.print(getPercentile(0.5f));
+            writer.print("ms p90<=");
+            writer.print(getPercentile(0.9f));
+            writer.print("ms p99<=");
+            writer.print(getPercentile(0.99f));
+            writer.print("ms max=");
+            writer.print(getMax());
+            writer.print("ms");
+        }
+    }
+
+    /**
+     * Counts frames and dropped frames between {@link #begin()} and {@link #end()} using
+     * Choreographer callbacks. Nested begin calls are reference counted. The frame interval is
+     * learnt from the shortest observed frame so that high refresh rate displays are handled.
+     * A session which was not ended after {@link #MAX_SESSION_NANOS} is stopped, so that a
+     * missed end call never keeps requesting frames.
+     */
+    public static final class FrameTracker extends Metric implements Choreographer.FrameCallback {
+
+        private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667;
+        // Ignore anything faster than 240Hz as vsync jitter
+        private static final long MIN_FRAME_INTERVAL_NANOS = 4_000_000;
+        // Longer than any drag or scroll
+        private static final long MAX_SESSION_NANOS = 60_000_000_000L;
+
+        private final AtomicLong mSessions = new AtomicLong();
+        private final AtomicLong mFrames = new AtomicLong();
+        private final AtomicLong mDroppedFrames = new AtomicLong();
+
+        private Choreographer mChoreographer;
+        private int mActiveCount;
+        private long mLastFrameNanos;
+        private long mSessionStartNanos;
+        private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+        FrameTracker(String name) {
+            super(name);
+        }
+
+        @MainThread
+        public void begin() {
+            if (mActiveCount++ > 0) {
+                return;
+            }
+            if (mChoreographer == null) {
+                mChoreographer = Choreographer.getInstance();
+            }
+            mSessions.incrementAndGet();
+            mLastFrameNanos = 0;
+            mSessionStartNanos = System.nanoTime();
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @MainThread
+        public void end() {
+            if (mActiveCount == 0 || --mActiveCount > 0) {
+                return;
+            }
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        /** Stops the current session whatever the number of pending end calls. */
+        @MainThread
+        public void cancel() {
+            if (mActiveCount == 0) {
+                return;
+            }
+            mActiveCount = 0;
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mActiveCount == 0) {
+                return;
+            }
+            if (frameTimeNanos - mSessionStartNanos > MAX_SESSION_NANOS) {
+                Log.w(TAG, name + " was not ended, stopping it");
+                mActiveCount = 0;
+                return;
+            }
+            if (mLastFrameNanos != 0) {
+                long delta = frameTimeNanos - mLastFrameNanos;
+                if (delta >= MIN_FRAME_INTERVAL_NANOS && delta < mFrameIntervalNanos) {
+                    mFrameIntervalNanos = delta;
+                }
+                long missed = (delta + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+                if (missed > 0) {
+                    mDroppedFrames.addAndGet(missed);
+                }
+                mFrames.incrementAndGet();
+            }
+            mLastFrameNanos = frameTimeNanos;
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        void reset() {
+            mSessions.set(0);
+            mFrames.set(0);
+            mDroppedFrames.set(0);
+        }
+
+        @Override
+        void dump(PrintWriter writer) {
+            writer.print(name);
+            writer.print(": sessions=");
+            writer.print(mSessions.get());
+            writer.print(" frames=");
+            writer.print(mFrames.get());
+            writer.print(" dropped=");
+            writer.print(mDroppedFrames.get());
+        }
+    }
+}
@@ -83,6 +83,10 @@ open class StartupLatencyLogger(val latencyType: LatencyType) {
         maybeLogStartOfWorkspaceLoadTime(event)
         if (validateLoggingEventAtEnd(event)) {
             endTimeByEvent.put(event.id, endTimeMs)
+            if (startTimeByEvent.contains(event.id)) {
+                PerfMetrics.histogram("startup.${event.name}")
+                    .record(endTimeMs - startTimeByEvent.get(event.id))
+            }
         }
 
         return this
@@ -37,6 +37,7 @@ import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.util.LooperIdleLock;
 import com.android.launcher3.util.PackageUserKey;
@@ -303,8 +304,15 @@ public abstract class BaseLauncherBinder {
 
             RunnableList pendingTasks = new RunnableList();
             Executor pendingExecutor = pendingTasks::add;
-            bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
-            bindAppWidgets(otherAppWidgets, pendingExecutor);
+            if (FeatureFlags.ENABLE_LAZY_WORKSPACE_BINDING.get()) {
+                IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen = new IntSparseArrayMap<>();
+                groupByScreen(otherWorkspaceItems, itemsByScreen);
+                groupByScreen(otherAppWidgets, itemsByScreen);
+                executeCallbacksTask(c -> c.bindPageItemsLazily(itemsByScreen), pendingExecutor);
+            } else {
+                bindWorkspaceItems(otherWorkspaceItems, pendingExecutor);
+                bindAppWidgets(otherAppWidgets, pendingExecutor);
+            }
             executeCallbacksTask(c -> c.finishBindingItems(currentScreenIds), pendingExecutor);
             pendingExecutor.execute(
                     () -> {
@@ -324,6 +332,18 @@ public abstract class BaseLauncherBinder {
             executeCallbacksTask(c -> c.bindStringCache(cacheClone), pendingExecutor);
         }
 
+        private void groupByScreen(List<? extends ItemInfo> items,
+                IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen) {
+            for (ItemInfo item : items) {
+                ArrayList<ItemInfo> screenItems = itemsByScreen.get(item.screenId);
+                if (screenItems == null) {
+                    screenItems = new ArrayList<>();
+                    itemsByScreen.put(item.screenId, screenItems);
+                }
+                screenItems.add(item);
+            }
+        }
+
         private void bindWorkspaceItems(
                 final ArrayList<ItemInfo> workspaceItems, final Executor executor) {
             // Bind the workspace items
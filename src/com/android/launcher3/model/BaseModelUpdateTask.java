@@ -81,6 +81,7 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
             return;
         }
         execute(mApp, mDataModel, mAllAppsList);
+        mDataModel.schedulePublishSnapshot();
     }
 
     /**
@@ -111,6 +112,7 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
                 .filter(info -> info.id != ItemInfo.NO_ID)
                 .collect(Collectors.toList());
         if (!workspaceUpdates.isEmpty()) {
+            mDataModel.invalidateSnapshot();
             scheduleCallbackTask(c -> c.bindWorkspaceItemsChanged(workspaceUpdates));
         }
 
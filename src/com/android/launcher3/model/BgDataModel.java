@@ -18,11 +18,13 @@ package com.android.launcher3.model;
 import static android.content.pm.LauncherApps.ShortcutQuery.FLAG_GET_KEY_FIELDS_ONLY;
 
 import static com.android.launcher3.model.WidgetsModel.GO_DISABLE_WIDGETS;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.shortcuts.ShortcutRequest.PINNED;
 
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.mapping;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
@@ -30,6 +32,7 @@ import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.Pair;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -38,6 +41,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.folder.FolderNameInfos;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
@@ -60,6 +64,7 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -101,6 +106,12 @@ public class BgDataModel {
      */
     public final IntSparseArrayMap<FolderInfo> folders = new IntSparseArrayMap<>();
 
+    /**
+     * Items of {@link #itemsIdMap} grouped by the package of their target component, so that
+     * package events only visit the affected items.
+     */
+    private final HashMap<String, ArrayList<ItemInfo>> mItemsByPackage = new HashMap<>();
+
     /**
      * Extra container based items
      */
@@ -121,6 +132,14 @@ public class BgDataModel {
      */
     public final StringCache stringCache = new StringCache();
 
+    /**
+     * Folder name suggestions computed by previous loads, along with the key of the folder
+     * contents, locale and categories they were computed for. Kept across loads so that
+     * suggestions are only recomputed for folders which changed. Only accessed by the loader.
+     */
+    public final IntSparseArrayMap<Pair<String, FolderNameInfos>> folderNameSuggestions =
+            new IntSparseArrayMap<>();
+
     /**
      * Id when the model was last bound
      */
@@ -131,14 +150,67 @@ public class BgDataModel {
      */
     public int lastLoadId = -1;
 
+    /**
+     * Last published read-only view of the model, see {@link #getSnapshot()}
+     */
+    private volatile Snapshot mSnapshot = Snapshot.EMPTY;
+
+    /**
+     * Number of structural changes made to the model, used to skip publishing a new snapshot
+     * when nothing changed. Guarded by this.
+     */
+    private int mModCount = 0;
+
+    private final Runnable mPublishSnapshot = this::publishSnapshot;
+
+    /**
+     * Returns the last published snapshot of the model. This never blocks on the model lock and
+     * is meant for read-only clients (search, backup, dump) which can tolerate a view that is
+     * at most one model task old.
+     */
+    @NonNull
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Marks the model as changed for callers which update the item collections directly instead
+     * of going through {@link #addItem} or {@link #removeItem}, or which update items in place.
+     */
+    synchronized void invalidateSnapshot() {
+        mModCount++;
+    }
+
+    /**
+     * Publishes a new snapshot once the model tasks queued so far have run, so that a burst of
+     * writes, like the moves of a drag and drop, copies the model only once.
+     */
+    void schedulePublishSnapshot() {
+        MODEL_EXECUTOR.getHandler().removeCallbacks(mPublishSnapshot);
+        MODEL_EXECUTOR.getHandler().post(mPublishSnapshot);
+    }
+
+    /**
+     * Publishes a new snapshot if the model changed since the last one. Called on the model
+     * thread after every loader pass and model task.
+     */
+    synchronized void publishSnapshot() {
+        Snapshot current = mSnapshot;
+        if (current.mModCount != mModCount) {
+            mSnapshot = new Snapshot(current.version + 1, mModCount, this);
+        }
+    }
+
     /**
      * Clears all the data
      */
     public synchronized void clear() {
+        mModCount++;
         workspaceItems.clear();
         appWidgets.clear();
         folders.clear();
         itemsIdMap.clear();
+        mItemsByPackage.clear();
         deepShortcutMap.clear();
         extraItems.clear();
     }
@@ -159,30 +231,36 @@ public class BgDataModel {
         return screenSet.getArray();
     }
 
-    public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer,
-            String[] args) {
-        writer.println(prefix + "Data Model:");
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        // Dump from the published snapshot so that a bugreport never waits on the loader
+        Snapshot snapshot = mSnapshot;
+        writer.println(prefix + "Data Model (snapshot v" + snapshot.version + "):");
         writer.println(prefix + " ---- workspace items ");
-        for (int i = 0; i < workspaceItems.size(); i++) {
-            writer.println(prefix + '\t' + workspaceItems.get(i).toString());
+        for (ItemInfo item : snapshot.workspaceItems) {
+            writer.println(prefix + '\t' + item.toString());
         }
         writer.println(prefix + " ---- appwidget items ");
-        for (int i = 0; i < appWidgets.size(); i++) {
-            writer.println(prefix + '\t' + appWidgets.get(i).toString());
+        for (ItemInfo item : snapshot.appWidgets) {
+            writer.println(prefix + '\t' + item.toString());
         }
         writer.println(prefix + " ---- folder items ");
-        for (int i = 0; i< folders.size(); i++) {
-            writer.println(prefix + '\t' + folders.valueAt(i).toString());
+        for (FolderInfo folder : snapshot.folders) {
+            writer.println(prefix + '\t' + folder.toString());
+            for (ItemInfo item : snapshot.getFolderContents(folder.id)) {
+                writer.println(prefix + "\t\t" + item.toString());
+            }
         }
         writer.println(prefix + " ---- items id map ");
-        for (int i = 0; i< itemsIdMap.size(); i++) {
-            writer.println(prefix + '\t' + itemsIdMap.valueAt(i).toString());
+        for (ItemInfo item : snapshot.allItems) {
+            writer.println(prefix + '\t' + item.toString());
         }
 
         if (args.length > 0 && TextUtils.equals(args[0], "--all")) {
             writer.println(prefix + "shortcut counts ");
-            for (Integer count : deepShortcutMap.values()) {
-                writer.print(count + ", ");
+            synchronized (this) {
+                for (Integer count : deepShortcutMap.values()) {
+                    writer.print(count + ", ");
+                }
             }
             writer.println();
         }
@@ -193,6 +271,7 @@ public class BgDataModel {
     }
 
     public synchronized void removeItem(Context context, Iterable<? extends ItemInfo> items) {
+        mModCount++;
         ArraySet<UserHandle> updatedDeepShortcuts = new ArraySet<>();
         for (ItemInfo item : items) {
             switch (item.itemType) {
@@ -225,6 +304,7 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            removeFromPackageIndex(item);
         }
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
@@ -242,7 +322,9 @@ public class BgDataModel {
                     String.format("Adding item to ID map: %s", item.toString()),
                     /* stackTrace= */ null);
         }
+        mModCount++;
         itemsIdMap.put(item.id, item);
+        addToPackageIndex(item);
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
             case LauncherSettings.Favorites.ITEM_TYPE_APP_PAIR:
@@ -277,6 +359,38 @@ public class BgDataModel {
         }
     }
 
+    @Nullable
+    private static String getIndexedPackage(ItemInfo item) {
+        ComponentName cn = item.getTargetComponent();
+        return cn == null ? null : cn.getPackageName();
+    }
+
+    private void addToPackageIndex(ItemInfo item) {
+        String packageName = getIndexedPackage(item);
+        if (packageName != null) {
+            mItemsByPackage.computeIfAbsent(packageName, p -> new ArrayList<>(2)).add(item);
+        }
+    }
+
+    private void removeFromPackageIndex(ItemInfo item) {
+        String packageName = getIndexedPackage(item);
+        ArrayList<ItemInfo> items = packageName == null ? null : mItemsByPackage.get(packageName);
+        if (items != null && items.remove(item)) {
+            if (items.isEmpty()) {
+                mItemsByPackage.remove(packageName);
+            }
+            return;
+        }
+        // The target of the item changed since it was added
+        Iterator<ArrayList<ItemInfo>> it = mItemsByPackage.values().iterator();
+        while (it.hasNext()) {
+            ArrayList<ItemInfo> list = it.next();
+            if (list.remove(item) && list.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
     /**
      * Updates the deep shortucts state in system to match out internal model, pinning any missing
      * shortcuts and unpinning any extra shortcuts.
@@ -365,6 +479,7 @@ public class BgDataModel {
             // No placeholder -- create a new instance
             folderInfo = new FolderInfo();
             folders.put(id, folderInfo);
+            mModCount++;
         }
         return folderInfo;
     }
@@ -431,6 +546,123 @@ public class BgDataModel {
         }
     }
 
+    /**
+     * Calls the provided {@code op} for all items in the in-memory model, including widgets and
+     * dynamic/predicted items, whose target component belongs to one of the {@code packages} for
+     * the provided {@code userHandle}. Only the items of these packages are visited.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public void forAllItemsOfPackages(UserHandle userHandle, Collection<String> packages,
+            Consumer<ItemInfo> op) {
+        for (String packageName : packages) {
+            ArrayList<ItemInfo> items = mItemsByPackage.get(packageName);
+            if (items == null) {
+                continue;
+            }
+            // Copy as the op may update the model
+            for (ItemInfo info : items.toArray(new ItemInfo[0])) {
+                if (userHandle.equals(info.user)) {
+                    op.accept(info);
+                }
+            }
+        }
+
+        for (int i = extraItems.size() - 1; i >= 0; i--) {
+            for (ItemInfo info : extraItems.valueAt(i).items) {
+                if (userHandle.equals(info.user)
+                        && packages.contains(getIndexedPackage(info))) {
+                    op.accept(info);
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable, versioned view of the workspace items, folders and widgets. The collections,
+     * including the contents of every folder, are copied when the snapshot is published and
+     * never change afterwards. The contained {@link ItemInfo} objects are shared with the model
+     * and must be treated as read-only.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot();
+
+        /** Monotonically increasing version, bumped every time a new snapshot is published */
+        public final int version;
+
+        /** See {@link BgDataModel#workspaceItems} */
+        public final List<ItemInfo> workspaceItems;
+
+        /** See {@link BgDataModel#appWidgets} */
+        public final List<LauncherAppWidgetInfo> appWidgets;
+
+        /** See {@link BgDataModel#folders} */
+        public final List<FolderInfo> folders;
+
+        /** All items in the model, see {@link BgDataModel#itemsIdMap} */
+        public final List<ItemInfo> allItems;
+
+        private final int mModCount;
+        private final IntSparseArrayMap<ItemInfo> mItemsIdMap;
+        private final IntSparseArrayMap<List<WorkspaceItemInfo>> mFolderContents;
+
+        private Snapshot() {
+            version = 0;
+            mModCount = 0;
+            workspaceItems = Collections.emptyList();
+            appWidgets = Collections.emptyList();
+            folders = Collections.emptyList();
+            allItems = Collections.emptyList();
+            mItemsIdMap = new IntSparseArrayMap<>();
+            mFolderContents = new IntSparseArrayMap<>();
+        }
+
+        private Snapshot(int version, int modCount, BgDataModel model) {
+            this.version = version;
+            mModCount = modCount;
+            workspaceItems = Collections.unmodifiableList(new ArrayList<>(model.workspaceItems));
+            appWidgets = Collections.unmodifiableList(new ArrayList<>(model.appWidgets));
+
+            // FolderInfo.contents is mutated in place, each folder gets its own copy
+            int folderCount = model.folders.size();
+            ArrayList<FolderInfo> folderList = new ArrayList<>(folderCount);
+            mFolderContents = new IntSparseArrayMap<>();
+            for (int i = 0; i < folderCount; i++) {
+                FolderInfo folder = model.folders.valueAt(i);
+                folderList.add(folder);
+                mFolderContents.put(model.folders.keyAt(i),
+                        Collections.unmodifiableList(new ArrayList<>(folder.contents)));
+            }
+            folders = Collections.unmodifiableList(folderList);
+
+            mItemsIdMap = model.itemsIdMap.clone();
+            int itemCount = mItemsIdMap.size();
+            ArrayList<ItemInfo> itemList = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                itemList.add(mItemsIdMap.valueAt(i));
+            }
+            allItems = Collections.unmodifiableList(itemList);
+        }
+
+        /**
+         * Returns the item with the provided id at the time of the snapshot, or null
+         */
+        @Nullable
+        public ItemInfo getItem(int id) {
+            return mItemsIdMap.get(id);
+        }
+
+        /**
+         * Returns the items of the folder with the provided id at the time of the snapshot, or an
+         * empty list if there was no such folder
+         */
+        @NonNull
+        public List<WorkspaceItemInfo> getFolderContents(int folderId) {
+            List<WorkspaceItemInfo> contents = mFolderContents.get(folderId);
+            return contents != null ? contents : Collections.emptyList();
+        }
+    }
+
     /**
      * An object containing items corresponding to a fixed container
      */
@@ -468,6 +700,14 @@ public class BgDataModel {
         default void startBinding() { }
 
         default void bindItems(List<ItemInfo> shortcuts, boolean forceAnimateIcons) { }
+
+        /**
+         * Binds the items of pages which are not shown first, grouped by screen id. Binding the
+         * items of a page can be deferred until the page is about to be shown.
+         */
+        default void bindPageItemsLazily(IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen) {
+            itemsByScreen.forEach(items -> bindItems(items, false));
+        }
         default void bindScreens(IntArray orderedScreenIds) { }
         default void finishBindingItems(IntSet pagesBoundFirst) { }
         default void preAddApps() { }
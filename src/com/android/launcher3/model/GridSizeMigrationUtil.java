@@ -25,7 +25,6 @@ import android.content.ComponentName;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
@@ -45,6 +44,7 @@ import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
 import com.android.launcher3.util.GridOccupancy;
 import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
 import com.saggitt.omega.NeoApp;
@@ -59,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -113,7 +114,7 @@ public class GridSizeMigrationUtil {
         }
         copyTable(source, TABLE_NAME, target.getWritableDatabase(), TMP_TABLE, context);
 
-        HashSet<String> validPackages = getValidPackages(context);
+        Predicate<String> validPackages = getValidPackages(context);
         long migrationStartTime = System.currentTimeMillis();
         try (SQLiteTransaction t = new SQLiteTransaction(target.getWritableDatabase())) {
             DbReader srcReader = new DbReader(t.getDb(), TMP_TABLE, context, validPackages);
@@ -138,12 +139,34 @@ public class GridSizeMigrationUtil {
         }
     }
 
+    /**
+     * Plans the migration from {@code srcReader} to {@code destReader} and applies it.
+     *
+     * @return false if there was nothing to add to the destination table.
+     */
     public static boolean migrate(
             @NonNull DatabaseHelper helper,
             @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
             final int destHotseatSize, @NonNull final Point targetSize,
             @NonNull final DeviceGridState srcDeviceState,
             @NonNull final DeviceGridState destDeviceState) {
+        MigrationPlan plan = planMigration(srcReader, destReader, destHotseatSize, targetSize,
+                srcDeviceState, destDeviceState);
+        plan.apply(helper);
+        return plan.mHasItemsToAdd;
+    }
+
+    /**
+     * Computes the complete migration in memory without modifying either table. Each table is
+     * read once and the returned plan can either be inspected (for eg, to preview the result of
+     * a grid change) or written in a single transaction using {@link MigrationPlan#apply}.
+     */
+    @NonNull
+    public static MigrationPlan planMigration(
+            @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
+            final int destHotseatSize, @NonNull final Point targetSize,
+            @NonNull final DeviceGridState srcDeviceState,
+            @NonNull final DeviceGridState destDeviceState) {
 
         final List<DbEntry> srcHotseatItems = srcReader.loadHotseatEntries();
         final List<DbEntry> srcWorkspaceItems = srcReader.loadAllWorkspaceEntries();
@@ -151,7 +174,8 @@ public class GridSizeMigrationUtil {
         final List<DbEntry> dstWorkspaceItems = destReader.loadAllWorkspaceEntries();
         final List<DbEntry> hotseatToBeAdded = new ArrayList<>(1);
         final List<DbEntry> workspaceToBeAdded = new ArrayList<>(1);
-        final IntArray toBeRemoved = new IntArray();
+        final MigrationPlan plan = new MigrationPlan(srcReader, destReader);
+        final IntArray toBeRemoved = plan.toBeRemoved;
 
         calcDiff(srcHotseatItems, dstHotseatItems, hotseatToBeAdded, toBeRemoved);
         calcDiff(srcWorkspaceItems, dstWorkspaceItems, workspaceToBeAdded, toBeRemoved);
@@ -179,20 +203,17 @@ public class GridSizeMigrationUtil {
                     Collectors.joining(",\n", "[", "]"))
             );
         }
-        if (!toBeRemoved.isEmpty()) {
-            removeEntryFromDb(destReader.mDb, destReader.mTableName, toBeRemoved);
-        }
         if (hotseatToBeAdded.isEmpty() && workspaceToBeAdded.isEmpty()) {
-            return false;
+            return plan;
         }
+        plan.mHasItemsToAdd = true;
 
         // Sort the items by the reading order.
         Collections.sort(hotseatToBeAdded);
         Collections.sort(workspaceToBeAdded);
 
         // Migrate hotseat
-        solveHotseatPlacement(helper, destHotseatSize,
-                srcReader, destReader, dstHotseatItems, hotseatToBeAdded);
+        solveHotseatPlacement(plan, destHotseatSize, dstHotseatItems, hotseatToBeAdded);
 
         // Migrate workspace.
         // First we create a collection of the screens
@@ -212,8 +233,7 @@ public class GridSizeMigrationUtil {
             if (DEBUG) {
                 Log.d(TAG, "Migrating " + screenId);
             }
-            solveGridPlacement(helper, srcReader,
-                    destReader, screenId, trgX, trgY, workspaceToBeAdded, false);
+            solveGridPlacement(plan, destReader, screenId, trgX, trgY, workspaceToBeAdded, false);
             if (workspaceToBeAdded.isEmpty()) {
                 break;
             }
@@ -223,12 +243,12 @@ public class GridSizeMigrationUtil {
         // any of the screens, in this case we add them to new screens until all of them are placed.
         int screenId = destReader.mLastScreenId + 1;
         while (!workspaceToBeAdded.isEmpty()) {
-            solveGridPlacement(helper, srcReader,
-                    destReader, screenId, trgX, trgY, workspaceToBeAdded, preservePages);
+            solveGridPlacement(plan, destReader, screenId, trgX, trgY, workspaceToBeAdded,
+                    preservePages);
             screenId++;
         }
 
-        return true;
+        return plan;
     }
 
     /**
@@ -240,13 +260,16 @@ public class GridSizeMigrationUtil {
     private static void calcDiff(@NonNull final List<DbEntry> src,
             @NonNull final List<DbEntry> dest, @NonNull final List<DbEntry> toBeAdded,
             @NonNull final IntArray toBeRemoved) {
+        // Migration ids are expensive to compute (they parse intents), hash them once
+        final Set<DbEntry> srcSet = new HashSet<>(src);
+        final Set<DbEntry> destSet = new HashSet<>(dest);
         src.forEach(entry -> {
-            if (!dest.contains(entry)) {
+            if (!destSet.contains(entry)) {
                 toBeAdded.add(entry);
             }
         });
         dest.forEach(entry -> {
-            if (!src.contains(entry)) {
+            if (!srcSet.contains(entry)) {
                 toBeRemoved.add(entry.id);
                 if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
                     entry.mFolderItems.values().forEach(ids -> ids.forEach(toBeRemoved::add));
@@ -255,75 +278,39 @@ public class GridSizeMigrationUtil {
         });
     }
 
-    private static void insertEntryInDb(DatabaseHelper helper, DbEntry entry,
-            String srcTableName, String destTableName) {
-        int id = copyEntryAndUpdate(helper, entry, srcTableName, destTableName);
-
-        if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
-            for (Set<Integer> itemIds : entry.mFolderItems.values()) {
-                for (int itemId : itemIds) {
-                    copyEntryAndUpdate(helper, itemId, id, srcTableName, destTableName);
-                }
-            }
-        }
-    }
-
-    private static int copyEntryAndUpdate(DatabaseHelper helper,
-            DbEntry entry, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(helper, entry, -1, -1, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(DatabaseHelper helper,
-            int id, int folderId, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(helper, null, id, folderId, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(DatabaseHelper helper, DbEntry entry,
-            int id, int folderId, String srcTableName, String destTableName) {
-        int newId = -1;
-        Cursor c = helper.getWritableDatabase().query(srcTableName, null,
-                LauncherSettings.Favorites._ID + " = '" + (entry != null ? entry.id : id) + "'",
-                null, null, null, null);
-        while (c.moveToNext()) {
-            ContentValues values = new ContentValues();
-            DatabaseUtils.cursorRowToContentValues(c, values);
-            if (entry != null) {
-                entry.updateContentValues(values);
-            } else {
-                values.put(LauncherSettings.Favorites.CONTAINER, folderId);
-            }
-            newId = helper.generateNewItemId();
-            values.put(LauncherSettings.Favorites._ID, newId);
-            helper.getWritableDatabase().insert(destTableName, null, values);
-        }
-        c.close();
-        return newId;
-    }
-
     private static void removeEntryFromDb(SQLiteDatabase db, String tableName, IntArray entryIds) {
         db.delete(tableName,
                 Utilities.createDbSelectionQuery(LauncherSettings.Favorites._ID, entryIds), null);
     }
 
-    private static HashSet<String> getValidPackages(Context context) {
-        // Initialize list of valid packages. This contain all the packages which are already on
-        // the device and packages which are being installed. Any item which doesn't belong to
-        // this set is removed.
+    private static Predicate<String> getValidPackages(Context context) {
+        // Valid packages are all the packages which are already on the device and packages which
+        // are being installed. Any item which doesn't belong to this set is removed.
         // Since the loader removes such items anyway, removing these items here doesn't cause
         // any extra data loss and gives us more free space on the grid for better migration.
-        HashSet<String> validPackages = new HashSet<>();
-        for (PackageInfo info : context.getPackageManager()
-                .getInstalledPackages(PackageManager.GET_UNINSTALLED_PACKAGES)) {
-            validPackages.add(info.packageName);
-        }
+        // Packages are looked up on demand, as the workspace only references a small fraction
+        // of the installed packages.
+        PackageManager pm = context.getPackageManager();
+        HashSet<String> installingPackages = new HashSet<>();
         InstallSessionHelper.INSTANCE.get(context)
                 .getActiveSessions().keySet()
-                .forEach(packageUserKey -> validPackages.add(packageUserKey.mPackageName));
-        return validPackages;
+                .forEach(packageUserKey -> installingPackages.add(packageUserKey.mPackageName));
+        HashMap<String, Boolean> validPackages = new HashMap<>();
+        return packageName -> validPackages.computeIfAbsent(packageName, p -> {
+            if (installingPackages.contains(p)) {
+                return true;
+            }
+            try {
+                pm.getPackageInfo(p, PackageManager.MATCH_UNINSTALLED_PACKAGES);
+                return true;
+            } catch (PackageManager.NameNotFoundException e) {
+                return false;
+            }
+        });
     }
 
-    private static void solveGridPlacement(@NonNull final DatabaseHelper helper,
-            @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
+    private static void solveGridPlacement(@NonNull final MigrationPlan plan,
+            @NonNull final DbReader destReader,
             final int screenId, final int trgX, final int trgY,
             @NonNull final List<DbEntry> sortedItemsToPlace, final boolean matchingScreenIdOnly) {
         final GridOccupancy occupied = new GridOccupancy(trgX, trgY);
@@ -342,11 +329,12 @@ public class GridSizeMigrationUtil {
             if (matchingScreenIdOnly && entry.screenId < screenId) continue;
             if (matchingScreenIdOnly && entry.screenId > screenId) break;
             if (entry.minSpanX > trgX || entry.minSpanY > trgY) {
+                plan.dropped.add(entry);
                 iterator.remove();
                 continue;
             }
             if (findPlacementForEntry(entry, next, trg, occupied, screenId)) {
-                insertEntryInDb(helper, entry, srcReader.mTableName, destReader.mTableName);
+                plan.toBeAdded.add(entry);
                 iterator.remove();
             }
         }
@@ -384,8 +372,7 @@ public class GridSizeMigrationUtil {
     }
 
     private static void solveHotseatPlacement(
-            @NonNull final DatabaseHelper helper, final int hotseatSize,
-            @NonNull final DbReader srcReader, @NonNull final DbReader destReader,
+            @NonNull final MigrationPlan plan, final int hotseatSize,
             @NonNull final  List<DbEntry> placedHotseatItems,
             @NonNull final List<DbEntry> itemsToPlace) {
 
@@ -402,25 +389,132 @@ public class GridSizeMigrationUtil {
                 // to something other than -1.
                 entry.cellX = i;
                 entry.cellY = 0;
-                insertEntryInDb(helper, entry, srcReader.mTableName, destReader.mTableName);
+                plan.toBeAdded.add(entry);
                 occupied[entry.screenId] = true;
             }
         }
     }
 
+    /**
+     * Complete result of a grid migration, computed without touching the database
+     */
+    public static class MigrationPlan {
+
+        /** Ids of the items in the destination table which are removed */
+        public final IntArray toBeRemoved = new IntArray();
+
+        /** Items copied from the source table, with their position in the destination grid */
+        public final List<DbEntry> toBeAdded = new ArrayList<>();
+
+        /** Items from the source table which cannot fit in the destination grid */
+        public final List<DbEntry> dropped = new ArrayList<>();
+
+        private final DbReader mSrcReader;
+        private final DbReader mDestReader;
+        private boolean mHasItemsToAdd;
+
+        private MigrationPlan(DbReader srcReader, DbReader destReader) {
+            mSrcReader = srcReader;
+            mDestReader = destReader;
+        }
+
+        /**
+         * Writes the plan to the destination table in a single transaction. The source rows
+         * to copy, including folder contents, are read in a single query.
+         */
+        public void apply(@NonNull DatabaseHelper helper) {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            try (SQLiteTransaction t = new SQLiteTransaction(db)) {
+                if (!mSrcReader.mEntriesToRemove.isEmpty()) {
+                    removeEntryFromDb(db, mSrcReader.mTableName, mSrcReader.mEntriesToRemove);
+                }
+                IntArray destRemoved = new IntArray();
+                destRemoved.addAll(mDestReader.mEntriesToRemove);
+                destRemoved.addAll(toBeRemoved);
+                if (!destRemoved.isEmpty()) {
+                    removeEntryFromDb(db, mDestReader.mTableName, destRemoved);
+                }
+                if (!toBeAdded.isEmpty()) {
+                    insertEntries(helper, db);
+                }
+                t.commit();
+            }
+        }
+
+        private void insertEntries(DatabaseHelper helper, SQLiteDatabase db) {
+            IntArray srcIds = new IntArray(toBeAdded.size());
+            for (DbEntry entry : toBeAdded) {
+                srcIds.add(entry.id);
+                for (Set<Integer> itemIds : entry.mFolderItems.values()) {
+                    itemIds.forEach(srcIds::add);
+                }
+            }
+
+            IntSparseArrayMap<ContentValues> srcRows = new IntSparseArrayMap<>();
+            try (Cursor c = db.query(mSrcReader.mTableName, null,
+                    Utilities.createDbSelectionQuery(LauncherSettings.Favorites._ID, srcIds),
+                    null, null, null, null)) {
+                int indexId = c.getColumnIndexOrThrow(LauncherSettings.Favorites._ID);
+                while (c.moveToNext()) {
+                    ContentValues values = new ContentValues();
+                    DatabaseUtils.cursorRowToContentValues(c, values);
+                    srcRows.put(c.getInt(indexId), values);
+                }
+            }
+
+            String destTable = mDestReader.mTableName;
+            for (DbEntry entry : toBeAdded) {
+                ContentValues values = srcRows.get(entry.id);
+                if (values == null) {
+                    continue;
+                }
+                entry.updateContentValues(values);
+                int newId = helper.generateNewItemId();
+                values.put(LauncherSettings.Favorites._ID, newId);
+                db.insert(destTable, null, values);
+
+                if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
+                    for (Set<Integer> itemIds : entry.mFolderItems.values()) {
+                        for (int itemId : itemIds) {
+                            ContentValues itemValues = srcRows.get(itemId);
+                            if (itemValues == null) {
+                                continue;
+                            }
+                            itemValues.put(LauncherSettings.Favorites.CONTAINER, newId);
+                            itemValues.put(LauncherSettings.Favorites._ID,
+                                    helper.generateNewItemId());
+                            db.insert(destTable, null, itemValues);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     protected static class DbReader {
 
         private final SQLiteDatabase mDb;
         private final String mTableName;
         private final Context mContext;
-        private final Set<String> mValidPackages;
+        private final Predicate<String> mValidPackages;
         private int mLastScreenId = -1;
 
         private final Map<Integer, ArrayList<DbEntry>> mWorkspaceEntriesByScreenId =
                 new ArrayMap<>();
 
+        // Invalid entries found while reading, removed when the migration is applied
+        private final IntArray mEntriesToRemove = new IntArray();
+
+        // Folder id to the contents of the folder, grouped by intent. Lazily loaded.
+        private IntSparseArrayMap<Map<String, Set<Integer>>> mFolderContents;
+
         DbReader(SQLiteDatabase db, String tableName, Context context,
                 Set<String> validPackages) {
+            this(db, tableName, context, validPackages::contains);
+        }
+
+        DbReader(SQLiteDatabase db, String tableName, Context context,
+                Predicate<String> validPackages) {
             mDb = db;
             mTableName = tableName;
             mContext = context;
@@ -478,7 +572,7 @@ public class GridSizeMigrationUtil {
                 }
                 hotseatEntries.add(entry);
             }
-            removeEntryFromDb(mDb, mTableName, entriesToRemove);
+            mEntriesToRemove.addAll(entriesToRemove);
             c.close();
             return hotseatEntries;
         }
@@ -579,33 +673,59 @@ public class GridSizeMigrationUtil {
                 }
                 mWorkspaceEntriesByScreenId.get(entry.screenId).add(entry);
             }
-            removeEntryFromDb(mDb, mTableName, entriesToRemove);
+            mEntriesToRemove.addAll(entriesToRemove);
             c.close();
             return workspaceEntries;
         }
 
         private int getFolderItemsCount(DbEntry entry) {
-            Cursor c = queryWorkspace(
-                    new String[]{LauncherSettings.Favorites._ID, LauncherSettings.Favorites.INTENT},
-                    LauncherSettings.Favorites.CONTAINER + " = " + entry.id);
-
+            if (mFolderContents == null) {
+                mFolderContents = loadFolderContents();
+            }
+            Map<String, Set<Integer>> contents = mFolderContents.get(entry.id);
+            if (contents == null) {
+                return 0;
+            }
+            entry.mFolderItems.putAll(contents);
             int total = 0;
+            for (Set<Integer> ids : contents.values()) {
+                total += ids.size();
+            }
+            return total;
+        }
+
+        /**
+         * Loads the contents of all the folders in a single query
+         */
+        private IntSparseArrayMap<Map<String, Set<Integer>>> loadFolderContents() {
+            IntSparseArrayMap<Map<String, Set<Integer>>> result = new IntSparseArrayMap<>();
+            Cursor c = queryWorkspace(
+                    new String[]{
+                            LauncherSettings.Favorites._ID,                  // 0
+                            LauncherSettings.Favorites.INTENT,               // 1
+                            LauncherSettings.Favorites.CONTAINER},           // 2
+                    LauncherSettings.Favorites.CONTAINER + " > 0");
             while (c.moveToNext()) {
+                int id = c.getInt(0);
                 try {
-                    int id = c.getInt(0);
                     String intent = c.getString(1);
                     verifyIntent(intent);
-                    total++;
-                    if (!entry.mFolderItems.containsKey(intent)) {
-                        entry.mFolderItems.put(intent, new HashSet<>());
+                    int container = c.getInt(2);
+                    Map<String, Set<Integer>> contents = result.get(container);
+                    if (contents == null) {
+                        contents = new HashMap<>();
+                        result.put(container, contents);
                     }
-                    entry.mFolderItems.get(intent).add(id);
+                    if (!contents.containsKey(intent)) {
+                        contents.put(intent, new HashSet<>());
+                    }
+                    contents.get(intent).add(id);
                 } catch (Exception e) {
-                    removeEntryFromDb(mDb, mTableName, IntArray.wrap(c.getInt(0)));
+                    mEntriesToRemove.add(id);
                 }
             }
             c.close();
-            return total;
+            return result;
         }
 
         private Cursor queryWorkspace(String[] columns, String where) {
@@ -627,7 +747,7 @@ public class GridSizeMigrationUtil {
         /** Verifies if the package should be restored */
         private void verifyPackage(String packageName)
                 throws Exception {
-            if (!mValidPackages.contains(packageName)) {
+            if (!mValidPackages.test(packageName)) {
                 // TODO(b/151468819): Handle promise app icon restoration during grid migration.
                 throw new Exception("Package not available");
             }
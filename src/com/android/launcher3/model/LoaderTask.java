@@ -42,6 +42,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.graphics.Point;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -49,6 +50,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.LongSparseArray;
+import android.util.Pair;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -71,6 +73,7 @@ import com.android.launcher3.icons.LauncherActivityCachingLogic;
 import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.PerfMetrics;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.IconRequestInfo;
@@ -89,12 +92,14 @@ import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IOUtils;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.LooperIdleLock;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -104,6 +109,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -141,6 +147,11 @@ public class LoaderTask implements Runnable {
     private Map<ShortcutKey, ShortcutInfo> mShortcutKeyToPinnedShortcuts;
 
     private boolean mStopped;
+    // Time of the previous logASplit, used to record per phase durations
+    private long mLastSplitTime;
+    // Per phase histograms by logASplit label, so that recording a split does not build the name
+    private static final Map<String, PerfMetrics.Histogram> sSplitHistograms =
+            new ConcurrentHashMap<>();
 
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
@@ -200,6 +211,8 @@ public class LoaderTask implements Runnable {
         }
 
         TraceHelper.INSTANCE.beginSection(TAG);
+        final long startTime = SystemClock.elapsedRealtime();
+        mLastSplitTime = startTime;
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
@@ -215,6 +228,7 @@ public class LoaderTask implements Runnable {
                 sanitizeWidgetsShortcutsAndPackages();
                 logASplit("sanitizeData");
             }
+            mBgDataModel.publishSnapshot();
 
             verifyNotStopped();
             mLauncherBinder.bindWorkspace(true /* incrementBindId */, /* isBindSync= */ false);
@@ -306,6 +320,9 @@ public class LoaderTask implements Runnable {
                     mApp.getModel()::onWidgetLabelsUpdated);
             logASplit("save widgets in icon cache");
 
+            WidgetPreviewCache.INSTANCE.get(mApp.getContext()).removeUninstalledPackages();
+            logASplit("remove stale widget previews");
+
             // fifth step
             loadFolderNames();
 
@@ -316,6 +333,7 @@ public class LoaderTask implements Runnable {
             mModelDelegate.modelLoadComplete();
             transaction.commit();
             memoryLogger.clearLogs();
+            PerfMetrics.LOADER_TOTAL.record(SystemClock.elapsedRealtime() - startTime);
         } catch (CancellationException e) {
             // Loader stopped, ignore
             logASplit("Cancelled");
@@ -341,6 +359,8 @@ public class LoaderTask implements Runnable {
         } finally {
             Trace.endSection();
         }
+        // Grid previews render straight from the loaded workspace
+        mBgDataModel.publishSnapshot();
         logASplit("loadWorkspace");
 
         if (FeatureFlags.CHANGE_MODEL_DELEGATE_LOADING_ORDER.get()) {
@@ -1022,15 +1042,57 @@ public class LoaderTask implements Runnable {
     private void loadFolderNames() {
         FolderNameProvider provider = FolderNameProvider.newInstance(mApp.getContext(),
                 mBgAllAppsList.data, mBgDataModel.folders);
-
+        String locales = mApp.getContext().getResources().getConfiguration()
+                .getLocales().toLanguageTags();
+        int categoriesVersion = provider.getPackageCategoriesVersion(mApp.getContext());
+        // Suggestions computed without the categories are not kept, they miss category names
+        boolean cacheSuggestions = categoriesVersion != FolderNameProvider.CATEGORIES_NOT_READY;
+
+        // Snapshot the folders which need suggestions, so that they can be computed without
+        // holding the model lock.
+        IntSparseArrayMap<ArrayList<WorkspaceItemInfo>> pendingContents =
+                new IntSparseArrayMap<>();
         synchronized (mBgDataModel) {
             for (int i = 0; i < mBgDataModel.folders.size(); i++) {
-                FolderNameInfos suggestionInfos = new FolderNameInfos();
                 FolderInfo info = mBgDataModel.folders.valueAt(i);
                 if (info.suggestedFolderNames == null) {
-                    provider.getSuggestedFolderName(mApp.getContext(), info.contents,
-                            suggestionInfos);
-                    info.suggestedFolderNames = suggestionInfos;
+                    pendingContents.put(info.id, new ArrayList<>(info.contents));
+                }
+            }
+        }
+
+        IntSparseArrayMap<FolderNameInfos> suggestions = new IntSparseArrayMap<>();
+        IntSparseArrayMap<Pair<String, FolderNameInfos>> cache =
+                mBgDataModel.folderNameSuggestions;
+        for (int i = 0; i < pendingContents.size(); i++) {
+            int folderId = pendingContents.keyAt(i);
+            ArrayList<WorkspaceItemInfo> contents = pendingContents.valueAt(i);
+            String key = locales + "|" + categoriesVersion + "|"
+                    + FolderNameProvider.getContentsKey(contents);
+            Pair<String, FolderNameInfos> cached = cache.get(folderId);
+            if (cached != null && cached.first.equals(key)) {
+                suggestions.put(folderId, cached.second);
+                continue;
+            }
+            FolderNameInfos suggestionInfos = new FolderNameInfos();
+            provider.getSuggestedFolderName(mApp.getContext(), contents, suggestionInfos);
+            suggestions.put(folderId, suggestionInfos);
+            if (cacheSuggestions) {
+                cache.put(folderId, Pair.create(key, suggestionInfos));
+            }
+        }
+
+        synchronized (mBgDataModel) {
+            for (int i = 0; i < suggestions.size(); i++) {
+                FolderInfo info = mBgDataModel.folders.get(suggestions.keyAt(i));
+                if (info != null && info.suggestedFolderNames == null) {
+                    info.suggestedFolderNames = suggestions.valueAt(i);
+                }
+            }
+            // Drop entries for folders which no longer exist
+            for (int i = cache.size() - 1; i >= 0; i--) {
+                if (!mBgDataModel.folders.containsKey(cache.keyAt(i))) {
+                    cache.removeAt(i);
                 }
             }
         }
@@ -1087,7 +1149,11 @@ public class LoaderTask implements Runnable {
         FileLog.d(TAG, widgetDimension.toString());
     }
 
-    private static void logASplit(String label) {
+    private void logASplit(String label) {
+        long now = SystemClock.elapsedRealtime();
+        sSplitHistograms.computeIfAbsent(label, l -> PerfMetrics.histogram("loader." + l))
+                .record(now - mLastSplitTime);
+        mLastSplitTime = now;
         if (DEBUG) {
             Log.d(TAG, label);
         }
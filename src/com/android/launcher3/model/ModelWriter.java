@@ -500,6 +500,7 @@ public class ModelWriter {
                 } else {
                     mBgDataModel.workspaceItems.remove(modelItem);
                 }
+                mBgDataModel.invalidateSnapshot();
                 mVerifier.verifyModel();
             }
         }
@@ -516,6 +517,7 @@ public class ModelWriter {
                 return;
             }
             runImpl();
+            mBgDataModel.schedulePublishSnapshot();
         }
 
         public final void executeOnModelThread() {
@@ -54,6 +54,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.saggitt.omega.iconpack.IconPack;
 import com.saggitt.omega.iconpack.IconPackProvider;
 import com.saggitt.omega.preferences.NeoPrefs;
@@ -63,8 +64,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -91,8 +94,10 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
     @NonNull
     private final UserHandle mUser;
 
+    // Guarded by this, packages can be added until the task starts
     @NonNull
-    private final String[] mPackages;
+    private String[] mPackages;
+    private boolean mStarted;
 
     public PackageUpdatedTask(final int op, @NonNull final UserHandle user,
             @NonNull final String... packages) {
@@ -101,13 +106,35 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    /**
+     * Adds the packages of a later event to this task if it has not started yet and handles the
+     * same operation for the same user, so that a burst of events is handled in one pass.
+     *
+     * @return true if the packages were merged, false if a new task is needed
+     */
+    public synchronized boolean mergeWith(int op, @NonNull UserHandle user,
+            @NonNull String... packages) {
+        if (mStarted || op != mOp || op == OP_USER_AVAILABILITY_CHANGE || !mUser.equals(user)) {
+            return false;
+        }
+        LinkedHashSet<String> merged = new LinkedHashSet<>(Arrays.asList(mPackages));
+        Collections.addAll(merged, packages);
+        mPackages = merged.toArray(new String[0]);
+        return true;
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList appsList) {
         final Context context = app.getContext();
         final IconCache iconCache = app.getIconCache();
+        final WidgetPreviewCache previewCache = WidgetPreviewCache.INSTANCE.get(context);
 
-        final String[] packages = mPackages;
+        final String[] packages;
+        synchronized (this) {
+            mStarted = true;
+            packages = mPackages;
+        }
         final int N = packages.length;
         final FlagOp flagOp;
         final HashSet<String> packageSet = new HashSet<>(Arrays.asList(packages));
@@ -146,6 +173,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                         }
 
                         iconCache.updateIconsForPkg(packages[i], mUser);
+                        previewCache.invalidatePackage(packages[i]);
                         activitiesLists.put(
                                 packages[i], appsList.updatePackage(context, packages[i], mUser));
 
@@ -165,6 +193,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                 for (int i = 0; i < N; i++) {
                     FileLog.d(TAG, "Removing app icon" + packages[i]);
                     iconCache.removeIconsForPkg(packages[i], mUser);
+                    previewCache.invalidatePackage(packages[i]);
                     NeoPrefs prefs = Utilities.getNeoPrefs(context);
                     if (packages[i].equals(prefs.getProfileIconPack().getValue())) {
                         prefs.getProfileIconPack().setValue("");
@@ -227,7 +256,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             // For system apps, package manager send OP_UPDATE when an app is enabled.
             final boolean isNewApkAvailable = mOp == OP_ADD || mOp == OP_UPDATE;
             synchronized (dataModel) {
-                dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                Consumer<WorkspaceItemInfo> updateWorkspaceItem = si -> {
 
                     boolean infoUpdated = false;
                     boolean shortcutUpdated = false;
@@ -313,25 +342,34 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     if (infoUpdated && si.id != ItemInfo.NO_ID) {
                         getModelWriter().updateItemInDatabase(si);
                     }
-                });
-
-                for (LauncherAppWidgetInfo widgetInfo : dataModel.appWidgets) {
-                    if (mUser.equals(widgetInfo.user)
-                            && widgetInfo.hasRestoreFlag(
-                                    LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)
-                            && packageSet.contains(widgetInfo.providerName.getPackageName())) {
-                        widgetInfo.restoreStatus &=
-                                ~LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY
-                                        & ~LauncherAppWidgetInfo.FLAG_RESTORE_STARTED;
-
-                        // adding this flag ensures that launcher shows 'click to setup'
-                        // if the widget has a config activity. In case there is no config
-                        // activity, it will be marked as 'restored' during bind.
-                        widgetInfo.restoreStatus |= LauncherAppWidgetInfo.FLAG_UI_NOT_READY;
-
-                        widgets.add(widgetInfo);
-                        getModelWriter().updateItemInDatabase(widgetInfo);
-                    }
+                };
+
+                if (mOp == OP_USER_AVAILABILITY_CHANGE) {
+                    dataModel.forAllWorkspaceItemInfos(mUser, updateWorkspaceItem);
+                } else {
+                    // Only visit the items of the changed packages
+                    dataModel.forAllItemsOfPackages(mUser, packageSet, info -> {
+                        if (info instanceof WorkspaceItemInfo) {
+                            updateWorkspaceItem.accept((WorkspaceItemInfo) info);
+                        } else if (info instanceof LauncherAppWidgetInfo) {
+                            LauncherAppWidgetInfo widgetInfo = (LauncherAppWidgetInfo) info;
+                            if (widgetInfo.hasRestoreFlag(
+                                    LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)) {
+                                widgetInfo.restoreStatus &=
+                                        ~LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY
+                                                & ~LauncherAppWidgetInfo.FLAG_RESTORE_STARTED;
+
+                                // adding this flag ensures that launcher shows 'click to setup'
+                                // if the widget has a config activity. In case there is no
+                                // config activity, it will be marked as 'restored' during bind.
+                                widgetInfo.restoreStatus |=
+                                        LauncherAppWidgetInfo.FLAG_UI_NOT_READY;
+
+                                widgets.add(widgetInfo);
+                                getModelWriter().updateItemInDatabase(widgetInfo);
+                            }
+                        }
+                    });
                 }
             }
 
@@ -39,6 +39,7 @@ import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SettingsCache;
+import com.saggitt.omega.smartspace.provider.NotificationsManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -83,6 +84,7 @@ public class NotificationListener extends NotificationListenerService {
 
     private SettingsCache mSettingsCache;
     private SettingsCache.OnChangeListener mNotificationSettingsChangedListener;
+    private NotificationsManager mNotificationsManager;
 
     public NotificationListener() {
         mWorkerHandler = new Handler(MODEL_EXECUTOR.getLooper(), this::handleWorkerMessage);
@@ -90,6 +92,12 @@ public class NotificationListener extends NotificationListenerService {
         sNotificationListenerInstance = this;
     }
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mNotificationsManager = NotificationsManager.INSTANCE.get(this);
+    }
+
     public static @Nullable NotificationListener getInstanceIfConnected() {
         return sIsConnected ? sNotificationListenerInstance : null;
     }
@@ -230,6 +238,7 @@ public class NotificationListener extends NotificationListenerService {
         onNotificationSettingsChanged(mSettingsCache.getValue(NOTIFICATION_BADGING_URI));
 
         onNotificationFullRefresh();
+        mNotificationsManager.onNotificationFullRefresh();
     }
 
     private void onNotificationSettingsChanged(boolean areNotificationDotsEnabled) {
@@ -248,12 +257,15 @@ public class NotificationListener extends NotificationListenerService {
         sIsConnected = false;
         mSettingsCache.unregister(NOTIFICATION_BADGING_URI, mNotificationSettingsChangedListener);
         onNotificationFullRefresh();
+        mNotificationsManager.onNotificationFullRefresh();
     }
 
     @Override
     public void onNotificationPosted(final StatusBarNotification sbn) {
         if (sbn != null) {
             mWorkerHandler.obtainMessage(MSG_NOTIFICATION_POSTED, sbn).sendToTarget();
+            // Listener callbacks run on the main thread, the manager publishes once per frame
+            mNotificationsManager.onNotificationPosted(sbn);
         }
     }
 
@@ -261,6 +273,7 @@ public class NotificationListener extends NotificationListenerService {
     public void onNotificationRemoved(final StatusBarNotification sbn) {
         if (sbn != null) {
             mWorkerHandler.obtainMessage(MSG_NOTIFICATION_REMOVED, sbn).sendToTarget();
+            mNotificationsManager.onNotificationRemoved(sbn);
         }
     }
 
@@ -0,0 +1,251 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.pm;
+
+import static com.android.launcher3.model.PackageUpdatedTask.OP_ADD;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_REMOVE;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_SUSPEND;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UNAVAILABLE;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UNSUSPEND;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UPDATE;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.content.Context;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.model.PackageUpdatedTask;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.SafeCloseable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single {@link LauncherApps.Callback} of the process, which batches package events before
+ * dispatching them to its listeners.
+ * <p>
+ * Events are collected until no new event arrived for {@link #DEBOUNCE_MILLIS}, or at most for
+ * {@link #MAX_DELAY_MILLIS}, and then delivered as one list of {@link PackageChange}s. Consecutive
+ * events of the same operation and user are merged, so a burst like a system update touching
+ * hundreds of packages results in a single change per listener, while the relative order of
+ * different operations is kept.
+ */
+@UiThread
+public class PackageEventHub extends LauncherApps.Callback implements SafeCloseable {
+
+    public static final MainThreadInitializedObject<PackageEventHub> INSTANCE =
+            new MainThreadInitializedObject<>(PackageEventHub::new);
+
+    private static final long DEBOUNCE_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 500;
+
+    private final LauncherApps mLauncherApps;
+    private final Handler mHandler = MAIN_EXECUTOR.getHandler();
+    private final Runnable mDispatchRunnable = this::dispatchPendingChanges;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private final ArrayList<PendingChange> mPendingChanges = new ArrayList<>();
+    private long mFirstPendingTime;
+
+    @VisibleForTesting
+    PackageEventHub(Context context) {
+        mLauncherApps = context.getSystemService(LauncherApps.class);
+        mLauncherApps.registerCallback(this, mHandler);
+    }
+
+    @Override
+    public void close() {
+        mLauncherApps.unregisterCallback(this);
+        mHandler.removeCallbacks(mDispatchRunnable);
+        mPendingChanges.clear();
+    }
+
+    /**
+     * Adds a listener for package changes, returning a handle to remove it
+     */
+    public SafeCloseable addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+        return () -> mListeners.remove(listener);
+    }
+
+    @Override
+    public void onPackageAdded(@NonNull String packageName, @NonNull UserHandle user) {
+        addPendingChange(OP_ADD, user, packageName);
+    }
+
+    @Override
+    public void onPackageChanged(@NonNull String packageName, @NonNull UserHandle user) {
+        addPendingChange(OP_UPDATE, user, packageName);
+    }
+
+    @Override
+    public void onPackageRemoved(@NonNull String packageName, @NonNull UserHandle user) {
+        addPendingChange(OP_REMOVE, user, packageName);
+    }
+
+    @Override
+    public void onPackagesAvailable(@NonNull String[] packageNames, @NonNull UserHandle user,
+            boolean replacing) {
+        addPendingChange(OP_UPDATE, user, packageNames);
+    }
+
+    @Override
+    public void onPackagesUnavailable(@NonNull String[] packageNames, @NonNull UserHandle user,
+            boolean replacing) {
+        // The packages are available again once replaced, nothing to update meanwhile
+        if (!replacing) {
+            addPendingChange(OP_UNAVAILABLE, user, packageNames);
+        }
+    }
+
+    @Override
+    public void onPackagesSuspended(@NonNull String[] packageNames, @NonNull UserHandle user) {
+        addPendingChange(OP_SUSPEND, user, packageNames);
+    }
+
+    @Override
+    public void onPackagesUnsuspended(@NonNull String[] packageNames, @NonNull UserHandle user) {
+        addPendingChange(OP_UNSUSPEND, user, packageNames);
+    }
+
+    @Override
+    public void onShortcutsChanged(@NonNull String packageName,
+            @NonNull List<ShortcutInfo> shortcuts, @NonNull UserHandle user) {
+        // Shortcuts can refer to a package from the pending changes, keep the order
+        dispatchPendingChanges();
+        for (Listener listener : mListeners) {
+            listener.onShortcutsChanged(packageName, shortcuts, user);
+        }
+    }
+
+    @Override
+    public void onPackageLoadingProgressChanged(@NonNull String packageName,
+            @NonNull UserHandle user, float progress) {
+        for (Listener listener : mListeners) {
+            listener.onPackageLoadingProgressChanged(packageName, user, progress);
+        }
+    }
+
+    private void addPendingChange(int op, UserHandle user, String... packages) {
+        long now = SystemClock.uptimeMillis();
+        int size = mPendingChanges.size();
+        if (size == 0) {
+            mFirstPendingTime = now;
+        }
+        PendingChange last = size == 0 ? null : mPendingChanges.get(size - 1);
+        if (last != null && last.op == op && last.user.equals(user)) {
+            Collections.addAll(last.packages, packages);
+        } else {
+            mPendingChanges.add(new PendingChange(op, user, packages));
+        }
+
+        mHandler.removeCallbacks(mDispatchRunnable);
+        long dispatchTime = Math.min(now + DEBOUNCE_MILLIS, mFirstPendingTime + MAX_DELAY_MILLIS);
+        mHandler.postAtTime(mDispatchRunnable, dispatchTime);
+    }
+
+    @VisibleForTesting
+    void dispatchPendingChanges() {
+        mHandler.removeCallbacks(mDispatchRunnable);
+        if (mPendingChanges.isEmpty()) {
+            return;
+        }
+        List<PackageChange> changes = new ArrayList<>(mPendingChanges.size());
+        for (PendingChange pending : mPendingChanges) {
+            changes.add(new PackageChange(pending.op, pending.user,
+                    pending.packages.toArray(new String[0])));
+        }
+        mPendingChanges.clear();
+        changes = Collections.unmodifiableList(changes);
+        for (Listener listener : mListeners) {
+            listener.onPackagesChanged(changes);
+        }
+    }
+
+    private static class PendingChange {
+
+        final int op;
+        final UserHandle user;
+        final LinkedHashSet<String> packages;
+
+        PendingChange(int op, UserHandle user, String[] packages) {
+            this.op = op;
+            this.user = user;
+            this.packages = new LinkedHashSet<>(Arrays.asList(packages));
+        }
+    }
+
+    /**
+     * A set of packages of one user which went through the same operation
+     */
+    public static final class PackageChange {
+
+        /** One of the {@link PackageUpdatedTask} operations */
+        public final int op;
+        @NonNull
+        public final UserHandle user;
+        @NonNull
+        public final String[] packages;
+
+        PackageChange(int op, @NonNull UserHandle user, @NonNull String[] packages) {
+            this.op = op;
+            this.user = user;
+            this.packages = packages;
+        }
+
+        /** Returns true if the packages were added, updated or made available again. */
+        public boolean isAddOrUpdate() {
+            return op == OP_ADD || op == OP_UPDATE || op == OP_UNSUSPEND;
+        }
+    }
+
+    /**
+     * Listener for package events, called on the main thread
+     */
+    public interface Listener {
+
+        /**
+         * Called with the changes batched since the last call, in the order they happened
+         */
+        void onPackagesChanged(@NonNull List<PackageChange> changes);
+
+        /**
+         * @see LauncherApps.Callback#onShortcutsChanged(String, List, UserHandle)
+         */
+        default void onShortcutsChanged(@NonNull String packageName,
+                @NonNull List<ShortcutInfo> shortcuts, @NonNull UserHandle user) { }
+
+        /**
+         * @see LauncherApps.Callback#onPackageLoadingProgressChanged(String, UserHandle, float)
+         */
+        default void onPackageLoadingProgressChanged(@NonNull String packageName,
+                @NonNull UserHandle user, float progress) { }
+    }
+}
@@ -16,9 +16,16 @@
 
 package com.android.launcher3.popup;
 
+import static com.android.launcher3.Utilities.ATLEAST_S;
+
+import android.annotation.SuppressLint;
 import android.content.ComponentName;
 import android.service.notification.StatusBarNotification;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseIntArray;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -28,19 +35,25 @@ import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.notification.NotificationKeyData;
 import com.android.launcher3.notification.NotificationListener;
+import com.android.launcher3.util.ComponentIdRegistry;
 import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.ShortcutUtil;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -55,97 +68,141 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     private final Consumer<Predicate<PackageUserKey>> mNotificationDotsChangeListener;
 
-    /** Maps launcher activity components to a count of how many shortcuts they have. */
-    private HashMap<ComponentKey, Integer> mDeepShortcutMap = new HashMap<>();
-    /** Maps packages to their DotInfo's . */
-    private Map<PackageUserKey, DotInfo> mPackageUserToDotInfos = new HashMap<>();
+    private final ComponentIdRegistry mIdRegistry = ComponentIdRegistry.INSTANCE;
+
+    /** Maps launcher activity component ids to a count of how many shortcuts they have. */
+    private SparseIntArray mDeepShortcutCounts = new SparseIntArray();
+    /** Maps package ids to their DotInfo's . */
+    private IntSparseArrayMap<DotInfo> mPackageDotInfos = new IntSparseArrayMap<>();
+    /** Package and user of each entry in {@link #mPackageDotInfos}. */
+    private IntSparseArrayMap<PackageUserKey> mPackageDotKeys = new IntSparseArrayMap<>();
 
     /** All installed widgets. */
     private List<WidgetsListBaseEntry> mAllWidgets = List.of();
+    /** Entries of {@link #mAllWidgets} indexed by their package and user. */
+    private Map<PackageUserKey, List<WidgetsListBaseEntry>> mWidgetsByPackageUser = Map.of();
     /** Widgets that can be recommended to the users. */
     private List<ItemInfo> mRecommendedWidgets = List.of();
 
     private PopupDataChangeListener mChangeListener = PopupDataChangeListener.INSTANCE;
 
+    /** Packages whose dots changed since the last frame. */
+    private final HashSet<PackageUserKey> mDirtyDots = new HashSet<>();
+    /** Whether any notification was removed since the last frame. */
+    private boolean mNeedsTrimNotifications;
+    private boolean mDotsUpdateScheduled;
+    private final FrameCallback mDotsUpdateCallback = frameTimeNanos -> applyDotsUpdate();
+
     public PopupDataProvider(Consumer<Predicate<PackageUserKey>> notificationDotsChangeListener) {
         mNotificationDotsChangeListener = notificationDotsChangeListener;
     }
 
-    private void updateNotificationDots(Predicate<PackageUserKey> updatedDots) {
-        mNotificationDotsChangeListener.accept(updatedDots);
-        mChangeListener.onNotificationDotsUpdated(updatedDots);
+    /**
+     * Marks the dots of the given packages as changed. Bursts of notification updates are
+     * coalesced so that dot containers are only invalidated once per frame, for the union of
+     * the changed packages.
+     */
+    private void updateNotificationDots(Collection<PackageUserKey> updatedDots) {
+        mDirtyDots.addAll(updatedDots);
+        if (!mDotsUpdateScheduled) {
+            mDotsUpdateScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mDotsUpdateCallback);
+        }
     }
 
-    @Override
-    public void onNotificationPosted(PackageUserKey postedPackageUserKey,
-            NotificationKeyData notificationKey) {
-        DotInfo dotInfo = mPackageUserToDotInfos.get(postedPackageUserKey);
+    private void applyDotsUpdate() {
+        mDotsUpdateScheduled = false;
+        if (!mDirtyDots.isEmpty()) {
+            Set<PackageUserKey> updatedDots = new HashSet<>(mDirtyDots);
+            mDirtyDots.clear();
+            Predicate<PackageUserKey> predicate = updatedDots::contains;
+            mNotificationDotsChangeListener.accept(predicate);
+            mChangeListener.onNotificationDotsUpdated(predicate);
+        }
+        if (mNeedsTrimNotifications) {
+            mNeedsTrimNotifications = false;
+            mChangeListener.trimNotifications();
+        }
+    }
+
+    private int getPackageId(PackageUserKey packageUserKey) {
+        return mIdRegistry.getPackageId(packageUserKey.mPackageName, packageUserKey.mUser);
+    }
+
+    private DotInfo getOrCreateDotInfo(PackageUserKey packageUserKey) {
+        int packageId = getPackageId(packageUserKey);
+        DotInfo dotInfo = mPackageDotInfos.get(packageId);
         if (dotInfo == null) {
             dotInfo = new DotInfo();
-            mPackageUserToDotInfos.put(postedPackageUserKey, dotInfo);
+            mPackageDotInfos.put(packageId, dotInfo);
+            mPackageDotKeys.put(packageId, packageUserKey);
         }
+        return dotInfo;
+    }
+
+    @Override
+    public void onNotificationPosted(PackageUserKey postedPackageUserKey,
+            NotificationKeyData notificationKey) {
+        DotInfo dotInfo = getOrCreateDotInfo(postedPackageUserKey);
         if (dotInfo.addOrUpdateNotificationKey(notificationKey)) {
-            updateNotificationDots(postedPackageUserKey::equals);
+            updateNotificationDots(Collections.singleton(postedPackageUserKey));
         }
     }
 
     @Override
     public void onNotificationRemoved(PackageUserKey removedPackageUserKey,
             NotificationKeyData notificationKey) {
-        DotInfo oldDotInfo = mPackageUserToDotInfos.get(removedPackageUserKey);
+        int packageId = getPackageId(removedPackageUserKey);
+        DotInfo oldDotInfo = mPackageDotInfos.get(packageId);
         if (oldDotInfo != null && oldDotInfo.removeNotificationKey(notificationKey)) {
             if (oldDotInfo.getNotificationKeys().size() == 0) {
-                mPackageUserToDotInfos.remove(removedPackageUserKey);
+                mPackageDotInfos.remove(packageId);
+                mPackageDotKeys.remove(packageId);
             }
-            updateNotificationDots(removedPackageUserKey::equals);
-            trimNotifications(mPackageUserToDotInfos);
+            mNeedsTrimNotifications = true;
+            updateNotificationDots(Collections.singleton(removedPackageUserKey));
         }
     }
 
     @Override
     public void onNotificationFullRefresh(List<StatusBarNotification> activeNotifications) {
         if (activeNotifications == null) return;
-        // This will contain the PackageUserKeys which have updated dots.
-        HashMap<PackageUserKey, DotInfo> updatedDots = new HashMap<>(mPackageUserToDotInfos);
-        mPackageUserToDotInfos.clear();
+        IntSparseArrayMap<DotInfo> prevDots = mPackageDotInfos;
+        IntSparseArrayMap<PackageUserKey> prevKeys = mPackageDotKeys;
+        mPackageDotInfos = new IntSparseArrayMap<>();
+        mPackageDotKeys = new IntSparseArrayMap<>();
         for (StatusBarNotification notification : activeNotifications) {
-            PackageUserKey packageUserKey = PackageUserKey.fromNotification(notification);
-            DotInfo dotInfo = mPackageUserToDotInfos.get(packageUserKey);
-            if (dotInfo == null) {
-                dotInfo = new DotInfo();
-                mPackageUserToDotInfos.put(packageUserKey, dotInfo);
-            }
+            DotInfo dotInfo = getOrCreateDotInfo(PackageUserKey.fromNotification(notification));
             dotInfo.addOrUpdateNotificationKey(NotificationKeyData.fromNotification(notification));
         }
 
-        // Add and remove from updatedDots so it contains the PackageUserKeys of updated dots.
-        for (PackageUserKey packageUserKey : mPackageUserToDotInfos.keySet()) {
-            DotInfo prevDot = updatedDots.get(packageUserKey);
-            DotInfo newDot = mPackageUserToDotInfos.get(packageUserKey);
-            if (prevDot == null
-                    || prevDot.getNotificationCount() != newDot.getNotificationCount()) {
-                updatedDots.put(packageUserKey, newDot);
-            } else {
-                // No need to update the dot if it already existed (no visual change).
-                // Note that if the dot was removed entirely, we wouldn't reach this point because
-                // this loop only includes active notifications added above.
-                updatedDots.remove(packageUserKey);
+        // This will contain the PackageUserKeys which have updated dots.
+        List<PackageUserKey> updatedDots = new ArrayList<>();
+        for (int i = 0; i < prevKeys.size(); i++) {
+            if (!mPackageDotInfos.containsKey(prevKeys.keyAt(i))) {
+                // The dot was removed entirely
+                updatedDots.add(prevKeys.valueAt(i));
             }
         }
-
-        if (!updatedDots.isEmpty()) {
-            updateNotificationDots(updatedDots::containsKey);
+        for (int i = 0; i < mPackageDotInfos.size(); i++) {
+            DotInfo prevDot = prevDots.get(mPackageDotInfos.keyAt(i));
+            // No need to update the dot if it already existed (no visual change).
+            if (prevDot == null || prevDot.getNotificationCount()
+                    != mPackageDotInfos.valueAt(i).getNotificationCount()) {
+                updatedDots.add(mPackageDotKeys.valueAt(i));
+            }
         }
-        trimNotifications(updatedDots);
-    }
 
-    private void trimNotifications(Map<PackageUserKey, DotInfo> updatedDots) {
-        mChangeListener.trimNotifications(updatedDots);
+        mNeedsTrimNotifications = true;
+        updateNotificationDots(updatedDots);
     }
 
     public void setDeepShortcutMap(HashMap<ComponentKey, Integer> deepShortcutMapCopy) {
-        mDeepShortcutMap = deepShortcutMapCopy;
-        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + mDeepShortcutMap);
+        SparseIntArray counts = new SparseIntArray(deepShortcutMapCopy.size());
+        deepShortcutMapCopy.forEach((key, count) ->
+                counts.put(mIdRegistry.getId(key.componentName, key.user), count));
+        mDeepShortcutCounts = counts;
+        if (LOGD) Log.d(TAG, "bindDeepShortcutMap: " + deepShortcutMapCopy);
     }
 
     public int getShortcutCountForItem(ItemInfo info) {
@@ -157,15 +214,29 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             return 0;
         }
 
-        Integer count = mDeepShortcutMap.get(new ComponentKey(component, info.user));
-        return count == null ? 0 : count;
+        int componentId = mIdRegistry.findId(component, info.user);
+        return componentId == ComponentIdRegistry.NO_ID
+                ? 0 : mDeepShortcutCounts.get(componentId, 0);
+    }
+
+    /**
+     * Returns the DotInfo of the package of the given item, including notifications which are not
+     * relevant to the item itself.
+     */
+    public @Nullable DotInfo getPackageDotInfo(@NonNull ItemInfo info) {
+        ComponentName component = info.getTargetComponent();
+        if (component == null) {
+            return null;
+        }
+        int packageId = mIdRegistry.findPackageId(component.getPackageName(), info.user);
+        return packageId == ComponentIdRegistry.NO_ID ? null : mPackageDotInfos.get(packageId);
     }
 
     public @Nullable DotInfo getDotInfoForItem(@NonNull ItemInfo info) {
         if (!ShortcutUtil.supportsShortcuts(info)) {
             return null;
         }
-        DotInfo dotInfo = mPackageUserToDotInfos.get(PackageUserKey.fromItemInfo(info));
+        DotInfo dotInfo = getPackageDotInfo(info);
         if (dotInfo == null) {
             return null;
         }
@@ -200,9 +271,65 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
         mChangeListener.onRecommendedWidgetsBound();
     }
 
+    /**
+     * Sets all installed widgets. Listeners are only notified if at least one package's widgets
+     * have changed since the last call.
+     */
     public void setAllWidgets(List<WidgetsListBaseEntry> allWidgets) {
+        Map<PackageUserKey, List<WidgetsListBaseEntry>> newIndex = new HashMap<>();
+        for (WidgetsListBaseEntry entry : allWidgets) {
+            newIndex.computeIfAbsent(PackageUserKey.fromPackageItemInfo(entry.mPkgItem),
+                    k -> new ArrayList<>(2)).add(entry);
+        }
+        boolean changed = !newIndex.keySet().equals(mWidgetsByPackageUser.keySet())
+                || newIndex.entrySet().stream().anyMatch(e -> !isSameWidgets(
+                        mWidgetsByPackageUser.get(e.getKey()), e.getValue()));
         mAllWidgets = allWidgets;
-        mChangeListener.onWidgetsBound();
+        mWidgetsByPackageUser = newIndex;
+        if (changed) {
+            mChangeListener.onWidgetsBound();
+        }
+    }
+
+    private static boolean isSameWidgets(
+            List<WidgetsListBaseEntry> oldEntries, List<WidgetsListBaseEntry> newEntries) {
+        if (oldEntries == null || oldEntries.size() != newEntries.size()) {
+            return false;
+        }
+        for (int i = 0; i < newEntries.size(); i++) {
+            WidgetsListBaseEntry oldEntry = oldEntries.get(i);
+            WidgetsListBaseEntry newEntry = newEntries.get(i);
+            // Package icons and labels can be updated without changing the entry
+            if (!oldEntry.equals(newEntry)
+                    || oldEntry.mPkgItem.bitmap != newEntry.mPkgItem.bitmap
+                    || !TextUtils.equals(oldEntry.mPkgItem.title, newEntry.mPkgItem.title)) {
+                return false;
+            }
+            // Widget items only compare their component, labels and previews can change too
+            for (int j = 0; j < newEntry.mWidgets.size(); j++) {
+                if (!isSameWidget(oldEntry.mWidgets.get(j), newEntry.mWidgets.get(j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @SuppressLint("NewApi") // Already added API check.
+    private static boolean isSameWidget(WidgetItem oldItem, WidgetItem newItem) {
+        if (!TextUtils.equals(oldItem.label, newItem.label)
+                || !TextUtils.equals(oldItem.description, newItem.description)
+                || oldItem.spanX != newItem.spanX || oldItem.spanY != newItem.spanY) {
+            return false;
+        }
+        if (oldItem.widgetInfo == null || newItem.widgetInfo == null) {
+            return oldItem.widgetInfo == newItem.widgetInfo
+                    && oldItem.activityInfo == newItem.activityInfo;
+        }
+        return oldItem.widgetInfo.previewImage == newItem.widgetInfo.previewImage
+                && (!ATLEAST_S
+                        || oldItem.widgetInfo.previewLayout == newItem.widgetInfo.previewLayout)
+                && oldItem.widgetInfo.initialLayout == newItem.widgetInfo.initialLayout;
     }
 
     public void setChangeListener(PopupDataChangeListener listener) {
@@ -230,21 +357,26 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     }
 
     public List<WidgetItem> getWidgetsForPackageUser(PackageUserKey packageUserKey) {
-        return mAllWidgets.stream()
-                .filter(row -> row instanceof WidgetsListContentEntry
-                        && row.mPkgItem.packageName.equals(packageUserKey.mPackageName))
-                .flatMap(row -> ((WidgetsListContentEntry) row).mWidgets.stream())
+        return mWidgetsByPackageUser.getOrDefault(packageUserKey, Collections.emptyList())
+                .stream()
+                .filter(row -> row instanceof WidgetsListContentEntry)
+                .flatMap(row -> row.mWidgets.stream())
                 .filter(widget -> packageUserKey.mUser.equals(widget.user))
                 .collect(Collectors.toList());
     }
 
     /** Gets the WidgetsListContentEntry for the currently selected header. */
     public WidgetsListContentEntry getSelectedAppWidgets(PackageUserKey packageUserKey) {
-        return (WidgetsListContentEntry) mAllWidgets.stream()
-                .filter(row -> row instanceof WidgetsListContentEntry
-                        && PackageUserKey.fromPackageItemInfo(row.mPkgItem).equals(packageUserKey))
-                .findAny()
-                .orElse(null);
+        List<WidgetsListBaseEntry> entries = mWidgetsByPackageUser.get(packageUserKey);
+        if (entries == null) {
+            return null;
+        }
+        for (WidgetsListBaseEntry entry : entries) {
+            if (entry instanceof WidgetsListContentEntry) {
+                return (WidgetsListContentEntry) entry;
+            }
+        }
+        return null;
     }
 
     /**
@@ -270,7 +402,11 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "PopupDataProvider:");
-        writer.println(prefix + "\tmPackageUserToDotInfos:" + mPackageUserToDotInfos);
+        writer.println(prefix + "\tmPackageDotInfos:");
+        for (int i = 0; i < mPackageDotInfos.size(); i++) {
+            writer.println(prefix + "\t\t" + mPackageDotKeys.valueAt(i) + "="
+                    + mPackageDotInfos.valueAt(i));
+        }
     }
 
     /**
@@ -286,7 +422,8 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
         default void onNotificationDotsUpdated(Predicate<PackageUserKey> updatedDots) { }
 
-        default void trimNotifications(Map<PackageUserKey, DotInfo> updatedDots) { }
+        /** Called after notifications were removed, see {@link #getPackageDotInfo}. */
+        default void trimNotifications() { }
 
         default void onWidgetsBound() { }
 
@@ -28,7 +28,6 @@ import com.android.launcher3.notification.NotificationKeyData;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.views.ActivityContext;
 
-import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -81,14 +80,15 @@ public abstract class PopupLiveUpdateHandler<T extends Context & ActivityContext
 
 
     @Override
-    public void trimNotifications(Map<PackageUserKey, DotInfo> updatedDots) {
+    public void trimNotifications() {
         NotificationContainer notificationContainer =
                 mPopupContainerWithArrow.getNotificationContainer();
-        if (notificationContainer == null) {
+        PopupDataProvider popupDataProvider = mContext.getPopupDataProvider();
+        if (notificationContainer == null || popupDataProvider == null) {
             return;
         }
         ItemInfo originalInfo = (ItemInfo) mPopupContainerWithArrow.getOriginalIcon().getTag();
-        DotInfo dotInfo = updatedDots.get(PackageUserKey.fromItemInfo(originalInfo));
+        DotInfo dotInfo = popupDataProvider.getPackageDotInfo(originalInfo);
         if (dotInfo == null || dotInfo.getNotificationKeys().size() == 0) {
             // No more notifications, remove the notification views and expand all shortcuts.
             notificationContainer.setVisibility(GONE);
@@ -23,9 +23,8 @@ import android.graphics.drawable.Drawable;
 import android.view.View;
 
 import com.android.launcher3.Utilities;
+import com.android.launcher3.graphics.DragPreviewDrawable;
 import com.android.launcher3.graphics.DragPreviewProvider;
-import com.android.launcher3.icons.BitmapRenderer;
-import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.views.ActivityContext;
 
 /**
@@ -44,11 +43,8 @@ public class ShortcutDragPreviewProvider extends DragPreviewProvider {
     public Drawable createDrawable() {
         int size = ActivityContext.lookupContext(mView.getContext())
                 .getDeviceProfile().iconSizePx;
-        return new FastBitmapDrawable(
-                BitmapRenderer.createHardwareBitmap(
-                        size + blurSizeOutline,
-                        size + blurSizeOutline,
-                        (c) -> drawDragViewOnBackground(c, size)));
+        return DragPreviewDrawable.record(size + blurSizeOutline, size + blurSizeOutline,
+                (c) -> drawDragViewOnBackground(c, size));
     }
 
     private void drawDragViewOnBackground(Canvas canvas, float size) {
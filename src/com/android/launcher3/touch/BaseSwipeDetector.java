@@ -62,6 +62,8 @@ public abstract class BaseSwipeDetector {
     private PointF mLastDisplacement = new PointF();
     private PointF mDisplacement = new PointF();
     protected PointF mSubtractDisplacement = new PointF();
+    // Reused for every drag end, listeners must not keep a reference to it
+    private final PointF mVelocity = new PointF();
     @VisibleForTesting ScrollState mState = ScrollState.IDLE;
     private boolean mIsSettingState;
 
@@ -274,7 +276,8 @@ public abstract class BaseSwipeDetector {
 
     private void reportDragEnd() {
         mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
-        PointF velocity = new PointF(mVelocityTracker.getXVelocity() / 1000,
+        PointF velocity = mVelocity;
+        velocity.set(mVelocityTracker.getXVelocity() / 1000,
                 mVelocityTracker.getYVelocity() / 1000);
         if (mIsRtl) {
             velocity.x = -velocity.x;
@@ -87,6 +87,7 @@ public class BothAxesSwipeDetector extends BaseSwipeDetector {
 
         boolean onDrag(PointF displacement, MotionEvent motionEvent);
 
+        /** @param velocity reused by the detector, only valid during this call. */
         void onDragEnd(PointF velocity);
     }
 }
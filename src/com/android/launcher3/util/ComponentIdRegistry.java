@@ -0,0 +1,85 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.util;
+
+import android.content.ComponentName;
+import android.os.UserHandle;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+
+/**
+ * Assigns a small int id to every (component, user) and (package, user) pair seen by the process,
+ * so that hot lookups can use int keyed collections like {@link IntSparseArrayMap} instead of
+ * allocating a {@link ComponentKey} or {@link PackageUserKey} for each lookup.
+ * <p>
+ * Ids are stable for the lifetime of the process and never reused. They must not be persisted.
+ */
+public class ComponentIdRegistry {
+
+    public static final int NO_ID = -1;
+
+    public static final ComponentIdRegistry INSTANCE = new ComponentIdRegistry();
+
+    // Maps a component or package name to the ids of that name per user
+    private final HashMap<ComponentName, SparseIntArray> mComponentIds = new HashMap<>();
+    private final HashMap<String, SparseIntArray> mPackageIds = new HashMap<>();
+    private int mNextId = 0;
+
+    /** Returns the id of the component, assigning one if needed. */
+    public synchronized int getId(@NonNull ComponentName component, @NonNull UserHandle user) {
+        return getOrCreate(mComponentIds, component, user);
+    }
+
+    /** Returns the id of the component, or {@link #NO_ID} if it was never assigned one. */
+    public synchronized int findId(@NonNull ComponentName component, @NonNull UserHandle user) {
+        return find(mComponentIds, component, user);
+    }
+
+    /** Returns the id of the package, assigning one if needed. */
+    public synchronized int getPackageId(@NonNull String packageName, @NonNull UserHandle user) {
+        return getOrCreate(mPackageIds, packageName, user);
+    }
+
+    /** Returns the id of the package, or {@link #NO_ID} if it was never assigned one. */
+    public synchronized int findPackageId(@NonNull String packageName, @NonNull UserHandle user) {
+        return find(mPackageIds, packageName, user);
+    }
+
+    private <K> int getOrCreate(HashMap<K, SparseIntArray> ids, K name, UserHandle user) {
+        SparseIntArray userIds = ids.get(name);
+        if (userIds == null) {
+            userIds = new SparseIntArray(1);
+            ids.put(name, userIds);
+        }
+        // UserHandle#hashCode is the user identifier
+        int id = userIds.get(user.hashCode(), NO_ID);
+        if (id == NO_ID) {
+            id = mNextId++;
+            userIds.put(user.hashCode(), id);
+        }
+        return id;
+    }
+
+    private static <K> int find(HashMap<K, SparseIntArray> ids, K name, UserHandle user) {
+        SparseIntArray userIds = ids.get(name);
+        return userIds == null ? NO_ID : userIds.get(user.hashCode(), NO_ID);
+    }
+}
@@ -31,11 +31,14 @@ public class OverlayEdgeEffect extends EdgeEffectCompat {
     protected final LauncherOverlay mOverlay;
     protected boolean mIsScrolling;
     protected final boolean mIsRtl;
+    protected final ScrollStateBus mScrollStateBus;
 
-    public OverlayEdgeEffect(Context context, LauncherOverlay overlay) {
+    public OverlayEdgeEffect(Context context, LauncherOverlay overlay,
+            ScrollStateBus scrollStateBus) {
         super(context);
         mOverlay = overlay;
         mIsRtl = Utilities.isRtl(context.getResources());
+        mScrollStateBus = scrollStateBus;
     }
 
     @Override
@@ -49,7 +52,8 @@ public class OverlayEdgeEffect extends EdgeEffectCompat {
             mOverlay.onScrollInteractionBegin();
             mIsScrolling = true;
         }
-        mOverlay.onScrollChange(mDistance, mIsRtl);
+        // Coalesced to one binder call per frame
+        mScrollStateBus.setOverlayScroll(mOverlay, mDistance, mIsRtl);
         return mDistance > 0 ? deltaDistance : 0;
     }
 
@@ -64,6 +68,7 @@ public class OverlayEdgeEffect extends EdgeEffectCompat {
     @Override
     public void onRelease() {
         if (mIsScrolling) {
+            mScrollStateBus.flushOverlayScroll();
             mDistance = 0;
             mOverlay.onScrollInteractionEnd();
             mIsScrolling = false;
@@ -0,0 +1,171 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.content.Context;
+import android.view.Choreographer;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.systemui.plugins.shared.LauncherOverlayManager.LauncherOverlay;
+import com.saggitt.omega.blur.BlurWallpaperProvider;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces the scroll driven updates of the workspace into a single dispatch per frame.
+ * <p>
+ * Scrolling the workspace or pulling the -1 overlay can report many positions within a frame,
+ * one per touch event or per {@code computeScroll}. Only the latest state matters, so updates are
+ * recorded here and fanned out from a {@link Choreographer} callback to the overlay, which is a
+ * binder call, and the blur drawables following the wallpaper. The wallpaper offset is synced
+ * right away instead, so that it moves in the same frame as the workspace, but only once per
+ * scroll position within a frame.
+ */
+@UiThread
+public class ScrollStateBus implements Choreographer.FrameCallback {
+
+    private static final int FLAG_OVERLAY = 1 << 0;
+    private static final int FLAG_BLUR = 1 << 1;
+    // Not dispatched, only schedules the frame which ends the wallpaper dedupe
+    private static final int FLAG_WALLPAPER_SYNCED = 1 << 2;
+
+    private final Context mContext;
+    private final Runnable mWallpaperSync;
+    private final Choreographer mChoreographer;
+
+    // Set from the wallpaper thread, read on the next frame
+    private volatile float mBlurOffset;
+    private final AtomicBoolean mBlurUpdatePosted = new AtomicBoolean();
+    private final Runnable mBlurUpdate = this::onBlurOffsetChanged;
+
+    private int mDirtyFlags;
+    private boolean mFrameScheduled;
+
+    // Scroll position the wallpaper was synced with in the current frame, if any
+    private boolean mWallpaperSyncedInFrame;
+    private int mWallpaperSyncedScrollX;
+
+    @Nullable
+    private LauncherOverlay mOverlay;
+    private float mOverlayProgress;
+    private boolean mOverlayRtl;
+
+    /**
+     * @param wallpaperSync computes the wallpaper offset for the current workspace scroll
+     */
+    public ScrollStateBus(Context context, Runnable wallpaperSync) {
+        mContext = context;
+        mWallpaperSync = wallpaperSync;
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Called when the workspace scroll changed. The wallpaper is synced right away, unless it was
+     * already synced with the same position in this frame.
+     */
+    public void onWorkspaceScrolled(int scrollX) {
+        if (mWallpaperSyncedInFrame && scrollX == mWallpaperSyncedScrollX) {
+            return;
+        }
+        mWallpaperSyncedInFrame = true;
+        mWallpaperSyncedScrollX = scrollX;
+        mWallpaperSync.run();
+        markDirty(FLAG_WALLPAPER_SYNCED);
+    }
+
+    /** Records the overlay scroll progress, only the latest one is sent on the next frame. */
+    public void setOverlayScroll(LauncherOverlay overlay, float progress, boolean rtl) {
+        mOverlay = overlay;
+        mOverlayProgress = progress;
+        mOverlayRtl = rtl;
+        markDirty(FLAG_OVERLAY);
+    }
+
+    /**
+     * Sends any pending overlay scroll immediately. Must be called before ending the scroll
+     * interaction so that the overlay sees the final position first.
+     */
+    public void flushOverlayScroll() {
+        if ((mDirtyFlags & FLAG_OVERLAY) != 0) {
+            mDirtyFlags &= ~FLAG_OVERLAY;
+            dispatchOverlayScroll();
+        }
+    }
+
+    /** Called by the wallpaper thread with each offset applied to the wallpaper. */
+    @AnyThread
+    public void onWallpaperOffsetApplied(float offset) {
+        mBlurOffset = offset;
+        if (mBlurUpdatePosted.compareAndSet(false, true)) {
+            MAIN_EXECUTOR.execute(mBlurUpdate);
+        }
+    }
+
+    private void onBlurOffsetChanged() {
+        mBlurUpdatePosted.set(false);
+        markDirty(FLAG_BLUR);
+    }
+
+    private void markDirty(int flag) {
+        mDirtyFlags |= flag;
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        mWallpaperSyncedInFrame = false;
+        int flags = mDirtyFlags;
+        mDirtyFlags = 0;
+
+        if ((flags & FLAG_OVERLAY) != 0) {
+            dispatchOverlayScroll();
+        }
+        if ((flags & FLAG_BLUR) != 0) {
+            BlurWallpaperProvider.Companion.getInstance(mContext).setWallpaperOffset(mBlurOffset);
+        }
+    }
+
+    private void dispatchOverlayScroll() {
+        if (mOverlay != null) {
+            mOverlay.onScrollChange(mOverlayProgress, mOverlayRtl);
+        }
+    }
+
+    /** Stops sending scroll updates to the overlay, for example when it is disconnected. */
+    public void removeOverlay() {
+        mOverlay = null;
+        mDirtyFlags &= ~FLAG_OVERLAY;
+    }
+
+    /** Drops all pending updates. */
+    public void cancel() {
+        mChoreographer.removeFrameCallback(this);
+        mFrameScheduled = false;
+        mDirtyFlags = 0;
+        mWallpaperSyncedInFrame = false;
+    }
+}
@@ -15,25 +15,176 @@
  */
 package com.android.launcher3.util;
 
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.VIEW_PREINFLATION_EXECUTOR;
+
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
 import com.android.launcher3.R;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Utility class to cache views at an activity level
  */
 public class ViewCache {
 
+    // Pre-inflated views are handed to the main thread in batches of this size
+    private static final int PREINFLATE_BATCH_SIZE = 8;
+
     protected final SparseArray<CacheEntry> mCache = new SparseArray();
 
     public void setCacheSize(int layoutId, int size) {
         mCache.put(layoutId, new CacheEntry(size));
     }
 
+    /**
+     * Grows the cache for the layout so that it can hold at least {@param size} views, keeping
+     * the views that are already cached.
+     */
+    public void ensureCacheSize(int layoutId, int size) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null) {
+            mCache.put(layoutId, new CacheEntry(size));
+        } else {
+            entry.ensureCapacity(size);
+        }
+    }
+
+    /**
+     * Drops the cached views of the layout. Views created before, including the ones still being
+     * pre-inflated, are not accepted back in the cache afterwards. To be called when the views
+     * depend on state which changed, like the device profile.
+     */
+    public void clearCache(int layoutId) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry != null) {
+            mCache.put(layoutId, new CacheEntry(entry.mMaxSize));
+        }
+    }
+
+    /**
+     * Inflates {@param count} views of the layout on the view pre-inflation executor and adds
+     * them to the cache on the main thread in small batches, so that {@link #getView} can pick
+     * them up while the rest is still being inflated.
+     *
+     * Only for layouts whose views can be created without a {@link Looper}, views which create
+     * a Handler or an {@link com.android.launcher3.Alarm}, like folder icons, need
+     * {@link #preInflateOnIdle} instead.
+     *
+     * @return a handle to stop pre-inflating, views already handed over stay in the cache while
+     * the ones handed over after it is closed are dropped
+     */
+    @UiThread
+    public SafeCloseable preInflate(int layoutId, Context context, int count) {
+        if (count <= 0) {
+            return () -> { };
+        }
+        final CacheEntry target = reserve(layoutId, count);
+        // LayoutInflater is not thread safe, use a separate instance for the worker
+        LayoutInflater inflater = LayoutInflater.from(context).cloneInContext(context);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        VIEW_PREINFLATION_EXECUTOR.execute(() -> {
+            for (int i = 0; i < count && !cancelled.get(); i += PREINFLATE_BATCH_SIZE) {
+                View[] batch = new View[Math.min(PREINFLATE_BATCH_SIZE, count - i)];
+                for (int j = 0; j < batch.length; j++) {
+                    batch[j] = inflater.inflate(layoutId, null, false);
+                }
+                MAIN_EXECUTOR.execute(() -> {
+                    if (cancelled.get()) {
+                        return;
+                    }
+                    for (View view : batch) {
+                        view.setTag(R.id.cache_entry_tag_id, target);
+                        recycleView(layoutId, view);
+                    }
+                });
+            }
+        });
+        return () -> cancelled.set(true);
+    }
+
+    /**
+     * Inflates {@param count} views of the layout on the main thread, one each time the main
+     * looper goes idle, and adds them to the cache.
+     *
+     * @return a handle to stop pre-inflating, views already added stay in the cache
+     */
+    @UiThread
+    public SafeCloseable preInflateOnIdle(int layoutId, Context context, int count) {
+        if (count <= 0) {
+            return () -> { };
+        }
+        final CacheEntry target = reserve(layoutId, count);
+        LayoutInflater inflater = LayoutInflater.from(context);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        IdleHandler inflateNext = new IdleHandler() {
+            private int mRemaining = count;
+
+            @Override
+            public boolean queueIdle() {
+                if (cancelled.get()) {
+                    return false;
+                }
+                View view = inflater.inflate(layoutId, null, false);
+                view.setTag(R.id.cache_entry_tag_id, target);
+                recycleView(layoutId, view);
+                if (--mRemaining > 0) {
+                    // Idle handlers only run again after the next message, wait for a new idle
+                    // period so that each view gets its own
+                    MAIN_EXECUTOR.execute(() -> {
+                        if (!cancelled.get()) {
+                            Looper.myQueue().addIdleHandler(this);
+                        }
+                    });
+                }
+                return false;
+            }
+        };
+        Looper.myQueue().addIdleHandler(inflateNext);
+        return () -> {
+            cancelled.set(true);
+            Looper.getMainLooper().getQueue().removeIdleHandler(inflateNext);
+        };
+    }
+
+    private CacheEntry reserve(int layoutId, int count) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null) {
+            entry = new CacheEntry(0);
+            mCache.put(layoutId, entry);
+        }
+        entry.ensureCapacity(entry.mCurrentSize + count);
+        return entry;
+    }
+
+    /**
+     * Returns a cached view for the layout that was created with the given context, or null if
+     * none is available. Unlike {@link #getView} this never inflates.
+     */
+    @Nullable
+    public <T extends View> T getCachedView(int layoutId, Context context) {
+        CacheEntry entry = mCache.get(layoutId);
+        if (entry == null || entry.mCurrentSize == 0
+                || entry.mViews[entry.mCurrentSize - 1].getContext() != context) {
+            return null;
+        }
+        entry.mCurrentSize--;
+        T result = (T) entry.mViews[entry.mCurrentSize];
+        entry.mViews[entry.mCurrentSize] = null;
+        return result;
+    }
+
     public <T extends View> T getView(int layoutId, Context context, ViewGroup parent) {
         CacheEntry entry = mCache.get(layoutId);
         if (entry == null) {
@@ -41,12 +192,8 @@ public class ViewCache {
             mCache.put(layoutId, entry);
         }
 
-        T result;
-        if (entry.mCurrentSize > 0) {
-            entry.mCurrentSize --;
-            result = (T) entry.mViews[entry.mCurrentSize];
-            entry.mViews[entry.mCurrentSize] = null;
-        } else {
+        T result = getCachedView(layoutId, context);
+        if (result == null) {
             result = (T) LayoutInflater.from(context).inflate(layoutId, parent, false);
             result.setTag(R.id.cache_entry_tag_id, entry);
         }
@@ -69,8 +216,8 @@ public class ViewCache {
 
     private static class CacheEntry {
 
-        final int mMaxSize;
-        final View[] mViews;
+        int mMaxSize;
+        View[] mViews;
 
         int mCurrentSize;
 
@@ -79,5 +226,12 @@ public class ViewCache {
             mViews = new View[maxSize];
             mCurrentSize = 0;
         }
+
+        void ensureCapacity(int size) {
+            if (size > mMaxSize) {
+                mMaxSize = size;
+                mViews = Arrays.copyOf(mViews, size);
+            }
+        }
     }
 }
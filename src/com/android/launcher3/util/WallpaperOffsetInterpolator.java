@@ -44,10 +44,14 @@ public class WallpaperOffsetInterpolator {
     private boolean mLockedToDefaultPage;
     private int mNumScreens;
 
-    public WallpaperOffsetInterpolator(Workspace<?> workspace) {
+    // Last offset ratio sent to the handler, to skip redundant updates
+    private int mLastOffsetNumerator = -1;
+    private int mLastOffsetDenominator = -1;
+
+    public WallpaperOffsetInterpolator(Workspace<?> workspace, ScrollStateBus scrollStateBus) {
         mWorkspace = workspace;
         mIsRtl = Utilities.isRtl(workspace.getResources());
-        mHandler = new OffsetHandler(workspace.getContext());
+        mHandler = new OffsetHandler(workspace.getContext(), scrollStateBus);
     }
 
     /**
@@ -163,6 +167,12 @@ public class WallpaperOffsetInterpolator {
     public void syncWithScroll() {
         int numScreens = getNumScrollableScreensExcludingEmpty();
         wallpaperOffsetForScroll(mWorkspace.getScrollX(), numScreens, sTempInt);
+        if (numScreens == mNumScreens && sTempInt[0] == mLastOffsetNumerator
+                && sTempInt[1] == mLastOffsetDenominator) {
+            return;
+        }
+        mLastOffsetNumerator = sTempInt[0];
+        mLastOffsetDenominator = sTempInt[1];
         Message msg = Message.obtain(mHandler, MSG_UPDATE_OFFSET, sTempInt[0], sTempInt[1],
                 mWindowToken);
         if (numScreens != mNumScreens) {
@@ -197,6 +207,9 @@ public class WallpaperOffsetInterpolator {
 
     public void setWindowToken(IBinder token) {
         mWindowToken = token;
+        // Updates without a token are dropped by the handler, so always send the next one
+        mLastOffsetNumerator = -1;
+        mLastOffsetDenominator = -1;
         if (mWindowToken == null && mRegistered) {
             mWallpaperChangeReceiver.unregisterReceiverSafely(mWorkspace.getContext());
             mRegistered = false;
@@ -236,13 +249,13 @@ public class WallpaperOffsetInterpolator {
 
         private float mFinalOffset;
         private float mOffsetX;
-        private final Context mContext;
+        private final ScrollStateBus mScrollStateBus;
 
-        public OffsetHandler(Context context) {
+        public OffsetHandler(Context context, ScrollStateBus scrollStateBus) {
             super(UI_HELPER_EXECUTOR.getLooper());
             mInterpolator = Interpolators.DECELERATE_1_5;
             mWM = WallpaperManager.getInstance(context);
-            mContext = context;
+            mScrollStateBus = scrollStateBus;
         }
 
         @Override
@@ -308,8 +321,8 @@ public class WallpaperOffsetInterpolator {
         private void setOffsetSafely(IBinder token) {
             try {
                 mWM.setWallpaperOffsets(token, mCurrentOffset, 0.5f);
-                BlurWallpaperProvider.Companion.getInstance(mContext)
-                        .setWallpaperOffset(mCurrentOffset);
+                // The blur follows the wallpaper, on the main thread at most once per frame
+                mScrollStateBus.onWallpaperOffsetApplied(mCurrentOffset);
             } catch (IllegalArgumentException e) {
                 Log.e(TAG, "Error updating wallpaper offset: " + e);
             }
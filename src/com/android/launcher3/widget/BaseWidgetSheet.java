@@ -230,6 +230,7 @@ public abstract class BaseWidgetSheet extends AbstractSlideInView<Launcher>
         // RemoteViews is equivalent to the AppWidgetHostView scale.
         dragHelper.setRemoteViewsPreview(v.getRemoteViewsPreview(), v.getAppWidgetHostViewScale());
         dragHelper.setAppWidgetHostViewPreview(v.getAppWidgetHostViewPreview());
+        dragHelper.setPreviewBitmap(v.getPreviewBitmap());
 
         if (image.getDrawable() != null) {
             int[] loc = new int[2];
@@ -33,6 +33,7 @@ import android.util.Log;
 import android.util.Size;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -48,6 +49,9 @@ import com.android.launcher3.util.Executors;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
@@ -58,9 +62,13 @@ public class DatabaseWidgetPreviewLoader {
 
     private final Context mContext;
     private final float mPreviewBoxCornerRadius;
+    private final WidgetPreviewCache mPreviewCache;
+    /** Items for which a preview was already prefetched, only accessed on the UI thread. */
+    private final Set<WidgetItem> mPrefetchedItems = new HashSet<>();
 
     public DatabaseWidgetPreviewLoader(Context context) {
         mContext = context;
+        mPreviewCache = WidgetPreviewCache.INSTANCE.get(context);
         float previewCornerRadius = RoundedCornerEnforcement.computeEnforcedRadius(context);
         mPreviewBoxCornerRadius = previewCornerRadius > 0
                 ? previewCornerRadius
@@ -88,15 +96,51 @@ public class DatabaseWidgetPreviewLoader {
     }
 
     /**
-     * Returns a generated preview for a widget and if the preview should be saved in persistent
-     * storage.
+     * Returns the preview for the item if it is already available in memory, without any disk or
+     * package manager access.
+     */
+    @Nullable
+    public Bitmap getCachedPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        return mPreviewCache.getFromMemory(
+                item, previewSize.getWidth(), previewSize.getHeight());
+    }
+
+    /**
+     * Generates previews for items which are about to be shown, so that they are available in
+     * {@link WidgetPreviewCache} by the time the cells are bound.
+     */
+    public void prefetchPreviews(@NonNull List<WidgetItem> items) {
+        DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
+        for (WidgetItem item : items) {
+            if (item.hasPreviewLayout() || !mPrefetchedItems.add(item)) {
+                // Preview layouts are inflated as RemoteViews, there is no bitmap to cache.
+                // Previews evicted after their prefetch are loaded by the cells when bound.
+                continue;
+            }
+            Size size = WidgetSizes.getWidgetItemSizePx(mContext, dp, item);
+            if (getCachedPreview(item, size) == null) {
+                Executors.UI_HELPER_EXECUTOR.execute(
+                        () -> generatePreview(item, size.getWidth(), size.getHeight()));
+            }
+        }
+    }
+
+    /**
+     * Returns the preview for a widget, either from {@link WidgetPreviewCache} or by generating
+     * and caching a new one.
      */
     private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
+        Bitmap preview = mPreviewCache.get(item, previewWidth, previewHeight);
+        if (preview != null) {
+            return preview;
+        }
         if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            preview = generateWidgetPreview(item.widgetInfo, previewWidth, null);
         } else {
-            return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
+            preview = generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
         }
+        mPreviewCache.put(item, previewWidth, previewHeight, preview);
+        return preview;
     }
 
     /**
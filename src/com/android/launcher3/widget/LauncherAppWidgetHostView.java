@@ -88,6 +88,9 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
 
     private long mDeferUpdatesUntilMillis = 0;
     RemoteViews mLastRemoteViews;
+    // Latest update waiting in the WidgetUpdateScheduler, older ones are dropped
+    private RemoteViews mPendingRemoteViews;
+    private boolean mHasAppliedRemoteViews;
     private boolean mHasDeferredColorChange = false;
     private @Nullable SparseIntArray mDeferredColorChange = null;
 
@@ -177,6 +180,37 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
             mLastRemoteViews = null;
         }
 
+        WidgetUpdateScheduler scheduler = getUpdateScheduler();
+        if (remoteViews != null && mHasAppliedRemoteViews && scheduler != null) {
+            // Content is already shown, the new one is applied when the widget is visible
+            mPendingRemoteViews = remoteViews;
+            scheduler.enqueue(this);
+            return;
+        }
+        applyRemoteViews(remoteViews);
+    }
+
+    /**
+     * Applies the update kept by {@link #updateAppWidget} while this widget was waiting in the
+     * {@link WidgetUpdateScheduler}.
+     */
+    void applyPendingUpdate() {
+        RemoteViews remoteViews = mPendingRemoteViews;
+        if (remoteViews == null) {
+            return;
+        }
+        if (isDeferringUpdates()) {
+            // Applied by endDeferringUpdates instead, it is no longer pending here
+            mPendingRemoteViews = null;
+            mLastRemoteViews = remoteViews;
+        } else {
+            applyRemoteViews(remoteViews);
+        }
+    }
+
+    private void applyRemoteViews(RemoteViews remoteViews) {
+        mPendingRemoteViews = null;
+        mHasAppliedRemoteViews = remoteViews != null;
         super.updateAppWidget(remoteViews);
 
         // The provider info or the views might have changed.
@@ -189,6 +223,12 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
         mReinflateOnConfigChange = !isSameOrientation();
     }
 
+    @Nullable
+    private WidgetUpdateScheduler getUpdateScheduler() {
+        return mLauncher.getWorkspace() == null
+                ? null : mLauncher.getWorkspace().getWidgetUpdateScheduler();
+    }
+
     private boolean isSameOrientation() {
         return mLauncher.getResources().getConfiguration().orientation ==
                 mLauncher.getOrientation();
@@ -277,6 +317,11 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
         mIsAttachedToWindow = true;
         checkIfAutoAdvance();
         mColorExtractor.setListener(this);
+
+        WidgetUpdateScheduler scheduler = getUpdateScheduler();
+        if (mPendingRemoteViews != null && scheduler != null) {
+            scheduler.enqueue(this);
+        }
     }
 
     @Override
@@ -288,6 +333,11 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
         mIsAttachedToWindow = false;
         checkIfAutoAdvance();
         mColorExtractor.setListener(null);
+
+        WidgetUpdateScheduler scheduler = getUpdateScheduler();
+        if (scheduler != null) {
+            scheduler.remove(this);
+        }
     }
 
     @Override
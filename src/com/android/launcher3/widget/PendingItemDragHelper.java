@@ -60,6 +60,7 @@ public class PendingItemDragHelper extends DragPreviewProvider {
     @Nullable private RemoteViews mRemoteViewsPreview;
     private float mRemoteViewsPreviewScale = 1f;
     @Nullable private NavigableAppWidgetHostView mAppWidgetHostViewPreview;
+    @Nullable private Bitmap mPreviewBitmap;
     private final float mEnforcedRoundedCornersForWidget;
 
     public PendingItemDragHelper(View view) {
@@ -85,6 +86,14 @@ public class PendingItemDragHelper extends DragPreviewProvider {
         mAppWidgetHostViewPreview = appWidgetHostViewPreview;
     }
 
+    /**
+     * Sets the preview bitmap already shown for the widget, which is reused for the drag instead
+     * of generating the preview again.
+     */
+    public void setPreviewBitmap(@Nullable Bitmap previewBitmap) {
+        mPreviewBitmap = previewBitmap;
+    }
+
     /**
      * Starts the drag for the pending item associated with the view.
      *
@@ -136,9 +145,14 @@ public class PendingItemDragHelper extends DragPreviewProvider {
                         .addDragListener(new AppWidgetHostViewDragListener(launcher));
             }
             if (preview == null && mAppWidgetHostViewPreview == null) {
-                Drawable p = new FastBitmapDrawable(new DatabaseWidgetPreviewLoader(launcher)
-                        .generateWidgetPreview(
-                                createWidgetInfo.info, maxWidth, previewSizeBeforeScale));
+                Bitmap previewBitmap = mPreviewBitmap;
+                if (previewBitmap != null) {
+                    previewSizeBeforeScale[0] = previewBitmap.getWidth();
+                } else {
+                    previewBitmap = new DatabaseWidgetPreviewLoader(launcher).generateWidgetPreview(
+                            createWidgetInfo.info, maxWidth, previewSizeBeforeScale);
+                }
+                Drawable p = new FastBitmapDrawable(previewBitmap);
                 if (RoundedCornerEnforcement.isRoundedCornerEnabled()) {
                     p = new RoundDrawableWrapper(p, mEnforcedRoundedCornersForWidget);
                 }
@@ -96,6 +96,8 @@ public class WidgetCell extends LinearLayout {
 
     private RemoteViews mRemoteViewsPreview;
     private NavigableAppWidgetHostView mAppWidgetHostViewPreview;
+    @Nullable
+    private Bitmap mPreviewBitmap;
     private float mAppWidgetHostViewScale = 1f;
     private int mSourceContainer = CONTAINER_WIDGETS_TRAY;
 
@@ -157,6 +159,7 @@ public class WidgetCell extends LinearLayout {
         mWidgetImage.animate().cancel();
         mWidgetImage.setDrawable(null);
         mWidgetImage.setVisibility(View.VISIBLE);
+        mPreviewBitmap = null;
         mWidgetBadge.setImageDrawable(null);
         mWidgetBadge.setVisibility(View.GONE);
         mWidgetName.setText(null);
@@ -250,10 +253,12 @@ public class WidgetCell extends LinearLayout {
             // proper solution is to use RemoteViews(PackageName, LayoutId).
             providerInfo.initialLayout = item.widgetInfo.previewLayout;
             setAppWidgetHostViewPreview(mAppWidgetHostViewPreview, providerInfo, null);
-        } else if (cachedPreview != null) {
-            applyPreview(cachedPreview);
         } else {
-            if (mActiveRequest == null) {
+            Bitmap preview = cachedPreview != null
+                    ? cachedPreview : mWidgetPreviewLoader.getCachedPreview(mItem, mWidgetSize);
+            if (preview != null) {
+                applyPreview(preview);
+            } else if (mActiveRequest == null) {
                 mActiveRequest = mWidgetPreviewLoader.loadPreview(mItem, mWidgetSize, callback);
             }
         }
@@ -309,6 +314,12 @@ public class WidgetCell extends LinearLayout {
         return mWidgetImage;
     }
 
+    /** Returns the preview bitmap shown by this cell, or null if it is not loaded yet. */
+    @Nullable
+    public Bitmap getPreviewBitmap() {
+        return mPreviewBitmap;
+    }
+
     @Nullable
     public NavigableAppWidgetHostView getAppWidgetHostViewPreview() {
         return mAppWidgetHostViewPreview;
@@ -320,6 +331,7 @@ public class WidgetCell extends LinearLayout {
 
     private void applyPreview(Bitmap bitmap) {
         if (bitmap != null) {
+            mPreviewBitmap = bitmap;
             Drawable drawable = new RoundDrawableWrapper(
                     new FastBitmapDrawable(bitmap), mEnforcedCornerRadius);
             mWidgetImage.setDrawable(drawable);
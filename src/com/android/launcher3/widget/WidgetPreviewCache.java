@@ -0,0 +1,239 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Two level cache for generated widget previews. Previews are kept in a memory LRU and persisted
+ * to the app cache directory, keyed by provider, user, preview size and the package version, so
+ * that the picker does not re-render previews every time a cell is bound.
+ */
+public class WidgetPreviewCache {
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    private static final String CACHE_DIR = "widget_previews";
+    private static final String FILE_EXTENSION = ".png";
+
+    // Roughly the size of 30 full width previews on a 1080p device.
+    private static final int MEMORY_CACHE_SIZE_BYTES = 24 * 1024 * 1024;
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private final Context mContext;
+    private final File mCacheDir;
+    private final LruCache<String, Bitmap> mMemoryCache =
+            new LruCache<String, Bitmap>(MEMORY_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+
+    /** Package name to last update time, cleared when the package is invalidated. */
+    private final Map<String, Long> mPackageVersions = new HashMap<>();
+
+    private WidgetPreviewCache(Context context) {
+        mContext = context;
+        mCacheDir = new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    /**
+     * Returns the in-memory preview for the item if present. This never touches the disk or the
+     * package manager and is safe to call from the UI thread.
+     */
+    @Nullable
+    public Bitmap getFromMemory(@NonNull WidgetItem item, int width, int height) {
+        Long version;
+        synchronized (mPackageVersions) {
+            version = mPackageVersions.get(item.componentName.getPackageName());
+        }
+        return version == null ? null : mMemoryCache.get(getKey(item, width, height, version));
+    }
+
+    /**
+     * Returns the preview for the item from memory or disk, or null if it was never generated for
+     * the current package version.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull WidgetItem item, int width, int height) {
+        long version = getPackageVersion(item.componentName);
+        String key = getKey(item, width, height, version);
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null || version == 0) {
+            return bitmap;
+        }
+        File file = getFile(item.componentName, key);
+        if (!file.exists()) {
+            return null;
+        }
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        if (Utilities.ATLEAST_P) {
+            opts.inPreferredConfig = Bitmap.Config.HARDWARE;
+        }
+        bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), opts);
+        if (bitmap == null) {
+            file.delete();
+            return null;
+        }
+        mMemoryCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /** Stores a generated preview in memory and on disk. */
+    @WorkerThread
+    public void put(@NonNull WidgetItem item, int width, int height, @NonNull Bitmap preview) {
+        long version = getPackageVersion(item.componentName);
+        String key = getKey(item, width, height, version);
+        mMemoryCache.put(key, preview);
+        if (version == 0) {
+            // Without a version the disk entry could never be invalidated
+            return;
+        }
+
+        File file = getFile(item.componentName, key);
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        Bitmap toWrite = preview.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.copy(Bitmap.Config.ARGB_8888, false) : preview;
+        if (toWrite == null) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            toWrite.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write widget preview for " + item.componentName, e);
+            file.delete();
+        } finally {
+            if (toWrite != preview) {
+                toWrite.recycle();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached previews for the package, both in memory and on disk.
+     */
+    @WorkerThread
+    public void invalidatePackage(@NonNull String packageName) {
+        synchronized (mPackageVersions) {
+            mPackageVersions.remove(packageName);
+        }
+        String prefix = packageName + "/";
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mMemoryCache.remove(key);
+            }
+        }
+        deleteDir(new File(mCacheDir, packageName));
+    }
+
+    /**
+     * Deletes the disk entries of packages which are no longer installed, as they may have been
+     * removed while the launcher was not running.
+     */
+    @WorkerThread
+    public void removeUninstalledPackages() {
+        File[] dirs = mCacheDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        PackageManager pm = mContext.getPackageManager();
+        for (File dir : dirs) {
+            try {
+                pm.getPackageInfo(dir.getName(), 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                invalidatePackage(dir.getName());
+            }
+        }
+    }
+
+    /** Drops the memory cache, keeping the disk cache around for the next session. */
+    public void trimMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    private long getPackageVersion(ComponentName cn) {
+        String packageName = cn.getPackageName();
+        synchronized (mPackageVersions) {
+            Long version = mPackageVersions.get(packageName);
+            if (version != null) {
+                return version;
+            }
+        }
+        long version;
+        try {
+            version = mContext.getPackageManager().getPackageInfo(
+                    packageName, PackageManager.MATCH_UNINSTALLED_PACKAGES).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Package only installed in another profile, fall back to a non-persistent key
+            version = 0;
+        }
+        synchronized (mPackageVersions) {
+            mPackageVersions.put(packageName, version);
+        }
+        return version;
+    }
+
+    private String getKey(WidgetItem item, int width, int height, long version) {
+        long serial = UserCache.INSTANCE.get(mContext).getSerialNumberForUser(item.user);
+        return item.componentName.getPackageName() + "/" + item.componentName.getClassName()
+                + "_" + serial + "_" + width + "x" + height + "_" + version;
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private File getFile(ComponentName cn, String key) {
+        return new File(new File(mCacheDir, cn.getPackageName()),
+                key.substring(cn.getPackageName().length() + 1) + FILE_EXTENSION);
+    }
+}
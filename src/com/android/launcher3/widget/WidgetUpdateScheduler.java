@@ -0,0 +1,148 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.widget;
+
+import android.os.SystemClock;
+import android.util.ArraySet;
+import android.view.Choreographer;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Schedules the application of {@link android.widget.RemoteViews} updates for bound widgets.
+ * <p>
+ * Each widget keeps only its latest pending update, see
+ * {@link LauncherAppWidgetHostView#applyPendingUpdate()}. Widgets which are not visible, for
+ * example on another workspace page, are parked until they scroll into view. Visible widgets are
+ * applied from a {@link Choreographer} callback, as many as fit in the frame budget, so that a
+ * burst of updates is spread over several frames.
+ */
+@UiThread
+public class WidgetUpdateScheduler implements Choreographer.FrameCallback {
+
+    // Time spent applying updates in a single frame, at least one update is always applied
+    private static final long FRAME_BUDGET_MILLIS = 4;
+
+    private final Predicate<LauncherAppWidgetHostView> mIsVisible;
+    private final Consumer<LauncherAppWidgetHostView> mApplyUpdate;
+    private final Choreographer mChoreographer;
+
+    private final ArraySet<LauncherAppWidgetHostView> mDeferred = new ArraySet<>();
+    private final ArrayDeque<LauncherAppWidgetHostView> mReady = new ArrayDeque<>();
+
+    private boolean mFrameScheduled;
+    private boolean mVisibilityChanged;
+
+    /**
+     * @param isVisible returns whether the widget is currently shown to the user
+     */
+    public WidgetUpdateScheduler(Predicate<LauncherAppWidgetHostView> isVisible) {
+        this(isVisible, LauncherAppWidgetHostView::applyPendingUpdate);
+    }
+
+    @VisibleForTesting
+    WidgetUpdateScheduler(Predicate<LauncherAppWidgetHostView> isVisible,
+            Consumer<LauncherAppWidgetHostView> applyUpdate) {
+        mIsVisible = isVisible;
+        mApplyUpdate = applyUpdate;
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    /** Schedules the pending update of the widget, multiple calls are coalesced. */
+    public void enqueue(LauncherAppWidgetHostView view) {
+        if (mDeferred.contains(view) || mReady.contains(view)) {
+            return;
+        }
+        if (mIsVisible.test(view)) {
+            mReady.add(view);
+            scheduleFrame();
+        } else {
+            mDeferred.add(view);
+        }
+    }
+
+    /** Drops the widget from the queue, its pending update is kept on the view. */
+    public void remove(LauncherAppWidgetHostView view) {
+        mDeferred.remove(view);
+        mReady.remove(view);
+    }
+
+    /**
+     * Called when the set of visible widgets might have changed, parked widgets are checked again
+     * on the next frame.
+     */
+    public void onVisibilityChanged() {
+        if (!mDeferred.isEmpty()) {
+            mVisibilityChanged = true;
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        if (mVisibilityChanged) {
+            mVisibilityChanged = false;
+            for (int i = mDeferred.size() - 1; i >= 0; i--) {
+                LauncherAppWidgetHostView view = mDeferred.valueAt(i);
+                if (mIsVisible.test(view)) {
+                    mDeferred.removeAt(i);
+                    mReady.add(view);
+                }
+            }
+        }
+
+        long deadline = SystemClock.uptimeMillis() + FRAME_BUDGET_MILLIS;
+        LauncherAppWidgetHostView view;
+        while ((view = mReady.poll()) != null) {
+            if (!mIsVisible.test(view)) {
+                // Scrolled away since it was queued
+                mDeferred.add(view);
+                continue;
+            }
+            mApplyUpdate.accept(view);
+            if (SystemClock.uptimeMillis() >= deadline) {
+                break;
+            }
+        }
+        if (!mReady.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    /** Drops all queued widgets. */
+    public void clear() {
+        mChoreographer.removeFrameCallback(this);
+        mFrameScheduled = false;
+        mVisibilityChanged = false;
+        mDeferred.clear();
+        mReady.clear();
+    }
+}
@@ -46,6 +46,7 @@ import com.android.launcher3.recyclerview.ViewHolderBinder;
 import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.DatabaseWidgetPreviewLoader;
 import com.android.launcher3.widget.model.WidgetListSpaceEntry;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.model.WidgetsListContentEntry;
@@ -83,7 +84,11 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
     public static final int VIEW_TYPE_WIDGETS_LIST = R.id.view_type_widgets_list;
     public static final int VIEW_TYPE_WIDGETS_HEADER = R.id.view_type_widgets_header;
 
+    /** Number of rows past the one being bound for which widget previews are prefetched. */
+    private static final int PREVIEW_PREFETCH_DISTANCE = 2;
+
     private final Context mContext;
+    private final DatabaseWidgetPreviewLoader mPreviewLoader;
     private final SparseArray<ViewHolderBinder> mViewHolderBinders = new SparseArray<>();
     private final WidgetListBaseRowEntryComparator mRowComparator =
             new WidgetListBaseRowEntryComparator();
@@ -107,6 +112,7 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
             OnLongClickListener iconLongClickListener,
             boolean isTwoPane) {
         mContext = context;
+        mPreviewLoader = new DatabaseWidgetPreviewLoader(context);
         mMaxHorizontalSpan = WidgetSizes.getWidgetSizePx(
                 ActivityContext.lookupContext(context).getDeviceProfile(),
                         DEFAULT_MAX_HORIZONTAL_SPANS, 1).getWidth();
@@ -266,6 +272,20 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
             listPos |= POSITION_LAST;
         }
         viewHolderBinder.bindViewHolder(holder, mVisibleEntries.get(pos), listPos, payloads);
+        if (payloads.isEmpty()) {
+            prefetchPreviewsAfter(pos);
+        }
+    }
+
+    /** Warms up the preview cache for the widget rows that are about to scroll in. */
+    private void prefetchPreviewsAfter(int pos) {
+        int end = Math.min(pos + PREVIEW_PREFETCH_DISTANCE, mVisibleEntries.size() - 1);
+        for (int i = pos + 1; i <= end; i++) {
+            WidgetsListBaseEntry entry = mVisibleEntries.get(i);
+            if (entry instanceof WidgetsListContentEntry) {
+                mPreviewLoader.prefetchPreviews(entry.mWidgets);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,228 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link LazyPageBinder}, with workspace pages at the index of their screen id.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LazyPageBinderTest {
+
+    private static final int PAGE_COUNT = 6;
+
+    private Launcher mLauncher;
+    private Workspace<?> mWorkspace;
+    private LazyPageBinder mBinder;
+
+    private int[] mVisiblePages = {0, 0};
+
+    @Before
+    public void setUp() {
+        mLauncher = mock(Launcher.class);
+        mWorkspace = mock(Workspace.class);
+        when(mWorkspace.getPanelCount()).thenReturn(1);
+        when(mWorkspace.getVisibleChildrenRange()).thenAnswer(i -> mVisiblePages);
+        when(mWorkspace.getNextPage()).thenAnswer(i -> mVisiblePages[0]);
+        when(mWorkspace.getPageIndexForScreenId(anyInt())).thenAnswer(i -> {
+            int screenId = i.getArgument(0);
+            return screenId < PAGE_COUNT ? screenId : -1;
+        });
+        mBinder = new LazyPageBinder(mLauncher, mWorkspace);
+    }
+
+    @Test
+    public void addPendingItems_bindsNearbyPagesRightAway() {
+        ItemInfo near = newApp(1, 1);
+        ItemInfo far = newApp(2, 3);
+
+        runOnMain(() -> mBinder.addPendingItems(byScreen(near, far)));
+
+        assertThat(getBoundItems()).containsExactly(near);
+        assertThat(mBinder.hasPendingItems(1)).isFalse();
+        assertThat(mBinder.hasPendingItems(3)).isTrue();
+    }
+
+    @Test
+    public void addPendingItems_unknownScreen_boundRightAway() {
+        ItemInfo item = newApp(1, PAGE_COUNT + 1);
+
+        runOnMain(() -> mBinder.addPendingItems(byScreen(item)));
+
+        assertThat(getBoundItems()).containsExactly(item);
+        assertThat(mBinder.hasPendingItems(PAGE_COUNT + 1)).isFalse();
+    }
+
+    @Test
+    public void onVisiblePagesChanged_bindsPagesWhichGotClose() {
+        ItemInfo far = newApp(1, 3);
+        ItemInfo farthest = newApp(2, 5);
+        runOnMain(() -> mBinder.addPendingItems(byScreen(far, farthest)));
+        verify(mLauncher, never()).bindItems(any(), anyBoolean());
+
+        mVisiblePages = new int[] {2, 2};
+        runOnMain(() -> {
+            mBinder.onVisiblePagesChanged();
+            // Coalesced with the previous call
+            mBinder.onVisiblePagesChanged();
+        });
+        ArgumentCaptor<Runnable> bind = ArgumentCaptor.forClass(Runnable.class);
+        verify(mWorkspace, times(1)).post(bind.capture());
+        runOnMain(bind.getValue()::run);
+
+        assertThat(getBoundItems()).containsExactly(far);
+        assertThat(mBinder.hasPendingItems(5)).isTrue();
+    }
+
+    @Test
+    public void onVisiblePagesChanged_nothingPending_doesNotPost() {
+        runOnMain(mBinder::onVisiblePagesChanged);
+
+        verify(mWorkspace, never()).post(any());
+    }
+
+    @Test
+    public void removeItems_dropsMatchingItemsAndFolderContents() {
+        WorkspaceItemInfo removed = newApp(1, 3);
+        WorkspaceItemInfo kept = newApp(2, 4);
+        FolderInfo folder = new FolderInfo();
+        folder.id = 3;
+        folder.container = CONTAINER_DESKTOP;
+        folder.screenId = 4;
+        WorkspaceItemInfo removedInFolder = newApp(4, 4);
+        WorkspaceItemInfo keptInFolder = newApp(5, 4);
+        folder.add(removedInFolder, false);
+        folder.add(keptInFolder, false);
+        runOnMain(() -> mBinder.addPendingItems(byScreen(removed, kept, folder)));
+
+        runOnMain(() -> mBinder.removeItems(
+                item -> item == removed || item == removedInFolder));
+
+        assertThat(mBinder.hasPendingItems(3)).isFalse();
+        assertThat(mBinder.hasPendingItems(4)).isTrue();
+        assertThat(folder.contents).containsExactly(keptInFolder);
+
+        mVisiblePages = new int[] {4, 4};
+        runOnMain(mBinder::onVisiblePagesChanged);
+        ArgumentCaptor<Runnable> bind = ArgumentCaptor.forClass(Runnable.class);
+        verify(mWorkspace).post(bind.capture());
+        runOnMain(bind.getValue()::run);
+        assertThat(getBoundItems()).containsExactly(kept, folder);
+    }
+
+    @Test
+    public void updatePendingItems_pageBindsUpdatedItems() {
+        WorkspaceItemInfo app = newApp(1, 3);
+        FolderInfo folder = new FolderInfo();
+        folder.id = 2;
+        folder.container = CONTAINER_DESKTOP;
+        folder.screenId = 3;
+        WorkspaceItemInfo inFolder = newApp(3, 3);
+        folder.add(inFolder, false);
+        runOnMain(() -> mBinder.addPendingItems(byScreen(app, folder)));
+
+        // Change binds can carry new instances for the same items
+        WorkspaceItemInfo updatedApp = newApp(1, 3);
+        WorkspaceItemInfo updatedInFolder = newApp(3, 3);
+        runOnMain(() -> mBinder.updatePendingItems(Arrays.asList(updatedApp, updatedInFolder)));
+
+        mVisiblePages = new int[] {3, 3};
+        runOnMain(mBinder::onVisiblePagesChanged);
+        ArgumentCaptor<Runnable> bind = ArgumentCaptor.forClass(Runnable.class);
+        verify(mWorkspace).post(bind.capture());
+        runOnMain(bind.getValue()::run);
+        assertThat(getBoundItems()).containsExactly(updatedApp, folder);
+        assertThat(folder.contents).containsExactly(updatedInFolder);
+    }
+
+    @Test
+    public void clear_dropsPendingItems() {
+        runOnMain(() -> mBinder.addPendingItems(byScreen(newApp(1, 3))));
+        runOnMain(mBinder::onVisiblePagesChanged);
+
+        runOnMain(mBinder::clear);
+
+        assertThat(mBinder.hasPendingItems(3)).isFalse();
+        verify(mWorkspace).removeCallbacks(any());
+    }
+
+    private List<ItemInfo> getBoundItems() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ItemInfo>> items = ArgumentCaptor.forClass(List.class);
+        verify(mLauncher).bindItems(items.capture(), anyBoolean());
+        return items.getValue();
+    }
+
+    private static IntSparseArrayMap<ArrayList<ItemInfo>> byScreen(ItemInfo... items) {
+        IntSparseArrayMap<ArrayList<ItemInfo>> itemsByScreen = new IntSparseArrayMap<>();
+        for (ItemInfo item : items) {
+            ArrayList<ItemInfo> screenItems = itemsByScreen.get(item.screenId);
+            if (screenItems == null) {
+                screenItems = new ArrayList<>();
+                itemsByScreen.put(item.screenId, screenItems);
+            }
+            screenItems.add(item);
+        }
+        return itemsByScreen;
+    }
+
+    private static WorkspaceItemInfo newApp(int id, int screenId) {
+        WorkspaceItemInfo item = new WorkspaceItemInfo();
+        item.id = id;
+        item.container = CONTAINER_DESKTOP;
+        item.screenId = screenId;
+        return item;
+    }
+
+    private static void runOnMain(Runnable task) {
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR, task::run);
+    }
+}
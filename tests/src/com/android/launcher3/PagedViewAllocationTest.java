@@ -0,0 +1,109 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.pageindicators.PageIndicatorDots;
+import com.android.launcher3.testcomponent.TouchEventGenerator;
+import com.android.launcher3.testcomponent.TouchEventRecording;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Replays recorded page swipes through a {@link PagedView} and checks that dragging does not
+ * allocate.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PagedViewAllocationTest {
+
+    private static final int SIZE = 1000;
+    private static final int PAGE_COUNT = 3;
+
+    private PagedView<PageIndicatorDots> mPagedView;
+    private TouchEventRecording mRecording;
+    private int mDragEnd;
+
+    @Before
+    public void setup() {
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            Context context = new ActivityContextWrapper(getApplicationContext());
+            mPagedView = new PagedView<PageIndicatorDots>(context) { };
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                mPagedView.addView(new View(context));
+            }
+            mPagedView.measure(MeasureSpec.makeMeasureSpec(SIZE, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(SIZE, MeasureSpec.EXACTLY));
+            mPagedView.layout(0, 0, SIZE, SIZE);
+        });
+
+        // Slow swipe towards the next page, short of a page change
+        mRecording = new TouchEventRecording();
+        TouchEventGenerator generator = mRecording.getGenerator()
+                .put(0, 800, 500);
+        for (int x = 760; x >= 600; x -= 40) {
+            generator.move(0, x, 500, 50);
+        }
+        mDragEnd = mRecording.getEventCount();
+        generator.lift(0, 50);
+    }
+
+    @After
+    public void tearDown() {
+        mRecording.recycle();
+    }
+
+    @Test
+    public void pageDrag_doesNotAllocate() {
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            TouchEventGenerator.Listener listener = mPagedView::onTouchEvent;
+            // The first swipe fills the VelocityTracker pool and loads the classes involved
+            mRecording.replay(listener);
+            resetScroll();
+
+            int allocations = mRecording.countAllocationsDuringReplay(listener, 0, mDragEnd);
+            mRecording.replay(listener, mDragEnd, mRecording.getEventCount());
+            resetScroll();
+            assertThat(allocations).isEqualTo(0);
+        });
+    }
+
+    private void resetScroll() {
+        // Drops the snap started on release, the next swipe starts from the first page again
+        mPagedView.abortScrollerAnimation();
+        mPagedView.setCurrentPage(0);
+    }
+}
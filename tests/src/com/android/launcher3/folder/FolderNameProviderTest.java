@@ -18,6 +18,7 @@ package com.android.launcher3.folder;
 import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import android.content.ComponentName;
@@ -38,6 +39,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.List;
 
 @SmallTest
 @RunWith(AndroidJUnit4.class)
@@ -82,4 +84,24 @@ public final class FolderNameProviderTest {
         assertTrue(nameInfos.hasSuggestions());
         assertTrue(nameInfos.hasPrimary());
     }
+
+    @Test
+    public void getContentsKey_ignoresOrderButNotContents() {
+        WorkspaceItemInfo a = newItem("a.b", UserHandle.of(0));
+        WorkspaceItemInfo b = newItem("c.d", UserHandle.of(0));
+        WorkspaceItemInfo workB = newItem("c.d", UserHandle.of(10));
+
+        assertEquals(FolderNameProvider.getContentsKey(List.of(a, b)),
+                FolderNameProvider.getContentsKey(List.of(b, a)));
+        assertNotEquals(FolderNameProvider.getContentsKey(List.of(a, b)),
+                FolderNameProvider.getContentsKey(List.of(a, workB)));
+        assertNotEquals(FolderNameProvider.getContentsKey(List.of(a, b)),
+                FolderNameProvider.getContentsKey(List.of(a, b, b)));
+    }
+
+    private static WorkspaceItemInfo newItem(String packageName, UserHandle user) {
+        ComponentName cn = new ComponentName(packageName, packageName + ".Main");
+        return new WorkspaceItemInfo(new AppInfo(cn, packageName, user,
+                new Intent().setComponent(cn)));
+    }
 }
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertTrue;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
 
 import org.junit.After;
 import org.junit.Before;
@@ -16,7 +17,10 @@ import org.junit.runner.RunWith;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link FileLog}
@@ -93,4 +97,93 @@ public class FileLogTest {
         // Old logs have been truncated
         assertFalse(writer.toString().contains("hoolalala"));
     }
+
+    @Test
+    public void testManyLinesWrittenInBatches() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        // Enough lines to fill the record buffer several times over
+        for (int i = 0; i < 5000; i++) {
+            FileLog.print("Testing", "line " + i);
+            if (i % 1000 == 0) {
+                assertTrue(FileLog.flushAll(null));
+            }
+        }
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+        assertTrue(writer.toString().contains("Testing line 0"));
+        assertTrue(writer.toString().contains("Testing line 4999"));
+    }
+
+    @Test
+    public void testFullBufferWaitsForWriterOffMainThread() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        // Each line takes 4kb, the lines fill the record buffer many times over without
+        // flushing in between
+        String padding = repeat('x', 2000);
+        for (int i = 0; i < 100; i++) {
+            FileLog.print("Testing", "big line " + i + padding);
+        }
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.toString().contains("Testing big line " + i + "x"));
+        }
+        assertFalse(writer.toString().contains("log lines dropped"));
+    }
+
+    @Test
+    public void testFullBufferOnMainThreadRecordsDroppedLines() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        // Keep the writer busy so that the buffer can not be written while lines are added
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        FileLog.getHandler().post(() -> {
+            writerBlocked.countDown();
+            try {
+                releaseWriter.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+
+        String padding = repeat('x', 2000);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < 100; i++) {
+                FileLog.print("Testing", "main line " + i + padding);
+            }
+        });
+        releaseWriter.countDown();
+
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+        assertTrue(writer.toString().contains("Testing main line 0x"));
+        assertFalse(writer.toString().contains("Testing main line 99x"));
+        assertTrue(writer.toString().contains("log lines dropped"));
+    }
+
+    @Test
+    public void testLegacyTextLogDumped() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(new File(mTempDir, "log-0"))) {
+            out.println("legacy hoolalala");
+        }
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+        assertTrue(writer.toString().contains("legacy hoolalala"));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.logging
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.PrintWriter
+import java.io.StringWriter
+
+/** Unit test for [PerfMetrics]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class PerfMetricsTest {
+
+    @Test
+    fun bucketIndex_powerOfTwoBoundaries() {
+        assertThat(PerfMetrics.Histogram.bucketIndex(0)).isEqualTo(0)
+        assertThat(PerfMetrics.Histogram.bucketIndex(1)).isEqualTo(1)
+        assertThat(PerfMetrics.Histogram.bucketIndex(2)).isEqualTo(2)
+        assertThat(PerfMetrics.Histogram.bucketIndex(3)).isEqualTo(2)
+        assertThat(PerfMetrics.Histogram.bucketIndex(4)).isEqualTo(3)
+        assertThat(PerfMetrics.Histogram.bucketIndex(Long.MAX_VALUE))
+            .isEqualTo(PerfMetrics.Histogram.BUCKET_COUNT - 1)
+    }
+
+    @Test
+    fun histogram_percentilesAreUpperBounds() {
+        val histogram = PerfMetrics.Histogram("test")
+        for (i in 1..100) {
+            histogram.record(i.toLong())
+        }
+
+        assertThat(histogram.count).isEqualTo(100)
+        assertThat(histogram.max).isEqualTo(100)
+        assertThat(histogram.mean).isEqualTo(50)
+        // 50th sample falls in [32, 64)
+        assertThat(histogram.getPercentile(0.5f)).isEqualTo(63)
+        // 99th sample falls in [64, 128) but is capped by the max
+        assertThat(histogram.getPercentile(0.99f)).isEqualTo(100)
+    }
+
+    @Test
+    fun histogram_ignoresNegativeValues() {
+        val histogram = PerfMetrics.Histogram("test")
+        histogram.record(-5)
+
+        assertThat(histogram.count).isEqualTo(0)
+        assertThat(histogram.getPercentile(0.5f)).isEqualTo(0)
+    }
+
+    @Test
+    fun register_returnsSameInstanceForName() {
+        assertThat(PerfMetrics.histogram("test.same"))
+            .isSameInstanceAs(PerfMetrics.histogram("test.same"))
+        assertThat(PerfMetrics.counter("test.counter"))
+            .isSameInstanceAs(PerfMetrics.counter("test.counter"))
+    }
+
+    @Test
+    fun frameTracker_stopsSessionsWhichAreNeverEnded() {
+        val tracker = PerfMetrics.FrameTracker("test.frames.timeout")
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR) {
+            val start = System.nanoTime()
+            tracker.begin()
+            tracker.doFrame(start)
+            tracker.doFrame(start + 16_666_667)
+            // The end call was missed
+            tracker.doFrame(start + 120_000_000_000)
+            tracker.doFrame(start + 120_016_666_667)
+        }
+
+        assertThat(dump(tracker)).isEqualTo("test.frames.timeout: sessions=1 frames=1 dropped=0")
+    }
+
+    @Test
+    fun frameTracker_cancelEndsNestedSessions() {
+        val tracker = PerfMetrics.FrameTracker("test.frames.cancel")
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR) {
+            tracker.begin()
+            tracker.begin()
+            tracker.cancel()
+            tracker.doFrame(System.nanoTime())
+            // A new session starts right away instead of nesting in the cancelled one
+            tracker.begin()
+            tracker.end()
+        }
+
+        assertThat(dump(tracker)).isEqualTo("test.frames.cancel: sessions=2 frames=0 dropped=0")
+    }
+
+    private fun dump(metric: PerfMetrics.Metric) =
+        StringWriter().also { metric.dump(PrintWriter(it, true)) }.toString()
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_FOLDER;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link BgDataModel}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BgDataModelTest {
+
+    private static final String TEST_PACKAGE = "com.example.app";
+    private static final String OTHER_PACKAGE = "com.example.other";
+    private static final int FOLDER_ID = 1;
+
+    private Context mContext;
+    private BgDataModel mModel;
+
+    @Before
+    public void setup() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mModel = new BgDataModel();
+    }
+
+    @Test
+    public void snapshot_notRepublishedWithoutChanges() {
+        mModel.addItem(mContext, newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE), false);
+        mModel.publishSnapshot();
+        BgDataModel.Snapshot snapshot = mModel.getSnapshot();
+
+        mModel.publishSnapshot();
+
+        assertThat(mModel.getSnapshot()).isSameInstanceAs(snapshot);
+        assertThat(snapshot.workspaceItems).hasSize(1);
+    }
+
+    @Test
+    public void snapshot_copiesFolderContents() {
+        FolderInfo folder = newFolder(FOLDER_ID);
+        WorkspaceItemInfo first = newApp(2, FOLDER_ID, TEST_PACKAGE);
+        mModel.addItem(mContext, folder, false);
+        mModel.addItem(mContext, first, false);
+        mModel.publishSnapshot();
+        BgDataModel.Snapshot snapshot = mModel.getSnapshot();
+
+        // Folders are edited in place, e.g. on drop
+        folder.add(newApp(3, FOLDER_ID, TEST_PACKAGE), false);
+        folder.remove(first, false);
+
+        assertThat(snapshot.getFolderContents(FOLDER_ID)).containsExactly(first);
+        assertThat(snapshot.getFolderContents(42)).isEmpty();
+    }
+
+    @Test
+    public void snapshot_publishedAfterInvalidate() {
+        mModel.publishSnapshot();
+        int version = mModel.getSnapshot().version;
+
+        mModel.workspaceItems.add(newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE));
+        mModel.invalidateSnapshot();
+        mModel.publishSnapshot();
+
+        assertThat(mModel.getSnapshot().version).isGreaterThan(version);
+        assertThat(mModel.getSnapshot().workspaceItems).hasSize(1);
+    }
+
+    @Test
+    public void scheduledPublish_copiesOnceForBurst() {
+        mModel.publishSnapshot();
+        int version = mModel.getSnapshot().version;
+
+        TestUtil.runOnExecutorSync(MODEL_EXECUTOR, () -> {
+            for (int i = 0; i < 3; i++) {
+                mModel.workspaceItems.add(newApp(2 + i, CONTAINER_DESKTOP, TEST_PACKAGE));
+                mModel.invalidateSnapshot();
+                mModel.schedulePublishSnapshot();
+            }
+            assertThat(mModel.getSnapshot().version).isEqualTo(version);
+        });
+        // Runs after the scheduled publish
+        TestUtil.runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertThat(mModel.getSnapshot().version).isEqualTo(version + 1);
+        assertThat(mModel.getSnapshot().workspaceItems).hasSize(3);
+    }
+
+    @Test
+    public void packageIndex_visitsOnlyItemsOfPackages() {
+        WorkspaceItemInfo onDesktop = newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE);
+        WorkspaceItemInfo inFolder = newApp(3, FOLDER_ID, TEST_PACKAGE);
+        mModel.addItem(mContext, newFolder(FOLDER_ID), false);
+        mModel.addItem(mContext, onDesktop, false);
+        mModel.addItem(mContext, inFolder, false);
+        mModel.addItem(mContext, newApp(4, CONTAINER_DESKTOP, OTHER_PACKAGE), false);
+
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE))
+                .containsExactly(onDesktop, inFolder);
+        assertThat(getItemsOfPackages(Process.myUserHandle(), "com.example.missing")).isEmpty();
+    }
+
+    @Test
+    public void packageIndex_filtersByUser() {
+        WorkspaceItemInfo item = newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE);
+        mModel.addItem(mContext, item, false);
+
+        UserHandle otherUser = UserHandle.of(Process.myUserHandle().hashCode() + 1);
+        assertThat(getItemsOfPackages(otherUser, TEST_PACKAGE)).isEmpty();
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE))
+                .containsExactly(item);
+    }
+
+    @Test
+    public void packageIndex_removedItemsNotVisited() {
+        WorkspaceItemInfo first = newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE);
+        WorkspaceItemInfo second = newApp(3, CONTAINER_DESKTOP, TEST_PACKAGE);
+        mModel.addItem(mContext, first, false);
+        mModel.addItem(mContext, second, false);
+
+        mModel.removeItem(mContext, first);
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE))
+                .containsExactly(second);
+
+        mModel.removeItem(mContext, second);
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE)).isEmpty();
+    }
+
+    @Test
+    public void packageIndex_retargetedItemRemoved() {
+        WorkspaceItemInfo item = newApp(2, CONTAINER_DESKTOP, TEST_PACKAGE);
+        mModel.addItem(mContext, item, false);
+
+        // The item is still indexed under the package it had when it was added
+        item.intent.setComponent(new ComponentName(OTHER_PACKAGE, OTHER_PACKAGE + ".Main"));
+        mModel.removeItem(mContext, item);
+
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE, OTHER_PACKAGE))
+                .isEmpty();
+    }
+
+    @Test
+    public void packageIndex_matchesItemsIdMap() {
+        for (int id = 2; id < 12; id++) {
+            mModel.addItem(mContext, newApp(id, CONTAINER_DESKTOP,
+                    id % 2 == 0 ? TEST_PACKAGE : OTHER_PACKAGE), false);
+        }
+        mModel.removeItem(mContext, mModel.itemsIdMap.get(4), mModel.itemsIdMap.get(5));
+
+        List<ItemInfo> indexed = getItemsOfPackages(Process.myUserHandle(),
+                TEST_PACKAGE, OTHER_PACKAGE);
+        List<ItemInfo> all = new ArrayList<>();
+        mModel.itemsIdMap.forEach(all::add);
+        assertThat(indexed).containsExactlyElementsIn(all);
+
+        mModel.clear();
+        assertThat(getItemsOfPackages(Process.myUserHandle(), TEST_PACKAGE, OTHER_PACKAGE))
+                .isEmpty();
+    }
+
+    private List<ItemInfo> getItemsOfPackages(UserHandle user, String... packages) {
+        List<ItemInfo> items = new ArrayList<>();
+        mModel.forAllItemsOfPackages(user, Arrays.asList(packages), items::add);
+        return items;
+    }
+
+    static WorkspaceItemInfo newApp(int id, int container, String packageName) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.container = container;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(packageName, packageName + ".Main"));
+        return info;
+    }
+
+    static FolderInfo newFolder(int id) {
+        FolderInfo info = new FolderInfo();
+        info.id = id;
+        info.container = CONTAINER_DESKTOP;
+        info.itemType = ITEM_TYPE_FOLDER;
+        return info;
+    }
+}
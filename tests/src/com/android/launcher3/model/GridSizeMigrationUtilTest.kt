@@ -19,6 +19,7 @@ import android.content.ContentValues
 import android.content.Context
 import android.content.Intent
 import android.database.Cursor
+import android.database.DatabaseUtils
 import android.database.sqlite.SQLiteDatabase
 import android.graphics.Point
 import android.os.Process
@@ -791,6 +792,52 @@ class GridSizeMigrationUtilTest {
         assertThat(locMap[testPackage5]).isEqualTo(0)
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun planMigrationDoesNotModifyDbUntilApplied() {
+        // Src items
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_HOTSEAT, 0, 0, testPackage1, 1, TMP_TABLE)
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_DESKTOP, 2, 2, testPackage2, 2, TMP_TABLE)
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_DESKTOP, 3, 3, testPackage3, 3, TMP_TABLE)
+        // Dest item which is not in the src
+        addItem(ITEM_TYPE_APPLICATION, 0, CONTAINER_DESKTOP, 0, 0, testPackage4)
+
+        idp.numDatabaseHotseatIcons = 4
+        idp.numColumns = 4
+        idp.numRows = 4
+        val srcReader = DbReader(db, TMP_TABLE, context, validPackages)
+        val destReader = DbReader(db, TABLE_NAME, context, validPackages)
+        val plan =
+            GridSizeMigrationUtil.planMigration(
+                srcReader,
+                destReader,
+                idp.numDatabaseHotseatIcons,
+                Point(idp.numColumns, idp.numRows),
+                DeviceGridState(context),
+                DeviceGridState(idp)
+            )
+
+        assertThat(plan.toBeAdded.size).isEqualTo(3)
+        assertThat(plan.toBeRemoved.size()).isEqualTo(1)
+        assertThat(plan.dropped).isEmpty()
+        // Planning is a dry run
+        assertThat(DatabaseUtils.queryNumEntries(db, TABLE_NAME)).isEqualTo(1)
+        assertThat(DatabaseUtils.queryNumEntries(db, TMP_TABLE)).isEqualTo(3)
+
+        plan.apply(dbHelper)
+
+        val c =
+            db.query(TABLE_NAME, arrayOf(INTENT), null, null, null, null, null)
+                ?: throw IllegalStateException()
+        val intentIndex = c.getColumnIndex(INTENT)
+        val packages = HashSet<String?>()
+        while (c.moveToNext()) {
+            packages.add(Intent.parseUri(c.getString(intentIndex), 0).getPackage())
+        }
+        c.close()
+        assertThat(packages).containsExactly(testPackage1, testPackage2, testPackage3)
+    }
+
     private fun enableNewMigrationLogic(srcGridSize: String) {
         LauncherPrefs.get(context).putSync(WORKSPACE_SIZE.to(srcGridSize))
     }
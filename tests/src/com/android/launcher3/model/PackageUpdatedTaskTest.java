@@ -0,0 +1,174 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.PackageUpdatedTask.OP_SUSPEND;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UNSUSPEND;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_USER_AVAILABILITY_CHANGE;
+import static com.android.launcher3.model.data.WorkspaceItemInfo.FLAG_DISABLED_SUSPENDED;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for merging package events into a pending {@link PackageUpdatedTask}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PackageUpdatedTaskTest {
+
+    private static final String OTHER_PACKAGE = TEST_PACKAGE + ".other";
+    private static final int APP_ID = 1;
+
+    private final UserHandle mUser = Process.myUserHandle();
+
+    private LauncherModelHelper mModelHelper;
+    private LauncherModel mModel;
+
+    @Before
+    public void setup() throws Exception {
+        mModelHelper = new LauncherModelHelper();
+        mModelHelper.setupDefaultLayoutProvider(new LauncherLayoutBuilder()
+                .atWorkspace(0, 0, 1).putApp(TEST_PACKAGE, TEST_ACTIVITY));
+        mModel = mModelHelper.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void mergeWith_sameOperationAndUser_merged() {
+        PackageUpdatedTask task = new PackageUpdatedTask(OP_SUSPEND, mUser, TEST_PACKAGE);
+
+        assertThat(task.mergeWith(OP_SUSPEND, mUser, OTHER_PACKAGE)).isTrue();
+        assertThat(task.mergeWith(OP_SUSPEND, mUser, TEST_PACKAGE)).isTrue();
+    }
+
+    @Test
+    public void mergeWith_otherOperationOrUser_notMerged() {
+        PackageUpdatedTask task = new PackageUpdatedTask(OP_SUSPEND, mUser, TEST_PACKAGE);
+
+        assertThat(task.mergeWith(OP_UNSUSPEND, mUser, TEST_PACKAGE)).isFalse();
+        assertThat(task.mergeWith(OP_SUSPEND, UserHandle.of(mUser.hashCode() + 1), TEST_PACKAGE))
+                .isFalse();
+    }
+
+    @Test
+    public void mergeWith_userAvailabilityChange_notMerged() {
+        PackageUpdatedTask task = new PackageUpdatedTask(OP_USER_AVAILABILITY_CHANGE, mUser);
+
+        assertThat(task.mergeWith(OP_USER_AVAILABILITY_CHANGE, mUser)).isFalse();
+    }
+
+    @Test
+    public void eventsWhileTaskPending_mergedAndApplied() throws Exception {
+        mModelHelper.loadModelSync();
+        CountDownLatch release = new CountDownLatch(1);
+        MODEL_EXECUTOR.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Merged into the first task, which is still waiting behind the blocked executor
+        mModel.onPackagesSuspended(new String[] {OTHER_PACKAGE}, mUser);
+        mModel.onPackagesSuspended(new String[] {TEST_PACKAGE}, mUser);
+        release.countDown();
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertThat(isSuspended()).isTrue();
+    }
+
+    @Test
+    public void eventsOfOtherOperations_appliedInOrder() throws Exception {
+        mModelHelper.loadModelSync();
+        CountDownLatch release = new CountDownLatch(1);
+        MODEL_EXECUTOR.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        mModel.onPackagesSuspended(new String[] {TEST_PACKAGE}, mUser);
+        mModel.onPackagesUnsuspended(new String[] {TEST_PACKAGE}, mUser);
+        release.countDown();
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertThat(isSuspended()).isFalse();
+    }
+
+    @Test
+    public void eventAfterSkippedTask_notMergedIntoIt() throws Exception {
+        // The model is not loaded yet, the task is dropped without doing anything
+        mModel.onPackagesSuspended(new String[] {OTHER_PACKAGE}, mUser);
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+        mModelHelper.loadModelSync();
+        assertThat(isSuspended()).isFalse();
+
+        mModel.onPackagesSuspended(new String[] {TEST_PACKAGE}, mUser);
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertThat(isSuspended()).isTrue();
+    }
+
+    @Test
+    public void eventAfterTaskRan_notMergedIntoIt() throws Exception {
+        mModelHelper.loadModelSync();
+        mModel.onPackagesSuspended(new String[] {OTHER_PACKAGE}, mUser);
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        mModel.onPackagesSuspended(new String[] {TEST_PACKAGE}, mUser);
+        runOnExecutorSync(MODEL_EXECUTOR, () -> { });
+
+        assertThat(isSuspended()).isTrue();
+    }
+
+    private boolean isSuspended() {
+        WorkspaceItemInfo item =
+                (WorkspaceItemInfo) mModelHelper.getBgDataModel().itemsIdMap.get(APP_ID);
+        return (item.runtimeStatusFlags & FLAG_DISABLED_SUSPENDED) != 0;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.pm;
+
+import static com.android.launcher3.model.PackageUpdatedTask.OP_ADD;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_REMOVE;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_SUSPEND;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UNAVAILABLE;
+import static com.android.launcher3.model.PackageUpdatedTask.OP_UPDATE;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import android.content.pm.ShortcutInfo;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.launcher3.pm.PackageEventHub.PackageChange;
+import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for the batching of package events in {@link PackageEventHub}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PackageEventHubTest {
+
+    private static final String PACKAGE_1 = "com.example.one";
+    private static final String PACKAGE_2 = "com.example.two";
+    private static final String PACKAGE_3 = "com.example.three";
+
+    private final UserHandle mUser = Process.myUserHandle();
+    private final RecordingListener mListener = new RecordingListener();
+
+    private PackageEventHub mHub;
+    private SafeCloseable mListenerHandle;
+
+    @Before
+    public void setUp() {
+        runOnMain(() -> {
+            mHub = new PackageEventHub(
+                    InstrumentationRegistry.getInstrumentation().getTargetContext());
+            mListenerHandle = mHub.addListener(mListener);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        runOnMain(() -> mHub.close());
+    }
+
+    @Test
+    public void sameOperation_mergedIntoOneChange() {
+        runOnMain(() -> {
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.onPackageAdded(PACKAGE_2, mUser);
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.dispatchPendingChanges();
+        });
+
+        assertThat(mListener.mEvents).containsExactly(
+                "changes: " + OP_ADD + "[" + PACKAGE_1 + ", " + PACKAGE_2 + "]");
+    }
+
+    @Test
+    public void differentOperations_dispatchedInOrder() {
+        runOnMain(() -> {
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.onPackageRemoved(PACKAGE_2, mUser);
+            mHub.onPackageAdded(PACKAGE_3, mUser);
+            mHub.onPackagesSuspended(new String[] {PACKAGE_1, PACKAGE_2}, mUser);
+            mHub.dispatchPendingChanges();
+        });
+
+        assertThat(mListener.mEvents).containsExactly("changes: "
+                + OP_ADD + "[" + PACKAGE_1 + "] "
+                + OP_REMOVE + "[" + PACKAGE_2 + "] "
+                + OP_ADD + "[" + PACKAGE_3 + "] "
+                + OP_SUSPEND + "[" + PACKAGE_1 + ", " + PACKAGE_2 + "]");
+    }
+
+    @Test
+    public void differentUsers_notMerged() {
+        UserHandle otherUser = UserHandle.of(mUser.hashCode() + 1);
+        runOnMain(() -> {
+            mHub.onPackageChanged(PACKAGE_1, mUser);
+            mHub.onPackageChanged(PACKAGE_2, otherUser);
+            mHub.dispatchPendingChanges();
+        });
+
+        assertThat(mListener.mChanges).hasSize(1);
+        List<PackageChange> changes = mListener.mChanges.get(0);
+        assertThat(changes).hasSize(2);
+        assertThat(changes.get(0).user).isEqualTo(mUser);
+        assertThat(changes.get(1).user).isEqualTo(otherUser);
+    }
+
+    @Test
+    public void availabilityEvents_mappedToOperations() {
+        runOnMain(() -> {
+            // Replaced packages come back with onPackagesAvailable, nothing to do meanwhile
+            mHub.onPackagesUnavailable(new String[] {PACKAGE_1}, mUser, true);
+            mHub.onPackagesUnavailable(new String[] {PACKAGE_2}, mUser, false);
+            mHub.onPackagesAvailable(new String[] {PACKAGE_1}, mUser, true);
+            mHub.dispatchPendingChanges();
+        });
+
+        assertThat(mListener.mEvents).containsExactly("changes: "
+                + OP_UNAVAILABLE + "[" + PACKAGE_2 + "] "
+                + OP_UPDATE + "[" + PACKAGE_1 + "]");
+    }
+
+    @Test
+    public void shortcutsChanged_dispatchesPendingChangesFirst() {
+        runOnMain(() -> {
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.onShortcutsChanged(PACKAGE_1, Collections.emptyList(), mUser);
+        });
+
+        assertThat(mListener.mEvents).containsExactly(
+                "changes: " + OP_ADD + "[" + PACKAGE_1 + "]",
+                "shortcuts: " + PACKAGE_1).inOrder();
+    }
+
+    @Test
+    public void nothingPending_notDispatched() {
+        runOnMain(() -> mHub.dispatchPendingChanges());
+
+        assertThat(mListener.mEvents).isEmpty();
+    }
+
+    @Test
+    public void removedListener_notCalled() {
+        runOnMain(() -> {
+            mListenerHandle.close();
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.dispatchPendingChanges();
+        });
+
+        assertThat(mListener.mEvents).isEmpty();
+    }
+
+    @Test
+    public void events_dispatchedOnceQuiet() throws Exception {
+        mListener.mDispatched = new CountDownLatch(1);
+        runOnMain(() -> {
+            mHub.onPackageAdded(PACKAGE_1, mUser);
+            mHub.onPackageAdded(PACKAGE_2, mUser);
+        });
+
+        assertThat(mListener.mDispatched.await(5, SECONDS)).isTrue();
+        // Wait for anything else which might have been scheduled
+        Thread.sleep(600);
+        runOnMain(() -> { });
+        assertThat(mListener.mEvents).containsExactly(
+                "changes: " + OP_ADD + "[" + PACKAGE_1 + ", " + PACKAGE_2 + "]");
+    }
+
+    @Test
+    public void continuousEvents_dispatchedWithinMaxDelay() throws Exception {
+        mListener.mDispatched = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        // Events keep coming faster than the debounce delay for two seconds
+        for (int i = 0; i < 40 && mListener.mDispatched.getCount() > 0; i++) {
+            String packageName = "com.example.app" + i;
+            runOnMain(() -> mHub.onPackageChanged(packageName, mUser));
+            Thread.sleep(50);
+        }
+
+        assertThat(mListener.mDispatched.await(5, SECONDS)).isTrue();
+        assertThat(System.currentTimeMillis() - start).isLessThan(1500L);
+    }
+
+    private static void runOnMain(Runnable task) {
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR, task::run);
+    }
+
+    private static class RecordingListener implements PackageEventHub.Listener {
+
+        final List<String> mEvents = new ArrayList<>();
+        final List<List<PackageChange>> mChanges = new ArrayList<>();
+        volatile CountDownLatch mDispatched = new CountDownLatch(0);
+
+        @Override
+        public void onPackagesChanged(@NonNull List<PackageChange> changes) {
+            StringBuilder event = new StringBuilder("changes:");
+            for (PackageChange change : changes) {
+                event.append(' ').append(change.op);
+                String[] packages = change.packages;
+                event.append('[').append(String.join(", ", packages)).append(']');
+            }
+            mEvents.add(event.toString());
+            mChanges.add(changes);
+            mDispatched.countDown();
+        }
+
+        @Override
+        public void onShortcutsChanged(@NonNull String packageName,
+                @NonNull List<ShortcutInfo> shortcuts, @NonNull UserHandle user) {
+            mEvents.add("shortcuts: " + packageName);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.testcomponent;
+
+import android.os.Debug;
+import android.view.MotionEvent;
+
+import java.util.ArrayList;
+
+/**
+ * A recorded stream of {@link MotionEvent}s which can be replayed any number of times, for
+ * example to check that a touch handler does not allocate while processing it.
+ * <p>
+ * Events are recorded with a {@link TouchEventGenerator}:
+ * <pre>
+ *     TouchEventRecording recording = new TouchEventRecording();
+ *     recording.getGenerator().put(0, 100, 100).move(0, 100, 400).lift(0);
+ * </pre>
+ */
+public class TouchEventRecording {
+
+    private final ArrayList<MotionEvent> mEvents = new ArrayList<>();
+    private final TouchEventGenerator mGenerator =
+            new TouchEventGenerator(ev -> mEvents.add(MotionEvent.obtain(ev)));
+
+    /** Returns the generator whose events are recorded. */
+    public TouchEventGenerator getGenerator() {
+        return mGenerator;
+    }
+
+    /** Returns the number of events recorded so far, to replay only part of the recording. */
+    public int getEventCount() {
+        return mEvents.size();
+    }
+
+    /** Dispatches all the recorded events, in order, to the listener. */
+    public void replay(TouchEventGenerator.Listener listener) {
+        replay(listener, 0, mEvents.size());
+    }
+
+    /** Dispatches the recorded events from {@code start} until {@code end} to the listener. */
+    public void replay(TouchEventGenerator.Listener listener, int start, int end) {
+        // Indexed loop so that the replay itself does not allocate an iterator
+        for (int i = start; i < end; i++) {
+            listener.onTouchEvent(mEvents.get(i));
+        }
+    }
+
+    /** Returns the number of objects allocated on the calling thread while replaying. */
+    public int countAllocationsDuringReplay(TouchEventGenerator.Listener listener) {
+        return countAllocationsDuringReplay(listener, 0, mEvents.size());
+    }
+
+    /**
+     * Returns the number of objects allocated on the calling thread while replaying the events
+     * from {@code start} until {@code end}.
+     */
+    public int countAllocationsDuringReplay(TouchEventGenerator.Listener listener, int start,
+            int end) {
+        return countAllocations(() -> replay(listener, start, end));
+    }
+
+    /** Recycles the recorded events, the recording must not be used afterwards. */
+    public void recycle() {
+        for (MotionEvent event : mEvents) {
+            event.recycle();
+        }
+        mEvents.clear();
+    }
+
+    /** Returns the number of objects allocated on the calling thread by the runnable. */
+    @SuppressWarnings("deprecation")
+    public static int countAllocations(Runnable runnable) {
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            runnable.run();
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
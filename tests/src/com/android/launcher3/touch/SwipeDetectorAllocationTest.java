@@ -0,0 +1,115 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.touch;
+
+import static com.android.launcher3.touch.SingleAxisSwipeDetector.DIRECTION_BOTH;
+import static com.android.launcher3.touch.SingleAxisSwipeDetector.VERTICAL;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.graphics.PointF;
+import android.view.MotionEvent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.launcher3.testcomponent.TouchEventRecording;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Replays recorded swipes through the swipe detectors and checks that they do not allocate.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SwipeDetectorAllocationTest {
+
+    private Context mContext;
+    private TouchEventRecording mRecording;
+
+    @Before
+    public void setup() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mRecording = new TouchEventRecording();
+        mRecording.getGenerator()
+                .put(0, 100, 100)
+                .move(0, 100, 200)
+                .move(0, 100, 400)
+                .move(0, 100, 700)
+                .lift(0);
+    }
+
+    @After
+    public void tearDown() {
+        mRecording.recycle();
+    }
+
+    @Test
+    public void singleAxisSwipe_doesNotAllocate() {
+        SingleAxisSwipeDetector detector = new SingleAxisSwipeDetector(mContext,
+                new SingleAxisSwipeDetector.Listener() {
+                    @Override
+                    public void onDragStart(boolean start, float startDisplacement) { }
+
+                    @Override
+                    public boolean onDrag(float displacement) {
+                        return true;
+                    }
+
+                    @Override
+                    public void onDragEnd(float velocity) { }
+                }, VERTICAL);
+        detector.setDetectableScrollConditions(DIRECTION_BOTH, false);
+
+        assertNoAllocationsAfterWarmUp(detector);
+    }
+
+    @Test
+    public void bothAxesSwipe_doesNotAllocate() {
+        BothAxesSwipeDetector detector = new BothAxesSwipeDetector(mContext,
+                new BothAxesSwipeDetector.Listener() {
+                    @Override
+                    public void onDragStart(boolean start) { }
+
+                    @Override
+                    public boolean onDrag(PointF displacement, MotionEvent motionEvent) {
+                        return true;
+                    }
+
+                    @Override
+                    public void onDragEnd(PointF velocity) { }
+                });
+        detector.setDetectableScrollConditions(BothAxesSwipeDetector.DIRECTION_DOWN, false);
+
+        assertNoAllocationsAfterWarmUp(detector);
+    }
+
+    private void assertNoAllocationsAfterWarmUp(BaseSwipeDetector detector) {
+        // The first swipe fills the VelocityTracker pool and loads the classes involved
+        mRecording.replay(detector::onTouchEvent);
+        detector.finishedScrolling();
+
+        int allocations = mRecording.countAllocationsDuringReplay(detector::onTouchEvent);
+        assertThat(allocations).isEqualTo(0);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.ui.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.test.filters.LargeTest;
+
+import com.android.launcher3.BubbleTextView;
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.Launcher;
+import com.android.launcher3.ui.AbstractLauncherUiTest;
+import com.android.launcher3.ui.TaplTestsLauncher3;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that workspace icons recycled through the view cache match the device profile of the
+ * bind they are reused in.
+ */
+@LargeTest
+public class IconRecyclingTest extends AbstractLauncherUiTest {
+
+    @Test
+    public void testRebindAfterDeviceProfileChange() throws Exception {
+        TaplTestsLauncher3.initialize(this);
+        executeOnLauncher(l -> l.getRotationHelper().forceAllowRotationForTesting(true));
+        try {
+            executeOnLauncher(IconRecyclingTest::verifyIconSizes);
+
+            // Rotating changes the device profile and rebinds the workspace
+            mDevice.setOrientationLeft();
+            waitForLauncherCondition("Launcher didn't rebind in landscape",
+                    l -> l.getDeviceProfile().isLandscape && !l.isWorkspaceLoading());
+            executeOnLauncher(IconRecyclingTest::verifyIconSizes);
+
+            mDevice.setOrientationNatural();
+            waitForLauncherCondition("Launcher didn't rebind in portrait",
+                    l -> !l.getDeviceProfile().isLandscape && !l.isWorkspaceLoading());
+            executeOnLauncher(IconRecyclingTest::verifyIconSizes);
+        } finally {
+            mDevice.setOrientationNatural();
+            executeOnLauncher(l -> l.getRotationHelper().forceAllowRotationForTesting(false));
+        }
+    }
+
+    private static void verifyIconSizes(Launcher launcher) {
+        DeviceProfile dp = launcher.getDeviceProfile();
+        List<BubbleTextView> icons = new ArrayList<>();
+        for (int i = 0; i < launcher.getWorkspace().getPageCount(); i++) {
+            addIcons(((CellLayout) launcher.getWorkspace().getPageAt(i))
+                    .getShortcutsAndWidgets(), icons);
+        }
+        addIcons(launcher.getHotseat().getShortcutsAndWidgets(), icons);
+
+        assertTrue("No icons bound", !icons.isEmpty());
+        for (BubbleTextView icon : icons) {
+            assertEquals("Icon size of " + icon.getText(), dp.iconSizePx, icon.getIconSize());
+            assertEquals("Text size of " + icon.getText(),
+                    dp.iconTextSizePx, icon.getTextSize(), 0.1f);
+        }
+    }
+
+    private static void addIcons(ViewGroup container, List<BubbleTextView> out) {
+        for (int i = 0; i < container.getChildCount(); i++) {
+            View child = container.getChildAt(i);
+            if (child instanceof BubbleTextView) {
+                out.add((BubbleTextView) child);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.ComponentIdRegistry.NO_ID;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link ComponentIdRegistry}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ComponentIdRegistryTest {
+
+    private static final ComponentName COMPONENT = new ComponentName("com.example", "com.example.A");
+    private static final UserHandle OTHER_USER = UserHandle.of(10);
+
+    private final ComponentIdRegistry mRegistry = new ComponentIdRegistry();
+
+    @Test
+    public void unknownComponent_hasNoId() {
+        assertThat(mRegistry.findId(COMPONENT, UserHandle.CURRENT)).isEqualTo(NO_ID);
+        assertThat(mRegistry.findPackageId("com.example", UserHandle.CURRENT)).isEqualTo(NO_ID);
+    }
+
+    @Test
+    public void sameComponent_getsSameId() {
+        int id = mRegistry.getId(COMPONENT, UserHandle.CURRENT);
+
+        assertThat(mRegistry.getId(new ComponentName("com.example", "com.example.A"),
+                UserHandle.CURRENT)).isEqualTo(id);
+        assertThat(mRegistry.findId(COMPONENT, UserHandle.CURRENT)).isEqualTo(id);
+    }
+
+    @Test
+    public void differentUserOrComponent_getsDifferentIds() {
+        int id = mRegistry.getId(COMPONENT, UserHandle.CURRENT);
+
+        assertThat(mRegistry.getId(COMPONENT, OTHER_USER)).isNotEqualTo(id);
+        assertThat(mRegistry.getId(new ComponentName("com.example", "com.example.B"),
+                UserHandle.CURRENT)).isNotEqualTo(id);
+        assertThat(mRegistry.getPackageId("com.example", UserHandle.CURRENT)).isNotEqualTo(id);
+    }
+}
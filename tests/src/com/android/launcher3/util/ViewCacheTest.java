@@ -0,0 +1,168 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.VIEW_PREINFLATION_EXECUTOR;
+import static com.android.launcher3.util.TestUtil.runOnExecutorSync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.launcher3.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link ViewCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewCacheTest {
+
+    private static final int LAYOUT = android.R.layout.simple_list_item_1;
+
+    private Context mContext;
+    private ViewCache mCache;
+
+    @Before
+    public void setup() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mCache = new ViewCache();
+        mCache.setCacheSize(LAYOUT, 4);
+    }
+
+    @Test
+    public void recycledView_reused() {
+        View view = mCache.getView(LAYOUT, mContext, null);
+        mCache.recycleView(LAYOUT, view);
+
+        assertThat(mCache.<View>getView(LAYOUT, mContext, null)).isSameInstanceAs(view);
+    }
+
+    @Test
+    public void clearCache_dropsCachedViews() {
+        View view = mCache.getView(LAYOUT, mContext, null);
+        mCache.recycleView(LAYOUT, view);
+
+        mCache.clearCache(LAYOUT);
+
+        assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNull();
+    }
+
+    @Test
+    public void clearCache_rejectsViewsCreatedBefore() {
+        // Like icons bound before a device profile change, recycled on the next rebind
+        View view = mCache.getView(LAYOUT, mContext, null);
+
+        mCache.clearCache(LAYOUT);
+        mCache.recycleView(LAYOUT, view);
+
+        assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNull();
+        View newView = mCache.getView(LAYOUT, mContext, null);
+        mCache.recycleView(LAYOUT, newView);
+        assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isSameInstanceAs(newView);
+    }
+
+    @Test
+    public void preInflate_addsViewsToCache() {
+        runOnExecutorSync(MAIN_EXECUTOR, () -> mCache.preInflate(LAYOUT, mContext, 3));
+        waitForPreInflation();
+
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            for (int i = 0; i < 3; i++) {
+                assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNotNull();
+            }
+            assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNull();
+        });
+    }
+
+    @Test
+    public void preInflate_closed_dropsLateViews() {
+        // Batches can only be handed over once this task returns, after the handle is closed
+        runOnExecutorSync(MAIN_EXECUTOR, () -> mCache.preInflate(LAYOUT, mContext, 3).close());
+        waitForPreInflation();
+
+        runOnExecutorSync(MAIN_EXECUTOR,
+                () -> assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNull());
+    }
+
+    @Test
+    public void preInflate_cacheCleared_dropsLateViews() {
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            mCache.preInflate(LAYOUT, mContext, 3);
+            mCache.clearCache(LAYOUT);
+        });
+        waitForPreInflation();
+
+        runOnExecutorSync(MAIN_EXECUTOR,
+                () -> assertThat(mCache.<View>getCachedView(LAYOUT, mContext)).isNull());
+    }
+
+    @Test
+    public void preInflateOnIdle_folderIcons_addsViewsToCache() {
+        // Folder icons create alarms, which need the looper of the thread inflating them
+        Context context = new ActivityContextWrapper(mContext);
+        int[] layouts = {R.layout.folder_icon, R.layout.user_folder_icon_normalized};
+        int count = 2;
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            for (int layout : layouts) {
+                mCache.preInflateOnIdle(layout, context, count);
+            }
+        });
+        // Each idle period inflates a single view per layout
+        for (int i = 0; i <= count; i++) {
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+
+        runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            for (int layout : layouts) {
+                for (int i = 0; i < count; i++) {
+                    assertThat(mCache.<View>getCachedView(layout, context)).isNotNull();
+                }
+                assertThat(mCache.<View>getCachedView(layout, context)).isNull();
+            }
+        });
+    }
+
+    @Test
+    public void preInflateOnIdle_closed_stopsInflating() {
+        Context context = new ActivityContextWrapper(mContext);
+        runOnExecutorSync(MAIN_EXECUTOR,
+                () -> mCache.preInflateOnIdle(R.layout.folder_icon, context, 2).close());
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        runOnExecutorSync(MAIN_EXECUTOR, () ->
+                assertThat(mCache.<View>getCachedView(R.layout.folder_icon, context)).isNull());
+    }
+
+    private static void waitForPreInflation() {
+        // Views are inflated on the pre-inflation executor, then posted to the main thread
+        runOnExecutorSync(VIEW_PREINFLATION_EXECUTOR, () -> { });
+        runOnExecutorSync(MAIN_EXECUTOR, () -> { });
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Tests for {@link WidgetUpdateScheduler}.
+ * <p>
+ * Each test runs in a single main thread task, so that frames are only run by explicit
+ * {@link WidgetUpdateScheduler#doFrame} calls.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetUpdateSchedulerTest {
+
+    private final Set<LauncherAppWidgetHostView> mVisible = new HashSet<>();
+    private final List<LauncherAppWidgetHostView> mApplied = new ArrayList<>();
+
+    private LauncherAppWidgetHostView mWidget1;
+    private LauncherAppWidgetHostView mWidget2;
+
+    @Before
+    public void setUp() {
+        mWidget1 = mock(LauncherAppWidgetHostView.class);
+        mWidget2 = mock(LauncherAppWidgetHostView.class);
+    }
+
+    @Test
+    public void enqueue_visibleWidget_appliedOnNextFrame() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            scheduler.enqueue(mWidget1);
+            assertThat(mApplied).isEmpty();
+
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1);
+        });
+    }
+
+    @Test
+    public void enqueue_twice_appliedOnce() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            scheduler.enqueue(mWidget1);
+            scheduler.enqueue(mWidget1);
+
+            scheduler.doFrame(0);
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1);
+        });
+    }
+
+    @Test
+    public void enqueue_hiddenWidget_appliedOnceVisible() {
+        runOnMain(scheduler -> {
+            scheduler.enqueue(mWidget1);
+            scheduler.doFrame(0);
+            assertThat(mApplied).isEmpty();
+
+            mVisible.add(mWidget1);
+            scheduler.doFrame(0);
+            // Parked widgets are only checked again after a visibility change
+            assertThat(mApplied).isEmpty();
+
+            scheduler.onVisibilityChanged();
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1);
+        });
+    }
+
+    @Test
+    public void doFrame_widgetScrolledAway_parkedAgain() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            scheduler.enqueue(mWidget1);
+            mVisible.remove(mWidget1);
+
+            scheduler.doFrame(0);
+            assertThat(mApplied).isEmpty();
+
+            mVisible.add(mWidget1);
+            scheduler.onVisibilityChanged();
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1);
+        });
+    }
+
+    @Test
+    public void doFrame_overBudget_appliesRestOnNextFrame() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            mVisible.add(mWidget2);
+            scheduler.enqueue(mWidget1);
+            scheduler.enqueue(mWidget2);
+
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1);
+
+            scheduler.doFrame(0);
+            assertThat(mApplied).containsExactly(mWidget1, mWidget2).inOrder();
+        }, view -> {
+            // Each update takes longer than the frame budget
+            SystemClock.sleep(10);
+        });
+    }
+
+    @Test
+    public void remove_dropsQueuedWidgets() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            scheduler.enqueue(mWidget1);
+            scheduler.enqueue(mWidget2);
+            scheduler.remove(mWidget1);
+            scheduler.remove(mWidget2);
+
+            mVisible.add(mWidget2);
+            scheduler.onVisibilityChanged();
+            scheduler.doFrame(0);
+            assertThat(mApplied).isEmpty();
+        });
+    }
+
+    @Test
+    public void clear_dropsAllWidgets() {
+        runOnMain(scheduler -> {
+            mVisible.add(mWidget1);
+            scheduler.enqueue(mWidget1);
+            scheduler.enqueue(mWidget2);
+            scheduler.clear();
+
+            mVisible.add(mWidget2);
+            scheduler.onVisibilityChanged();
+            scheduler.doFrame(0);
+            assertThat(mApplied).isEmpty();
+        });
+    }
+
+    private void runOnMain(SchedulerTest test) {
+        runOnMain(test, view -> { });
+    }
+
+    private void runOnMain(SchedulerTest test, Consumer<LauncherAppWidgetHostView> apply) {
+        TestUtil.runOnExecutorSync(MAIN_EXECUTOR, () -> {
+            WidgetUpdateScheduler scheduler = new WidgetUpdateScheduler(mVisible::contains,
+                    view -> {
+                        apply.accept(view);
+                        mApplied.add(view);
+                    });
+            try {
+                test.run(scheduler);
+            } finally {
+                // Drops the frame callbacks posted by the test
+                scheduler.clear();
+            }
+        });
+    }
+
+    private interface SchedulerTest {
+
+        void run(WidgetUpdateScheduler scheduler);
+    }
+}
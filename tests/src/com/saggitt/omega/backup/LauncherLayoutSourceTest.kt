@@ -0,0 +1,168 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.database.MatrixCursor
+import android.os.Process
+import android.provider.BaseColumns
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.LauncherSettings.Favorites
+import com.android.launcher3.model.ModelDbController
+import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import com.android.launcher3.util.LauncherModelHelper
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.IOException
+import java.io.StringReader
+import java.io.StringWriter
+
+/** Tests for restoring the home screen layout with [LauncherLayoutSource]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class LauncherLayoutSourceTest {
+
+    private lateinit var modelHelper: LauncherModelHelper
+    private lateinit var context: Context
+    private lateinit var controller: ModelDbController
+    private lateinit var source: LauncherLayoutSource
+
+    @Before
+    fun setUp() {
+        modelHelper = LauncherModelHelper()
+        context = modelHelper.sandboxContext
+        controller = LauncherAppState.getInstance(context).model.modelDbController
+        source = LauncherLayoutSource(context)
+    }
+
+    @After
+    fun tearDown() {
+        modelHelper.destroy()
+    }
+
+    @Test
+    fun restore_remapsMainProfileAndDropsOtherProfiles() {
+        val json = writeFavorites(
+            arrayOf(1L, BACKUP_USER_SERIAL, "kept"),
+            arrayOf(2L, BACKUP_WORK_SERIAL, "dropped"),
+        )
+
+        restore(json)
+
+        val localSerial = controller.getSerialNumberForUser(Process.myUserHandle())
+        assertThat(queryFavorites()).containsExactly(1L, localSerial)
+    }
+
+    @Test
+    fun restore_dropsColumnsUnknownToTheDatabase() {
+        restore(writeFavorites(arrayOf(1L, BACKUP_USER_SERIAL, "fromNewerVersion")))
+
+        TestUtil.runOnExecutorSync(MODEL_EXECUTOR) {
+            controller.query(Favorites.TABLE_NAME, null, null, null, null).use {
+                assertThat(it.getColumnIndex(UNKNOWN_COLUMN)).isEqualTo(-1)
+                assertThat(it.count).isEqualTo(1)
+            }
+        }
+    }
+
+    @Test
+    fun restore_failedTransaction_keepsCurrentLayout() {
+        restore(writeFavorites(arrayOf(1L, BACKUP_USER_SERIAL, "current")))
+        val before = queryFavorites()
+
+        val json = writeFavorites(
+            arrayOf(5L, BACKUP_USER_SERIAL, "new"),
+            arrayOf(6L, BACKUP_USER_SERIAL, "new"),
+        )
+        assertThrows(RuntimeException::class.java) {
+            TestUtil.runOnExecutorSync(MODEL_EXECUTOR) {
+                source.runInTransaction {
+                    source.restore(JsonReader(StringReader(json)), MANIFEST) {}
+                    throw IOException("Failure after the layout was restored")
+                }
+            }
+        }
+
+        assertThat(queryFavorites()).isEqualTo(before)
+    }
+
+    private fun restore(json: String) {
+        TestUtil.runOnExecutorSync(MODEL_EXECUTOR) {
+            source.runInTransaction {
+                source.restore(JsonReader(StringReader(json)), MANIFEST) {}
+            }
+        }
+    }
+
+    /** Returns the id and profile id of every favorite, ordered by id. */
+    private fun queryFavorites(): Map<Long, Long> {
+        val result = LinkedHashMap<Long, Long>()
+        TestUtil.runOnExecutorSync(MODEL_EXECUTOR) {
+            controller.query(
+                Favorites.TABLE_NAME,
+                arrayOf(BaseColumns._ID, Favorites.PROFILE_ID),
+                null, null, BaseColumns._ID
+            ).use {
+                while (it.moveToNext()) {
+                    result[it.getLong(0)] = it.getLong(1)
+                }
+            }
+        }
+        return result
+    }
+
+    /** Writes favorites from rows of id, profile id and a value of an unknown column. */
+    private fun writeFavorites(vararg rows: Array<Any>): String {
+        val cursor = MatrixCursor(arrayOf(
+            BaseColumns._ID, Favorites.ITEM_TYPE, Favorites.CONTAINER, Favorites.SCREEN,
+            Favorites.CELLX, Favorites.CELLY, Favorites.SPANX, Favorites.SPANY,
+            Favorites.INTENT, Favorites.PROFILE_ID, UNKNOWN_COLUMN))
+        rows.forEachIndexed { index, (id, profileId, unknown) ->
+            cursor.addRow(arrayOf(id, Favorites.ITEM_TYPE_APPLICATION,
+                Favorites.CONTAINER_DESKTOP, 0, index, 0, 1, 1, INTENT, profileId, unknown))
+        }
+        return StringWriter().also { out ->
+            JsonWriter(out).use { writer ->
+                writer.beginArray()
+                TableCodec.writeTable(writer, Favorites.TABLE_NAME, cursor) {}
+                writer.endArray()
+            }
+        }.toString()
+    }
+
+    companion object {
+        private const val BACKUP_USER_SERIAL = 1000L
+        private const val BACKUP_WORK_SERIAL = 1010L
+        private const val UNKNOWN_COLUMN = "addedByNewerVersion"
+        private const val INTENT = "#Intent;action=android.intent.action.MAIN;" +
+                "category=android.intent.category.LAUNCHER;" +
+                "component=com.example.app/.MainActivity;end"
+
+        private val MANIFEST = BackupManifest(1, 0, 0L, BACKUP_USER_SERIAL, mapOf())
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.Context
+import android.net.Uri
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.datastore.core.DataStore
+import androidx.datastore.preferences.core.PreferenceDataStoreFactory
+import androidx.datastore.preferences.core.Preferences
+import androidx.datastore.preferences.core.booleanPreferencesKey
+import androidx.datastore.preferences.core.doublePreferencesKey
+import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.floatPreferencesKey
+import androidx.datastore.preferences.core.intPreferencesKey
+import androidx.datastore.preferences.core.longPreferencesKey
+import androidx.datastore.preferences.core.stringPreferencesKey
+import androidx.datastore.preferences.core.stringSetPreferencesKey
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.util.firstBlocking
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.UUID
+import kotlin.random.Random
+
+/**
+ * Tests for writing and restoring [NeoBackup] archives, with in-memory sources and test
+ * preference stores.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class NeoBackupTest {
+
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+
+    private lateinit var dir: File
+    private lateinit var archive: File
+    private lateinit var dataStoreScope: CoroutineScope
+
+    @Before
+    fun setUp() {
+        dir = File(context.cacheDir, "neo_backup_test_${UUID.randomUUID()}")
+        dir.mkdirs()
+        archive = File(dir, "backup${NeoBackup.FILE_EXTENSION}")
+        dataStoreScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    }
+
+    @After
+    fun tearDown() {
+        dataStoreScope.cancel()
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun backupThenRestore_replacesAllSources() {
+        backup(FakeSource(LAYOUT, "a", "b", "c"), FakeSource(DATABASE, "d"))
+        val layout = FakeSource(LAYOUT, "x")
+        val database = FakeSource(DATABASE)
+        val progress = ArrayList<Float>()
+
+        runBlocking { NeoBackup(context, listOf(layout, database)).restore(uri()) { progress.add(it) } }
+
+        assertThat(layout.items).containsExactly("a", "b", "c").inOrder()
+        assertThat(database.items).containsExactly("d")
+        assertThat(layout.restored).isTrue()
+        assertThat(database.restored).isTrue()
+        assertThat(progress.last()).isEqualTo(1f)
+    }
+
+    @Test
+    fun restore_entryMissingFromArchive_leavesSourceUntouched() {
+        backup(FakeSource(LAYOUT, "a"))
+        val database = FakeSource(DATABASE, "kept")
+
+        runBlocking { NeoBackup(context, listOf(FakeSource(LAYOUT), database)).restore(uri()) }
+
+        assertThat(database.items).containsExactly("kept")
+    }
+
+    @Test
+    fun restore_truncatedArchive_leavesStateUntouched() {
+        // Random items do not compress, so that half of the archive ends within an entry
+        val items = Array(200) { UUID.randomUUID().toString() }
+        backup(FakeSource(LAYOUT, *items), FakeSource(DATABASE, *items))
+        RandomAccessFile(archive, "rw").use { it.setLength(it.length() / 2) }
+        val layout = FakeSource(LAYOUT, "x")
+        val database = FakeSource(DATABASE, "y")
+
+        assertThrows(IOException::class.java) {
+            runBlocking { NeoBackup(context, listOf(layout, database)).restore(uri()) }
+        }
+
+        assertThat(layout.items).containsExactly("x")
+        assertThat(database.items).containsExactly("y")
+        assertThat(layout.restored).isFalse()
+        assertThat(database.restored).isFalse()
+    }
+
+    @Test
+    fun restore_corruptArchive_leavesStateUntouched() {
+        archive.writeBytes(Random(42).nextBytes(4096))
+        val layout = FakeSource(LAYOUT, "x")
+
+        assertThrows(IOException::class.java) {
+            runBlocking { NeoBackup(context, listOf(layout)).restore(uri()) }
+        }
+
+        assertThat(layout.items).containsExactly("x")
+        assertThat(layout.restored).isFalse()
+    }
+
+    @Test
+    fun prefs_roundTrip() {
+        val source = newDataStore()
+        runBlocking {
+            source.edit {
+                it[booleanPreferencesKey("boolean")] = true
+                it[intPreferencesKey("int")] = 42
+                it[longPreferencesKey("long")] = Long.MAX_VALUE
+                it[floatPreferencesKey("float")] = 1.5f
+                it[doublePreferencesKey("double")] = 0.25
+                it[stringPreferencesKey("string")] = "value"
+                it[stringSetPreferencesKey("stringSet")] = setOf("a", "b")
+            }
+        }
+        backup(NeoPrefsSource(source))
+        val target = newDataStore()
+        runBlocking { target.edit { it[stringPreferencesKey("stale")] = "dropped" } }
+
+        runBlocking { NeoBackup(context, listOf(NeoPrefsSource(target))).restore(uri()) }
+
+        assertThat(target.data.firstBlocking().asMap())
+            .isEqualTo(source.data.firstBlocking().asMap())
+    }
+
+    @Test
+    fun prefs_notWrittenWhenAnotherSourceFailsToCommit() {
+        val source = newDataStore()
+        runBlocking { source.edit { it[stringPreferencesKey("string")] = "restored" } }
+        backup(FakeSource(LAYOUT, "a"), NeoPrefsSource(source))
+        val target = newDataStore()
+        runBlocking { target.edit { it[stringPreferencesKey("string")] = "current" } }
+        val layout = FakeSource(LAYOUT, "x", failCommit = true)
+
+        assertThrows(IOException::class.java) {
+            runBlocking { NeoBackup(context, listOf(layout, NeoPrefsSource(target))).restore(uri()) }
+        }
+
+        assertThat(target.data.firstBlocking()[stringPreferencesKey("string")])
+            .isEqualTo("current")
+        assertThat(layout.items).containsExactly("x")
+    }
+
+    private fun backup(vararg sources: BackupSource) {
+        runBlocking { NeoBackup(context, sources.toList()).backup(uri()) }
+    }
+
+    private fun uri() = Uri.fromFile(archive)
+
+    private fun newDataStore(): DataStore<Preferences> =
+        PreferenceDataStoreFactory.create(scope = dataStoreScope) {
+            File(dir, "prefs_${UUID.randomUUID()}.preferences_pb")
+        }
+
+    /** Source holding a list of strings, restored back to its state if its transaction fails. */
+    private class FakeSource(
+        override val name: String,
+        vararg items: String,
+        private val failCommit: Boolean = false,
+    ) : BackupSource {
+
+        val items = items.toMutableList()
+        var restored = false
+
+        override fun countItems() = items.size
+
+        override fun backup(writer: JsonWriter, onItem: () -> Unit) {
+            writer.beginArray()
+            items.forEach {
+                writer.value(it)
+                onItem()
+            }
+            writer.endArray()
+        }
+
+        override fun <T> runInTransaction(block: () -> T): T {
+            val saved = ArrayList(items)
+            try {
+                return block().also {
+                    if (failCommit) throw IOException("Commit failed")
+                }
+            } catch (e: Exception) {
+                items.clear()
+                items.addAll(saved)
+                throw e
+            }
+        }
+
+        override fun restore(reader: JsonReader, manifest: BackupManifest, onItem: () -> Unit) {
+            items.clear()
+            reader.beginArray()
+            while (reader.hasNext()) {
+                items.add(reader.nextString())
+                onItem()
+            }
+            reader.endArray()
+        }
+
+        override fun onRestored() {
+            restored = true
+        }
+    }
+
+    companion object {
+        private const val LAYOUT = "layout"
+        private const val DATABASE = "database"
+    }
+}
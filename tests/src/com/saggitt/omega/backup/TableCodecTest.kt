@@ -0,0 +1,123 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.backup
+
+import android.content.ContentValues
+import android.database.MatrixCursor
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.IOException
+import java.io.StringReader
+import java.io.StringWriter
+
+/** Tests for [TableCodec]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class TableCodecTest {
+
+    @Test
+    fun writeThenRead_keepsValuesAndTypes() {
+        val cursor = MatrixCursor(arrayOf("_id", "title", "scale", "icon", "intent"))
+        cursor.addRow(arrayOf(1L, "First", 0.5, byteArrayOf(1, 2, 3), null))
+        cursor.addRow(arrayOf(Long.MAX_VALUE, "", -2.0, byteArrayOf(), "#Intent;end"))
+
+        val rows = readTables(writeTable("favorites", cursor))
+
+        assertThat(rows.map { it.first }).containsExactly("favorites", "favorites")
+        val first = rows[0].second
+        assertThat(first.getAsLong("_id")).isEqualTo(1L)
+        assertThat(first.getAsString("title")).isEqualTo("First")
+        assertThat(first.getAsDouble("scale")).isEqualTo(0.5)
+        assertThat(first.getAsByteArray("icon")).isEqualTo(byteArrayOf(1, 2, 3))
+        assertThat(first.containsKey("intent")).isTrue()
+        assertThat(first.get("intent")).isNull()
+        val second = rows[1].second
+        assertThat(second.getAsLong("_id")).isEqualTo(Long.MAX_VALUE)
+        assertThat(second.getAsString("title")).isEmpty()
+        assertThat(second.getAsDouble("scale")).isEqualTo(-2.0)
+        assertThat(second.getAsByteArray("icon")).isEmpty()
+        assertThat(second.getAsString("intent")).isEqualTo("#Intent;end")
+    }
+
+    @Test
+    fun read_severalTables() {
+        val first = MatrixCursor(arrayOf("id")).apply { addRow(arrayOf(1L)) }
+        val second = MatrixCursor(arrayOf("name")).apply {
+            addRow(arrayOf("a"))
+            addRow(arrayOf("b"))
+        }
+        val json = StringWriter().also { out ->
+            JsonWriter(out).use { writer ->
+                writer.beginArray()
+                TableCodec.writeTable(writer, "first", first) {}
+                TableCodec.writeTable(writer, "second", second) {}
+                writer.endArray()
+            }
+        }.toString()
+
+        val rows = readTables(json)
+
+        assertThat(rows.map { it.first }).containsExactly("first", "second", "second").inOrder()
+    }
+
+    @Test
+    fun read_missingProperty_fails() {
+        assertThrows(IOException::class.java) {
+            readTables("""[{"columns": [], "rows": []}]""")
+        }
+    }
+
+    @Test
+    fun retainColumns_dropsUnknownColumns() {
+        val values = ContentValues().apply {
+            put("_id", 1L)
+            put("title", "First")
+            put("addedByNewerVersion", 3)
+        }
+
+        TableCodec.retainColumns(values, setOf("_id", "title", "droppedByNewerVersion"))
+
+        assertThat(values.keySet()).containsExactly("_id", "title")
+        assertThat(values.getAsString("title")).isEqualTo("First")
+    }
+
+    private fun writeTable(table: String, cursor: MatrixCursor): String {
+        val out = StringWriter()
+        JsonWriter(out).use { writer ->
+            writer.beginArray()
+            TableCodec.writeTable(writer, table, cursor) {}
+            writer.endArray()
+        }
+        return out.toString()
+    }
+
+    private fun readTables(json: String): List<Pair<String, ContentValues>> {
+        val rows = ArrayList<Pair<String, ContentValues>>()
+        JsonReader(StringReader(json)).use { reader ->
+            TableCodec.readTables(reader) { table, values -> rows.add(table to values) }
+        }
+        return rows
+    }
+}
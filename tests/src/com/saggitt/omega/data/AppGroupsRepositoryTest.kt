@@ -0,0 +1,165 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import androidx.room.Room
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
+import kotlinx.coroutines.Dispatchers
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+/** Tests for [AppGroupsRepository]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class AppGroupsRepositoryTest {
+
+    private lateinit var db: NeoLauncherDb
+    private lateinit var repository: AppGroupsRepository
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder(
+            InstrumentationRegistry.getInstrumentation().targetContext,
+            NeoLauncherDb::class.java
+        ).build()
+        // Unconfined runs the reads and writes right away on the calling thread
+        repository = AppGroupsRepository(db.appGroupDao(), Dispatchers.Unconfined, DIRECT)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun newGroupId_startsAfterExistingRows() {
+        db.appGroupDao().upsertGroups(listOf(item(41, "tabs", 0)))
+
+        val repository = AppGroupsRepository(db.appGroupDao(), Dispatchers.Unconfined, DIRECT)
+        repository.loadGroupsNow("folders")
+
+        assertThat(repository.newGroupId()).isEqualTo(42)
+        assertThat(repository.newGroupId()).isEqualTo(43)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun newGroupId_beforeLoad_throws() {
+        repository.newGroupId()
+    }
+
+    @Test
+    fun loadGroups_deliversOnResultExecutor() {
+        val results = ArrayList<Runnable>()
+        val repository =
+            AppGroupsRepository(db.appGroupDao(), Dispatchers.Unconfined) { results.add(it) }
+        var loaded: List<Pair<AppGroupItem, List<String>>>? = null
+
+        repository.loadGroups("tabs") { loaded = it }
+
+        assertThat(loaded).isNull()
+        results.single().run()
+        assertThat(loaded).isEmpty()
+    }
+
+    @Test
+    fun loadGroups_ordersByPositionWithMembers() {
+        repository.applyChanges(
+            upserts = listOf(item(1, "tabs", 1), item(2, "tabs", 0), item(3, "folders", 0)),
+            deletedIds = emptyList(),
+            addedMembers = listOf(member(1, "a/.A"), member(1, "b/.B"), member(3, "c/.C")),
+            removedMembers = emptyList(),
+        )
+
+        val groups = repository.loadGroupsNow("tabs")
+
+        assertThat(groups.map { it.first.id }).containsExactly(2L, 1L).inOrder()
+        assertThat(groups[0].second).isEmpty()
+        assertThat(groups[1].second).containsExactly("a/.A", "b/.B")
+    }
+
+    @Test
+    fun applyChanges_updatesRowsInPlace() {
+        repository.applyChanges(
+            listOf(item(1, "tabs", 0)), emptyList(), listOf(member(1, "a/.A")), emptyList()
+        )
+
+        repository.applyChanges(
+            upserts = listOf(item(1, "tabs", 0, "{\"title\":\"Renamed\"}")),
+            deletedIds = emptyList(),
+            addedMembers = listOf(member(1, "b/.B")),
+            removedMembers = listOf(member(1, "a/.A")),
+        )
+
+        val (group, members) = repository.loadGroupsNow("tabs").single()
+        assertThat(group.customizations).contains("Renamed")
+        // Upserting the group must not cascade to its members
+        assertThat(members).containsExactly("b/.B")
+    }
+
+    @Test
+    fun applyChanges_deletedGroupDropsMembers() {
+        repository.applyChanges(
+            listOf(item(1, "tabs", 0)), emptyList(), listOf(member(1, "a/.A")), emptyList()
+        )
+
+        repository.applyChanges(emptyList(), listOf(1L), emptyList(), emptyList())
+
+        assertThat(repository.loadGroupsNow("tabs")).isEmpty()
+        assertThat(db.appGroupDao().getMembers("tabs")).isEmpty()
+    }
+
+    @Test
+    fun applyChanges_runsCallbackOnceCommitted() {
+        val repository = AppGroupsRepository(db.appGroupDao(), Dispatchers.IO)
+        val committed = CountDownLatch(1)
+        var groupsOnCommit: List<AppGroupItem>? = null
+
+        repository.applyChanges(listOf(item(1, "tabs", 0)), emptyList(), emptyList(), emptyList()) {
+            groupsOnCommit = db.appGroupDao().getGroups("tabs")
+            committed.countDown()
+        }
+
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(groupsOnCommit!!.map { it.id }).containsExactly(1L)
+    }
+
+    private fun AppGroupsRepository.loadGroupsNow(category: String) =
+        ArrayList<Pair<AppGroupItem, List<String>>>().also { result ->
+            loadGroups(category) { result.addAll(it) }
+        }
+
+    private fun item(id: Long, category: String, position: Int, customizations: String = "{}") =
+        AppGroupItem(id, category, position, "0", customizations)
+
+    private fun member(groupId: Long, component: String) = AppGroupMember(groupId, component)
+
+    companion object {
+        private val DIRECT = Executor { it.run() }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.gestures
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import com.android.launcher3.LauncherState
+import com.android.launcher3.testcomponent.TouchEventGenerator
+import com.android.launcher3.testcomponent.TouchEventRecording
+import com.android.launcher3.ui.AbstractLauncherUiTest
+import com.android.launcher3.ui.TaplTestsLauncher3
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Replays a slow swipe down over the workspace through [VerticalSwipeGestureController] and checks
+ * that the drag does not allocate.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class VerticalSwipeGestureControllerAllocationTest : AbstractLauncherUiTest() {
+
+    private lateinit var recording: TouchEventRecording
+    private lateinit var listener: TouchEventGenerator.Listener
+    private var dragEnd = 0
+
+    @After
+    fun tearDown() {
+        if (::recording.isInitialized) {
+            recording.recycle()
+        }
+    }
+
+    @Test
+    fun swipeDown_doesNotAllocate() {
+        TaplTestsLauncher3.initialize(this)
+        waitForState("Launcher is not on the workspace") { LauncherState.NORMAL }
+        executeOnLauncher { launcher ->
+            val x = launcher.dragLayer.width / 2
+            val startY = launcher.dragLayer.height / 4
+            // Far below the trigger velocity, so that the notifications are not opened
+            recording = TouchEventRecording()
+            val generator = recording.generator.put(0, x, startY)
+            for (i in 1..5) {
+                generator.move(0, x, startY + i * 20, 40)
+            }
+            dragEnd = recording.eventCount
+            generator.lift(0, 40)
+
+            val controller = VerticalSwipeGestureController(launcher)
+            listener = TouchEventGenerator.Listener {
+                controller.onControllerInterceptTouchEvent(it)
+            }
+            // The first swipe initializes the lazy properties and loads the classes involved
+            recording.replay(listener)
+        }
+        // Lets the detector settle, it is reset a moment after the swipe ends
+        Thread.sleep(500)
+
+        executeOnLauncher {
+            val allocations = recording.countAllocationsDuringReplay(listener, 0, dragEnd)
+            recording.replay(listener, dragEnd, recording.eventCount)
+            assertThat(allocations).isEqualTo(0)
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.groups
+
+import android.content.ComponentName
+import android.content.Context
+import android.os.Process
+import androidx.datastore.core.DataStore
+import androidx.datastore.preferences.core.PreferenceDataStoreFactory
+import androidx.datastore.preferences.core.Preferences
+import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.stringPreferencesKey
+import androidx.room.Room
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.android.launcher3.util.ComponentKey
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.AppGroupDao
+import com.saggitt.omega.data.AppGroupsRepository
+import com.saggitt.omega.data.NeoLauncherDb
+import com.saggitt.omega.data.models.AppGroupItem
+import com.saggitt.omega.data.models.AppGroupMember
+import com.saggitt.omega.preferences.NeoPrefs
+import com.saggitt.omega.preferences.PreferencesChangeCallback
+import com.saggitt.omega.util.firstBlocking
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.UUID
+
+/** Tests for the saving and loading of [AppGroups]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class AppGroupsTest {
+
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+
+    private lateinit var db: NeoLauncherDb
+    private lateinit var dao: RecordingDao
+    private lateinit var dataStoreFile: File
+    private lateinit var dataStoreScope: CoroutineScope
+    private lateinit var dataStore: DataStore<Preferences>
+    private lateinit var manager: AppGroupsManager
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder(context, NeoLauncherDb::class.java).build()
+        dao = RecordingDao(db.appGroupDao())
+        dataStoreFile = File(context.filesDir, "datastore/app_groups_test_${UUID.randomUUID()}.preferences_pb")
+        dataStoreScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+        dataStore = PreferenceDataStoreFactory.create(scope = dataStoreScope) { dataStoreFile }
+        manager = AppGroupsManager(NeoPrefs.getInstance(context), dataStore)
+    }
+
+    @After
+    fun tearDown() {
+        dataStoreScope.cancel()
+        dataStoreFile.delete()
+        db.close()
+    }
+
+    @Test
+    fun save_newGroups_writesRowsAndMembers() {
+        val groups = newGroups()
+        groups.addGroup(TestGroup(context, "First", APP_A, APP_B))
+        groups.addGroup(TestGroup(context, "Second"))
+
+        groups.save()
+
+        val changes = dao.changes.single()
+        assertThat(changes.upserts.map { it.position }).containsExactly(0, 1)
+        assertThat(changes.addedMembers.map { it.componentKey })
+            .containsExactly(APP_A.toString(), APP_B.toString())
+        assertThat(changes.deletedIds).isEmpty()
+        assertThat(changes.removedMembers).isEmpty()
+    }
+
+    @Test
+    fun save_unchanged_writesNothing() {
+        val groups = newGroups()
+        groups.addGroup(TestGroup(context, "First", APP_A))
+        groups.save()
+
+        groups.save()
+
+        assertThat(dao.changes).hasSize(1)
+    }
+
+    @Test
+    fun save_writesOnlyTheChangedGroup() {
+        val groups = newGroups()
+        val first = TestGroup(context, "First", APP_A)
+        val second = TestGroup(context, "Second", APP_B)
+        groups.addGroup(first)
+        groups.addGroup(second)
+        groups.save()
+        groups.stateChanges.clear()
+
+        first.title = "Renamed"
+        first.contents.value = hashSetOf(APP_C)
+        groups.save()
+
+        val changes = dao.changes.last()
+        assertThat(changes.upserts.map { it.id }).containsExactly(first.rowId)
+        assertThat(changes.addedMembers).containsExactly(AppGroupMember(first.rowId, "$APP_C"))
+        assertThat(changes.removedMembers).containsExactly(AppGroupMember(first.rowId, "$APP_A"))
+        assertThat(groups.stateChanges.map { it.first }).containsExactly(first.rowId)
+    }
+
+    @Test
+    fun save_removedGroup_deletesRow() {
+        val groups = newGroups()
+        val first = TestGroup(context, "First", APP_A)
+        val second = TestGroup(context, "Second")
+        groups.addGroup(first)
+        groups.addGroup(second)
+        groups.save()
+        groups.stateChanges.clear()
+
+        groups.removeGroup(first)
+        groups.save()
+
+        val changes = dao.changes.last()
+        assertThat(changes.deletedIds).containsExactly(first.rowId)
+        // The remaining group moved up, only its position changed
+        assertThat(changes.upserts.map { it.id to it.position }).containsExactly(second.rowId to 0)
+        assertThat(groups.stateChanges).contains(Triple(first.rowId, true, false))
+        assertThat(db.appGroupDao().getMembers(CATEGORY.key)).isEmpty()
+    }
+
+    @Test
+    fun load_restoresSavedGroups() {
+        val groups = newGroups()
+        groups.addGroup(TestGroup(context, "First", APP_A, APP_B))
+        groups.addGroup(TestGroup(context, "Second"))
+        groups.save()
+
+        val loaded = newGroups()
+
+        assertThat(loaded.groups.map { it.title }).containsExactly("First", "Second").inOrder()
+        assertThat(loaded.groups[0].contents.value).containsExactly(APP_A, APP_B)
+        assertThat(loaded.groups.map { it.rowId })
+            .containsExactlyElementsIn(groups.groups.map { it.rowId }).inOrder()
+        // The loaded state is the saved one, nothing to write
+        loaded.save()
+        assertThat(dao.changes).hasSize(1)
+    }
+
+    @Test
+    fun load_importsLegacyJsonOnce() {
+        val legacy = JSONObject()
+            .put(AppGroups.KEY_VERSION, AppGroups.currentVersion)
+            .put(
+                AppGroups.KEY_GROUPS, JSONArray()
+                    .put(
+                        JSONObject()
+                            .put(AppGroups.KEY_TYPE, TestGroup.TYPE)
+                            .put(AppGroups.KEY_TITLE, "Legacy")
+                            .put(AppGroups.KEY_ITEMS, JSONArray().put("$APP_A"))
+                    )
+            )
+        runBlocking { dataStore.edit { it[LEGACY_KEY] = legacy.toString() } }
+
+        val imported = newGroups()
+
+        assertThat(imported.groups.map { it.title }).containsExactly("Legacy")
+        assertThat(imported.groups[0].contents.value).containsExactly(APP_A)
+        val (item, members) = db.appGroupDao().let { dao ->
+            dao.getGroups(CATEGORY.key).single() to dao.getMembers(CATEGORY.key)
+        }
+        assertThat(item.customizations).contains("Legacy")
+        assertThat(members.map { it.componentKey }).containsExactly("$APP_A")
+        // The blob is cleared once the rows are committed
+        assertThat(dataStore.data.firstBlocking()[LEGACY_KEY]).isEqualTo("{}")
+
+        // Loading again reads the rows, without importing a second time
+        val reloaded = newGroups()
+        assertThat(reloaded.groups.map { it.title }).containsExactly("Legacy")
+        assertThat(dao.changes).hasSize(1)
+    }
+
+    @Test
+    fun load_invalidLegacyJson_loadsNothing() {
+        runBlocking { dataStore.edit { it[LEGACY_KEY] = "not json" } }
+
+        val imported = newGroups()
+
+        assertThat(imported.groups).isEmpty()
+        assertThat(db.appGroupDao().getGroups(CATEGORY.key)).isEmpty()
+    }
+
+    private fun newGroups() = TestGroups(
+        manager,
+        // Unconfined and a direct executor load and write right away on the calling thread
+        AppGroupsRepository(dao, Dispatchers.Unconfined) { it.run() },
+    )
+
+    private class TestGroups(manager: AppGroupsManager, repository: AppGroupsRepository) :
+        AppGroups<TestGroup>(manager, CATEGORY, repository) {
+
+        /** Row id, whether the group had an old state and whether it has a new one */
+        val stateChanges = ArrayList<Triple<Long, Boolean, Boolean>>()
+
+        init {
+            loadGroups()
+        }
+
+        override fun getDefaultCreators(): List<GroupCreator<TestGroup>> = emptyList()
+
+        override fun getGroupCreator(type: String) = object : GroupCreator<TestGroup> {
+            override fun createGroup(context: Context) = TestGroup(context, "")
+        }
+
+        override fun onGroupsChanged(changeCallback: PreferencesChangeCallback) {
+        }
+
+        override fun onGroupStateChanged(rowId: Long, oldState: GroupState?, newState: GroupState?) {
+            stateChanges.add(Triple(rowId, oldState != null, newState != null))
+        }
+    }
+
+    private class TestGroup(context: Context, title: String, vararg apps: ComponentKey) :
+        AppGroups.Group(TYPE, context, title) {
+
+        val contents = AppGroups.ComponentsCustomization(AppGroups.KEY_ITEMS, HashSet())
+
+        init {
+            addCustomization(contents)
+            if (apps.isNotEmpty()) {
+                contents.value = apps.toHashSet()
+            }
+            // Groups created by the loader get their title from the saved customizations
+            if (title.isNotEmpty()) {
+                this.title = title
+            }
+        }
+
+        companion object {
+            const val TYPE = "test"
+        }
+    }
+
+    private class RecordingDao(private val dao: AppGroupDao) : AppGroupDao by dao {
+
+        val changes = ArrayList<Changes>()
+
+        override fun applyChanges(
+            upserts: List<AppGroupItem>,
+            deletedIds: Collection<Long>,
+            addedMembers: List<AppGroupMember>,
+            removedMembers: List<AppGroupMember>,
+        ) {
+            changes.add(Changes(upserts, deletedIds.toList(), addedMembers, removedMembers))
+            dao.applyChanges(upserts, deletedIds, addedMembers, removedMembers)
+        }
+    }
+
+    private data class Changes(
+        val upserts: List<AppGroupItem>,
+        val deletedIds: List<Long>,
+        val addedMembers: List<AppGroupMember>,
+        val removedMembers: List<AppGroupMember>,
+    )
+
+    companion object {
+        private val CATEGORY = AppGroupsManager.Category(titleId = -1, key = "pref_test_groups")
+        private val LEGACY_KEY = stringPreferencesKey(CATEGORY.key)
+
+        private val APP_A = app("a")
+        private val APP_B = app("b")
+        private val APP_C = app("c")
+
+        private fun app(name: String) =
+            ComponentKey(ComponentName("com.example.$name", ".Main"), Process.myUserHandle())
+    }
+}
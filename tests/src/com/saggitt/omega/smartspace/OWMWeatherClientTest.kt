@@ -0,0 +1,120 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.smartspace.weather.OWMWeatherClient
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.IOException
+
+/** Tests for [OWMWeatherClient] against a local server standing in for the weather API. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class OWMWeatherClientTest {
+
+    private lateinit var server: MockWebServer
+    private lateinit var client: OWMWeatherClient
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        client = OWMWeatherClient(API_KEY, server.url("/data/2.5/"))
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun cityName_parsesCurrentWeather() = runBlocking {
+        server.enqueue(MockResponse().setBody(RESPONSE))
+
+        val weather = client.getCurrentWeatherByCityName("Berlin")
+
+        assertThat(weather).isEqualTo(OWMWeatherClient.CurrentWeather(2950159, 285.5, "04d"))
+        val request = server.takeRequest()
+        assertThat(request.requestUrl!!.encodedPath).isEqualTo("/data/2.5/weather")
+        assertThat(request.requestUrl!!.queryParameter("q")).isEqualTo("Berlin")
+        assertThat(request.requestUrl!!.queryParameter("appid")).isEqualTo(API_KEY)
+    }
+
+    @Test
+    fun coordinates_sendsLatitudeAndLongitude() = runBlocking {
+        server.enqueue(MockResponse().setBody(RESPONSE))
+
+        client.getCurrentWeatherByGeoCoordinates(52.5, 13.4)
+
+        val url = server.takeRequest().requestUrl!!
+        assertThat(url.queryParameter("lat")).isEqualTo("52.5")
+        assertThat(url.queryParameter("lon")).isEqualTo("13.4")
+    }
+
+    @Test
+    fun unauthorized_throwsInvalidApiKey() = runBlocking {
+        server.enqueue(MockResponse().setResponseCode(401))
+
+        try {
+            client.getCurrentWeatherByCityName("Berlin")
+            fail("Expected an exception")
+        } catch (e: OWMWeatherClient.InvalidApiKeyException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun malformedBody_throwsIOException() = runBlocking {
+        server.enqueue(MockResponse().setBody("{\"id\": 1}"))
+
+        try {
+            client.getCurrentWeatherByCityName("Berlin")
+            fail("Expected an exception")
+        } catch (e: IOException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun currentWeather_roundTripsThroughJson() {
+        val weather = OWMWeatherClient.CurrentWeather(1, 270.1, "13n")
+        assertThat(OWMWeatherClient.CurrentWeather.fromJson(weather.toJson())).isEqualTo(weather)
+    }
+
+    companion object {
+        private const val API_KEY = "test-key"
+        private const val RESPONSE = """
+            {
+              "id": 2950159,
+              "name": "Berlin",
+              "weather": [{"id": 804, "main": "Clouds", "icon": "04d"}],
+              "main": {"temp": 285.5, "humidity": 71}
+            }
+        """
+    }
+}
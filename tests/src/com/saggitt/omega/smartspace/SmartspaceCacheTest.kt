@@ -0,0 +1,71 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2024   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.smartspace.provider.SmartspaceCache
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+/** Tests for [SmartspaceCache]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class SmartspaceCacheTest {
+
+    private val file = File(
+        InstrumentationRegistry.getInstrumentation().targetContext.cacheDir,
+        "smartspace_cache_test.json"
+    )
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Test
+    fun put_persistsAcrossInstances() {
+        SmartspaceCache(file).put("weather", JSONObject().put("temp", 280), time = 1000)
+
+        val entry = SmartspaceCache(file).get("weather")!!
+        assertThat(entry.data.getInt("temp")).isEqualTo(280)
+        assertThat(entry.time).isEqualTo(1000)
+    }
+
+    @Test
+    fun entry_ageIsRelativeToWriteTime() {
+        val entry = SmartspaceCache.Entry(JSONObject(), time = 1000)
+
+        assertThat(entry.age(now = 1400)).isEqualTo(400)
+    }
+
+    @Test
+    fun putNull_removesEntry() {
+        val cache = SmartspaceCache(file)
+        cache.put("event", JSONObject())
+        cache.put("event", null)
+
+        assertThat(SmartspaceCache(file).get("event")).isNull()
+    }
+}